@@ -9,6 +9,8 @@ import input.WebPages;
 import routing.MessageRouter;
 import routing.ActiveRouter;
 import routing.SprayAndWaitRouter;
+import routing.PingEvents;
+import routing.PingHeaders;
 
 
 public class LiberouterApplication extends Application {
@@ -39,31 +41,31 @@ public class LiberouterApplication extends Application {
 
 	@Override
 	public Message handle(Message msg, DTNHost host) {
-		String type = (String)msg.getProperty("type");
+		PingHeaders.MessageType type = PingHeaders.TYPE.get(msg);
 		if (type==null) return msg; // Not a ping/pong message
 
 		// Respond with pong if we're the recipient
-		if (msg.getTo()==host && type.equalsIgnoreCase("ping")) {
+		if (msg.getTo()==host && type == PingHeaders.MessageType.PING) {
 			//String id = "pong" + SimClock.getIntTime() + "-" +
 			String id = "pong" + (int) (SimClock.getTime()*10) + "-" +
 					host.getAddress();
 			Message m = new Message(host, msg.getFrom(), id, getPongSize());
-			m.addProperty("type", "pong");
+			PingHeaders.TYPE.set(m, PingHeaders.MessageType.PONG);
 			m.setAppID(APP_ID);
 			host.createNewMessage(m);
 
 			System.out.println("send pong from:"+m.getFrom().getName()+" \tto:  "+m.getTo().getName() +" \tsize: "+m.getSize()+ " \tttl "+m.getTtl()+" \tid "+m.getId()+" \thop count "+m.getHopCount());
 			// Send event to listeners
-			super.sendEventToListeners("GotPing", null, host, -1.0, null, 0, -1.0);
-			super.sendEventToListeners("SentPong", null, host, -1.0, null, 0, -1.0);
+			super.sendEventToListeners(PingEvents.GOT_PING, null, host, -1.0, null, 0, -1.0);
+			super.sendEventToListeners(PingEvents.SENT_PONG, null, host, -1.0, null, 0, -1.0);
 		}
 
 		// Received a pong reply
-		if (msg.getTo()==host && type.equalsIgnoreCase("pong")) {
+		if (msg.getTo()==host && type == PingHeaders.MessageType.PONG) {
 			// Send event to listeners
 
 			System.out.println("receive pong from:"+msg.getFrom().getName()+" to: "+msg.getTo().getName() +" size: "+msg.getSize()+"\tid "+msg.getId());
-			super.sendEventToListeners("GotPong", null, host, -1.0, null, 0, -1.0);
+			super.sendEventToListeners(PingEvents.GOT_PONG, null, host, -1.0, null, 0, -1.0);
 		}
 
 		return msg;
@@ -100,12 +102,12 @@ public class LiberouterApplication extends Application {
 			Message m = new Message(host, getHost(), "ping" +
 					SimClock.getIntTime() + "-" + host.getAddress(),
 					getPingSize());
-			m.addProperty("type", "ping");
+			PingHeaders.TYPE.set(m, PingHeaders.MessageType.PING);
 			m.setAppID(APP_ID);
 			host.createNewMessage(m);
 
 			// Call listeners
-			super.sendEventToListeners("SentPing", null, host, -1.0, null, 0, -1.0);
+			super.sendEventToListeners(PingEvents.SENT_PING, null, host, -1.0, null, 0, -1.0);
 
 			this.lastPing = curTime;
 		}
@@ -10,6 +10,8 @@ import java.util.*;
 import input.WebPage;
 import input.WebPages;
 import report.PingAppReporter;
+import routing.PingEvents;
+import routing.PingHeaders;
 import core.Application;
 import core.DTNHost;
 import core.Message;
@@ -132,12 +134,12 @@ public class PingApplication extends Application {
 	 */
 	@Override
 	public Message handle(Message msg, DTNHost host) {
-		String type = (String)msg.getProperty("type");
+		PingHeaders.MessageType type = PingHeaders.TYPE.get(msg);
 		if (type==null) return msg; // Not a ping/pong message
 
 		// Respond with pong if we're the recipient
-		if (msg.getTo()==host && type.equalsIgnoreCase("ping")) {
-			int webpageNumber = (int)msg.getProperty("webpageNumber");
+		if (msg.getTo()==host && type == PingHeaders.MessageType.PING) {
+			int webpageNumber = PingHeaders.WEBPAGE_NUMBER.get(msg);
 			int webpageSize = webPages.getWebPage(webpageNumber);
 
 			//if(host.getName().startsWith("p")){
@@ -160,20 +162,20 @@ public class PingApplication extends Application {
 			String id = "pong" + (int) (SimClock.getTime()*10) + "-" +
 				host.getAddress();
 			Message m = new Message(host, msg.getFrom(), id, webpageSize);
-			m.addProperty("type", "pong");
+			PingHeaders.TYPE.set(m, PingHeaders.MessageType.PONG);
 			m.setAppID(APP_ID);
-			m.addProperty("webpageNumber", webpageNumber);
+			PingHeaders.WEBPAGE_NUMBER.set(m, webpageNumber);
 			m.setRequest(msg);
 			host.createNewMessage(m);
 
 			//System.out.println("send pong from:"+m.getFrom().getName()+" \tto:  "+m.getTo().getName() +" \tsize: "+m.getSize()+ " \tttl "+m.getTtl()+" \tid "+m.getId()+" \thop count "+m.getHopCount());
 			// Send event to listeners
-			super.sendEventToListeners("GotPing", null, host, -1.0, null, m.getSize(), -1.0);
-			super.sendEventToListeners("SentPong", null, host, -1.0, null, m.getSize(), -1.0); //TODO: this should be placed elsewhere, in the point where pong is actually sent.
+			super.sendEventToListeners(PingEvents.GOT_PING, null, host, -1.0, null, m.getSize(), -1.0);
+			super.sendEventToListeners(PingEvents.SENT_PONG, null, host, -1.0, null, m.getSize(), -1.0); //TODO: this should be placed elsewhere, in the point where pong is actually sent.
 		}
 
 		// Received a pong reply
-		if (msg.getTo()==host && type.equalsIgnoreCase("pong")) {
+		if (msg.getTo()==host && type == PingHeaders.MessageType.PONG) {
 			receivePong(host,msg);
 		}
 
@@ -189,26 +191,18 @@ public class PingApplication extends Application {
 		System.out.println("");*/
 		//System.out.println(""+((int) msg.getProperty("webpageNumber"))+","+msg.getSize());
 
-        int webpageNumber = (int) msg.getProperty("webpageNumber");
+        int webpageNumber = PingHeaders.WEBPAGE_NUMBER.get(msg);
         double pageCreationTime = msg.getRequest().getPageRequestCreationTime();
 		if(host.useCache()) {
 			host.addToCache(webpageNumber, msg.getSize());
 		}
 
 		//host.setWaitForReply(false);
-        for(int i=0 ; i < host.getRequestBuffer().size() ; i++) {
-            DTNHost.RequestBufferEntry entry = host.getRequestBuffer().get(i);
-
-            if(entry.getRequestedWebPageNumber() == webpageNumber && entry.getPageRequestCreationTime() == pageCreationTime) {
-                //System.out.println("CrT: "+pageCreationTime);
-                host.getRequestBuffer().remove(i);
-                break;
-            }
-        }
+        host.getRequestBuffer().remove(webpageNumber, pageCreationTime);
 
 
 		// Send event to listeners
-		super.sendEventToListeners("GotPong", null, host, SimClock.getTime() - msg.getRequest().getCreationTime(), msg.getFrom().getTypeOfHost(), msg.getSize(), SimClock.getTime() - msg.getRequest().getPageRequestCreationTime());
+		super.sendEventToListeners(PingEvents.GOT_PONG, null, host, SimClock.getTime() - msg.getRequest().getCreationTime(), msg.getFrom().getTypeOfHost(), msg.getSize(), SimClock.getTime() - msg.getRequest().getPageRequestCreationTime());
 		//System.out.println("Page size:" + msg.getSize());
 	}
 
@@ -264,7 +258,7 @@ public class PingApplication extends Application {
 					m.addProperty("webpageNumber", requestedWebPageNumber);
 					receivePong(host, m);    */    //Use a message from,to itselfx
 
-                    super.sendEventToListeners("InLocalCache", null, host, -1.0, null, 0, -1.0);	//TODO: I put 0 here because we are not actually sending a request. We retrieve from cache.
+                    super.sendEventToListeners(PingEvents.IN_LOCAL_CACHE, null, host, -1.0, null, 0, -1.0);	//TODO: I put 0 here because we are not actually sending a request. We retrieve from cache.
                     //super.sendEventToListeners("SentPing", null, host, -1.0, null, 0);	//TODO: I put 0 here because we are not actually sending a request. We retrieve from cache.
                     //host.getTypesOfDestionations().clear();
 				} else {
@@ -274,7 +268,7 @@ public class PingApplication extends Application {
                     ArrayList<DTNHost.TypeOfDestinationEntry> typeOfDestinations = host.getTypesOfDestinations();
                     for(DTNHost.TypeOfDestinationEntry dest : typeOfDestinations) {
                         if(!dest.isCounted()) {
-                            super.sendEventToListeners("SentPing", null, host, -1.0, dest.getTypeOfDestionation(), 1000, -1.0);
+                            super.sendEventToListeners(PingEvents.SENT_PING, null, host, -1.0, dest.getTypeOfDestionation(), 1000, -1.0);
                             dest.setCounted(true);
                         }
                     }
@@ -287,7 +281,7 @@ public class PingApplication extends Application {
                 ArrayList<DTNHost.TypeOfDestinationEntry> typeOfDestinations = host.getTypesOfDestinations();
                 for(DTNHost.TypeOfDestinationEntry dest : typeOfDestinations) {
                     if(!dest.isCounted()) {
-                        super.sendEventToListeners("SentPing", null, host, -1.0, dest.getTypeOfDestionation(), 1000, -1.0);
+                        super.sendEventToListeners(PingEvents.SENT_PING, null, host, -1.0, dest.getTypeOfDestionation(), 1000, -1.0);
                         dest.setCounted(true);
                     }
                 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package cache;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+
+import core.Settings;
+
+/**
+ * Adaptive Replacement Cache (ARC) by Megiddo and Modha. The cache is split
+ * into pages that have been used once recently (T1) and pages that have been
+ * used at least twice (T2). The numbers of recently evicted pages of both
+ * parts are remembered (B1 and B2) and a hit on them adapts the target size
+ * of T1. A lookup only counts as a use if the page is cached; the ghost
+ * entries are checked when the missing page is added.
+ * The byte limit is enforced by evicting more pages with the same rule.
+ * The ghost lists are trimmed after each addition so that, as in ARC,
+ * T1 and B1 have at most c pages together and all the four lists at most
+ * 2c pages, where c is the maximum number of cached pages.
+ */
+public class ARCCache extends WebCache {
+	/** pages used once recently and their sizes, least recent first */
+	private LinkedHashMap<Integer, Integer> t1;
+	/** pages used at least twice recently, least recent first */
+	private LinkedHashMap<Integer, Integer> t2;
+	/** page numbers recently evicted from T1, least recent first */
+	private LinkedHashSet<Integer> b1;
+	/** page numbers recently evicted from T2, least recent first */
+	private LinkedHashSet<Integer> b2;
+	/** target size of T1 */
+	private double p;
+
+	public ARCCache(Settings s) {
+		super(s);
+		init();
+	}
+
+	/**
+	 * Copy constructor
+	 * @param proto The cache prototype
+	 */
+	protected ARCCache(ARCCache proto) {
+		super(proto);
+		init();
+	}
+
+	private void init() {
+		this.t1 = new LinkedHashMap<Integer, Integer>();
+		this.t2 = new LinkedHashMap<Integer, Integer>();
+		this.b1 = new LinkedHashSet<Integer>();
+		this.b2 = new LinkedHashSet<Integer>();
+		this.p = 0;
+	}
+
+	@Override
+	public int get(int page) {
+		Integer size = this.t1.remove(page);
+		if (size == null) {
+			size = this.t2.remove(page);
+			if (size == null) {
+				return -1;
+			}
+		}
+		this.t2.put(page, size);
+		return size;
+	}
+
+	@Override
+	public void put(int page, int size) {
+		Integer oldSize = this.t1.remove(page);
+		if (oldSize == null) {
+			oldSize = this.t2.remove(page);
+		}
+		if (oldSize != null) {
+			removed(oldSize);
+		}
+		if (!isCacheable(size)) {
+			return;
+		}
+
+		int c = this.maxEntries;
+		if (oldSize != null) {
+			/* a cache hit */
+			this.t2.put(page, size);
+		} else if (this.b1.remove(page)) {
+			double delta = Math.max(1.0 * this.b2.size() /
+					(this.b1.size() + 1), 1);
+			this.p = Math.min(c, this.p + delta);
+			replace(false);
+			this.t2.put(page, size);
+		} else if (this.b2.remove(page)) {
+			double delta = Math.max(1.0 * this.b1.size() /
+					(this.b2.size() + 1), 1);
+			this.p = Math.max(0, this.p - delta);
+			replace(true);
+			this.t2.put(page, size);
+		} else {
+			int l1 = this.t1.size() + this.b1.size();
+			if (l1 >= c) {
+				if (this.t1.size() < c) {
+					removeFirst(this.b1);
+					replace(false);
+				} else {
+					removed(this.t1.remove(firstKey(this.t1)));
+				}
+			} else {
+				int total = l1 + this.t2.size() + this.b2.size();
+				if (total >= c) {
+					if (total >= 2 * c) {
+						removeFirst(this.b2);
+					}
+					replace(false);
+				}
+			}
+			this.t1.put(page, size);
+		}
+		added(size);
+
+		while (isOverLimit()) {
+			replace(false);
+		}
+		trimGhosts(c);
+	}
+
+	/**
+	 * Forgets the least recently evicted pages of the ghost lists that don't
+	 * fit in the directory of ARC, e.g., after evictions for the byte limit
+	 * @param c Maximum number of cached pages
+	 */
+	private void trimGhosts(int c) {
+		while (this.t1.size() + this.b1.size() > c && !this.b1.isEmpty()) {
+			removeFirst(this.b1);
+		}
+		while (size() + this.b1.size() + this.b2.size() > 2 * c &&
+				!(this.b1.isEmpty() && this.b2.isEmpty())) {
+			removeFirst(this.b2.isEmpty() ? this.b1 : this.b2);
+		}
+	}
+
+	/**
+	 * Evicts the least recently used page of T1 or T2 and remembers it in
+	 * the corresponding ghost list
+	 * @param inB2 True if the page being added was found from B2
+	 */
+	private void replace(boolean inB2) {
+		boolean fromT1;
+		if (this.t1.isEmpty()) {
+			fromT1 = false;
+		} else if (this.t2.isEmpty()) {
+			fromT1 = true;
+		} else {
+			fromT1 = this.t1.size() > this.p ||
+				(inB2 && this.t1.size() == (int)this.p);
+		}
+
+		if (fromT1) {
+			int page = firstKey(this.t1);
+			removed(this.t1.remove(page));
+			this.b1.add(page);
+		} else if (!this.t2.isEmpty()) {
+			int page = firstKey(this.t2);
+			removed(this.t2.remove(page));
+			this.b2.add(page);
+		}
+	}
+
+	private static int firstKey(LinkedHashMap<Integer, Integer> map) {
+		return map.keySet().iterator().next();
+	}
+
+	private static void removeFirst(LinkedHashSet<Integer> set) {
+		if (!set.isEmpty()) {
+			set.remove(set.iterator().next());
+		}
+	}
+
+	@Override
+	public int size() {
+		return this.t1.size() + this.t2.size();
+	}
+
+	@Override
+	public WebCache replicate() {
+		return new ARCCache(this);
+	}
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package cache;
+
+import java.util.LinkedHashMap;
+
+import core.Settings;
+
+/**
+ * Web cache that evicts the page that was added (or re-added) first.
+ * Lookups don't change the order. This is the default cache and behaves
+ * like the hosts' original list-based cache.
+ */
+public class FIFOCache extends WebCache {
+	/** cached pages and their sizes in eviction order */
+	protected LinkedHashMap<Integer, Integer> pages;
+
+	public FIFOCache(Settings s) {
+		this(s, false);
+	}
+
+	/**
+	 * Constructor for the subclasses
+	 * @param s The settings object
+	 * @param accessOrder If true, lookups move the page to the end of the
+	 * eviction order
+	 */
+	protected FIFOCache(Settings s, boolean accessOrder) {
+		super(s);
+		this.pages = new LinkedHashMap<Integer, Integer>(16, 0.75f,
+				accessOrder);
+	}
+
+	/**
+	 * Copy constructor
+	 * @param proto The cache prototype
+	 * @param accessOrder If true, lookups move the page to the end of the
+	 * eviction order
+	 */
+	protected FIFOCache(FIFOCache proto, boolean accessOrder) {
+		super(proto);
+		this.pages = new LinkedHashMap<Integer, Integer>(16, 0.75f,
+				accessOrder);
+	}
+
+	@Override
+	public int get(int page) {
+		Integer size = this.pages.get(page);
+		return size == null ? -1 : size;
+	}
+
+	@Override
+	public void put(int page, int size) {
+		remove(page);
+		if (!isCacheable(size)) {
+			return;
+		}
+
+		this.pages.put(page, size);
+		added(size);
+		while (isOverLimit()) {
+			removeFirst();
+		}
+	}
+
+	/**
+	 * Removes a page from the cache (if it is there)
+	 * @param page Number of the page
+	 */
+	protected void remove(int page) {
+		Integer size = this.pages.remove(page);
+		if (size != null) {
+			removed(size);
+		}
+	}
+
+	/**
+	 * Removes the page that is first in the eviction order
+	 */
+	protected void removeFirst() {
+		remove(this.pages.keySet().iterator().next());
+	}
+
+	@Override
+	public int size() {
+		return this.pages.size();
+	}
+
+	@Override
+	public WebCache replicate() {
+		return new FIFOCache(this, false);
+	}
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package cache;
+
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+
+import core.Settings;
+
+/**
+ * Web cache that evicts the least frequently used page. Both lookups and
+ * additions count as uses. Ties are broken by evicting the page that reached
+ * its use count first. The pages are kept in per-count buckets, so finding
+ * the page to evict doesn't require going through the pages.
+ */
+public class LFUCache extends WebCache {
+	/** cached pages */
+	private HashMap<Integer, CachedPage> pages;
+	/** page numbers by use count (in the order they reached the count) */
+	private HashMap<Integer, LinkedHashSet<Integer>> buckets;
+	/** smallest use count of the cached pages (or a lower bound for it) */
+	private int minCount;
+
+	public LFUCache(Settings s) {
+		super(s);
+		init();
+	}
+
+	/**
+	 * Copy constructor
+	 * @param proto The cache prototype
+	 */
+	protected LFUCache(LFUCache proto) {
+		super(proto);
+		init();
+	}
+
+	private void init() {
+		this.pages = new HashMap<Integer, CachedPage>();
+		this.buckets = new HashMap<Integer, LinkedHashSet<Integer>>();
+		this.minCount = 1;
+	}
+
+	@Override
+	public int get(int page) {
+		CachedPage cp = this.pages.get(page);
+		if (cp == null) {
+			return -1;
+		}
+		use(page, cp);
+		return cp.size;
+	}
+
+	@Override
+	public void put(int page, int size) {
+		CachedPage cp = this.pages.get(page);
+		if (!isCacheable(size)) {
+			if (cp != null) {
+				remove(page);
+			}
+			return;
+		}
+
+		if (cp != null) {
+			removed(cp.size);
+			cp.size = size;
+			added(size);
+			use(page, cp);
+			while (isOverLimit()) {
+				removeLeastUsed();
+			}
+			return;
+		}
+
+		/* make room first so that the new page, which has the smallest
+		 * possible count, isn't the one that gets evicted */
+		while (isFull(size)) {
+			removeLeastUsed();
+		}
+		cp = new CachedPage(size);
+		this.pages.put(page, cp);
+		bucket(cp.count).add(page);
+		added(size);
+		this.minCount = cp.count;
+	}
+
+	/**
+	 * Increments the use count of a page and moves it to the next bucket
+	 */
+	private void use(int page, CachedPage cp) {
+		LinkedHashSet<Integer> b = this.buckets.get(cp.count);
+		b.remove(page);
+		if (b.isEmpty()) {
+			this.buckets.remove(cp.count);
+			if (this.minCount == cp.count) {
+				this.minCount++;
+			}
+		}
+		cp.count++;
+		bucket(cp.count).add(page);
+	}
+
+	/**
+	 * Returns the bucket for the given use count, creating it if needed
+	 */
+	private LinkedHashSet<Integer> bucket(int count) {
+		LinkedHashSet<Integer> b = this.buckets.get(count);
+		if (b == null) {
+			b = new LinkedHashSet<Integer>();
+			this.buckets.put(count, b);
+		}
+		return b;
+	}
+
+	/**
+	 * Removes a cached page
+	 */
+	private void remove(int page) {
+		CachedPage cp = this.pages.remove(page);
+		LinkedHashSet<Integer> b = this.buckets.get(cp.count);
+		b.remove(page);
+		if (b.isEmpty()) {
+			this.buckets.remove(cp.count);
+		}
+		removed(cp.size);
+	}
+
+	/**
+	 * Removes the least frequently used page
+	 */
+	private void removeLeastUsed() {
+		/* minCount only lags behind if the last page with the smallest
+		 * count was evicted; catching up is amortized over the uses */
+		while (!this.buckets.containsKey(this.minCount)) {
+			this.minCount++;
+		}
+		remove(this.buckets.get(this.minCount).iterator().next());
+	}
+
+	@Override
+	public int size() {
+		return this.pages.size();
+	}
+
+	@Override
+	public WebCache replicate() {
+		return new LFUCache(this);
+	}
+
+	/**
+	 * Size and use count of a cached page
+	 */
+	private static class CachedPage {
+		private int size;
+		private int count;
+
+		private CachedPage(int size) {
+			this.size = size;
+			this.count = 1;
+		}
+	}
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package cache;
+
+import core.Settings;
+
+/**
+ * Web cache that evicts the least recently used page. Both lookups and
+ * additions count as uses.
+ */
+public class LRUCache extends FIFOCache {
+
+	public LRUCache(Settings s) {
+		super(s, true);
+	}
+
+	/**
+	 * Copy constructor
+	 * @param proto The cache prototype
+	 */
+	protected LRUCache(LRUCache proto) {
+		super(proto, true);
+	}
+
+	@Override
+	public WebCache replicate() {
+		return new LRUCache(this);
+	}
+}
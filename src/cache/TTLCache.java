@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package cache;
+
+import java.util.HashMap;
+
+import core.Settings;
+import core.SimClock;
+
+/**
+ * Web cache whose pages expire a fixed time after they were added. If the
+ * cache is full, the page that expires first is evicted. Since all pages
+ * live equally long, the eviction order is the order in which the pages
+ * were added and the expired pages are always at the front of it.
+ */
+public class TTLCache extends FIFOCache {
+	/** Time to live of the cached pages in seconds -setting id ({@value}) */
+	public static final String CACHE_TTL_S = "cacheTtl";
+
+	/** time to live of the pages */
+	private final double ttl;
+	/** expiry times of the cached pages */
+	private HashMap<Integer, Double> expiryTimes;
+
+	public TTLCache(Settings s) {
+		super(s, false);
+		this.ttl = s.getDouble(CACHE_TTL_S);
+		s.ensurePositiveValue(this.ttl, CACHE_TTL_S);
+		this.expiryTimes = new HashMap<Integer, Double>();
+	}
+
+	/**
+	 * Copy constructor
+	 * @param proto The cache prototype
+	 */
+	protected TTLCache(TTLCache proto) {
+		super(proto, false);
+		this.ttl = proto.ttl;
+		this.expiryTimes = new HashMap<Integer, Double>();
+	}
+
+	@Override
+	public int get(int page) {
+		Double expiry = this.expiryTimes.get(page);
+		if (expiry == null) {
+			return -1;
+		}
+		if (expiry <= SimClock.getTime()) {
+			remove(page);
+			return -1;
+		}
+		return super.get(page);
+	}
+
+	@Override
+	public void put(int page, int size) {
+		removeExpired();
+		super.put(page, size);
+		if (this.pages.containsKey(page)) {
+			this.expiryTimes.put(page, SimClock.getTime() + this.ttl);
+		}
+	}
+
+	@Override
+	protected void remove(int page) {
+		super.remove(page);
+		this.expiryTimes.remove(page);
+	}
+
+	/**
+	 * Removes the expired pages from the front of the eviction order
+	 */
+	private void removeExpired() {
+		double now = SimClock.getTime();
+		while (this.pages.size() > 0) {
+			int first = this.pages.keySet().iterator().next();
+			if (this.expiryTimes.get(first) > now) {
+				break;
+			}
+			remove(first);
+		}
+	}
+
+	@Override
+	public WebCache replicate() {
+		return new TTLCache(this);
+	}
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package cache;
+
+import core.Settings;
+import core.SimScenario;
+
+/**
+ * Superclass for the web page caches of the hosts. A cache maps web page
+ * numbers to page sizes. It is limited both by the number of pages
+ * ({@link SimScenario#CACHE_ENTRIES}) and by the total size of the pages
+ * ({@link #CACHE_BYTES_S}). Subclasses decide which pages are evicted when
+ * either of the limits is exceeded. The cache class of a group is set with
+ * the {@link SimScenario#CACHE_POLICY} setting.
+ */
+public abstract class WebCache {
+	/** Maximum total size of the cached pages in bytes -setting id
+	 * ({@value}). Default: no limit */
+	public static final String CACHE_BYTES_S = "cacheBytes";
+
+	/** maximum number of cached pages */
+	protected final int maxEntries;
+	/** maximum total size of the cached pages */
+	protected final long maxBytes;
+	/** current total size of the cached pages */
+	private long bytes;
+
+	/**
+	 * Constructor. Reads the limits from the (group) settings.
+	 * @param s The settings object
+	 */
+	public WebCache(Settings s) {
+		this.maxEntries = s.getInt(SimScenario.CACHE_ENTRIES, 0);
+		s.ensurePositiveValue(this.maxEntries, SimScenario.CACHE_ENTRIES);
+
+		if (s.contains(CACHE_BYTES_S)) {
+			double maxBytes = s.getDouble(CACHE_BYTES_S);
+			s.ensurePositiveValue(maxBytes, CACHE_BYTES_S);
+			this.maxBytes = (long)maxBytes;
+		} else {
+			this.maxBytes = Long.MAX_VALUE;
+		}
+	}
+
+	/**
+	 * Copy constructor. Copies the limits but not the contents.
+	 * @param proto The cache prototype
+	 */
+	protected WebCache(WebCache proto) {
+		this.maxEntries = proto.maxEntries;
+		this.maxBytes = proto.maxBytes;
+	}
+
+	/**
+	 * Returns the size of a cached page. Counts as a use of the page.
+	 * @param page Number of the page
+	 * @return The size of the page or -1 if the page is not in the cache
+	 */
+	public abstract int get(int page);
+
+	/**
+	 * Adds a page to the cache (or replaces the cached copy) and evicts pages
+	 * until the cache is within its limits again. Pages that can never fit
+	 * into the cache are not added.
+	 * @param page Number of the page
+	 * @param size Size of the page
+	 */
+	public abstract void put(int page, int size);
+
+	/**
+	 * Returns the number of cached pages
+	 * @return the number of cached pages
+	 */
+	public abstract int size();
+
+	/**
+	 * Creates a new, empty cache with the same settings as this one
+	 * @return The new cache
+	 */
+	public abstract WebCache replicate();
+
+	/**
+	 * Returns the total size of the cached pages
+	 * @return the total size of the cached pages
+	 */
+	public long getBytes() {
+		return this.bytes;
+	}
+
+	/**
+	 * Returns true if a page of the given size fits into an empty cache
+	 * @param size Size of the page
+	 * @return True if the page can be cached
+	 */
+	protected boolean isCacheable(int size) {
+		return this.maxEntries > 0 && size <= this.maxBytes;
+	}
+
+	/**
+	 * Returns true if the cache exceeds either of its limits
+	 * @return True if pages should be evicted
+	 */
+	protected boolean isOverLimit() {
+		return size() > this.maxEntries || this.bytes > this.maxBytes;
+	}
+
+	/**
+	 * Returns true if adding a new page of the given size would make the
+	 * cache exceed either of its limits
+	 * @param size Size of the new page
+	 * @return True if pages should be evicted before adding the page
+	 */
+	protected boolean isFull(int size) {
+		return size() >= this.maxEntries || this.bytes + size > this.maxBytes;
+	}
+
+	/**
+	 * Subclasses must call this when a page is added to the cache
+	 * @param size Size of the page
+	 */
+	protected void added(int size) {
+		this.bytes += size;
+	}
+
+	/**
+	 * Subclasses must call this when a page is removed from the cache
+	 * @param size Size of the page
+	 */
+	protected void removed(int size) {
+		this.bytes -= size;
+	}
+
+	/**
+	 * Returns a string representation of the cache
+	 * @return a string representation of the cache
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " + size() + " pages (" +
+			this.bytes + " bytes)";
+	}
+}
@@ -116,7 +116,7 @@ public abstract class Application {
 	 * @param params	Any additional parameters to send.
 	 * @param host		The host which where the app is running.
 	 */
-	public void sendEventToListeners(String event, Object params,
+	public void sendEventToListeners(ApplicationEvent event, Object params,
 									 DTNHost host, double roundTripTime, DTNHost.TypeOfHost typeOfResponseHost, int messageSize, double responseTime) {
 		for (ApplicationListener al : this.aListeners) {
 			al.gotEvent(event, params, this, host, roundTripTime, typeOfResponseHost, messageSize, responseTime);
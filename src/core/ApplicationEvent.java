@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Event that an application sends to its listeners (see
+ * {@link Application#sendEventToListeners}). The applications define their
+ * own events, usually to static final fields of the application class.
+ * There is only one event instance per name, so listeners can compare the
+ * events they get with the application's events by reference instead of
+ * comparing event names.
+ */
+public final class ApplicationEvent {
+	/** the events by their names */
+	private static final Map<String, ApplicationEvent> events =
+		new HashMap<String, ApplicationEvent>();
+
+	private final String name;
+
+	private ApplicationEvent(String name) {
+		this.name = name;
+	}
+
+	/**
+	 * Returns the event with the given name, creating it if no event has
+	 * the name yet
+	 * @param name Name of the event
+	 * @return The event
+	 */
+	public static ApplicationEvent forName(String name) {
+		synchronized (events) {
+			ApplicationEvent e = events.get(name);
+			if (e == null) {
+				e = new ApplicationEvent(name);
+				events.put(name, e);
+			}
+			return e;
+		}
+	}
+
+	/**
+	 * Returns the name of the event
+	 * @return the name of the event
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public String toString() {
+		return this.name;
+	}
+}
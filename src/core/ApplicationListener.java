@@ -12,9 +12,9 @@ package core;
  *
  * <p>
  * Report classes wishing to receive application events should implement this
- * interface. Note that the application event names are defined by the
- * applications so any class wishing to interpret them must know the
- * application.
+ * interface. Note that the meaning of the events and their parameters is
+ * defined by the applications so any class wishing to interpret them must
+ * know the application.
  * </p>
  *
  * @author teemuk
@@ -25,11 +25,11 @@ public interface ApplicationListener {
 	/**
 	 * Application has generated an event.
 	 *
-	 * @param event		Event name.
+	 * @param event		The event.
 	 * @param params	Additional parameters for the event
 	 * @param app		Application instance that generated the event.
 	 * @param host		The host this application instance is running on.
 	 */
-	public void gotEvent(String event, Object params, Application app,
+	public void gotEvent(ApplicationEvent event, Object params, Application app,
 			DTNHost host, double rοundTripTime, DTNHost.TypeOfHost typeOfResponseHost, int messageSize, double responseTime);
 }
@@ -0,0 +1,360 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import movement.MovementModel;
+
+/**
+ * Binary trace of the connections that the network interfaces create and
+ * tear down in their updates. If the trace file doesn't exist, the
+ * connection changes of the simulation are recorded to it. Otherwise the
+ * simulation is driven by the trace: the hosts don't move and the
+ * interfaces don't look for connections, but each interface gets the
+ * recorded connection changes in its update, in the same order as in the
+ * recorded simulation. The routers and applications thus see exactly the
+ * same connections as in the recorded simulation, so runs that differ only
+ * in, e.g., the router, application or cache settings can reuse the trace.
+ * <P>The trace is only valid for the hosts, interfaces, movement and
+ * update interval it was recorded with. When the trace is replayed, a
+ * fingerprint of the hosts' names, initial locations, interface types and
+ * movement model classes, the update interval, and the movement and
+ * interface settings is checked. The movement settings are the settings in
+ * the namespaces of the movement model classes (and their superclasses) and
+ * the movement model, speed and wait time settings of the groups. The
+ * interface settings are the settings in the namespaces of the interfaces.
+ * Other settings that change the movement, e.g., group specific settings
+ * of the movement models, are not checked. Interfaces that update the
+ * speeds of their connections (see {@link NetworkInterface#isReplayable()})
+ * and routers that use an energy model (see
+ * {@link routing.MessageRouter#isReplayable()}) can't be
+ * replayed. Reports that use the locations of the hosts
+ * don't work when a trace is replayed. Connections that are not created by
+ * the interface updates (e.g., by external events) are not recorded; they
+ * are created in the replay the same way as in the recorded simulation.</P>
+ */
+public class ContactTrace {
+	/** identifier in the beginning of contact trace files */
+	private static final int MAGIC = 0x4f4e4554; /* "ONET" */
+	private static final int VERSION = 1;
+
+	private final List<DTNHost> hosts;
+	private final String fileName;
+	private final boolean replaying;
+	private DataOutputStream out;
+	private DataInputStream in;
+
+	/** the interface whose update is being recorded (or null) */
+	private NetworkInterface recorded;
+
+	/* the next connection change to replay */
+	private double nextTime;
+	private int nextHost;
+	private int nextInterface;
+	private int nextOtherHost;
+	private int nextOtherInterface;
+	private boolean nextUp;
+	/** the time of the interface updates being replayed */
+	private double updateTime;
+	/** the time of the previous interface updates */
+	private double prevUpdateTime;
+	/** time the recording ended at (replay only; infinite until the end
+	 * of the trace has been read) */
+	private double recordedEndTime;
+
+	/**
+	 * Opens a contact trace for recording (if the file doesn't exist) or
+	 * replaying (if it does)
+	 * @param fileName Name (&path) of the trace file
+	 * @param hosts All the hosts of the simulation
+	 * @param updateInterval Update interval of the simulation
+	 * @throws SettingsError if the trace was recorded with different hosts
+	 * or the hosts have interfaces that can't be replayed
+	 */
+	public ContactTrace(String fileName, List<DTNHost> hosts,
+			double updateInterval) {
+		this.fileName = fileName;
+		this.hosts = hosts;
+		this.replaying = new File(fileName).exists();
+		long fingerprint = fingerprint(hosts, updateInterval);
+
+		if (this.replaying) {
+			checkReplayable(hosts);
+		}
+
+		try {
+			if (this.replaying) {
+				this.in = new DataInputStream(new BufferedInputStream(
+						new FileInputStream(fileName)));
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new SettingsError("'" + fileName + "' is not a " +
+							"contact trace file");
+				}
+				if (in.readLong() != fingerprint) {
+					throw new SettingsError("Contact trace '" + fileName +
+							"' was recorded with different hosts or settings");
+				}
+				this.recordedEndTime = Double.POSITIVE_INFINITY;
+				this.updateTime = Double.NEGATIVE_INFINITY;
+				this.prevUpdateTime = Double.NEGATIVE_INFINITY;
+				readNext();
+			}
+			else {
+				this.out = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(fileName)));
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(fingerprint);
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't open contact trace '" + fileName +
+					"'", e);
+		}
+	}
+
+	/**
+	 * Returns true if the trace is replayed, false if it is recorded
+	 * @return true if the trace is replayed
+	 */
+	public boolean isReplaying() {
+		return this.replaying;
+	}
+
+	/**
+	 * Updates a network interface. When recording, the interface is updated
+	 * normally and the connection changes are recorded. When replaying, the
+	 * recorded changes of this update are applied to the interface.
+	 * @param ni The interface to update
+	 */
+	public void update(NetworkInterface ni) {
+		if (!this.replaying) {
+			this.recorded = ni;
+			ni.update();
+			this.recorded = null;
+			return;
+		}
+
+		double now = SimClock.getTime();
+		if (now > this.recordedEndTime) {
+			throw new SimError("Contact trace '" + fileName + "' ends at " +
+					this.recordedEndTime);
+		}
+		if (now != this.updateTime) {
+			this.prevUpdateTime = this.updateTime;
+			this.updateTime = now;
+		}
+		if (this.nextTime <= this.prevUpdateTime) {
+			/* the change should have been replayed in an earlier update */
+			throw new SimError("Contact trace '" + fileName + "' doesn't " +
+					"match the simulation at " + this.nextTime);
+		}
+		DTNHost host = ni.getHost();
+		while (this.nextTime <= now && this.nextHost == host.getAddress() &&
+				host.getInterfaces().get(this.nextInterface) == ni) {
+			NetworkInterface other = this.hosts.get(this.nextOtherHost)
+				.getInterfaces().get(this.nextOtherInterface);
+			if (this.nextUp) {
+				ni.createConnection(other);
+			}
+			else {
+				ni.destroyConnection(other);
+			}
+			readNext();
+		}
+	}
+
+	/**
+	 * Records a connection change if it was made by the interface that is
+	 * being updated. Called by the interfaces for all connection changes.
+	 * @param ni The interface that made the change
+	 * @param other The interface at the other end of the connection
+	 * @param up True if the connection was created, false if torn down
+	 */
+	public void connectionChanged(NetworkInterface ni, NetworkInterface other,
+			boolean up) {
+		if (ni != this.recorded) {
+			return;
+		}
+		try {
+			out.writeDouble(SimClock.getTime());
+			out.writeInt(ni.getHost().getAddress());
+			out.writeByte(ni.getHost().getInterfaces().indexOf(ni));
+			out.writeInt(other.getHost().getAddress());
+			out.writeByte(other.getHost().getInterfaces().indexOf(other));
+			out.writeBoolean(up);
+		} catch (IOException e) {
+			throw new SimError("Couldn't write contact trace '" + fileName +
+					"'", e);
+		}
+	}
+
+	/**
+	 * Closes the trace. A recorded trace is only valid up to the time it is
+	 * closed at.
+	 */
+	public void close() {
+		try {
+			if (this.replaying) {
+				in.close();
+			}
+			else {
+				/* end marker: no connection changes after this time */
+				out.writeDouble(Double.POSITIVE_INFINITY);
+				out.writeDouble(SimClock.getTime());
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't close contact trace '" + fileName +
+					"'", e);
+		}
+	}
+
+	/**
+	 * Reads the next connection change of a replayed trace
+	 */
+	private void readNext() {
+		try {
+			this.nextTime = in.readDouble();
+			if (this.nextTime == Double.POSITIVE_INFINITY) {
+				this.recordedEndTime = in.readDouble();
+				return;
+			}
+			this.nextHost = in.readInt();
+			this.nextInterface = in.readByte();
+			this.nextOtherHost = in.readInt();
+			this.nextOtherInterface = in.readByte();
+			this.nextUp = in.readBoolean();
+		} catch (EOFException e) {
+			throw new SimError("Contact trace '" + fileName + "' is " +
+					"incomplete", e);
+		} catch (IOException e) {
+			throw new SimError("Couldn't read contact trace '" + fileName +
+					"'", e);
+		}
+	}
+
+	/**
+	 * Checks that all the interfaces and routers of the hosts can be
+	 * replayed
+	 */
+	private static void checkReplayable(List<DTNHost> hosts) {
+		for (DTNHost host : hosts) {
+			if (!host.getRouter().isReplayable()) {
+				throw new SettingsError("Contact traces can't be " +
+						"replayed with energy models (host " + host + ")");
+			}
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (!ni.isReplayable()) {
+					throw new SettingsError("Contact traces can't be " +
+							"replayed with " + ni.getClass().getSimpleName() +
+							" interfaces (host " + host + ")");
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a fingerprint of the hosts, their interfaces, initial
+	 * locations and movement models, the update interval and the movement
+	 * and interface settings
+	 */
+	private static long fingerprint(List<DTNHost> hosts,
+			double updateInterval) {
+		long fp = Double.doubleToLongBits(updateInterval);
+		Set<String> namespaces = getMovementNamespaces(hosts);
+		for (DTNHost host : hosts) {
+			fp = 31 * fp + host.toString().hashCode();
+			fp = 31 * fp + Double.doubleToLongBits(host.getLocation().getX());
+			fp = 31 * fp + Double.doubleToLongBits(host.getLocation().getY());
+			for (NetworkInterface ni : host.getInterfaces()) {
+				fp = 31 * fp + ni.getInterfaceType().hashCode();
+				namespaces.add(ni.getInterfaceType());
+			}
+			fp = 31 * fp + host.getMovement().getClass().getName().hashCode();
+		}
+		return fingerprint(fp, getMovementSettings(namespaces));
+	}
+
+	/**
+	 * Returns the namespaces of the hosts' movement models: the movement
+	 * model namespace and the namespaces of the movement model classes and
+	 * their superclasses
+	 * @param hosts The hosts
+	 * @return The namespaces
+	 */
+	static Set<String> getMovementNamespaces(List<DTNHost> hosts) {
+		Set<String> namespaces = new HashSet<String>();
+		namespaces.add(MovementModel.MOVEMENT_MODEL_NS);
+		for (DTNHost host : hosts) {
+			Class<?> c = host.getMovement().getClass();
+			for (; c != Object.class; c = c.getSuperclass()) {
+				namespaces.add(c.getSimpleName());
+			}
+		}
+		return namespaces;
+	}
+
+	/**
+	 * Adds settings to a fingerprint
+	 * @param fp The fingerprint so far
+	 * @param settings The values of the settings by their names (sorted)
+	 * @return The new fingerprint
+	 */
+	static long fingerprint(long fp, SortedMap<String, String> settings) {
+		for (Map.Entry<String, String> e : settings.entrySet()) {
+			fp = 31 * fp + e.getKey().hashCode();
+			fp = 31 * fp + Settings.parseRunSetting(e.getValue()).hashCode();
+		}
+		return fp;
+	}
+
+	/**
+	 * Returns the settings that define the movement: the
+	 * settings in the given namespaces and the movement model, speed and
+	 * wait time settings of the groups
+	 * @param namespaces The namespaces of the movement models (see
+	 * {@link #getMovementNamespaces(List)}) and any other namespaces whose
+	 * settings should be included
+	 * @return The values of the settings by their names (sorted)
+	 */
+	static SortedMap<String, String> getMovementSettings(
+			Set<String> namespaces) {
+		SortedMap<String, String> settings = new TreeMap<String, String>();
+		if (Settings.props == null) {
+			return settings;
+		}
+		for (String name : Settings.props.stringPropertyNames()) {
+			int dot = name.indexOf('.');
+			if (dot < 0) {
+				continue;
+			}
+			String ns = name.substring(0, dot);
+			String key = name.substring(dot + 1);
+			if (namespaces.contains(ns) ||
+					(ns.startsWith(SimScenario.GROUP_NS) &&
+					(key.equals(SimScenario.MOVEMENT_MODEL_S) ||
+					key.equals(MovementModel.SPEED) ||
+					key.equals(MovementModel.WAIT_TIME)))) {
+				settings.put(name, Settings.props.getProperty(name));
+			}
+		}
+		return settings;
+	}
+}
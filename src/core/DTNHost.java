@@ -4,13 +4,18 @@
  */
 package core;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.LinkedList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.sun.org.apache.xpath.internal.SourceTree;
-import input.WebPage;
+import cache.WebCache;
 import movement.MovementModel;
 import movement.Path;
 import routing.*;
@@ -24,6 +29,8 @@ import static core.Constants.DEBUG;
 public class DTNHost implements Comparable<DTNHost> {
 
     public static int requestTimeOut = 60; //seconds
+    /** how much before the timeout the requests are checked (seconds) */
+    private static final double RETRY_CHECK_MARGIN = 1e-6;
     public static int temp = 0;
 
 	private static int nextAddress = 0;
@@ -40,11 +47,20 @@ public class DTNHost implements Comparable<DTNHost> {
 	private String name;
 	private List<MessageListener> msgListeners;
 	private List<MovementListener> movListeners;
+	/** are the movement listener notifications deferred */
+	private boolean deferMovementNotifications;
+	/** destinations and speeds whose notifications have been deferred */
+	private List<Coord> deferredDestinations;
+	private List<Double> deferredSpeeds;
 	private List<NetworkInterface> net;
+	/** the up connections of all interfaces (or null if not valid) */
+	private List<Connection> connections;
+	/** the up connections by the other host (or null if not valid) */
+	private Map<DTNHost, List<Connection>> connectionsByHost;
 	private ModuleCommunicationBus comBus;
 
 	public boolean useCache() {
-		return caching;
+		return cache != null;
 	}
 
 
@@ -73,10 +89,10 @@ public class DTNHost implements Comparable<DTNHost> {
 	private String APP_ID;
 
 	private int demo_case = 1;
-	private boolean caching = false;
-	private int cacheEntries = 0;
-	private LinkedList cache = new LinkedList();
-    private ArrayList<RequestBufferEntry> requestBuffer = new ArrayList<RequestBufferEntry>();
+	private WebCache cache = null;
+	/** trace the connection changes are recorded to or replayed from */
+	private ContactTrace contactTrace = null;
+    private RequestTable requestBuffer = new RequestTable();
 
 	public void sendWebPageRequests(int pingSize, double curTime, int requestedWebPageNumber, String APP_ID, double pageRequestCreationTime) {
 		this.pingSize = pingSize;
@@ -136,11 +152,11 @@ public class DTNHost implements Comparable<DTNHost> {
                             typesOfDestinations.add(new TypeOfDestinationEntry(TypeOfHost.CELLULAR_BASE));
                     }
 
-                    requestBuffer.add(entry);
+                    requestBuffer.add(entry, retryTime(entry));
 				}
                 else {
                     //Parse all the requests that havent been sent yet, or a response for them has not been received yet.
-                    for(RequestBufferEntry entry : requestBuffer) {
+                    for(RequestBufferEntry entry : requestBuffer.getDue(SimClock.getTime())) {
                         //Act like the "newRequest" case.
                         if(entry.stateIndicator == 0 || (entry.stateIndicator == 1 && ((SimClock.getTime() - entry.curTime) > requestTimeOut) )) {
                             transmit_cellular = new Transmit_Cellular(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
@@ -155,6 +171,7 @@ public class DTNHost implements Comparable<DTNHost> {
                                 for (int i = 0; i < result; i++)
                                     typesOfDestinations.add(new TypeOfDestinationEntry(TypeOfHost.CELLULAR_BASE));  //TODO: Should we count the resent requests?
                             }
+                            requestBuffer.changed(entry, retryTime(entry));
                         }
                     }
                 }
@@ -175,11 +192,11 @@ public class DTNHost implements Comparable<DTNHost> {
                             typesOfDestinations.add(new TypeOfDestinationEntry(TypeOfHost.WIFI_HOTSPOT));
                     }
 
-                    requestBuffer.add(entry);
+                    requestBuffer.add(entry, retryTime(entry));
 				}
                 else {
                     //Parse all the requests that havent been sent yet, or a response for them has not been received yet.
-                    for(RequestBufferEntry entry : requestBuffer) {
+                    for(RequestBufferEntry entry : requestBuffer.getDue(SimClock.getTime())) {
                         //Act like the "newRequest" case.
                         if(entry.stateIndicator == 0 || (entry.stateIndicator == 2 && ((SimClock.getTime() - entry.curTime) > requestTimeOut) )) {
                             transmit_hotspot = new Transmit_WiFi(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
@@ -194,6 +211,7 @@ public class DTNHost implements Comparable<DTNHost> {
                                 for (int i = 0; i < result; i++)
                                     typesOfDestinations.add(new TypeOfDestinationEntry(TypeOfHost.WIFI_HOTSPOT));  //TODO: Should we count the resent requests?
                             }
+                            requestBuffer.changed(entry, retryTime(entry));
                         }
                     }
                 }
@@ -228,11 +246,11 @@ public class DTNHost implements Comparable<DTNHost> {
                         }
                     }
 
-                    requestBuffer.add(entry);
+                    requestBuffer.add(entry, retryTime(entry));
                 }
                 else {
                     //Parse all the requests that havent been sent yet, or a response for them has not been received yet.
-                    for(RequestBufferEntry entry : requestBuffer) {
+                    for(RequestBufferEntry entry : requestBuffer.getDue(SimClock.getTime())) {
                         //Act like the "newRequest" case.
                         if(entry.stateIndicator == 0 || ((entry.stateIndicator == 1 || entry.stateIndicator == 2) && ((SimClock.getTime() - entry.curTime) > requestTimeOut) )) {
                             transmit_hotspot = new Transmit_WiFi(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
@@ -263,6 +281,7 @@ public class DTNHost implements Comparable<DTNHost> {
                                         typesOfDestinations.add(new TypeOfDestinationEntry(TypeOfHost.CELLULAR_BASE)); //TODO: Should we count the resent requests?
                                 }
                             }
+                            requestBuffer.changed(entry, retryTime(entry));
                         }
                     }
                 }
@@ -284,7 +303,7 @@ public class DTNHost implements Comparable<DTNHost> {
                     }
                     //}
 
-                    requestBuffer.add(entry);
+                    requestBuffer.add(entry, retryTime(entry));
 
                     //TODO: The below should not apply on new requests.
                     //Wait 60 sec for wifi, then use cellular network
@@ -300,7 +319,7 @@ public class DTNHost implements Comparable<DTNHost> {
                 }
                 else {
                     //Parse all the requests that havent been sent yet, or a response for them has not been received yet.
-                    for(RequestBufferEntry entry : requestBuffer) {
+                    for(RequestBufferEntry entry : requestBuffer.getDue(SimClock.getTime())) {
                         //Several cases, mainly for the cellular interface.
                         if((SimClock.getTime() - entry.curTime) > requestTimeOut) { //requestTimeout and offloading time limit, have the same value
                             transmit_cellular = new Transmit_Cellular(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
@@ -333,6 +352,7 @@ public class DTNHost implements Comparable<DTNHost> {
                                 }
                             }
 
+                            requestBuffer.changed(entry, retryTime(entry));
                         }
                     }
                 }
@@ -354,7 +374,7 @@ public class DTNHost implements Comparable<DTNHost> {
                     }
                     //}
 
-                    requestBuffer.add(entry);
+                    requestBuffer.add(entry, retryTime(entry));
 
                     //TODO: The below should not apply on new requests.
                     //Wait 300 sec for wifi, then use cellular network
@@ -370,7 +390,7 @@ public class DTNHost implements Comparable<DTNHost> {
                 }
                 else {
                     //Parse all the requests that havent been sent yet, or a response for them has not been received yet.
-                    for(RequestBufferEntry entry : requestBuffer) {
+                    for(RequestBufferEntry entry : requestBuffer.getDue(SimClock.getTime())) {
                         //Several cases, mainly for the cellular interface.
                         if((entry.stateIndicator == 0 && ((SimClock.getTime() - entry.curTime) > 300)) || (entry.stateIndicator != 0 && ((SimClock.getTime() - entry.curTime) > requestTimeOut))) {
                             transmit_cellular = new Transmit_Cellular(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
@@ -403,6 +423,7 @@ public class DTNHost implements Comparable<DTNHost> {
                                 }
                             }
 
+                            requestBuffer.changed(entry, retryTime(entry));
                         }
                     }
                 }
@@ -436,7 +457,7 @@ public class DTNHost implements Comparable<DTNHost> {
                             typesOfDestinations.add(new TypeOfDestinationEntry(TypeOfHost.WIFI_HOTSPOT));
                     }
 
-                    requestBuffer.add(entry);
+                    requestBuffer.add(entry, retryTime(entry));
 
                     //TODO: The below should not apply on new requests.
                     //Wait 300 sec for wifi, then use cellular network
@@ -452,7 +473,7 @@ public class DTNHost implements Comparable<DTNHost> {
                 }
                 else {
                     //Parse all the requests that havent been sent yet, or a response for them has not been received yet.
-                    for(RequestBufferEntry entry : requestBuffer) {
+                    for(RequestBufferEntry entry : requestBuffer.getDue(SimClock.getTime())) {
                         //Several cases, mainly for the cellular interface.
                         if((entry.stateIndicator == 0 && ((SimClock.getTime() - entry.curTime) > 300)) || (entry.stateIndicator != 0 && ((SimClock.getTime() - entry.curTime) > requestTimeOut))) {
                             transmit_cellular = new Transmit_Cellular(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
@@ -494,6 +515,7 @@ public class DTNHost implements Comparable<DTNHost> {
                                 }
                             }
 
+                            requestBuffer.changed(entry, retryTime(entry));
                         }
                     }
                 }
@@ -509,14 +531,37 @@ public class DTNHost implements Comparable<DTNHost> {
 		//System.out.println("demo_case "+demo_case);
 	}
 
-	public void setCaching(boolean caching) {
-		this.caching = caching;
-		//System.out.println("Caching "+caching);
+	/**
+	 * Sets the web cache of this host
+	 * @param cache The cache or null to disable caching
+	 */
+	public void setCache(WebCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * Returns the web cache of this host
+	 * @return The cache or null if the host doesn't cache web pages
+	 */
+	public WebCache getCache() {
+		return cache;
 	}
 
-	public void setCacheEntries(int cacheEntries) {
-		this.cacheEntries = cacheEntries;
-		//System.out.println("cacheEntries "+cacheEntries);
+	/**
+	 * Sets the contact trace that the connection changes of this host's
+	 * interfaces are recorded to or replayed from
+	 * @param contactTrace The trace or null to simulate the connections
+	 */
+	public void setContactTrace(ContactTrace contactTrace) {
+		this.contactTrace = contactTrace;
+	}
+
+	/**
+	 * Returns the contact trace of the host
+	 * @return The trace or null if the connections are simulated
+	 */
+	public ContactTrace getContactTrace() {
+		return contactTrace;
 	}
 
 	public enum TypeOfHost{
@@ -534,10 +579,41 @@ public class DTNHost implements Comparable<DTNHost> {
         return this.typesOfDestinations;
     }
 
-    public ArrayList<RequestBufferEntry> getRequestBuffer() {
+    public RequestTable getRequestBuffer() {
         return this.requestBuffer;
     }
 
+    /**
+     * Returns the time from which on the given request may pass the retry
+     * check of {@link #updateTransmit(boolean)} in the current demo case.
+     * The time is a bit early to be safe from rounding; the actual check is
+     * still done by updateTransmit.
+     * @param entry The request
+     * @return The time or infinity if the request is never retried
+     */
+    private double retryTime(RequestBufferEntry entry) {
+        double timedOut = entry.curTime + requestTimeOut - RETRY_CHECK_MARGIN;
+        switch(demo_case) {
+            case 1:
+                if(entry.stateIndicator == 0) return Double.NEGATIVE_INFINITY;
+                return entry.stateIndicator == 1 ? timedOut : Double.POSITIVE_INFINITY;
+            case 2:
+                if(entry.stateIndicator == 0) return Double.NEGATIVE_INFINITY;
+                return entry.stateIndicator == 2 ? timedOut : Double.POSITIVE_INFINITY;
+            case 3:
+                if(entry.stateIndicator == 0) return Double.NEGATIVE_INFINITY;
+                return timedOut;
+            case 4:
+                return timedOut;
+            case 5:
+            case 6:
+                if(entry.stateIndicator == 0) return entry.curTime + 300 - RETRY_CHECK_MARGIN;
+                return timedOut;
+            default:
+                return Double.POSITIVE_INFINITY;
+        }
+    }
+
 
     public class TypeOfDestinationEntry {
         TypeOfHost typeOfDestination;
@@ -561,13 +637,18 @@ public class DTNHost implements Comparable<DTNHost> {
         }
     }
 
-    public class RequestBufferEntry {
+    public static class RequestBufferEntry {
         int pingSize;
         int requestedWebPageNumber;
         double pageRequestCreationTime;
         int stateIndicator; //0 = not sent, 1 = sent by Cell but no response yet, 2 = sent by WiFi or Ped, but no response yet.
         double curTime;
         String APP_ID;
+        //Bookkeeping of the RequestTable
+        long seq;
+        int indexedState;
+        double scheduledRetry;
+        RequestBufferEntry sameKey;
 
         public RequestBufferEntry(int requestedWebPageNumber, int stateIndicator, double curTime, int pingSize, String APP_ID, double pageRequestCreationTime) {
             this.pingSize = pingSize;
@@ -762,7 +843,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		//if(getWaitForReply() && transmit_pedestrian != null) transmit_pedestrian.newConnectionPedestrian(con);
 
         if(demo_case == 6 && existPendingRequests()) { //if there is a meaning into sending requests to other pedestrians.
-            for(RequestBufferEntry entry : requestBuffer) {
+            for(RequestBufferEntry entry : requestBuffer.getNotInState(1)) {
                 if(entry.stateIndicator != 1) {
                     transmit_pedestrian = new Transmit_Pedestrian(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
                     if(entry.stateIndicator == 0)
@@ -772,8 +853,9 @@ public class DTNHost implements Comparable<DTNHost> {
                     entry.stateIndicator = 2;
 
                     for(Application app :router.getApplications(APP_ID)){
-                        app.sendEventToListeners("SentPing", null, this, -1.0, TypeOfHost.REGULAR_HOST, 1000, -1.0);
+                        app.sendEventToListeners(PingEvents.SENT_PING, null, this, -1.0, TypeOfHost.REGULAR_HOST, 1000, -1.0);
                     }
+                    requestBuffer.changed(entry, retryTime(entry));
                 }
             }
         }
@@ -799,7 +881,7 @@ public class DTNHost implements Comparable<DTNHost> {
 
 
         if(demo_case >= 2 && existPendingRequests()) { //if there is a meaning into sending requests to new hotspots.
-            for(RequestBufferEntry entry : requestBuffer) {
+            for(RequestBufferEntry entry : requestBuffer.getNotInState(1)) {
                 if(entry.stateIndicator != 1) {
                     transmit_hotspot = new Transmit_WiFi(this, entry.pingSize, entry.requestedWebPageNumber, entry.APP_ID, entry.pageRequestCreationTime);
                     if(entry.stateIndicator == 0)
@@ -809,8 +891,9 @@ public class DTNHost implements Comparable<DTNHost> {
                     entry.stateIndicator = 2;
 
                     for(Application app :router.getApplications(APP_ID)){
-                        app.sendEventToListeners("SentPing", null, this, -1.0, TypeOfHost.WIFI_HOTSPOT, 1000, -1.0);
+                        app.sendEventToListeners(PingEvents.SENT_PING, null, this, -1.0, TypeOfHost.WIFI_HOTSPOT, 1000, -1.0);
                     }
+                    requestBuffer.changed(entry, retryTime(entry));
                 }
             }
         }
@@ -874,42 +957,78 @@ public class DTNHost implements Comparable<DTNHost> {
 
 
 	public void addToCache(int key, int size){
-		WebPage webPage = new WebPage(key,size);
-		for(int i = 0; i< cache.size(); i++){
-			if(((WebPage) cache.get(i)).getWebPageNumber() == key){
-				cache.remove(i);
-			}
+		if(cache != null){
+			cache.put(key, size);
 		}
-		cache.addFirst(webPage);
-		if(cache.size()> cacheEntries){
-			cache.removeLast();
-		}
-		/*System.out.println("queue "+Arrays.toString(cache.toArray()));
-		for(int i = 0; i< cache.size(); i++){
-			System.out.println(""+i+" PageNumber: "+((WebPage) cache.get(i)).getWebPageNumber()+" PageSize: "+((WebPage) cache.get(i)).getWebPageSize());
-		}*/
 	}
 	public int findWebPageInCache(int webPageNumber){
-		for(int i = 0; i< cache.size(); i++){
-			if(((WebPage) cache.get(i)).getWebPageNumber() == webPageNumber){
-				return ((WebPage) cache.get(i)).getWebPageSize();		//Return webpage Size
-			}
+		if(cache != null){
+			return cache.get(webPageNumber);	//Return webpage Size
 		}
 		return -1;		//not found
 	}
 
 	/**
-	 * Returns a copy of the list of connections this host has with other hosts
-	 * @return a copy of the list of connections this host has with other hosts
+	 * Returns the connections this host has with other hosts. The list is
+	 * only rebuilt after the connections have changed, so the same list is
+	 * returned until then and it can't be modified.
+	 * @return the connections this host has with other hosts
 	 */
 	public List<Connection> getConnections() {
-		List<Connection> lc = new ArrayList<Connection>();
+		if (this.connections == null) {
+			List<Connection> lc = new ArrayList<Connection>();
+			for (NetworkInterface i : net) {
+				for (Connection c : i.getConnections()) {
+					/* a connection that is being torn down may still be
+					 * in the interface's list */
+					if (c.isUp()) {
+						lc.add(c);
+					}
+				}
+			}
+			this.connections = Collections.unmodifiableList(lc);
+		}
 
-		for (NetworkInterface i : net) {
-			lc.addAll(i.getConnections());
+		return this.connections;
+	}
+
+	/**
+	 * Returns the connections this host has with another host
+	 * @param other The other host
+	 * @return The connections with the other host (in the same order as in
+	 * {@link #getConnections()}) or an empty list if there are none. The
+	 * list can't be modified.
+	 */
+	public List<Connection> getConnectionsTo(DTNHost other) {
+		if (this.connectionsByHost == null) {
+			Map<DTNHost, List<Connection>> byHost =
+				new HashMap<DTNHost, List<Connection>>();
+			for (Connection c : getConnections()) {
+				DTNHost h = c.getOtherNode(this);
+				List<Connection> lc = byHost.get(h);
+				if (lc == null) {
+					lc = new ArrayList<Connection>(1);
+					byHost.put(h, lc);
+				}
+				lc.add(c);
+			}
+			for (Map.Entry<DTNHost, List<Connection>> e : byHost.entrySet()) {
+				e.setValue(Collections.unmodifiableList(e.getValue()));
+			}
+			this.connectionsByHost = byHost;
 		}
 
-		return lc;
+		List<Connection> lc = this.connectionsByHost.get(other);
+		return lc != null ? lc : Collections.<Connection>emptyList();
+	}
+
+	/**
+	 * Tells the host that a connection of its interfaces has gone up or
+	 * down, so the lists of connections must be rebuilt
+	 */
+	void connectionsChanged() {
+		this.connections = null;
+		this.connectionsByHost = null;
 	}
 
 	/**
@@ -920,6 +1039,14 @@ public class DTNHost implements Comparable<DTNHost> {
 		return this.location;
 	}
 
+	/**
+	 * Returns the movement model of this host
+	 * @return The movement model
+	 */
+	public MovementModel getMovement() {
+		return this.movement;
+	}
+
 	/**
 	 * Returns the Path this node is currently traveling or null if no
 	 * path is in use at the moment.
@@ -1054,6 +1181,17 @@ public class DTNHost implements Comparable<DTNHost> {
 		forceConnection(h,null,true);
 	}
 
+	/**
+	 * Prepares the next connection update of the host by doing its
+	 * read-only part (see {@link NetworkInterface#prepareUpdate()}).
+	 * May be called concurrently for different hosts.
+	 */
+	public void prepareUpdate() {
+		for (int i=0, n=net.size(); i < n; i++) {
+			net.get(i).prepareUpdate();
+		}
+	}
+
 	/**
 	 * Updates node's network layer and router.
 	 * @param simulateConnections Should network layer be updated too
@@ -1067,7 +1205,12 @@ public class DTNHost implements Comparable<DTNHost> {
 
 		if (simulateConnections) {
 			for (NetworkInterface i : net) {
-				i.update();
+				if (this.contactTrace != null) {
+					this.contactTrace.update(i);
+				}
+				else {
+					i.update();
+				}
 			}
 		}
 		updateTransmit(false);		//To enable timer
@@ -1077,7 +1220,7 @@ public class DTNHost implements Comparable<DTNHost> {
             if(!dest.isCounted()) {
 
                 for(Application app :router.getApplications(APP_ID)){
-                    app.sendEventToListeners("SentPing", null, this, -1.0, dest.getTypeOfDestionation(), 1000, -1.0);
+                    app.sendEventToListeners(PingEvents.SENT_PING, null, this, -1.0, dest.getTypeOfDestionation(), 1000, -1.0);
                 }
 
                 dest.setCounted(true);
@@ -1171,14 +1314,126 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.speed = path.getSpeed();
 
 		if (this.movListeners != null) {
-			for (MovementListener l : this.movListeners) {
-				l.newDestination(this, this.destination, this.speed);
+			if (this.deferMovementNotifications) {
+				if (this.deferredDestinations == null) {
+					this.deferredDestinations = new ArrayList<Coord>();
+					this.deferredSpeeds = new ArrayList<Double>();
+				}
+				this.deferredDestinations.add(this.destination);
+				this.deferredSpeeds.add(this.speed);
+			}
+			else {
+				for (MovementListener l : this.movListeners) {
+					l.newDestination(this, this.destination, this.speed);
+				}
 			}
 		}
 
 		return true;
 	}
 
+	/**
+	 * Returns the maximum speed this host can move with
+	 * (see {@link MovementModel#getSpeedLimit()})
+	 * @return The speed limit of the host
+	 */
+	public double getSpeedLimit() {
+		return this.movement.getSpeedLimit();
+	}
+
+	/**
+	 * Returns true if this host can be moved concurrently with other hosts
+	 * (see {@link MovementModel#canMoveConcurrently()})
+	 * @return True if the host can be moved concurrently
+	 */
+	public boolean canMoveConcurrently() {
+		return this.movement.canMoveConcurrently();
+	}
+
+	/**
+	 * Moves the node like {@link #move(double)} but defers the movement
+	 * listener notifications until {@link #notifyDeferredMovement()} is
+	 * called. Can be called concurrently for hosts that can be moved
+	 * concurrently.
+	 * @param timeIncrement How long time the node moves
+	 */
+	public void moveConcurrently(double timeIncrement) {
+		this.deferMovementNotifications = true;
+		move(timeIncrement);
+		this.deferMovementNotifications = false;
+	}
+
+	/**
+	 * Informs the movement listeners about the new destinations that were
+	 * set during the last {@link #moveConcurrently(double)} call
+	 */
+	public void notifyDeferredMovement() {
+		if (this.deferredDestinations == null ||
+				this.deferredDestinations.isEmpty()) {
+			return;
+		}
+		for (int i=0, n=this.deferredDestinations.size(); i < n; i++) {
+			for (MovementListener l : this.movListeners) {
+				l.newDestination(this, this.deferredDestinations.get(i),
+						this.deferredSpeeds.get(i));
+			}
+		}
+		this.deferredDestinations.clear();
+		this.deferredSpeeds.clear();
+	}
+
+	/**
+	 * Returns true if the movement state of this host can be written to a
+	 * checkpoint (see {@link MovementModel#isCheckpointable()})
+	 * @return True if the movement state can be checkpointed
+	 */
+	public boolean isMovementCheckpointable() {
+		return this.movement.isCheckpointable();
+	}
+
+	/**
+	 * Writes the movement state of this host: the location, the path and
+	 * the position on it, and the state of the movement model
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	public void writeMovementState(DataOutput out) throws IOException {
+		out.writeDouble(this.location.getX());
+		out.writeDouble(this.location.getY());
+		out.writeBoolean(this.destination != null);
+		if (this.destination != null) {
+			out.writeDouble(this.destination.getX());
+			out.writeDouble(this.destination.getY());
+		}
+		out.writeBoolean(this.path != null);
+		if (this.path != null) {
+			this.path.write(out);
+		}
+		out.writeDouble(this.speed);
+		out.writeDouble(this.nextTimeToMove);
+		this.movement.writeState(out);
+	}
+
+	/**
+	 * Reads a movement state written by
+	 * {@link #writeMovementState(DataOutput)}. The movement listeners are not
+	 * informed about the new location.
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 */
+	public void readMovementState(DataInput in) throws IOException {
+		double x = in.readDouble();
+		this.location.setLocation(x, in.readDouble());
+		this.destination = null;
+		if (in.readBoolean()) {
+			this.destination = new Coord(in.readDouble(), in.readDouble());
+		}
+		this.path = in.readBoolean() ? Path.read(in) : null;
+		this.speed = in.readDouble();
+		this.nextTimeToMove = in.readDouble();
+		this.movement.readState(in);
+	}
+
 	/**
 	 * Sends a message from this host to another host
 	 * @param id Identifier of the message
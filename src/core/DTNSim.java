@@ -8,6 +8,10 @@ import gui.DTNSimGUI;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import ui.DTNSimTextUI;
 
@@ -21,6 +25,13 @@ public class DTNSim {
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
 
+	/** Number of batch mode runs that are executed concurrently
+	 * -setting id ({@value}). Integer, in the
+	 * {@link World#OPTIMIZATION_SETTINGS_NS} name space. Default is 1, i.e.,
+	 * the runs are executed one after another. With more threads, each run
+	 * is executed in its own {@link SimContext}. */
+	public static final String BATCH_THREADS_S = "batchThreads";
+
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
 	public static final String RESET_METHOD_NAME = "reset";
@@ -78,11 +89,18 @@ public class DTNSim {
 
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			int threads = new Settings(World.OPTIMIZATION_SETTINGS_NS).getInt(
+					BATCH_THREADS_S, 1);
+			if (threads > 1 && nrofRuns[1] - nrofRuns[0] > 1) {
+				runConcurrently(confFiles, firstConfIndex, nrofRuns, threads);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +111,63 @@ public class DTNSim {
 		}
 	}
 
+	/**
+	 * Executes batch runs concurrently, each in its own simulation context
+	 * @param confFiles The command line arguments with the settings files
+	 * @param firstConfIndex Index of the first settings file in confFiles
+	 * @param nrofRuns The first and (last_run_index - 1)
+	 * @param threads Maximum number of runs to execute at the same time
+	 */
+	private static void runConcurrently(final String[] confFiles,
+			final int firstConfIndex, final int[] nrofRuns, int threads) {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> runs = new ArrayList<Future<?>>();
+		for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+			final int runIndex = i;
+			runs.add(executor.submit(new Runnable() {
+				public void run() {
+					print("Run " + (runIndex+1) + "/" + nrofRuns[1]);
+					SimContext context = new SimContext();
+					try {
+						context.run(confFiles, firstConfIndex, runIndex);
+					} finally {
+						context.close();
+					}
+				}
+			}));
+		}
+		executor.shutdown();
+
+		try {
+			for (Future<?> run : runs) {
+				run.get();
+			}
+		} catch (ExecutionException e) {
+			System.err.println("Batch run failed");
+			e.getCause().printStackTrace();
+			System.exit(-1);
+		} catch (InterruptedException e) {
+			System.err.println("Interrupted while waiting for the batch runs");
+			System.exit(-1);
+		}
+	}
+
+	/**
+	 * Runs one batch mode simulation in the current {@link SimContext}.
+	 * Called (through reflection) by the context for the copy of this class
+	 * that the context has loaded, so the settings and all the other static
+	 * state are initialized only for that run.
+	 * @param confFiles The command line arguments with the settings files
+	 * @param firstConfIndex Index of the first settings file in confFiles
+	 * @param runIndex Run index of the simulation
+	 */
+	public static void runInContext(String[] confFiles, int firstConfIndex,
+			int runIndex) {
+		initSettings(confFiles, firstConfIndex);
+		Settings.setRunIndex(runIndex);
+		new DTNSimTextUI().start();
+	}
+
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+
+import java.util.List;
+
+/**
+ * Merges the events of several event queues by their time. The queues are
+ * kept in a binary heap ordered by the time of their next event, so finding
+ * the next event and taking it from its queue take O(log n) time for n
+ * queues. The time of a queue's next event is cached: it is re-read when an
+ * event is taken from the queue and when {@link #refresh(int)} or
+ * {@link #refreshAll()} is called. Events with the same time are taken from
+ * the queues in the order the queues were given in.
+ */
+public class EventScheduler {
+	private final EventQueue[] queues;
+	/** cached next event times of the queues */
+	private final double[] times;
+	/** the heap of queue indexes */
+	private final int[] heap;
+	/** position of each queue in the heap */
+	private final int[] positions;
+
+	/**
+	 * Creates a new scheduler for event queues
+	 * @param queues The queues (at least one)
+	 */
+	public EventScheduler(List<EventQueue> queues) {
+		int n = queues.size();
+		this.queues = queues.toArray(new EventQueue[n]);
+		this.times = new double[n];
+		this.heap = new int[n];
+		this.positions = new int[n];
+		refreshAll();
+	}
+
+	/**
+	 * Re-reads the next event times of all the queues. Needed if the times
+	 * of the queues may have changed without the queues' events being taken
+	 * through this scheduler.
+	 */
+	public void refreshAll() {
+		for (int i = 0; i < queues.length; i++) {
+			times[i] = queues[i].nextEventsTime();
+			heap[i] = i;
+			positions[i] = i;
+		}
+		for (int i = queues.length / 2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+
+	/**
+	 * Re-reads the next event time of one queue, e.g., after an event has
+	 * been added to it
+	 * @param index Index of the queue (in the list given to the constructor)
+	 */
+	public void refresh(int index) {
+		double old = times[index];
+		times[index] = queues[index].nextEventsTime();
+		if (times[index] < old) {
+			siftUp(positions[index]);
+		}
+		else {
+			siftDown(positions[index]);
+		}
+	}
+
+	/**
+	 * Returns the time of the next event of all the queues
+	 * @return the time of the next event
+	 */
+	public double nextEventsTime() {
+		return times[heap[0]];
+	}
+
+	/**
+	 * Returns the queue that has the next event
+	 * @return the queue that has the next event
+	 */
+	public EventQueue nextQueue() {
+		return queues[heap[0]];
+	}
+
+	/**
+	 * Takes the next event from the queue that has it
+	 * @return the next event
+	 */
+	public ExternalEvent nextEvent() {
+		int index = heap[0];
+		ExternalEvent ee = queues[index].nextEvent();
+		refresh(index);
+		return ee;
+	}
+
+	/**
+	 * Returns true if queue a's next event is before queue b's
+	 */
+	private boolean before(int a, int b) {
+		return times[a] < times[b] || (times[a] == times[b] && a < b);
+	}
+
+	private void siftUp(int pos) {
+		int index = heap[pos];
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (!before(index, heap[parent])) {
+				break;
+			}
+			place(heap[parent], pos);
+			pos = parent;
+		}
+		place(index, pos);
+	}
+
+	private void siftDown(int pos) {
+		int index = heap[pos];
+		int n = heap.length;
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= n) {
+				break;
+			}
+			if (child + 1 < n && before(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!before(heap[child], index)) {
+				break;
+			}
+			place(heap[child], pos);
+			pos = child;
+		}
+		place(index, pos);
+	}
+
+	private void place(int index, int pos) {
+		heap[pos] = index;
+		positions[index] = pos;
+	}
+}
@@ -4,11 +4,15 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 /**
  * A message that is created at a node or passed between nodes.
@@ -20,14 +24,23 @@ public class Message implements Comparable<Message> {
 	private DTNHost to;
 	/** Identifier of the message */
 	private String id;
+	/** Interned integer value of the identifier */
+	private int intId;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path;
+	/** The last node this message has passed (the path is shared with the
+	 * message's replicates) */
+	private Hop lastHop;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
 	private int uniqueId;
+	/** Integer values of the message identifiers that are in use. The
+	 * messages refer to the identifier instances that are the keys, so an
+	 * entry is removed after the last message with the identifier is gone */
+	private static Map<String, IntId> intIds;
+	/** Next integer identifier to be given */
+	private static int nextIntId;
 	/** The time this message was received */
 	private double timeReceived;
 	/** The time when this message was created */
@@ -45,6 +58,13 @@ public class Message implements Comparable<Message> {
 	 * stored in the properties should be immutable because only a shallow
 	 * copy of the properties is made when replicating messages */
 	private Map<String, Object> properties;
+	/** Values of the typed header fields by their slots (or null) */
+	private long[] headers;
+	/** Bit mask of the header slots that have a value */
+	private long headerMask;
+	/** True if the header values are shared with another message (and
+	 * must be copied before changing them) */
+	private boolean headersShared;
 
 	/** Application ID of the application that created the message */
 	private String	appID;
@@ -65,11 +85,22 @@ public class Message implements Comparable<Message> {
 	 * @param size Size of the message (in bytes)
 	 */
 	public Message(DTNHost from, DTNHost to, String id, int size) {
+		this(from, to, null, -1, size);
+		internId(id);
+	}
+
+	/**
+	 * Creates a new Message with an already interned identifier (or with
+	 * null identifier that is interned after this)
+	 */
+	private Message(DTNHost from, DTNHost to, String id, int intId,
+			int size) {
 		this.from = from;
 		this.to = to;
 		this.id = id;
+		this.intId = intId;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.lastHop = null;
 		this.uniqueId = nextUniqueId;
 
 		this.timeCreated = SimClock.getTime();
@@ -78,6 +109,7 @@ public class Message implements Comparable<Message> {
 		this.responseSize = 0;
 		this.requestMsg = null;
 		this.properties = null;
+		this.headers = null;
 		this.appID = null;
 
 		//pageRequestCreationTime = 0.0d;
@@ -119,6 +151,46 @@ public class Message implements Comparable<Message> {
 		return this.uniqueId;
 	}
 
+	/**
+	 * Returns the interned integer value of the message's identifier. All
+	 * the messages with the same identifier (e.g., the replicates of a
+	 * message) have the same value, and messages with different identifiers
+	 * have different values.
+	 * @return The integer identifier
+	 * @see #getIntId(String)
+	 */
+	public int getIntId() {
+		return this.intId;
+	}
+
+	/**
+	 * Returns the integer value of a message identifier
+	 * @param id The identifier
+	 * @return The integer value or -1 if no message has the identifier
+	 * @see #getIntId()
+	 */
+	public static int getIntId(String id) {
+		IntId intId = intIds.get(id);
+		return intId != null ? intId.value : -1;
+	}
+
+	/**
+	 * Sets the identifier of this message and its integer value. The
+	 * identifier instance of the messages with the same identifier is used,
+	 * so the integer value is kept as long as any of them exists.
+	 */
+	private void internId(String id) {
+		IntId intId = intIds.get(id);
+		String key = intId != null ? intId.key.get() : null;
+		if (key == null) { /* a new identifier (or its key was just freed) */
+			intId = new IntId(id, nextIntId++);
+			key = id;
+			intIds.put(id, intId);
+		}
+		this.id = key;
+		this.intId = intId.value;
+	}
+
 	/**
 	 * Returns the size of the message (in bytes)
 	 * @return the size of the message
@@ -132,15 +204,16 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.lastHop = new Hop(node, this.lastHop);
 	}
 
 	/**
-	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * Returns a list of nodes this message has passed so far. The list
+	 * can't be modified.
+	 * @return The list of nodes
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		return this.lastHop.getHops();
 	}
 
 	/**
@@ -148,7 +221,17 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return this.lastHop.nrofNodes - 1;
+	}
+
+	/**
+	 * Returns true if this message has passed the given node, i.e., the
+	 * node is on the list of nodes returned by {@link #getHops()}
+	 * @param node The node
+	 * @return true if the message has passed the node
+	 */
+	public boolean hasPassed(DTNHost node) {
+		return this.lastHop.contains(node);
 	}
 
 	/**
@@ -168,6 +251,15 @@ public class Message implements Comparable<Message> {
 	}
 
 
+	/**
+	 * Returns the initial TTL (minutes) of the message, i.e., the TTL it was
+	 * created with
+	 * @return The initial TTL or {@link #INFINITE_TTL} if the TTL is infinite
+	 */
+	public int getInitTtl() {
+		return this.initTtl;
+	}
+
 	/**
 	 * Sets the initial TTL (time-to-live) for this message. The initial
 	 * TTL is the TTL when the original message was created. The current TTL
@@ -260,7 +352,7 @@ public class Message implements Comparable<Message> {
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.lastHop = m.lastHop; // the nodes on the path never change
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -268,6 +360,12 @@ public class Message implements Comparable<Message> {
 		this.appID = m.appID;
 		this.pageRequestCreationTime = m.pageRequestCreationTime;
 
+		if (m.headers != null) {
+			this.headers = m.headers;
+			this.headerMask = m.headerMask;
+			this.headersShared = m.headersShared = true;
+		}
+
 		if (m.properties != null) {
 			Set<String> keys = m.properties.keySet();
 			for (String key : keys) {
@@ -281,7 +379,8 @@ public class Message implements Comparable<Message> {
 	 * it should be such that no other class accidently uses the same value.
 	 * The value can be any object but it's good idea to store only immutable
 	 * objects because when message is replicated, only a shallow copy of the
-	 * properties is made.
+	 * properties is made. Values that are set on many messages are cheaper
+	 * to store in typed header fields (see {@link MessageHeader}).
 	 * @param key The key which is used to lookup the value
 	 * @param value The value to store
 	 * @throws SimError if the message already has a value for the given key
@@ -326,12 +425,50 @@ public class Message implements Comparable<Message> {
 		this.properties.put(key, value);
 	}
 
+	/**
+	 * Returns true if this message has a value in a header slot
+	 * @param slot The slot (see {@link MessageHeader})
+	 * @return true if the slot has a value
+	 */
+	boolean hasHeader(int slot) {
+		return (this.headerMask & (1L << slot)) != 0;
+	}
+
+	/**
+	 * Returns the value in a header slot
+	 * @param slot The slot (see {@link MessageHeader})
+	 * @return The value or 0 if the slot has no value
+	 */
+	long getHeader(int slot) {
+		return hasHeader(slot) ? this.headers[slot] : 0;
+	}
+
+	/**
+	 * Sets the value in a header slot. The header values are copied first
+	 * if they are shared with another message.
+	 * @param slot The slot (see {@link MessageHeader})
+	 * @param value The value
+	 */
+	void setHeader(int slot, long value) {
+		if (this.headers == null) {
+			this.headers = new long[Math.max(slot + 1,
+					MessageHeader.getNrofHeaders())];
+		}
+		else if (this.headersShared || slot >= this.headers.length) {
+			this.headers = Arrays.copyOf(this.headers,
+					Math.max(slot + 1, this.headers.length));
+		}
+		this.headersShared = false;
+		this.headers[slot] = value;
+		this.headerMask |= 1L << slot;
+	}
+
 	/**
 	 * Returns a replicate of this message (identical except for the unique id)
 	 * @return A replicate of the message
 	 */
 	public Message replicate() {
-		Message m = new Message(from, to, id, size);
+		Message m = new Message(from, to, id, intId, size);
 		m.copyFrom(this);
 		return m;
 	}
@@ -349,6 +486,8 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		intIds = new WeakHashMap<String, IntId>();
+		nextIntId = 0;
 	}
 
 	/**
@@ -373,4 +512,91 @@ public class Message implements Comparable<Message> {
 		return this.pageRequestCreationTime;
 	}
 
+
+	/**
+	 * A node on the path of a message. The path is an immutable linked list
+	 * from the last node towards the first, so a replicate can share the
+	 * path of the original message and only adds its own hops to it.
+	 * Finding whether a long path has a node uses a set of the addresses of
+	 * the nodes on the path that is created when it is first needed.
+	 */
+	private static class Hop {
+		/** paths shorter than this are scanned instead of using the set */
+		private static final int MIN_SET_PATH = 8;
+
+		private final DTNHost node;
+		/** the previous node on the path (or null for the first node) */
+		private final Hop prev;
+		/** number of nodes on the path up to and including this node */
+		private final int nrofNodes;
+		/** the nodes on the path (or null if not created yet) */
+		private List<DTNHost> hops;
+		/** addresses of the nodes on the path (or null if not created) */
+		private BitSet addresses;
+
+		private Hop(DTNHost node, Hop prev) {
+			this.node = node;
+			this.prev = prev;
+			this.nrofNodes = prev != null ? prev.nrofNodes + 1 : 1;
+		}
+
+		private List<DTNHost> getHops() {
+			if (this.hops == null) {
+				DTNHost[] nodes = new DTNHost[nrofNodes];
+				for (Hop h = this; h != null; h = h.prev) {
+					nodes[h.nrofNodes - 1] = h.node;
+				}
+				this.hops = Collections.unmodifiableList(Arrays.asList(nodes));
+			}
+			return this.hops;
+		}
+
+		private boolean contains(DTNHost n) {
+			if (n == null || nrofNodes < MIN_SET_PATH) {
+				for (Hop h = this; h != null; h = h.prev) {
+					if (h.node == n) {
+						return true;
+					}
+				}
+				return false;
+			}
+			return getAddresses().get(n.getAddress());
+		}
+
+		private BitSet getAddresses() {
+			if (this.addresses == null) {
+				if (prev != null && prev.addresses != null) {
+					this.addresses = (BitSet)prev.addresses.clone();
+					addAddress(this.addresses, node);
+				}
+				else {
+					this.addresses = new BitSet();
+					for (Hop h = this; h != null; h = h.prev) {
+						addAddress(this.addresses, h.node);
+					}
+				}
+			}
+			return this.addresses;
+		}
+
+		private static void addAddress(BitSet set, DTNHost node) {
+			if (node != null) {
+				set.set(node.getAddress());
+			}
+		}
+	}
+
+	/**
+	 * Integer value of a message identifier. Refers to its key weakly, so
+	 * the entry doesn't keep itself in the table.
+	 */
+	private static class IntId {
+		private final WeakReference<String> key;
+		private final int value;
+
+		private IntId(String key, int value) {
+			this.key = new WeakReference<String>(key);
+			this.value = value;
+		}
+	}
 }
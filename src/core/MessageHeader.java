@@ -0,0 +1,276 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Typed header field of messages. Unlike generic message properties (see
+ * {@link Message#addProperty(String, Object)}), header fields are
+ * registered once (usually to a static final field of the class that uses
+ * them) and each field gets its own slot in a primitive array of the
+ * messages, so setting and getting values doesn't box them or look up any
+ * keys. The header values of a replicated message are shared with the
+ * original until either of them changes a value.
+ * <P>A field is registered with a name that is unique among all header
+ * fields. Registering a field with the same name and type again returns
+ * the same field. At most {@value #MAX_HEADERS} fields can be registered.
+ * </P>
+ */
+public abstract class MessageHeader {
+	/** Maximum number of header fields */
+	public static final int MAX_HEADERS = 64;
+
+	/** the registered fields by their names */
+	private static final Map<String, MessageHeader> headers =
+		new HashMap<String, MessageHeader>();
+
+	private final String name;
+	/** index of the field's value in the messages' header arrays */
+	final int slot;
+
+	private MessageHeader(String name, int slot) {
+		this.name = name;
+		this.slot = slot;
+	}
+
+	/**
+	 * Registers an integer header field
+	 * @param name Name of the field
+	 * @return The field
+	 */
+	public static IntHeader intHeader(String name) {
+		synchronized (headers) {
+			MessageHeader h = headers.get(name);
+			if (h == null) {
+				h = new IntHeader(name, nextSlot(name));
+				headers.put(name, h);
+			}
+			return checkType(h, IntHeader.class);
+		}
+	}
+
+	/**
+	 * Registers a long integer header field
+	 * @param name Name of the field
+	 * @return The field
+	 */
+	public static LongHeader longHeader(String name) {
+		synchronized (headers) {
+			MessageHeader h = headers.get(name);
+			if (h == null) {
+				h = new LongHeader(name, nextSlot(name));
+				headers.put(name, h);
+			}
+			return checkType(h, LongHeader.class);
+		}
+	}
+
+	/**
+	 * Registers a double precision header field
+	 * @param name Name of the field
+	 * @return The field
+	 */
+	public static DoubleHeader doubleHeader(String name) {
+		synchronized (headers) {
+			MessageHeader h = headers.get(name);
+			if (h == null) {
+				h = new DoubleHeader(name, nextSlot(name));
+				headers.put(name, h);
+			}
+			return checkType(h, DoubleHeader.class);
+		}
+	}
+
+	/**
+	 * Registers an enum header field
+	 * @param name Name of the field
+	 * @param type Class of the enum
+	 * @return The field
+	 */
+	@SuppressWarnings("unchecked")
+	public static <E extends Enum<E>> EnumHeader<E> enumHeader(String name,
+			Class<E> type) {
+		synchronized (headers) {
+			MessageHeader h = headers.get(name);
+			if (h == null) {
+				h = new EnumHeader<E>(name, nextSlot(name), type);
+				headers.put(name, h);
+			}
+			EnumHeader<?> eh = checkType(h, EnumHeader.class);
+			if (eh.constants.getClass().getComponentType() != type) {
+				throw new SimError("Message header " + name + " is already " +
+						"registered for " + eh.constants.getClass().
+						getComponentType().getName());
+			}
+			return (EnumHeader<E>)eh;
+		}
+	}
+
+	/**
+	 * Returns the number of registered header fields
+	 * @return the number of registered header fields
+	 */
+	static int getNrofHeaders() {
+		synchronized (headers) {
+			return headers.size();
+		}
+	}
+
+	private static int nextSlot(String name) {
+		if (headers.size() == MAX_HEADERS) {
+			throw new SimError("Can't register message header " + name +
+					": all " + MAX_HEADERS + " headers are in use");
+		}
+		return headers.size();
+	}
+
+	private static <T extends MessageHeader> T checkType(MessageHeader h,
+			Class<T> type) {
+		if (!type.isInstance(h)) {
+			throw new SimError("Message header " + h.name + " is already " +
+					"registered as " + h.getClass().getSimpleName());
+		}
+		return type.cast(h);
+	}
+
+	/**
+	 * Returns the name of the field
+	 * @return the name of the field
+	 */
+	public String getName() {
+		return this.name;
+	}
+
+	/**
+	 * Returns true if a message has a value for this field
+	 * @param m The message
+	 * @return true if the message has a value for this field
+	 */
+	public boolean isSet(Message m) {
+		return m.hasHeader(slot);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " " + name;
+	}
+
+	/**
+	 * Integer header field
+	 */
+	public static final class IntHeader extends MessageHeader {
+		private IntHeader(String name, int slot) {
+			super(name, slot);
+		}
+
+		/**
+		 * Returns the value of the field in a message
+		 * @param m The message
+		 * @return The value or 0 if the message has no value for the field
+		 */
+		public int get(Message m) {
+			return (int)m.getHeader(slot);
+		}
+
+		/**
+		 * Sets the value of the field in a message
+		 * @param m The message
+		 * @param value The value
+		 */
+		public void set(Message m, int value) {
+			m.setHeader(slot, value);
+		}
+	}
+
+	/**
+	 * Long integer header field
+	 */
+	public static final class LongHeader extends MessageHeader {
+		private LongHeader(String name, int slot) {
+			super(name, slot);
+		}
+
+		/**
+		 * Returns the value of the field in a message
+		 * @param m The message
+		 * @return The value or 0 if the message has no value for the field
+		 */
+		public long get(Message m) {
+			return m.getHeader(slot);
+		}
+
+		/**
+		 * Sets the value of the field in a message
+		 * @param m The message
+		 * @param value The value
+		 */
+		public void set(Message m, long value) {
+			m.setHeader(slot, value);
+		}
+	}
+
+	/**
+	 * Double precision header field
+	 */
+	public static final class DoubleHeader extends MessageHeader {
+		private DoubleHeader(String name, int slot) {
+			super(name, slot);
+		}
+
+		/**
+		 * Returns the value of the field in a message
+		 * @param m The message
+		 * @return The value or 0 if the message has no value for the field
+		 */
+		public double get(Message m) {
+			return Double.longBitsToDouble(m.getHeader(slot));
+		}
+
+		/**
+		 * Sets the value of the field in a message
+		 * @param m The message
+		 * @param value The value
+		 */
+		public void set(Message m, double value) {
+			m.setHeader(slot, Double.doubleToRawLongBits(value));
+		}
+	}
+
+	/**
+	 * Enum header field
+	 * @param <E> Type of the enum
+	 */
+	public static final class EnumHeader<E extends Enum<E>>
+			extends MessageHeader {
+		private final E[] constants;
+
+		private EnumHeader(String name, int slot, Class<E> type) {
+			super(name, slot);
+			this.constants = type.getEnumConstants();
+		}
+
+		/**
+		 * Returns the value of the field in a message
+		 * @param m The message
+		 * @return The value or null if the message has no value for the
+		 * field
+		 */
+		public E get(Message m) {
+			return m.hasHeader(slot) ? constants[(int)m.getHeader(slot)] :
+				null;
+		}
+
+		/**
+		 * Sets the value of the field in a message
+		 * @param m The message
+		 * @param value The value (not null)
+		 */
+		public void set(Message m, E value) {
+			m.setHeader(slot, value.ordinal());
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+import movement.MovementModel;
+
+/**
+ * Checkpoint of the movement state of the hosts after the movement model
+ * warm up (see {@link World#warmupMovementModel(double)}). During the warm
+ * up only the hosts move, so the state of a simulation after it consists of
+ * the locations and paths of the hosts and the state of their movement
+ * models (including the random number generators). Runs that only differ
+ * in, e.g., router or application settings can restore the state from a
+ * checkpoint instead of repeating the warm up.
+ * <P>A checkpoint is only valid for the movement settings it was saved with.
+ * To catch the most common mistakes, a fingerprint of the hosts' names,
+ * initial locations and movement model classes, the warm up time, and the
+ * movement settings (the same ones {@link ContactTrace} checks) is stored
+ * with the checkpoint and checked when the checkpoint is restored. The
+ * movement listeners don't get the events of the warm up period when a
+ * checkpoint is restored.</P>
+ */
+public class MovementCheckpoint {
+	/** identifier in the beginning of checkpoint files */
+	private static final int MAGIC = 0x4f4e4543; /* "ONEC" */
+	private static final int VERSION = 1;
+
+	private final List<DTNHost> hosts;
+	private final double warmupTime;
+	private final long fingerprint;
+
+	/**
+	 * Creates a checkpoint for the hosts. Must be created before the warm up
+	 * (i.e., when the hosts are still at their initial locations).
+	 * @param hosts The hosts
+	 * @param warmupTime Length of the movement warm up period
+	 * @throws SettingsError if a movement model doesn't support checkpoints
+	 */
+	public MovementCheckpoint(List<DTNHost> hosts, double warmupTime) {
+		this.hosts = hosts;
+		this.warmupTime = warmupTime;
+		long fp = Double.doubleToLongBits(warmupTime);
+		for (DTNHost host : hosts) {
+			if (!host.isMovementCheckpointable()) {
+				throw new SettingsError("Movement model of host " + host +
+						" doesn't support checkpoints");
+			}
+			Coord c = host.getLocation();
+			fp = 31 * fp + host.toString().hashCode();
+			fp = 31 * fp + Double.doubleToLongBits(c.getX());
+			fp = 31 * fp + Double.doubleToLongBits(c.getY());
+			fp = 31 * fp + host.getMovement().getClass().getName().hashCode();
+		}
+		this.fingerprint = ContactTrace.fingerprint(fp,
+				ContactTrace.getMovementSettings(
+						ContactTrace.getMovementNamespaces(hosts)));
+	}
+
+	/**
+	 * Writes the movement state of the hosts (after the warm up) to a file
+	 * @param fileName Name (&path) of the file
+	 */
+	public void save(String fileName) {
+		try {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(fileName)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeLong(this.fingerprint);
+				out.writeInt(this.hosts.size());
+				MovementModel.writeCommonState(out);
+				for (DTNHost host : this.hosts) {
+					host.writeMovementState(out);
+				}
+			} finally {
+				out.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't write movement checkpoint '" +
+					fileName + "'", e);
+		}
+	}
+
+	/**
+	 * Restores the movement state of the hosts from a checkpoint file, as
+	 * if the warm up had been run. The clock is set to the end of the warm up.
+	 * @param fileName Name (&path) of the file
+	 * @throws SettingsError if the checkpoint was saved with different
+	 * movement settings
+	 */
+	public void restore(String fileName) {
+		try {
+			DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new FileInputStream(fileName)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+					throw new SettingsError("'" + fileName + "' is not a " +
+							"movement checkpoint file");
+				}
+				if (in.readLong() != this.fingerprint ||
+						in.readInt() != this.hosts.size()) {
+					throw new SettingsError("Movement checkpoint '" +
+							fileName + "' was saved with different " +
+							"movement settings");
+				}
+				MovementModel.readCommonState(in);
+				for (DTNHost host : this.hosts) {
+					host.readMovementState(in);
+				}
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			throw new SimError("Couldn't read movement checkpoint '" +
+					fileName + "'", e);
+		}
+		if (this.warmupTime > 0) {
+			SimClock.getInstance().setTime(0);
+		}
+	}
+}
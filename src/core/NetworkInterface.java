@@ -4,10 +4,12 @@
  */
 package core;
 
+import interfaces.AlwaysInRangeOptimizer;
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Random;
 
@@ -25,6 +27,35 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	public static final String TRANSMIT_SPEED_S = "transmitSpeed";
 	/** scanning interval -setting id ({@value})*/
 	public static final String SCAN_INTERVAL_S = "scanInterval";
+	/**
+	 * Connectivity optimizer -setting id ({@value}). Defines the
+	 * {@link ConnectivityOptimizer} used for finding the interfaces that are
+	 * near interfaces of this type. Valid values are
+	 * {@link #OPTIMIZER_GRID} and {@link #OPTIMIZER_ALWAYS_IN_RANGE}.
+	 * If the setting is not defined, the always-in-range optimizer is used
+	 * for interfaces whose range covers the whole world and the
+	 * connectivity grid for all others.
+	 */
+	public static final String OPTIMIZER_S = "optimizer";
+	/** {@link #OPTIMIZER_S} value for {@link ConnectivityGrid} ({@value}) */
+	public static final String OPTIMIZER_GRID = "ConnectivityGrid";
+	/** {@link #OPTIMIZER_S} value for {@link AlwaysInRangeOptimizer}
+	 * ({@value}) */
+	public static final String OPTIMIZER_ALWAYS_IN_RANGE = "AlwaysInRange";
+
+	/**
+	 * Should the interfaces predict the next possible change in their
+	 * connections and skip the connection updates until then -setting id
+	 * ({@value}) in the {@link World#OPTIMIZATION_SETTINGS_NS} namespace.
+	 * Boolean (true/false) variable. Default is false. The prediction uses
+	 * the speed limits of the movement models (see
+	 * {@link movement.MovementModel#getSpeedLimit()}), so connections are created and
+	 * torn down at the same update rounds as without this setting.
+	 */
+	public static final String PREDICT_CONTACTS_S = "predictContacts";
+	/** how much earlier than the predicted time of the next possible
+	 * connection change the connections are checked again (seconds) */
+	private static final double PREDICTION_MARGIN = 0.000001;
 
 	/**
 	 * Sub-namespace for the network related settings in the Group namespace
@@ -50,6 +81,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	private static final int CON_DOWN = 2;
 
 	private static Random rng;
+	/** are the connection changes predicted */
+	private static boolean predictContacts;
 	protected DTNHost host = null;
 
 	protected String interfacetype;
@@ -60,6 +93,24 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	protected double oldTransmitRange;
 	protected int transmitSpeed;
 	protected ConnectivityOptimizer optimizer = null;
+	/** type of the connectivity optimizer or null for automatic selection */
+	private String optimizerType;
+	/** cell size multiplier for the grid of this interface type or 0 if the
+	 * default (optimization setting) should be used */
+	private int cellSizeMult;
+	/** reusable buffer for the results of near interface queries */
+	private List<NetworkInterface> nearInterfaces;
+	/** near interfaces that were found to be out of range when the update
+	 * was prepared (see {@link #prepareUpdate()}) */
+	private HashSet<NetworkInterface> outOfRange;
+	/** reusable buffer for the near interfaces of contact prediction */
+	private List<NetworkInterface> predictedInterfaces;
+	/** reusable set of the interfaces this interface is connected to */
+	private HashSet<NetworkInterface> connectedTo;
+	/** has the next update been prepared */
+	private boolean updatePrepared;
+	/** sim time until which none of the connections can change */
+	private double quietUntil = Double.NEGATIVE_INFINITY;
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
@@ -81,6 +132,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	public static void reset() {
 		rng = new Random(0);
+		Settings s = new Settings(World.OPTIMIZATION_SETTINGS_NS);
+		predictContacts = s.getBoolean(PREDICT_CONTACTS_S, false);
 	}
 
 	/**
@@ -94,6 +147,24 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.transmitSpeed = s.getInt(TRANSMIT_SPEED_S);
 		ensurePositiveValue(transmitRange, TRANSMIT_RANGE_S);
 		ensurePositiveValue(transmitSpeed, TRANSMIT_SPEED_S);
+
+		if (s.contains(OPTIMIZER_S)) {
+			this.optimizerType = s.getSetting(OPTIMIZER_S);
+			if (!optimizerType.equals(OPTIMIZER_GRID) &&
+					!optimizerType.equals(OPTIMIZER_ALWAYS_IN_RANGE)) {
+				throw new SettingsError("Unknown connectivity optimizer '" +
+						optimizerType + "' for " +
+						s.getFullPropertyName(OPTIMIZER_S));
+			}
+		}
+		if (s.contains(ConnectivityGrid.CELL_SIZE_MULT_S)) {
+			this.cellSizeMult = s.getInt(ConnectivityGrid.CELL_SIZE_MULT_S);
+			if (cellSizeMult < 1) {
+				throw new SettingsError("Too small value (" + cellSizeMult +
+						") for " + s.getFullPropertyName(
+								ConnectivityGrid.CELL_SIZE_MULT_S));
+			}
+		}
 	}
 
 	/**
@@ -116,6 +187,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		this.transmitSpeed = ni.transmitSpeed;
 		this.scanInterval = ni.scanInterval;
 		this.ah = ni.ah;
+		this.optimizerType = ni.optimizerType;
+		this.cellSizeMult = ni.cellSizeMult;
 
 		if (ni.activenessJitterMax > 0) {
 			this.activenessJitterValue = rng.nextInt(ni.activenessJitterMax);
@@ -155,14 +228,292 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 
 		if (transmitRange > 0) {
-			optimizer = ConnectivityGrid.ConnectivityGridFactory(
-					this.interfacetype.hashCode(), transmitRange);
+			optimizer = createOptimizer();
 			optimizer.addInterface(this);
 		} else {
 			optimizer = null;
 		}
 	}
 
+	/**
+	 * Returns the connectivity optimizer shared by all interfaces of this
+	 * interface type. The optimizer is chosen using the
+	 * {@link #OPTIMIZER_S} setting or, if that is not defined, based on
+	 * the transmit range.
+	 * @return The connectivity optimizer for this interface
+	 */
+	private ConnectivityOptimizer createOptimizer() {
+		int key = this.interfacetype.hashCode();
+		String type = this.optimizerType;
+
+		if (type == null) {
+			type = AlwaysInRangeOptimizer.coversWorld(transmitRange) ?
+					OPTIMIZER_ALWAYS_IN_RANGE : OPTIMIZER_GRID;
+		}
+
+		if (type.equals(OPTIMIZER_ALWAYS_IN_RANGE)) {
+			return AlwaysInRangeOptimizer.AlwaysInRangeOptimizerFactory(key);
+		}
+		else if (this.cellSizeMult > 0) {
+			return ConnectivityGrid.ConnectivityGridFactory(key,
+					transmitRange, cellSizeMult);
+		}
+		else {
+			return ConnectivityGrid.ConnectivityGridFactory(key,
+					transmitRange);
+		}
+	}
+
+	/**
+	 * Returns the interfaces that might be close enough to be connected
+	 * with this interface, as given by the connectivity optimizer. The
+	 * returned list is reused by the next call, so it must not be stored
+	 * and this method must not be called again while iterating the list.
+	 * @return A list of near interfaces (empty if there's no optimizer)
+	 */
+	protected List<NetworkInterface> getNearInterfaces() {
+		if (this.nearInterfaces == null) {
+			this.nearInterfaces = new ArrayList<NetworkInterface>();
+		}
+		this.nearInterfaces.clear();
+		if (optimizer != null) {
+			optimizer.getNearInterfaces(this, this.nearInterfaces);
+		}
+		if (this.updatePrepared) {
+			this.updatePrepared = false;
+			removeNeedlessCandidates(this.nearInterfaces);
+		}
+		return this.nearInterfaces;
+	}
+
+	/**
+	 * Returns true if this interface can create new connections in
+	 * {@link #connect(NetworkInterface)}. Interfaces that only accept the
+	 * connections other interfaces create should return false, so that the
+	 * prepared updates don't have to go through the candidates at all.
+	 * @return True if the interface creates connections (default)
+	 */
+	protected boolean createsConnections() {
+		return true;
+	}
+
+	/**
+	 * Prepares the next {@link #update()} by doing the read-only part of
+	 * the connection detection beforehand: the near interfaces that are
+	 * out of range are looked up so that the update can skip them.
+	 * This method may be called concurrently for different interfaces as
+	 * long as no host moves and no interface is updated meanwhile.
+	 * The update is prepared only if connecting has no side effects that
+	 * depend on the order of the updates (i.e., if the interfaces are always
+	 * active and don't use scanning intervals); skipping a candidate must
+	 * not make any difference to calling {@link #connect(NetworkInterface)}
+	 * for it.
+	 */
+	public void prepareUpdate() {
+		this.updatePrepared = false;
+		if (optimizer == null || scanInterval > 0 || isQuiet() ||
+				!hasAlwaysActiveRadio(this.host)) {
+			return;
+		}
+
+		if (this.outOfRange == null) {
+			this.outOfRange = new HashSet<NetworkInterface>();
+		}
+		this.outOfRange.clear();
+		if (createsConnections()) {
+			List<NetworkInterface> interfaces = getNearInterfaces();
+			for (int i=0, n=interfaces.size(); i < n; i++) {
+				NetworkInterface ni = interfaces.get(i);
+				if (!isWithinRange(ni) &&
+						hasAlwaysActiveRadio(ni.getHost())) {
+					this.outOfRange.add(ni);
+				}
+			}
+		}
+		this.updatePrepared = true;
+	}
+
+	/**
+	 * Removes the candidates that connecting would not accept anyway from
+	 * the near interfaces list: this interface, interfaces that were out
+	 * of range when the update was prepared, and interfaces this interface
+	 * is already connected to (or all of them if this interface doesn't
+	 * create connections). The order of the remaining ones is kept.
+	 * @param interfaces The near interfaces list
+	 */
+	private void removeNeedlessCandidates(List<NetworkInterface> interfaces) {
+		if (!createsConnections()) {
+			interfaces.clear();
+			return;
+		}
+
+		if (this.connectedTo == null) {
+			this.connectedTo = new HashSet<NetworkInterface>();
+		}
+		this.connectedTo.clear();
+		for (int i=0, n=this.connections.size(); i < n; i++) {
+			NetworkInterface ni =
+				this.connections.get(i).getOtherInterface(this);
+			if (hasAlwaysActiveRadio(ni.getHost())) {
+				this.connectedTo.add(ni);
+			}
+		}
+
+		int kept = 0;
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			NetworkInterface ni = interfaces.get(i);
+			if (ni == this || this.outOfRange.contains(ni) ||
+					this.connectedTo.contains(ni)) {
+				continue;
+			}
+			interfaces.set(kept++, ni);
+		}
+		interfaces.subList(kept, interfaces.size()).clear();
+	}
+
+	/**
+	 * Returns true if none of the connections of this interface can change
+	 * at the current sim time (as predicted by {@link #predictQuietTime()}),
+	 * i.e., updating the connections can be skipped
+	 * @return True if the connections can't change yet
+	 */
+	protected boolean isQuiet() {
+		return SimClock.getTime() < this.quietUntil;
+	}
+
+	/**
+	 * Predicts until when none of the connections of this interface can
+	 * change, if contact prediction is enabled. Must be called after the
+	 * connections have been updated. The prediction is based on the current
+	 * distances, radio ranges and movement speed limits of the hosts: a
+	 * connection can't break before the distance has grown to the range and
+	 * a new one can't be created before the distance has shrunk to it.
+	 * Only the connected and near interfaces (see
+	 * {@link ConnectivityOptimizer#getNearInterfaces(NetworkInterface, List)})
+	 * are checked; the prediction can't reach further than the time it
+	 * takes for the others to come within the range of this interface from
+	 * outside the near distance
+	 * (see {@link ConnectivityOptimizer#getNearDistance(NetworkInterface)}).
+	 * No prediction is made if any of the hosts of the checked interfaces
+	 * can become inactive, moves without a speed limit, or if this interface
+	 * uses a scanning interval.
+	 */
+	protected void predictQuietTime() {
+		this.quietUntil = Double.NEGATIVE_INFINITY;
+		if (!predictContacts || optimizer == null || scanInterval > 0 ||
+				!hasAlwaysActiveRadio(this.host)) {
+			return;
+		}
+
+		if (this.connectedTo == null) {
+			this.connectedTo = new HashSet<NetworkInterface>();
+		}
+		this.connectedTo.clear();
+
+		double mySpeed = this.host.getSpeedLimit();
+		double quietTime = Double.POSITIVE_INFINITY;
+
+		for (int i=0, n=this.connections.size(); i < n; i++) {
+			NetworkInterface ni =
+				this.connections.get(i).getOtherInterface(this);
+			this.connectedTo.add(ni);
+			quietTime = Math.min(quietTime, timeToRange(ni, mySpeed, true));
+			if (quietTime <= 0) {
+				return; /* the connection may break any time */
+			}
+		}
+
+		if (createsConnections()) {
+			if (this.predictedInterfaces == null) {
+				this.predictedInterfaces = new ArrayList<NetworkInterface>();
+			}
+			List<NetworkInterface> interfaces = this.predictedInterfaces;
+			interfaces.clear();
+			optimizer.getNearInterfaces(this, interfaces);
+			for (int i=0, n=interfaces.size(); i < n; i++) {
+				NetworkInterface ni = interfaces.get(i);
+				if (ni == this || this.connectedTo.contains(ni)) {
+					continue;
+				}
+				quietTime = Math.min(quietTime,
+						timeToRange(ni, mySpeed, false));
+				if (quietTime <= 0) {
+					return; /* a connection may come up any time */
+				}
+			}
+			interfaces.clear();
+
+			/* the interfaces that aren't near have to cover the distance
+			 * to the range of this interface first */
+			double nearDistance = optimizer.getNearDistance(this);
+			double speed = mySpeed + optimizer.getSpeedLimit();
+			if (nearDistance < Double.POSITIVE_INFINITY && speed > 0) {
+				quietTime = Math.min(quietTime,
+						(nearDistance - getTransmitRange()) / speed);
+				if (quietTime <= 0) {
+					return;
+				}
+			}
+		}
+
+		this.quietUntil = SimClock.getTime() + quietTime - PREDICTION_MARGIN;
+	}
+
+	/**
+	 * Returns the shortest time it can take before the distance to the
+	 * given interface reaches the range of the two interfaces
+	 * @param ni The other interface
+	 * @param mySpeed Speed limit of this interface's host
+	 * @param connected Is this interface connected to the other interface
+	 * (i.e., is the distance within the range now)
+	 * @return The time, or negative infinity if the other interface's host
+	 * can become inactive
+	 */
+	private double timeToRange(NetworkInterface ni, double mySpeed,
+			boolean connected) {
+		if (!hasAlwaysActiveRadio(ni.getHost())) {
+			return Double.NEGATIVE_INFINITY;
+		}
+
+		double speed = mySpeed + ni.getHost().getSpeedLimit();
+		if (speed == 0) {
+			return Double.POSITIVE_INFINITY; /* the distance can't change */
+		}
+		double range = Math.min(getTransmitRange(), ni.getTransmitRange());
+		double distance = getLocation().distance(ni.getLocation());
+		return (connected ? range - distance : distance - range) / speed;
+	}
+
+	/**
+	 * Cancels the prediction of this interface (e.g., because one of its
+	 * connections was created or torn down by another interface)
+	 */
+	private void cancelQuietTime() {
+		this.quietUntil = Double.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns true if all the interfaces of the given host are always
+	 * active, i.e., asking the host's radio state has no side effects and
+	 * the radio ranges can't change because of activeness changes
+	 * @param host The host to check
+	 * @return True if the host's radio is always active
+	 */
+	private static boolean hasAlwaysActiveRadio(DTNHost host) {
+		List<NetworkInterface> interfaces = host.getInterfaces();
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			ActivenessHandler ah = interfaces.get(i).ah;
+			if (ah == null) {
+				continue; /* no handler: always active */
+			}
+			if (!ah.isAlwaysActive() || host.getComBus().containsProperty(
+					EnergyModel.ENERGY_VALUE_ID)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
 	/**
 	 * Sets group-based settings for the network interface
 	 * @param s The settings object using the right group namespace
@@ -316,11 +667,19 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 * @param anotherInterface The interface to connect to
 	 */
 	protected void connect(Connection con, NetworkInterface anotherInterface) {
+		if (this.host.getContactTrace() != null) {
+			this.host.getContactTrace().connectionChanged(this,
+					anotherInterface, true);
+		}
 		this.connections.add(con);
+		cancelQuietTime();
+		anotherInterface.cancelQuietTime();
 		notifyConnectionListeners(CON_UP, anotherInterface.getHost());
 
 		// set up bidirectional connection
 		anotherInterface.getConnections().add(con);
+		this.host.connectionsChanged();
+		anotherInterface.getHost().connectionsChanged();
 
 		// inform routers about the connection
 		this.host.connectionUp(con);
@@ -334,7 +693,15 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	 */
 	protected void disconnect(Connection con,
 			NetworkInterface anotherInterface) {
+		if (this.host.getContactTrace() != null) {
+			this.host.getContactTrace().connectionChanged(this,
+					anotherInterface, false);
+		}
 		con.setUpState(false);
+		this.host.connectionsChanged();
+		anotherInterface.getHost().connectionsChanged();
+		cancelQuietTime();
+		anotherInterface.cancelQuietTime();
 		notifyConnectionListeners(CON_DOWN, anotherInterface.getHost());
 
 		// tear down bidirectional connection
@@ -347,6 +714,17 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		anotherInterface.getHost().connectionDown(con);
 	}
 
+	/**
+	 * Returns true if the connections of this interface can be replayed from
+	 * a contact trace (see {@link ContactTrace}). The interface isn't
+	 * updated in a replay, so interfaces that change the speeds of their
+	 * connections in their updates can't be replayed.
+	 * @return true if the interface works with replayed contact traces
+	 */
+	public boolean isReplayable() {
+		return true;
+	}
+
 	/**
 	 * Returns true if another interface is within radio range of this interface
 	 * and this interface is also within radio range of the another interface.
@@ -436,6 +814,7 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		}
 		else if (key.equals(RANGE_ID)) {
 			this.transmitRange = (Double)newValue;
+			cancelQuietTime();
 		}
 		else {
 			throw new SimError("Unexpected combus ID " + key);
@@ -476,6 +855,10 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		Connection con = this.connections.get(index);
 		DTNHost anotherNode = anotherInterface.getHost();
 		con.setUpState(false);
+		this.host.connectionsChanged();
+		anotherNode.connectionsChanged();
+		cancelQuietTime();
+		anotherInterface.cancelQuietTime();
 		notifyConnectionListeners(CON_DOWN, anotherNode);
 
 		// tear down bidirectional connection
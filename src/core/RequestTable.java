@@ -0,0 +1,219 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import core.DTNHost.RequestBufferEntry;
+
+/**
+ * Table of the web page requests of a host that are still waiting for a
+ * response. The requests are indexed by their page number and creation time
+ * (for matching the responses), by their state (for finding the requests to
+ * send to a new contact) and by the time they are due for a retry (for
+ * finding the timed out requests). All the queries return the requests in
+ * the order they were added to the table, i.e., in the order the host would
+ * have gone through a plain list of the requests. Answered requests are
+ * removed from the table.
+ */
+public class RequestTable {
+	/** number of different request states */
+	private static final int NROF_STATES = 3;
+
+	/** orders the requests by the time they were added */
+	private static final Comparator<RequestBufferEntry> ADD_ORDER =
+		new Comparator<RequestBufferEntry>() {
+			public int compare(RequestBufferEntry e1, RequestBufferEntry e2) {
+				return Long.compare(e1.seq, e2.seq);
+			}
+		};
+
+	/** orders the requests by their retry time and then the add order */
+	private static final Comparator<RequestBufferEntry> RETRY_ORDER =
+		new Comparator<RequestBufferEntry>() {
+			public int compare(RequestBufferEntry e1, RequestBufferEntry e2) {
+				int c = Double.compare(e1.scheduledRetry, e2.scheduledRetry);
+				return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+			}
+		};
+
+	/** requests by their page and creation time */
+	private HashMap<RequestKey, RequestBufferEntry> byKey;
+	/** requests by their state (in the order they were added) */
+	private TreeMap<Long, RequestBufferEntry>[] byState;
+	/** requests that have a retry time, by the retry time */
+	private TreeSet<RequestBufferEntry> retries;
+	/** sequence number of the next request */
+	private long nextSeq;
+	/** number of requests in the table */
+	private int size;
+
+	public RequestTable() {
+		this.byKey = new HashMap<RequestKey, RequestBufferEntry>();
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		TreeMap<Long, RequestBufferEntry>[] states = new TreeMap[NROF_STATES];
+		this.byState = states;
+		for (int i = 0; i < NROF_STATES; i++) {
+			this.byState[i] = new TreeMap<Long, RequestBufferEntry>();
+		}
+		this.retries = new TreeSet<RequestBufferEntry>(RETRY_ORDER);
+	}
+
+	/**
+	 * Adds a new request to the table
+	 * @param entry The request
+	 * @param retryTime Time when the request should be checked for a retry
+	 * (or infinity if never)
+	 */
+	public void add(RequestBufferEntry entry, double retryTime) {
+		entry.seq = this.nextSeq++;
+		RequestKey key = new RequestKey(entry.requestedWebPageNumber,
+				entry.pageRequestCreationTime);
+		RequestBufferEntry previous = this.byKey.get(key);
+		if (previous == null) {
+			this.byKey.put(key, entry);
+		} else {
+			/* duplicate key: the oldest one is matched first */
+			while (previous.sameKey != null) {
+				previous = previous.sameKey;
+			}
+			previous.sameKey = entry;
+		}
+		this.size++;
+		index(entry, retryTime);
+	}
+
+	/**
+	 * Re-indexes a request whose state or time has changed
+	 * @param entry The request
+	 * @param retryTime Time when the request should be checked for a retry
+	 * (or infinity if never)
+	 */
+	public void changed(RequestBufferEntry entry, double retryTime) {
+		unindex(entry);
+		index(entry, retryTime);
+	}
+
+	/**
+	 * Removes the (oldest) request for the given page and creation time
+	 * @param page Number of the requested page
+	 * @param creationTime Creation time of the request
+	 * @return The removed request or null if there was no such request
+	 */
+	public RequestBufferEntry remove(int page, double creationTime) {
+		RequestKey key = new RequestKey(page, creationTime);
+		RequestBufferEntry entry = this.byKey.remove(key);
+		if (entry == null) {
+			return null;
+		}
+		if (entry.sameKey != null) {
+			this.byKey.put(key, entry.sameKey);
+			entry.sameKey = null;
+		}
+		this.size--;
+		unindex(entry);
+		return entry;
+	}
+
+	/**
+	 * Returns the requests whose retry time is not after the given time, in
+	 * the order the requests were added
+	 * @param time The time
+	 * @return List of the requests that are due for a retry check
+	 */
+	public List<RequestBufferEntry> getDue(double time) {
+		ArrayList<RequestBufferEntry> due = new ArrayList<RequestBufferEntry>();
+		Iterator<RequestBufferEntry> i = this.retries.iterator();
+		while (i.hasNext()) {
+			RequestBufferEntry entry = i.next();
+			if (entry.scheduledRetry > time) {
+				break;
+			}
+			due.add(entry);
+		}
+		Collections.sort(due, ADD_ORDER);
+		return due;
+	}
+
+	/**
+	 * Returns the requests that are not in the given state, in the order the
+	 * requests were added
+	 * @param state The state
+	 * @return List of the requests not in the state
+	 */
+	public List<RequestBufferEntry> getNotInState(int state) {
+		ArrayList<RequestBufferEntry> result =
+			new ArrayList<RequestBufferEntry>();
+		for (int i = 0; i < NROF_STATES; i++) {
+			if (i != state) {
+				result.addAll(this.byState[i].values());
+			}
+		}
+		Collections.sort(result, ADD_ORDER);
+		return result;
+	}
+
+	/**
+	 * Returns the number of requests in the table
+	 * @return the number of requests in the table
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	private void index(RequestBufferEntry entry, double retryTime) {
+		entry.indexedState = entry.stateIndicator;
+		this.byState[entry.indexedState].put(entry.seq, entry);
+		entry.scheduledRetry = retryTime;
+		if (retryTime != Double.POSITIVE_INFINITY) {
+			this.retries.add(entry);
+		}
+	}
+
+	private void unindex(RequestBufferEntry entry) {
+		this.byState[entry.indexedState].remove(entry.seq);
+		if (entry.scheduledRetry != Double.POSITIVE_INFINITY) {
+			this.retries.remove(entry);
+		}
+	}
+
+	/**
+	 * Page number and creation time of a request
+	 */
+	private static class RequestKey {
+		private final int page;
+		private final double creationTime;
+
+		private RequestKey(int page, double creationTime) {
+			this.page = page;
+			this.creationTime = creationTime;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RequestKey)) {
+				return false;
+			}
+			RequestKey k = (RequestKey)o;
+			return this.page == k.page &&
+				this.creationTime == k.creationTime;
+		}
+
+		@Override
+		public int hashCode() {
+			/* 0.0 and -0.0 are equal, so they must hash the same */
+			long bits = this.creationTime == 0 ? 0 :
+				Double.doubleToLongBits(this.creationTime);
+			return 31 * this.page + (int)(bits ^ (bits >>> 32));
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+
+/**
+ * Isolated context for one simulation run. The simulator keeps the state of
+ * a run in static fields (e.g., the {@link SimClock}, the
+ * {@link SimScenario} instance, random number generators and the
+ * optimization registries), so a context loads its own copies of all the
+ * simulator's classes with a separate class loader. The static state of a
+ * context is thus private to it and several runs can be executed
+ * concurrently in the same JVM, each in its own context. Only the Java
+ * platform classes are shared.
+ */
+public class SimContext {
+	/** Name of the method that runs a simulation in a context */
+	private static final String RUN_METHOD_NAME = "runInContext";
+
+	private URLClassLoader loader;
+
+	/**
+	 * Creates a new context that loads the classes from the class path of
+	 * the JVM
+	 */
+	public SimContext() {
+		String[] paths = System.getProperty("java.class.path").split(
+				File.pathSeparator);
+		ArrayList<URL> urls = new ArrayList<URL>();
+		for (String path : paths) {
+			try {
+				urls.add(new File(path).toURI().toURL());
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + path, e);
+			}
+		}
+		this.loader = new URLClassLoader(urls.toArray(new URL[0]),
+				ClassLoader.getSystemClassLoader().getParent());
+	}
+
+	/**
+	 * Returns the context's own copy of a class
+	 * @param name Full name of the class (e.g., <code>core.SimClock</code>)
+	 * @return The class
+	 * @throws ClassNotFoundException if the class is not found
+	 */
+	public Class<?> loadClass(String name) throws ClassNotFoundException {
+		return Class.forName(name, true, this.loader);
+	}
+
+	/**
+	 * Runs a simulation with the text UI in this context
+	 * @param confFiles The command line arguments with the settings files
+	 * @param firstConfIndex Index of the first settings file in confFiles
+	 * @param runIndex Run index of the simulation
+	 * @see DTNSim#runInContext(String[], int, int)
+	 */
+	public void run(String[] confFiles, int firstConfIndex, int runIndex) {
+		Thread thread = Thread.currentThread();
+		ClassLoader previous = thread.getContextClassLoader();
+		thread.setContextClassLoader(this.loader);
+		try {
+			Method m = loadClass(DTNSim.class.getName()).getMethod(
+					RUN_METHOD_NAME, String[].class, int.class, int.class);
+			m.invoke(null, confFiles, firstConfIndex, runIndex);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException)cause;
+			} else if (cause instanceof Error) {
+				throw (Error)cause;
+			}
+			throw new SimError("Run " + (runIndex + 1) + " failed", e);
+		} catch (ReflectiveOperationException e) {
+			throw new SimError("Can't run a simulation in a context", e);
+		} finally {
+			thread.setContextClassLoader(previous);
+		}
+	}
+
+	/**
+	 * Releases the classes of this context. The context can't be used after
+	 * this.
+	 */
+	public void close() {
+		try {
+			this.loader.close();
+		} catch (IOException e) {
+			throw new SimError("Can't close the context", e);
+		}
+	}
+}
@@ -4,6 +4,7 @@
  */
 package core;
 
+import cache.WebCache;
 import input.EventQueue;
 import input.EventQueueHandler;
 
@@ -39,6 +40,10 @@ public class SimScenario implements Serializable {
 	public static final String UP_INT_S = "updateInterval";
 	/** simulate connections -setting id ({@value})*/
 	public static final String SIM_CON_S = "simulateConnections";
+	/** contact trace file -setting id ({@value}). If the file exists, the
+	 * connection changes are replayed from it (and the hosts don't move),
+	 * otherwise they are recorded to it. See {@link ContactTrace}. */
+	public static final String CONTACT_TRACE_S = "contactTrace";
 
 	/** namespace for interface type settings ({@value}) */
 	public static final String INTTYPE_NS = "Interface";
@@ -82,6 +87,11 @@ public class SimScenario implements Serializable {
 	/** package where to look for application classes */
 	private static final String APP_PACKAGE = "applications.";
 
+	/** package where to look for web cache classes */
+	private static final String CACHE_PACKAGE = "cache.";
+	/** default web cache class */
+	private static final String DEF_CACHE_POLICY = "FIFOCache";
+
 	/** The world instance */
 	private World world;
 	/** List of hosts in this simulation */
@@ -124,6 +134,9 @@ public class SimScenario implements Serializable {
 	public static final String CACHING = "caching";
 	/** namespace of scenario settings ({@value})*/
 	public static final String CACHE_ENTRIES = "cacheEntries";
+	/** Class of the hosts' web caches -setting id ({@value}).
+	 * Must be a subclass of {@link WebCache}. Default: FIFOCache */
+	public static final String CACHE_POLICY = "cachePolicy";
 
 	static {
 		DTNSim.registerForReset(SimScenario.class.getCanonicalName());
@@ -145,6 +158,11 @@ public class SimScenario implements Serializable {
 		this.endTime = s.getDouble(END_TIME_S);
 		this.updateInterval = s.getDouble(UP_INT_S);
 		this.simulateConnections = s.getBoolean(SIM_CON_S);
+		String contactTraceFile = null;
+		if (s.contains(CONTACT_TRACE_S)) {
+			contactTraceFile = s.valueFillString(
+					s.getSetting(CONTACT_TRACE_S));
+		}
 
 		s.ensurePositiveValue(nrofGroups, NROF_GROUPS_S);
 		s.ensurePositiveValue(endTime, END_TIME_S);
@@ -171,6 +189,10 @@ public class SimScenario implements Serializable {
 		this.world = new World(hosts, worldSizeX, worldSizeY, updateInterval,
 				updateListeners, simulateConnections,
 				eqHandler.getEventQueues());
+		if (contactTraceFile != null) {
+			this.world.setContactTrace(new ContactTrace(contactTraceFile,
+					hosts, updateInterval));
+		}
 	}
 
 	/**
@@ -396,6 +418,17 @@ public class SimScenario implements Serializable {
 				this.simMap = ((MapBasedMovement)mmProto).getMap();
 			}
 
+			// creates the prototype of the hosts' web caches
+			WebCache cacheProto = null;
+			if (s.contains(CACHING) && s.getBoolean(CACHING)) {
+				String policy = DEF_CACHE_POLICY;
+				if (s.contains(CACHE_POLICY)) {
+					policy = s.getSetting(CACHE_POLICY);
+				}
+				cacheProto = (WebCache)s.createIntializedObject(
+						CACHE_PACKAGE + policy);
+			}
+
 			// creates hosts of ith group
 			for (int j=0; j<nrofHosts; j++) {
 				ModuleCommunicationBus comBus = new ModuleCommunicationBus();
@@ -408,11 +441,8 @@ public class SimScenario implements Serializable {
 				if (s.contains(DEMO_CASE)){
 					host.setDemoCase(s.getInt(this.DEMO_CASE));
 				}
-				if (s.contains(CACHING)){
-					host.setCaching(s.getBoolean(this.CACHING));
-				}
-				if (s.contains(CACHE_ENTRIES)){
-					host.setCacheEntries(s.getInt(this.CACHE_ENTRIES));
+				if (cacheProto != null){
+					host.setCache(cacheProto.replicate());
 				}
 				hosts.add(host);
 			}
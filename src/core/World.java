@@ -6,12 +6,15 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.ExternalEventsQueue;
 import input.ScheduledUpdatesQueue;
 
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
@@ -37,13 +40,39 @@ public class World {
 	 */
 	public static final String SIMULATE_CON_ONCE_S = "simulateConnectionsOnce";
 
+	/**
+	 * Should the read-only part of the connection updates be done in
+	 * parallel -setting id ({@value}). Boolean (true/false) variable.
+	 * Default is false. The connections are still created and torn down
+	 * in the same (possibly randomized) order as without this setting,
+	 * so the results don't change.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/**
+	 * Should the hosts be moved in parallel -setting id ({@value}).
+	 * Boolean (true/false) variable. Default is false. Only the hosts whose
+	 * movement models allow it are moved in parallel, which requires
+	 * separate random number generators for the models (see
+	 * {@link movement.MovementModel#RNG_PER_HOST_S}); the others are moved
+	 * in a single thread. The movement listeners are informed in the same
+	 * order as without this setting, but only after all the hosts have
+	 * moved.
+	 */
+	public static final String PARALLEL_MOVEMENT_S = "parallelMovement";
+	/**
+	 * Number of threads used for the parallel updates and movement
+	 * -setting id ({@value}). Integer. Default is the number of available
+	 * processors.
+	 */
+	public static final String UPDATE_THREADS_S = "updateThreads";
+
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
 	private double updateInterval;
 	private SimClock simClock;
-	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
+	/** scheduler of the events of the scheduled updates and event queues */
+	private EventScheduler scheduler;
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
@@ -56,6 +85,20 @@ public class World {
 	/** Queue of scheduled update requests */
 	private ScheduledUpdatesQueue scheduledUpdates;
 	private boolean simulateConOnce;
+	/** thread pool for the parallel updates and movement or null if
+	 * everything is done in a single thread */
+	private ForkJoinPool updatePool;
+	/** should the connection updates be prepared in parallel */
+	private boolean parallelUpdates;
+	/** indexes of the hosts that are moved in parallel or null if all the
+	 * hosts are moved in a single thread */
+	private int[] concurrentMovers;
+	/** is the host (with the same index) moved in parallel */
+	private boolean[] movesConcurrently;
+	/** trace of the connection changes or null if there is none */
+	private ContactTrace contactTrace;
+	/** are the connection changes replayed from the trace */
+	private boolean replaying;
 
 	/**
 	 * Constructor.
@@ -75,6 +118,11 @@ public class World {
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;
 
+		/* the scheduled updates are first for the events at the same time */
+		List<EventQueue> allQueues = new ArrayList<EventQueue>();
+		allQueues.add(this.scheduledUpdates);
+		allQueues.addAll(eventQueues);
+		this.scheduler = new EventScheduler(allQueues);
 		setNextEventQueue();
 		initSettings();
 	}
@@ -91,6 +139,27 @@ public class World {
 		}
 		simulateConOnce = s.getBoolean(SIMULATE_CON_ONCE_S, false);
 
+		this.parallelUpdates = s.getBoolean(PARALLEL_UPDATES_S, false);
+		if (s.getBoolean(PARALLEL_MOVEMENT_S, false)) {
+			initConcurrentMovers();
+		}
+
+		if (this.parallelUpdates || this.concurrentMovers != null) {
+			int threads = Runtime.getRuntime().availableProcessors();
+			if (s.contains(UPDATE_THREADS_S)) {
+				threads = s.getInt(UPDATE_THREADS_S);
+				if (threads < 1) {
+					throw new SettingsError("Invalid value (" + threads +
+							") for " + s.getFullPropertyName(
+									UPDATE_THREADS_S));
+				}
+			}
+			this.updatePool = new ForkJoinPool(threads);
+		}
+		else {
+			this.updatePool = null;
+		}
+
 		if(randomizeUpdates) {
 			// creates the update order array that can be shuffled
 			this.updateOrder = new ArrayList<DTNHost>(this.hosts);
@@ -100,6 +169,34 @@ public class World {
 		}
 	}
 
+	/**
+	 * Finds out which hosts can be moved in parallel
+	 */
+	private void initConcurrentMovers() {
+		int n = this.hosts.size();
+		int nrofConcurrent = 0;
+
+		this.movesConcurrently = new boolean[n];
+		for (int i=0; i < n; i++) {
+			if (this.hosts.get(i).canMoveConcurrently()) {
+				this.movesConcurrently[i] = true;
+				nrofConcurrent++;
+			}
+		}
+
+		if (nrofConcurrent == 0) {
+			this.movesConcurrently = null;
+			return; /* nothing to do in parallel */
+		}
+
+		this.concurrentMovers = new int[nrofConcurrent];
+		for (int i=0, j=0; i < n; i++) {
+			if (this.movesConcurrently[i]) {
+				this.concurrentMovers[j++] = i;
+			}
+		}
+	}
+
 	/**
 	 * Moves hosts in the world for the time given time initialize host
 	 * positions properly. SimClock must be set to <CODE>-time</CODE> before
@@ -110,6 +207,10 @@ public class World {
 		if (time <= 0) {
 			return;
 		}
+		if (this.replaying) {
+			simClock.setTime(0); /* nothing moves */
+			return;
+		}
 
 		while(SimClock.getTime() < -updateInterval) {
 			moveHosts(updateInterval);
@@ -124,22 +225,12 @@ public class World {
 
 	/**
 	 * Goes through all event Queues and sets the
-	 * event queue that has the next event.
+	 * event queue that has the next event. Needed only for event queues
+	 * whose next event's time can change between their events
+	 * (e.g., {@link input.DTN2Events}).
 	 */
 	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;
-				earliest = eq.nextEventsTime();
-			}
-		}
-
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+		this.scheduler.refreshAll();
 	}
 
 	/**
@@ -153,12 +244,11 @@ public class World {
 		setNextEventQueue();
 
 		/* process all events that are due until next interval update */
-		while (this.nextQueueEventTime <= runUntil) {
-			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+		while (this.scheduler.nextEventsTime() <= runUntil) {
+			simClock.setTime(this.scheduler.nextEventsTime());
+			ExternalEvent ee = this.scheduler.nextEvent();
 			ee.processEvent(this);
 			updateHosts(); // update all hosts after every event
-			setNextEventQueue();
 		}
 
 		moveHosts(this.updateInterval);
@@ -178,6 +268,10 @@ public class World {
 	 * are made in random order.
 	 */
 	private void updateHosts() {
+		if (this.parallelUpdates && simulateConnections && !this.replaying) {
+			this.updatePool.invoke(new PrepareUpdatesTask(0, hosts.size()));
+		}
+
 		if (this.updateOrder == null) { // randomizing is off
 			for (int i=0, n = hosts.size();i < n; i++) {
 				if (this.isCancelled) {
@@ -209,12 +303,160 @@ public class World {
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.replaying) {
+			return; /* the connections come from the trace */
+		}
+		if (this.concurrentMovers != null) {
+			moveHostsConcurrently(timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);
 		}
 	}
 
+	/**
+	 * Moves the hosts that can be moved concurrently in parallel and then
+	 * the rest of the hosts in a single thread. The movement listeners are
+	 * informed in the order of the hosts.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsConcurrently(double timeIncrement) {
+		this.updatePool.invoke(new MoveHostsTask(0, concurrentMovers.length,
+				timeIncrement));
+
+		for (int i=0,n = hosts.size(); i<n; i++) {
+			DTNHost host = hosts.get(i);
+			if (this.movesConcurrently[i]) {
+				host.notifyDeferredMovement();
+			}
+			else {
+				host.move(timeIncrement);
+			}
+		}
+	}
+
+	/**
+	 * Fork-join task that prepares the connection updates of a range of
+	 * hosts (see {@link DTNHost#prepareUpdate()})
+	 */
+	private class PrepareUpdatesTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		/** max number of hosts that are prepared without splitting */
+		private static final int HOSTS_PER_TASK = 16;
+		private int start;
+		private int end;
+
+		/**
+		 * Creates a task for the hosts in the given index range
+		 * @param start Index of the first host
+		 * @param end Index after the last host
+		 */
+		public PrepareUpdatesTask(int start, int end) {
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= HOSTS_PER_TASK) {
+				for (int i=start; i < end; i++) {
+					hosts.get(i).prepareUpdate();
+				}
+			}
+			else {
+				int middle = (start + end) / 2;
+				invokeAll(new PrepareUpdatesTask(start, middle),
+						new PrepareUpdatesTask(middle, end));
+			}
+		}
+	}
+
+	/**
+	 * Fork-join task that moves a range of the hosts that can be moved
+	 * concurrently (see {@link DTNHost#moveConcurrently(double)})
+	 */
+	private class MoveHostsTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		/** max number of hosts that are moved without splitting */
+		private static final int HOSTS_PER_TASK = 16;
+		private int start;
+		private int end;
+		private double timeIncrement;
+
+		/**
+		 * Creates a task for the concurrently moving hosts in the given
+		 * index range
+		 * @param start Index of the first host in the concurrent movers
+		 * @param end Index after the last host in the concurrent movers
+		 * @param timeIncrement The time how long the hosts should move
+		 */
+		public MoveHostsTask(int start, int end, double timeIncrement) {
+			this.start = start;
+			this.end = end;
+			this.timeIncrement = timeIncrement;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= HOSTS_PER_TASK) {
+				for (int i=start; i < end; i++) {
+					hosts.get(concurrentMovers[i]).moveConcurrently(
+							timeIncrement);
+				}
+			}
+			else {
+				int middle = (start + end) / 2;
+				invokeAll(new MoveHostsTask(start, middle, timeIncrement),
+						new MoveHostsTask(middle, end, timeIncrement));
+			}
+		}
+	}
+
+	/**
+	 * Sets the contact trace that the connection changes of the hosts are
+	 * recorded to or replayed from. When the trace is replayed, the hosts
+	 * are not moved.
+	 * @param contactTrace The trace
+	 */
+	public void setContactTrace(ContactTrace contactTrace) {
+		this.contactTrace = contactTrace;
+		this.replaying = contactTrace.isReplaying();
+		for (DTNHost host : this.hosts) {
+			host.setContactTrace(contactTrace);
+		}
+	}
+
+	/**
+	 * Returns true if the connection changes of the hosts are replayed from
+	 * a contact trace (and the hosts don't move)
+	 * @return true if a contact trace is replayed
+	 */
+	public boolean isReplayingContacts() {
+		return this.replaying;
+	}
+
+	/**
+	 * Finishes the simulation, e.g., closes the contact trace (if any) and
+	 * the external events files and shuts down the update threads
+	 */
+	public void done() {
+		if (this.updatePool != null) {
+			this.updatePool.shutdown();
+		}
+		for (EventQueue eq : this.eventQueues) {
+			if (eq instanceof ExternalEventsQueue) {
+				((ExternalEventsQueue)eq).close();
+			}
+		}
+		if (this.contactTrace != null) {
+			this.contactTrace.close();
+			this.contactTrace = null;
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -271,5 +513,6 @@ public class World {
 	 */
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
+		scheduler.refresh(0);
 	}
 }
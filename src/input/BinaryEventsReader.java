@@ -4,12 +4,19 @@
  */
 package input;
 
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,32 +24,98 @@ import core.SimError;
 
 /**
  * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * from a list of external events or from a standard external events file
+ * (see {@link #main(String[])}).
+ * <P>The file has a header (magic number, format version and the number of
+ * events) followed by one fixed layout record per event: the event type
+ * (byte), time (double), from and to host addresses (ints) and then the
+ * type specific fields. Strings (message and interface IDs) are stored as
+ * an unsigned short length and UTF-8 bytes. All the values are big-endian,
+ * i.e., as written by a {@link DataOutputStream}. The file is read through
+ * a memory mapped buffer, so loading the events doesn't need any copying or
+ * deserialization besides creating the event objects.</P>
  */
 public class BinaryEventsReader implements ExternalEventsReader {
 	/** Extension of binary external events file */
 	public static final String BINARY_EXT = ".binee";
 
-	private ObjectInputStream in;
-	private int eventsLeft;
+	/** identifier in the beginning of binary external events files */
+	private static final int MAGIC = 0x4f4e4545; /* "ONEE" */
+	private static final int VERSION = 2;
+	/** length of the file header in bytes */
+	private static final int HEADER_LENGTH = 16;
+
+	/* record types */
+	private static final byte CREATE = 1;
+	private static final byte CONNECTION = 2;
+	private static final byte DELETE = 3;
+	private static final byte RELAY = 4;
+
+	/** string length value for null strings */
+	private static final int NULL_STRING = 0xFFFF;
+	/** maximum length of a record in bytes */
+	private static final int MAX_RECORD_LENGTH = 1 + 8 + 4 + 4 + 4 + 4 +
+		2 + NULL_STRING;
+	/** maximum size of one mapped part of the file */
+	private static final long MAX_MAPPED = 256 * 1024 * 1024;
+	/** number of events read at a time when converting files */
+	private static final int CONVERT_BATCH = 10000;
+
+	private FileChannel channel;
+	private MappedByteBuffer buffer;
+	/** position of the mapped part in the file */
+	private long mappedPos;
+	private long fileLength;
+	private long eventsLeft;
+	private byte[] stringBytes;
+	private File eventsFile;
 
 	/**
 	 * Constructor.
 	 * @param eventsFile The file where the events are read
 	 */
 	public BinaryEventsReader(File eventsFile) {
+		this.eventsFile = eventsFile;
+		this.stringBytes = new byte[64];
+		RandomAccessFile raf = null;
 		try {
-			FileInputStream fis = new FileInputStream(eventsFile);
-			in = new ObjectInputStream(fis);
-			// first object should tell the amount of events
-			eventsLeft = (Integer)in.readObject();
+			raf = new RandomAccessFile(eventsFile, "r");
+			this.channel = raf.getChannel();
+			this.fileLength = channel.size();
+			map(0);
+			if (fileLength < HEADER_LENGTH || buffer.getInt() != MAGIC) {
+				throw new SimError("Invalid binary input file for external " +
+						"events: " + eventsFile.getAbsolutePath());
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new SimError("Unsupported version " + version + " of " +
+						"binary external events file " +
+						eventsFile.getAbsolutePath() + "; convert the file " +
+						"again from the text events");
+			}
+			this.eventsLeft = buffer.getLong();
+			raf = null; // the file is closed when the reader is closed
 		} catch (IOException e) {
 			throw new SimError(e);
-		} catch (ClassNotFoundException e) {
-			throw new SimError("Invalid binary input file for external " +
-					"events:" + eventsFile.getAbsolutePath(), e);
+		} finally {
+			if (raf != null) { // constructing the reader failed
+				try {
+					raf.close();
+				} catch (IOException e) {
+					// nothing to do; the original error is thrown
+				}
+			}
 		}
+	}
 
+	/**
+	 * Maps the part of the file starting at the given position
+	 */
+	private void map(long pos) throws IOException {
+		this.mappedPos = pos;
+		this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, pos,
+				Math.min(MAX_MAPPED, fileLength - pos));
 	}
 
 	/**
@@ -51,49 +124,103 @@ public class BinaryEventsReader implements ExternalEventsReader {
 	 * @return Events in an ArrayList (empty list if didn't read any)
 	 * @see #storeToBinaryFile(String, List)
 	 */
-	@SuppressWarnings("unchecked") // suppress cast warnings
 	public List<ExternalEvent> readEvents(int nrof) {
-		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
-
-		if (eventsLeft == 0) {
-			return events;
-		}
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(
+				(int)Math.min(nrof, eventsLeft));
 
 		try {
 			for (int i=0; i < nrof && eventsLeft > 0; i++) {
-				events.add((ExternalEvent)in.readObject());
+				if (buffer.remaining() < MAX_RECORD_LENGTH &&
+						mappedPos + buffer.limit() < fileLength) {
+					map(mappedPos + buffer.position());
+				}
+				events.add(readEvent());
 				eventsLeft--;
 			}
-			if (eventsLeft == 0) {
-				in.close();
-			}
-		} catch (Exception e) { // FIXME: quick 'n' dirty exception handling
+		} catch (IOException e) {
 			throw new SimError(e);
+		} catch (BufferUnderflowException e) {
+			throw new SimError("Binary external events file " +
+					eventsFile.getAbsolutePath() + " is truncated", e);
 		}
 		return events;
 	}
 
+	/**
+	 * Reads the event record at the current position of the buffer
+	 */
+	private ExternalEvent readEvent() {
+		byte type = buffer.get();
+		double time = buffer.getDouble();
+		int from = buffer.getInt();
+		int to = buffer.getInt();
+
+		switch (type) {
+		case CREATE:
+			int size = buffer.getInt();
+			int respSize = buffer.getInt();
+			return new MessageCreateEvent(from, to, readString(), size,
+					respSize, time);
+		case CONNECTION:
+			boolean up = buffer.get() != 0;
+			return new ConnectionEvent(from, to, readString(), up, time);
+		case DELETE:
+			boolean drop = buffer.get() != 0;
+			return new MessageDeleteEvent(from, readString(), time, drop);
+		case RELAY:
+			int stage = buffer.get();
+			return new MessageRelayEvent(from, to, readString(), time, stage);
+		default:
+			throw new SimError("Invalid event type " + type + " in binary " +
+					"external events file " + eventsFile.getAbsolutePath());
+		}
+	}
+
+	private String readString() {
+		int len = buffer.getShort() & 0xFFFF;
+		if (len == NULL_STRING) {
+			return null;
+		}
+		if (len > stringBytes.length) {
+			stringBytes = new byte[len];
+		}
+		buffer.get(stringBytes, 0, len);
+		return new String(stringBytes, 0, len, StandardCharsets.UTF_8);
+	}
+
 	/**
 	 * Checks if the given file is a binary external events file
 	 * @param file The file to check
 	 * @return True if the file is a binary ee file, false if not
+	 * @throws SimError if the file is a binary ee file of the old
+	 * (serialized) format
 	 */
 	public static boolean isBinaryEeFile(File file) {
 		if (!file.getName().endsWith(BINARY_EXT)) {
 			return false;
 		}
 
-		// extension matches, try to read an event
+		// extension matches, check the magic number
 		try {
-			BinaryEventsReader r = new BinaryEventsReader(file);
-			r.readEvents(1);
-			r.close();
+			DataInputStream in = new DataInputStream(
+					new FileInputStream(file));
+			int magic;
+			try {
+				magic = in.readInt();
+			} finally {
+				in.close();
+			}
+			if ((magic >>> 16) == (ObjectStreamConstants.STREAM_MAGIC &
+					0xFFFF)) {
+				throw new SimError("Binary external events file " +
+						file.getAbsolutePath() + " is in the old serialized " +
+						"format; convert the file again from the text events");
+			}
+			return magic == MAGIC;
 		}
-		catch (SimError e) {
+		catch (IOException e) {
 			return false; // read failed -> not a valid file
 		}
-
-		return true; // seems to be a valid binary ee file
 	}
 
 	/**
@@ -107,31 +234,152 @@ public class BinaryEventsReader implements ExternalEventsReader {
 
 		// make sure the file name ends with binary extension
 		if (!fileName.endsWith(BINARY_EXT)) {
-			fileName += "BINARY_EXT";
+			fileName += BINARY_EXT;
 		}
 
-		ObjectOutputStream out;
-		FileOutputStream fos = new FileOutputStream(fileName);
-		out = new ObjectOutputStream(fos);
+		DataOutputStream out = openOutput(fileName, events.size());
+		try {
+			for (ExternalEvent ee : events) {
+				writeEvent(out, ee);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Converts a standard external events file to a binary file. The events
+	 * are read and written in batches, so the text file can be larger than
+	 * the available memory.
+	 * @param textFile The standard external events file
+	 * @param fileName Path to the binary file to create
+	 * @return Number of events converted
+	 * @throws IOException if something in storing went wrong
+	 * @see StandardEventsReader
+	 */
+	public static long convert(File textFile, String fileName)
+			throws IOException {
+		StandardEventsReader reader = new StandardEventsReader(textFile);
+		long count = 0;
+		DataOutputStream out = openOutput(fileName, 0);
+		try {
+			List<ExternalEvent> events = reader.readEvents(CONVERT_BATCH);
+			while (events.size() > 0) {
+				for (ExternalEvent ee : events) {
+					writeEvent(out, ee);
+				}
+				count += events.size();
+				events = reader.readEvents(CONVERT_BATCH);
+			}
+		} finally {
+			out.close();
+			reader.close();
+		}
+
+		/* the number of events is known only now */
+		RandomAccessFile raf = new RandomAccessFile(fileName, "rw");
+		try {
+			raf.seek(HEADER_LENGTH - 8);
+			raf.writeLong(count);
+		} finally {
+			raf.close();
+		}
+		return count;
+	}
 
-		// store the number of events
-		out.writeObject(new Integer(events.size()));
+	private static DataOutputStream openOutput(String fileName, long nrof)
+			throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName), 64 * 1024));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(nrof);
+		return out;
+	}
 
-		// store events
-		for (ExternalEvent ee : events) {
-			out.writeObject(ee);
+	private static void writeEvent(DataOutputStream out, ExternalEvent ee)
+			throws IOException {
+		if (ee instanceof MessageCreateEvent) {
+			MessageCreateEvent mce = (MessageCreateEvent)ee;
+			writeHeader(out, CREATE, ee.time, mce.fromAddr, mce.toAddr);
+			out.writeInt(mce.size);
+			out.writeInt(mce.responseSize);
+			writeString(out, mce.id);
+		}
+		else if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			writeHeader(out, CONNECTION, ee.time, ce.fromAddr, ce.toAddr);
+			out.writeBoolean(ce.isUp);
+			writeString(out, ce.interfaceId);
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			MessageDeleteEvent mde = (MessageDeleteEvent)ee;
+			writeHeader(out, DELETE, ee.time, mde.fromAddr, mde.toAddr);
+			out.writeBoolean(mde.drop);
+			writeString(out, mde.id);
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			MessageRelayEvent mre = (MessageRelayEvent)ee;
+			writeHeader(out, RELAY, ee.time, mre.fromAddr, mre.toAddr);
+			out.writeByte(mre.stage);
+			writeString(out, mre.id);
 		}
+		else {
+			throw new SimError("Can't store event " + ee + " to a binary " +
+					"external events file");
+		}
+	}
+
+	private static void writeHeader(DataOutputStream out, byte type,
+			double time, int from, int to) throws IOException {
+		out.writeByte(type);
+		out.writeDouble(time);
+		out.writeInt(from);
+		out.writeInt(to);
+	}
 
-		out.close();
+	private static void writeString(DataOutputStream out, String s)
+			throws IOException {
+		if (s == null) {
+			out.writeShort(NULL_STRING);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		if (bytes.length >= NULL_STRING) {
+			throw new SimError("Too long ID in external event: " + s);
+		}
+		out.writeShort(bytes.length);
+		out.write(bytes);
 	}
 
 	public void close() {
 		try {
-			this.in.close();
+			this.channel.close();
+			this.buffer = null;
 		}
 		catch (IOException ioe) {
 			throw new SimError(ioe);
 		}
 	}
 
+	/**
+	 * Converts a standard external events file to a binary file.
+	 * Usage: <code>java input.BinaryEventsReader &lt;text file&gt;
+	 * [&lt;binary file&gt;]</code>. By default the binary file is the text
+	 * file with the {@value #BINARY_EXT} extension.
+	 * @param args The command line arguments
+	 * @throws IOException if the conversion fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage: BinaryEventsReader <text events " +
+					"file> [<binary events file>]");
+			System.exit(1);
+		}
+		String outName = args.length > 1 ? args[1] : args[0] + BINARY_EXT;
+		long start = System.currentTimeMillis();
+		long count = convert(new File(args[0]), outName);
+		System.out.println("Converted " + count + " events to " + outName +
+				" in " + (System.currentTimeMillis() - start) / 1000.0 + "s");
+	}
 }
@@ -0,0 +1,247 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+import core.SimError;
+
+/**
+ * Binary cache of simulation maps read from map files. A cached map is
+ * stored to a file whose name has a hash of the contents of the map files,
+ * so the cache file is found again (also by other simulation runs) as long
+ * as the map files don't change, regardless of their names or locations.
+ * <P>The file has a header (magic number, format version, number of nodes
+ * and edges, mirroring and translation offset of the map) followed by the
+ * nodes in a compact layout: the x and y coordinates of all nodes, their
+ * type bit masks, and their neighbors in compressed sparse row form (start
+ * of each node's neighbors in the neighbor index array and the array
+ * itself). All the values are big-endian. The file is read through a memory
+ * mapped buffer. The nodes and their neighbors are in the same order as in
+ * the cached map, so a map read from the cache behaves exactly like the
+ * map that was cached.</P>
+ */
+public class BinaryMapCache {
+	/** Extension of the map cache files */
+	public static final String CACHE_EXT = ".simmap";
+
+	/** identifier in the beginning of map cache files */
+	private static final int MAGIC = 0x4f4e454d; /* "ONEM" */
+	private static final int VERSION = 1;
+	/** length of the file header in bytes */
+	private static final int HEADER_LENGTH = 4 + 4 + 4 + 4 + 4 + 8 + 8;
+
+	/**
+	 * Returns the cache file of the map read from the given map files
+	 * @param cacheDir The directory of the cache files
+	 * @param mapFiles The map files (in the order they are read)
+	 * @return The cache file (that may not exist yet)
+	 * @throws IOException if the map files can't be read
+	 */
+	public static File getCacheFile(File cacheDir, List<File> mapFiles)
+			throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e);
+		}
+
+		byte[] buf = new byte[64 * 1024];
+		digest.update((byte)VERSION);
+		for (File file : mapFiles) {
+			digest.update(Long.toString(file.length()).getBytes());
+			InputStream in = new FileInputStream(file);
+			try {
+				int read;
+				while ((read = in.read(buf)) > 0) {
+					digest.update(buf, 0, read);
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		StringBuilder name = new StringBuilder("map_");
+		for (byte b : digest.digest()) {
+			name.append(String.format("%02x", b));
+		}
+		return new File(cacheDir, name.append(CACHE_EXT).toString());
+	}
+
+	/**
+	 * Reads a map from a cache file
+	 * @param cacheFile The file
+	 * @return The map or null if the file doesn't exist or isn't a valid
+	 * cache file of this version
+	 * @throws IOException if reading the file fails
+	 */
+	public static SimMap read(File cacheFile) throws IOException {
+		if (!cacheFile.exists()) {
+			return null;
+		}
+
+		RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			if (channel.size() < HEADER_LENGTH) {
+				return null;
+			}
+			MappedByteBuffer buffer = channel.map(
+					FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+				return null;
+			}
+			return readMap(buffer);
+		} catch (BufferUnderflowException e) {
+			return null; // truncated file
+		} catch (IndexOutOfBoundsException e) {
+			return null; // invalid neighbor index
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Reads the map from a buffer positioned after the magic and version
+	 */
+	private static SimMap readMap(MappedByteBuffer buffer) {
+		int nrofNodes = buffer.getInt();
+		int nrofEdges = buffer.getInt();
+		boolean mirrored = buffer.getInt() != 0;
+		Coord offset = new Coord(buffer.getDouble(), buffer.getDouble());
+
+		int xPos = HEADER_LENGTH;
+		int yPos = xPos + 8 * nrofNodes;
+		int typePos = yPos + 8 * nrofNodes;
+		int offsetPos = typePos + 4 * nrofNodes;
+		int targetPos = offsetPos + 4 * (nrofNodes + 1);
+		if (buffer.limit() != targetPos + 4 * nrofEdges) {
+			return null; // wrong size
+		}
+
+		MapNode[] nodes = new MapNode[nrofNodes];
+		for (int i = 0; i < nrofNodes; i++) {
+			nodes[i] = new MapNode(new Coord(buffer.getDouble(xPos + 8 * i),
+					buffer.getDouble(yPos + 8 * i)));
+			int types = buffer.getInt(typePos + 4 * i);
+			for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+				if ((types & (1 << t)) != 0) {
+					nodes[i].addType(t);
+				}
+			}
+		}
+
+		for (int i = 0; i < nrofNodes; i++) {
+			int end = buffer.getInt(offsetPos + 4 * (i + 1));
+			for (int e = buffer.getInt(offsetPos + 4 * i); e < end; e++) {
+				nodes[i].addNeighbor(nodes[buffer.getInt(targetPos + 4 * e)]);
+			}
+		}
+
+		List<MapNode> nodeList = new ArrayList<MapNode>(nrofNodes);
+		for (MapNode node : nodes) {
+			nodeList.add(node);
+		}
+		return new SimMap(nodeList, offset, mirrored);
+	}
+
+	/**
+	 * Writes a map to a cache file. The file is first written under a
+	 * temporary name and then renamed, so other simulation runs never see a
+	 * partially written file.
+	 * @param map The map
+	 * @param cacheFile The file
+	 * @throws IOException if writing the file fails
+	 */
+	public static void write(SimMap map, File cacheFile) throws IOException {
+		List<MapNode> nodes = map.getNodes();
+		Map<MapNode, Integer> indexes = new IdentityHashMap<MapNode, Integer>();
+		int nrofEdges = 0;
+		for (MapNode node : nodes) {
+			indexes.put(node, indexes.size());
+			nrofEdges += node.getNeighbors().size();
+		}
+
+		File dir = cacheFile.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmpFile), 64 * 1024));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nodes.size());
+			out.writeInt(nrofEdges);
+			out.writeInt(map.isMirrored() ? 1 : 0);
+			out.writeDouble(map.getOffset().getX());
+			out.writeDouble(map.getOffset().getY());
+
+			for (MapNode node : nodes) {
+				out.writeDouble(node.getLocation().getX());
+			}
+			for (MapNode node : nodes) {
+				out.writeDouble(node.getLocation().getY());
+			}
+			for (MapNode node : nodes) {
+				int types = 0;
+				for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+					if (node.isType(t)) {
+						types |= 1 << t;
+					}
+				}
+				out.writeInt(types);
+			}
+			int edge = 0;
+			for (MapNode node : nodes) {
+				out.writeInt(edge);
+				edge += node.getNeighbors().size();
+			}
+			out.writeInt(edge);
+			for (MapNode node : nodes) {
+				for (MapNode neighbor : node.getNeighbors()) {
+					Integer index = indexes.get(neighbor);
+					if (index == null) {
+						throw new SimError("Neighbor " + neighbor + " of " +
+								node + " is not in the map");
+					}
+					out.writeInt(index);
+				}
+			}
+		} finally {
+			out.close();
+		}
+
+		try {
+			Files.move(tmpFile.toPath(), cacheFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} catch (AtomicMoveNotSupportedException e) {
+			Files.move(tmpFile.toPath(), cacheFile.toPath(),
+					StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+}
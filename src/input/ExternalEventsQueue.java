@@ -7,12 +7,17 @@ package input;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
 import core.Settings;
+import core.SimError;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. The events are
+ * read by a background thread that reads the next batch of events while
+ * the current batch is being consumed.
  */
 public class ExternalEventsQueue implements EventQueue {
 	/** ExternalEvents namespace ({@value})*/
@@ -32,6 +37,15 @@ public class ExternalEventsQueue implements EventQueue {
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
 
+	/** the batch read in advance (an empty batch after the last one) */
+	private BlockingQueue<List<ExternalEvent>> prefetched;
+	private Thread prefetcher;
+	/** error that stopped the prefetching (if any) */
+	private volatile Throwable prefetchError;
+	/** batch that is queued in place of the batch that couldn't be read */
+	private final List<ExternalEvent> failedBatch =
+		new ArrayList<ExternalEvent>(0);
+
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
@@ -40,6 +54,7 @@ public class ExternalEventsQueue implements EventQueue {
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
+	 * @see BinaryEventsReader#convert(File, String)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
 		setNrofPreload(nrofPreload);
@@ -84,6 +99,15 @@ public class ExternalEventsQueue implements EventQueue {
 			this.reader = new StandardEventsReader(eventsFile);
 		}
 
+		this.prefetched = new ArrayBlockingQueue<List<ExternalEvent>>(1);
+		this.prefetcher = new Thread("Prefetch " + eventsFile.getName()) {
+			public void run() {
+				prefetch();
+			}
+		};
+		this.prefetcher.setDaemon(true);
+		this.prefetcher.start();
+
 		this.queue = readEvents(nrofPreload);
 		this.nextEventIndex = 0;
 	}
@@ -140,7 +164,8 @@ public class ExternalEventsQueue implements EventQueue {
 
 
 	/**
-	 * Read some events from the external events reader
+	 * Read some events from the external events reader. Takes the batch
+	 * the prefetching thread has read.
 	 * @param nrof Maximum number of events to read
 	 * @return A List of events that were read or an empty  list if no events
 	 * could be read
@@ -150,14 +175,60 @@ public class ExternalEventsQueue implements EventQueue {
 			return new ArrayList<ExternalEvent>(0);
 		}
 
-		List<ExternalEvent> events = reader.readEvents(nrof);
+		List<ExternalEvent> events;
+		try {
+			events = prefetched.take();
+		} catch (InterruptedException e) {
+			throw new SimError("Interrupted while reading external events");
+		}
+		if (events == failedBatch) {
+			allEventsRead = true;
+			if (prefetchError instanceof RuntimeException) {
+				throw (RuntimeException)prefetchError;
+			}
+			throw (Error)prefetchError;
+		}
 
-		if (nrof > 0 && events.size() == 0) {
-			reader.close();
+		if (events.size() == 0) {
 			allEventsRead = true;
 		}
 
 		return events;
 	}
 
+	/**
+	 * Reads batches of events in the prefetching thread until all the
+	 * events have been read or the queue is closed
+	 */
+	private void prefetch() {
+		try {
+			List<ExternalEvent> events;
+			do {
+				try {
+					events = reader.readEvents(nrofPreload);
+				} catch (RuntimeException e) {
+					prefetchError = e;
+					events = failedBatch;
+				} catch (Error e) {
+					prefetchError = e;
+					events = failedBatch;
+				}
+				if (events.size() == 0) {
+					reader.close();
+				}
+				prefetched.put(events);
+			} while (events.size() > 0);
+		} catch (InterruptedException e) {
+			reader.close(); // queue was closed
+		}
+	}
+
+	/**
+	 * Stops reading the events and closes the events file. The queue can't
+	 * be used after this.
+	 */
+	public void close() {
+		this.prefetcher.interrupt();
+	}
+
 }
@@ -4,25 +4,34 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time
- * are merged to a single update.
+ * are merged to a single update when they are requested. The requested
+ * times are kept in a binary heap, so adding a request and taking the next
+ * update take O(log n) time.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	/** initial capacity of the heap */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** the heap of requested update times */
+	private double[] heap;
+	private int size;
+	/** the times that are in the heap */
+	private Set<Double> times;
 
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.heap = new double[INITIAL_CAPACITY];
+		this.size = 0;
+		this.times = new HashSet<Double>();
 	}
 
 	/**
@@ -31,16 +40,15 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
 
-		return event;
+		double time = this.heap[0];
+		removeFirst();
+		this.times.remove(time);
+
+		return new ExternalEvent(time);
 	}
 
 	/**
@@ -49,7 +57,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return this.size == 0 ? Double.MAX_VALUE : this.heap[0];
 	}
 
 	/**
@@ -57,49 +65,59 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
+		if (!this.times.add(simTime)) {
+			return; // this update is already requested
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		if (this.size == this.heap.length) {
+			this.heap = Arrays.copyOf(this.heap, this.size * 2);
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+
+		/* sift up from the end */
+		int pos = this.size++;
+		while (pos > 0) {
+			int parent = (pos - 1) / 2;
+			if (this.heap[parent] <= simTime) {
+				break;
+			}
+			this.heap[pos] = this.heap[parent];
+			pos = parent;
 		}
+		this.heap[pos] = simTime;
 	}
 
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Removes the first (earliest) time from the heap
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+	private void removeFirst() {
+		double last = this.heap[--this.size];
+		int pos = 0;
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= this.size) {
+				break;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			if (child + 1 < this.size &&
+					this.heap[child + 1] < this.heap[child]) {
+				child++;
 			}
+			if (this.heap[child] >= last) {
+				break;
+			}
+			this.heap[pos] = this.heap[child];
+			pos = child;
 		}
-
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);
+		this.heap[pos] = last;
 	}
 
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
+		double[] sorted = Arrays.copyOf(this.heap, this.size);
+		Arrays.sort(sorted);
+		String str = "updates @ " + nextEventsTime();
 
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		for (int i = 1; i < sorted.length; i++) {
+			str += ", " + sorted[i];
 		}
 
-		return times;
+		return str;
 	}
 }
@@ -4,17 +4,17 @@
  */
 package input;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.lang.Integer;
 import java.lang.NumberFormatException;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Scanner;
-import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
 
 import core.SimError;
 
@@ -43,6 +43,8 @@ import core.SimError;
  * message ID for referring to all messages the node has in message buffer
  * (i.e., to delete all messages).
  * </P>
+ * <P> Empty lines and lines starting with '#' are skipped. The file can be
+ * gzip compressed. </P>
  */
 public class StandardEventsReader implements ExternalEventsReader {
 	/** Identifier of message creation event ({@value}) */
@@ -66,180 +68,399 @@ public class StandardEventsReader implements ExternalEventsReader {
 	/** Message identifier to use to refer to all messages ({@value}) */
 	public static final String ALL_MESSAGES_ID = "*";
 
-	//private Scanner scanner;
-	private BufferedReader reader;
+	/** size of the initial read buffer (in chars) */
+	private static final int BUFFER_SIZE = 64 * 1024;
+	/** maximum number of fields in a line that are parsed */
+	private static final int MAX_FIELDS = 8;
+	/** maximum number of digits in a number that is parsed without
+	 * Double.parseDouble (up to 15 digits are exact in a double) */
+	private static final int MAX_FAST_DIGITS = 15;
+	/** exact powers of ten for parsing decimal numbers */
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4,
+		1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15};
+
+	private Reader reader;
+	private char[] buf;
+	/** position of the next unread char and end of the data in buf */
+	private int pos;
+	private int limit;
+	private boolean eof;
+
+	/* the current line and the start and end of its fields in buf */
+	private int lineStart;
+	private int lineEnd;
+	private int nrofFields;
+	private int[] fieldStart;
+	private int[] fieldEnd;
 
 	public StandardEventsReader(File eventsFile){
 		try {
-			//this.scanner = new Scanner(eventsFile);
-			this.reader = new BufferedReader(new FileReader(eventsFile));
-		} catch (FileNotFoundException e) {
+			BufferedInputStream in = new BufferedInputStream(
+					new FileInputStream(eventsFile));
+			if (isGzipped(in)) {
+				this.reader = new InputStreamReader(new GZIPInputStream(in,
+						BUFFER_SIZE));
+			}
+			else {
+				this.reader = new InputStreamReader(in);
+			}
+		} catch (IOException e) {
 			throw new SimError(e.getMessage(),e);
 		}
+		this.buf = new char[BUFFER_SIZE];
+		this.fieldStart = new int[MAX_FIELDS];
+		this.fieldEnd = new int[MAX_FIELDS];
 	}
 
+	/**
+	 * Checks if a stream starts with the gzip magic number (without
+	 * consuming anything from the stream)
+	 */
+	private static boolean isGzipped(BufferedInputStream in)
+			throws IOException {
+		in.mark(2);
+		int b1 = in.read();
+		int b2 = in.read();
+		in.reset();
+		return b1 == (GZIPInputStream.GZIP_MAGIC & 0xff) &&
+			b2 == (GZIPInputStream.GZIP_MAGIC >> 8);
+	}
 
 	public List<ExternalEvent> readEvents(int nrof) {
 		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
 		int eventsRead = 0;
-		// skip empty and comment lines
-		Pattern skipPattern = Pattern.compile("(#.*)|(^\\s*$)");
 
-		String line;
-		try {
-			line = this.reader.readLine();
-		} catch (IOException e1) {
-			throw new SimError("Reading from external event file failed.");
-		}
-		while (eventsRead < nrof && line != null) {
-			Scanner lineScan = new Scanner(line);
-			if (skipPattern.matcher(line).matches()) {
-				// skip empty and comment lines
-				try {
-					line = this.reader.readLine();
-				} catch (IOException e) {
-					throw new SimError("Reading from external event file " +
-							"failed.");
-				}
-				continue;
+		while (eventsRead < nrof && nextLine()) {
+			if (nrofFields == 0 || buf[lineStart] == '#') {
+				continue; // skip empty and comment lines
 			}
 
-			double time;
-			String action;
-			String msgId;
-			int hostAddr;
-			int host2Addr;
-
 			try {
-				time = lineScan.nextDouble();
-				action = lineScan.next();
-
-				if (action.equals(DROP)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, true));
-				}
-				else if (action.equals(REMOVE)) {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-					events.add(new MessageDeleteEvent(hostAddr, msgId,
-							time, false));
+				events.add(parseEvent());
+				eventsRead++;
+			} catch (Exception e) {
+				throw new SimError("Can't parse external event " +
+						(eventsRead+1) + " from '" +
+						new String(buf, lineStart, lineEnd - lineStart) + "'",
+						e);
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Creates the event of the current line
+	 * @return The event
+	 */
+	private ExternalEvent parseEvent() throws Exception {
+		double time = parseDouble(0);
+		String msgId;
+		int hostAddr;
+		int host2Addr;
+
+		if (fieldEquals(1, DROP)) {
+			msgId = field(2);
+			hostAddr = getHostAddress(3);
+			return new MessageDeleteEvent(hostAddr, msgId, time, true);
+		}
+		else if (fieldEquals(1, REMOVE)) {
+			msgId = field(2);
+			hostAddr = getHostAddress(3);
+			return new MessageDeleteEvent(hostAddr, msgId, time, false);
+		}
+		else if (fieldEquals(1, CONNECTION)) {
+			boolean isUp;
+			hostAddr = getHostAddress(2);
+			host2Addr = getHostAddress(3);
+
+			String interfaceId = null;
+			if (nrofFields > 5) {
+				interfaceId = field(5);
+			}
+
+			if (fieldEqualsIgnoreCase(4, CONNECTION_UP)) {
+				isUp = true;
+			}
+			else if (fieldEqualsIgnoreCase(4, CONNECTION_DOWN)) {
+				isUp = false;
+			}
+			else {
+				throw new SimError("Unknown up/down value '" +
+						field(4) + "'");
+			}
+
+			return new ConnectionEvent(hostAddr, host2Addr, interfaceId,
+					isUp, time);
+		}
+
+		msgId = field(2);
+		hostAddr = getHostAddress(3);
+		host2Addr = getHostAddress(4);
+
+		if (fieldEquals(1, CREATE)){
+			if (nrofFields <= 5) {
+				throw new Exception("Invalid number of columns for CREATE " +
+						"event");
+			}
+			int size = parseSize(5);
+			int respSize = 0;
+			if (nrofFields > 6) {
+				respSize = parseSize(6);
+			}
+			return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+					respSize, time);
+		}
+
+		int stage = -1;
+		if (fieldEquals(1, SEND)) {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (fieldEquals(1, DELIVERED)) {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (fieldEquals(1, ABORT)) {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		else {
+			throw new SimError("Unknown action '" + field(1) +
+					"' in external events");
+		}
+		return new MessageRelayEvent(hostAddr, host2Addr, msgId, time, stage);
+	}
+
+	/**
+	 * Reads the next line to the buffer and splits it to fields
+	 * @return false if there are no more lines
+	 */
+	private boolean nextLine() {
+		int end = findLineEnd();
+		if (end < 0) {
+			return false;
+		}
+		lineStart = pos;
+		lineEnd = end;
+		pos = end < limit ? end + 1 : end; // skip the newline
+
+		nrofFields = 0;
+		int i = lineStart;
+		while (i < lineEnd) {
+			while (i < lineEnd && Character.isWhitespace(buf[i])) {
+				i++;
+			}
+			if (i == lineEnd) {
+				break;
+			}
+			int start = i;
+			while (i < lineEnd && !Character.isWhitespace(buf[i])) {
+				i++;
+			}
+			if (nrofFields < MAX_FIELDS) {
+				fieldStart[nrofFields] = start;
+				fieldEnd[nrofFields] = i;
+			}
+			nrofFields++;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the end of the next line, reading more data to the buffer if
+	 * needed
+	 * @return Index of the newline (or end of data) in the buffer, or -1 if
+	 * there is no more data
+	 */
+	private int findLineEnd() {
+		int i = pos;
+		while (true) {
+			while (i < limit) {
+				if (buf[i] == '\n') {
+					return i;
 				}
-				else if (action.equals(CONNECTION)) {
-					String connEventType;
-					boolean isUp;
-					hostAddr = getHostAddress(lineScan.next());
-					host2Addr = getHostAddress(lineScan.next());
-					connEventType = lineScan.next();
-
-					String interfaceId = null;
-					if (lineScan.hasNext()) {
-						interfaceId = lineScan.next();
-					}
-
-					if (connEventType.equalsIgnoreCase(CONNECTION_UP)) {
-						isUp = true;
-					}
-					else if (connEventType.equalsIgnoreCase(CONNECTION_DOWN)) {
-						isUp = false;
-					}
-					else {
-						throw new SimError("Unknown up/down value '" +
-								connEventType + "'");
-					}
-
-					ConnectionEvent ce = new ConnectionEvent(hostAddr,
-							host2Addr, interfaceId, isUp, time);
-
-					events.add(ce);
+				i++;
+			}
+			if (eof) {
+				return pos < limit ? limit : -1;
+			}
+			/* move the partial line to the start and fill the rest */
+			int len = limit - pos;
+			if (len == buf.length) {
+				char[] bigger = new char[buf.length * 2];
+				System.arraycopy(buf, pos, bigger, 0, len);
+				buf = bigger;
+			}
+			else {
+				System.arraycopy(buf, pos, buf, 0, len);
+			}
+			i -= pos;
+			pos = 0;
+			limit = len;
+			try {
+				int n = reader.read(buf, limit, buf.length - limit);
+				if (n < 0) {
+					eof = true;
 				}
 				else {
-					msgId = lineScan.next();
-					hostAddr = getHostAddress(lineScan.next());
-
-					host2Addr = getHostAddress(lineScan.next());
-
-					if (action.equals(CREATE)){
-						int size = 0;
-
-						if (lineScan.hasNextInt()){
-							size = lineScan.nextInt();
-						}
-						else if (lineScan.hasNext()){
-							size = convertToInteger(lineScan.next());
-						}else{
-							throw new Exception("Invalid number of columns for CREATE event");
-						}
-
-						int respSize = 0;
-						if (lineScan.hasNextInt()) {
-							respSize = lineScan.nextInt();
-						}
-						else if(lineScan.hasNext()) {
-							respSize = convertToInteger(lineScan.next());
-						}
-						events.add(new MessageCreateEvent(hostAddr, host2Addr,
-								msgId, size, respSize, time));
-					}
-					else {
-						int stage = -1;
-						if (action.equals(SEND)) {
-							stage = MessageRelayEvent.SENDING;
-						}
-						else if (action.equals(DELIVERED)) {
-							stage = MessageRelayEvent.TRANSFERRED;
-						}
-						else if (action.equals(ABORT)) {
-							stage = MessageRelayEvent.ABORTED;
-						}
-						else {
-							throw new SimError("Unknown action '" + action +
-								"' in external events");
-						}
-						events.add(new MessageRelayEvent(hostAddr, host2Addr,
-								msgId, time, stage));
-					}
-				}
-				// discard the newline in the end
-				if (lineScan.hasNextLine()) {
-					lineScan.nextLine(); // TODO: test
+					limit += n;
 				}
-				eventsRead++;
-				if (eventsRead < nrof) {
-					line = this.reader.readLine();
+			} catch (IOException e) {
+				throw new SimError("Reading from external event file " +
+						"failed.", e);
+			}
+		}
+	}
+
+	/**
+	 * Returns a field of the current line as a string
+	 * @throws SimError if the line doesn't have the field
+	 */
+	private String field(int index) {
+		checkField(index);
+		return new String(buf, fieldStart[index],
+				fieldEnd[index] - fieldStart[index]);
+	}
+
+	private void checkField(int index) {
+		if (index >= nrofFields) {
+			throw new SimError("Missing field " + (index + 1));
+		}
+	}
+
+	private boolean fieldEquals(int index, String value) {
+		checkField(index);
+		int start = fieldStart[index];
+		if (fieldEnd[index] - start != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (buf[start + i] != value.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean fieldEqualsIgnoreCase(int index, String value) {
+		checkField(index);
+		int start = fieldStart[index];
+		if (fieldEnd[index] - start != value.length()) {
+			return false;
+		}
+		for (int i = 0; i < value.length(); i++) {
+			if (Character.toLowerCase(buf[start + i]) !=
+					Character.toLowerCase(value.charAt(i))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses a double from a field. Plain decimal numbers with up to
+	 * {@value #MAX_FAST_DIGITS} digits are parsed directly from the buffer
+	 * (the result is exact, i.e., the same as with Double.parseDouble).
+	 */
+	private double parseDouble(int index) {
+		checkField(index);
+		int i = fieldStart[index];
+		int end = fieldEnd[index];
+		boolean negative = buf[i] == '-';
+		if (negative || buf[i] == '+') {
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1; // -1 until the decimal point is found
+		for (; i < end; i++) {
+			char c = buf[i];
+			if (c >= '0' && c <= '9') {
+				mantissa = mantissa * 10 + (c - '0');
+				digits++;
+				if (decimals >= 0) {
+					decimals++;
 				}
-			} catch (Exception e) {
-				e.printStackTrace();
-				throw new SimError("Can't parse external event " +
-						(eventsRead+1) + " from '" + line + "'", e);
 			}
+			else if (c == '.' && decimals < 0) {
+				decimals = 0;
+			}
+			else {
+				digits = MAX_FAST_DIGITS + 1; // e.g., exponent: not plain
+				break;
+			}
+		}
+		if (digits == 0 || digits > MAX_FAST_DIGITS) {
+			return Double.parseDouble(field(index));
 		}
+		double value = mantissa;
+		if (decimals > 0) {
+			value /= POWERS_OF_TEN[decimals];
+		}
+		return negative ? -value : value;
+	}
 
-		return events;
+	/**
+	 * Parses the digits of a field (between start and end) to an int
+	 * @throws NumberFormatException if the value doesn't fit in an int
+	 */
+	private int parseDigits(int index, int start, int end) {
+		long value = 0;
+		for (int i = start; i < end; i++) {
+			value = value * 10 + (buf[i] - '0');
+			if (value > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Too large number '" +
+						field(index) + "'");
+			}
+		}
+		return (int)value;
+	}
+
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+
+	/**
+	 * Parses a size field, i.e., an integer with an optional unit suffix
+	 */
+	private int parseSize(int index) {
+		int start = fieldStart[index];
+		int end = fieldEnd[index];
+		boolean plain = true;
+		for (int i = start; i < end; i++) {
+			if (!isDigit(buf[i])) {
+				plain = false;
+				break;
+			}
+		}
+		if (plain) {
+			return parseDigits(index, start, end);
+		}
+		return convertToInteger(field(index));
 	}
 
 	/**
-	 * Parses a host address from a hostId string (the numeric part after
+	 * Parses a host address from a hostId field (the numeric part after
 	 * optional non-numeric part).
-	 * @param hostId The id to parse the address from
+	 * @param index Index of the field to parse the address from
 	 * @return The address
 	 * @throws SimError if no address could be parsed from the id
 	 */
-	private int getHostAddress(String hostId) {
-		String addressPart = "";
-		if (hostId.matches("^\\d+$")) {
-			addressPart = hostId; // host id is only the address
+	private int getHostAddress(int index) {
+		checkField(index);
+		int start = fieldStart[index];
+		int end = fieldEnd[index];
+		int digitsStart = end;
+		while (digitsStart > start && isDigit(buf[digitsStart - 1])) {
+			digitsStart--;
 		}
-		else if (hostId.matches("^\\D+\\d+$")) {
-			String [] parts = hostId.split("\\D");
-			addressPart = parts[parts.length-1]; // last occurence is the addr
+		boolean valid = digitsStart < end;
+		for (int i = start; valid && i < digitsStart; i++) {
+			valid = !isDigit(buf[i]);
 		}
-		else {
-			throw new SimError("Invalid host ID '" + hostId + "'");
+		if (!valid) {
+			throw new SimError("Invalid host ID '" + field(index) + "'");
 		}
 
-		return Integer.parseInt(addressPart);
+		return parseDigits(index, digitsStart, end);
 	}
 
 	public void close() {
@@ -2,6 +2,9 @@ package input;
 
 import java.util.*;
 
+import core.Settings;
+import core.SettingsError;
+
 /**
  * Created by Matthias on 04.01.2016.
  */
@@ -10,26 +13,41 @@ import java.util.*;
     //300KB - 3MB size (evenly distributed)
     //Zipf distribution-based popularity
     //- Pick Zipf parameters from a recent study
+    //
+    //The catalog size, the Zipf exponent and the size range can be changed
+    //in the "WebPages" namespace of the settings (see the *_S constants).
+    //Sizes and the distribution function are kept in primitive arrays and a
+    //page is drawn with a binary search, so that also catalogs with millions
+    //of pages can be used. With the default values, the same pages and sizes
+    //are drawn as with the old linear search.
 
 public class WebPages {
+    /** namespace of the web page settings ({@value}) */
+    public static final String WEB_PAGES_NS = "WebPages";
+    /** number of web pages in the catalog -setting id ({@value}).
+     * Integer, default 10000 */
+    public static final String NROF_PAGES_S = "nrofPages";
+    /** exponent of the Zipf popularity distribution -setting id ({@value}).
+     * Non-negative double, default 1 */
+    public static final String ZIPF_EXPONENT_S = "zipfExponent";
+    /** smallest and largest page size in bytes -setting id ({@value}).
+     * The sizes are evenly distributed within the range.
+     * Two comma separated integers, default 300000,3000000 */
+    public static final String SIZE_RANGE_S = "sizeRange";
+
     private static WebPages singletonWebPages = null;
-    private HashMap<Integer,Double> webPages = new HashMap();       //Webpage Size
-    private HashMap<Integer,Double> webPagesZipf = new HashMap();   //Webpage Distribution
+    private int[] webPages;         //Webpage Size, index = webpage number
+    private double[] webPagesZipf;  //Webpage Distribution, index = rank 1..N
     Random rand = new Random();
 
     public WebPages(){
 
         rand.setSeed(42);
 
-        webPages = evenlyDistributedSizes(webPages);
-        webPages = mixWebPages(webPages);
-        webPagesZipf = calculateZipfValues(webPagesZipf);
-
-        /*double randValue = 0;
-        for(int i = 1; i <= 10000; i++){
-            //randValue = rand.nextDouble();
-            System.out.println(getRandomWebPageSize());
-        }*/
+        readSettings();
+        webPages = evenlyDistributedSizes();
+        mixWebPages(webPages);
+        webPagesZipf = calculateZipfValues();
     }
     public static WebPages getInstance(){
         if(singletonWebPages == null){
@@ -41,38 +59,71 @@ public class WebPages {
     private int numberOfWebpages = 10000;
     private int minSize = 300000;   //300KB
     private int maxSize = 3000000;  //3MB
-    private HashMap<Integer,Double> evenlyDistributedSizes(HashMap<Integer,Double> webPages){
+
+    private void readSettings(){
+        Settings settings = new Settings(WEB_PAGES_NS);
+
+        if(settings.contains(NROF_PAGES_S)){
+            numberOfWebpages = settings.getInt(NROF_PAGES_S);
+            if(numberOfWebpages < 1){
+                throw new SettingsError("Invalid number of web pages: " +
+                        numberOfWebpages);
+            }
+        }
+        if(settings.contains(ZIPF_EXPONENT_S)){
+            s = settings.getDouble(ZIPF_EXPONENT_S);
+            if(s < 0 || Double.isNaN(s) || Double.isInfinite(s)){
+                throw new SettingsError("Invalid Zipf exponent: " + s);
+            }
+        }
+        if(settings.contains(SIZE_RANGE_S)){
+            int[] range = settings.getCsvInts(SIZE_RANGE_S, 2);
+            minSize = range[0];
+            maxSize = range[1];
+            if(minSize < 0 || maxSize < minSize){
+                throw new SettingsError("Invalid web page size range: " +
+                        minSize + "," + maxSize);
+            }
+        }
+    }
+
+    private int[] evenlyDistributedSizes(){
+        //one extra slot: the page numbers run from 1 to N (see getWebPage)
+        int[] sizes = new int[numberOfWebpages + 1];
 
         //difference per Webpage
         double diff1 = maxSize - minSize;
         double diff2 = numberOfWebpages-1;
-        double diff = diff1/diff2;
+        double diff = numberOfWebpages > 1 ? diff1/diff2 : 0;
 
         for(int i = 0; i < numberOfWebpages; i++){
-            webPages.put(i,(i*diff+minSize));
+            sizes[i] = (int) (i*diff+minSize);
         }
-        return webPages;
+        return sizes;
     }
 
-    private HashMap<Integer,Double> mixWebPages(HashMap<Integer,Double> webPages){
-        HashMap<Integer,Double> newWebPages = new HashMap();
-
-        ArrayList<Double> cd = new ArrayList<Double>(webPages.values());
+    private void mixWebPages(int[] sizes){
+        //same swaps as Collections.shuffle does for a list of the sizes
         long seed = 2949292;//System.nanoTime();
-        Collections.shuffle(cd, new Random(seed));
-
-        for(int i = 0; i<webPages.size();i++) {
-            newWebPages.put(i,cd.get(i));
+        Random mixRandom = new Random(seed);
+        for(int i = numberOfWebpages; i > 1; i--){
+            int j = mixRandom.nextInt(i);
+            int tmp = sizes[i-1];
+            sizes[i-1] = sizes[j];
+            sizes[j] = tmp;
         }
-        webPages = newWebPages;
-        return webPages;
+        //sizes were numbered from 0 but the pages from 1: the last page gets
+        //the size nobody else uses
+        sizes[numberOfWebpages] = sizes[0];
     }
 
     //private int N = numberOfWebpages
-    private int s = 1; //Value of exponent characterizing the distr
-    private double sum1toN = 0;
+    private double s = 1; //Value of exponent characterizing the distr
     private double sumToNormalize;
-    private HashMap <Integer,Double> calculateZipfValues(HashMap <Integer,Double> webPagesZipf){
+    private double[] calculateZipfValues(){
+        //f(k;s,N) = (1/k^s)/(Sum1toN(1/n^s))
+        double[] cdf = new double[numberOfWebpages + 1];
+
         //Calculate absolute values
         for(int i = 1; i <= numberOfWebpages; i++){
             sumToNormalize += zipf(i);
@@ -82,64 +133,50 @@ public class WebPages {
         double sumOfPriorValues = 0;
         for(int i = 1; i <= numberOfWebpages; i++){
             sumOfPriorValues += zipf(i)/sumToNormalize;
-            webPagesZipf.put(i,sumOfPriorValues);
+            cdf[i] = sumOfPriorValues;
         }
-        return webPagesZipf;
+        return cdf;
     }
 
 
     private double zipf(int rank_k){
-        //f(k;s,N) = (1/k^s)/(Sum1toN(1/n^s))
-        if(sum1toN == 0) {
-            for (int i = 1; i <= numberOfWebpages; i++) {
-                sum1toN = (1 / i ^ s);
-            }
-        }
-        double result = 1/Math.pow(rank_k,s)/sum1toN;
-        return result;
+        return 1/Math.pow(rank_k,s);
     }
 
-    /*public double getRandomWebPageSize (){
-        double randValue = 0;
-        int j = 0;
-        randValue = rand.nextDouble();
-        for(j = 1; j<= numberOfWebpages; j++){
-            if(randValue < webPagesZipf.get(j)){
-                break;
+    /**
+     * Returns the rank of the first page whose distribution function value
+     * is larger than the given value (binary search)
+     */
+    private int findRank(double randValue){
+        int low = 1;
+        int high = numberOfWebpages;
+        while(low < high){
+            int mid = (low + high) >>> 1;
+            if(randValue < webPagesZipf[mid]){
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
-        return webPages.get(j);
-    }*/
-    public int getRandomWebPageNumber (){
+        //rounding may leave the last value just below 1; it is the last page
+        return low;
+    }
 
-        double randValue = 0;
-        int j = 0;
-        randValue = rand.nextDouble();
-        for(j = 1; j<= numberOfWebpages; j++){
-            if(randValue < webPagesZipf.get(j)){
-                break;
-            }
-        }
-        return j;
+    public int getRandomWebPageNumber (){
+        return findRank(rand.nextDouble());
     }
 
     public WebPage getRandomWebPage (){
-
-        double randValue = 0;
-        int j = 0;
-        randValue = rand.nextDouble();
-        for(j = 1; j<= numberOfWebpages; j++){
-            if(randValue < webPagesZipf.get(j)){
-                break;
-            }
-        }
-        double size = webPages.get(j);
-        WebPage webPage = new WebPage(j, (int) size );
+        int j = findRank(rand.nextDouble());
+        WebPage webPage = new WebPage(j, getWebPage(j));
         return webPage;
     }
 
     public int getWebPage(int webpageNumber) {
-        double size = webPages.get(webpageNumber);
-        return (int) size;
+        return webPages[webpageNumber];
+    }
+
+    public int getNumberOfWebPages() {
+        return numberOfWebpages;
     }
 }
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package interfaces;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import movement.MovementModel;
+
+import core.DTNSim;
+import core.NetworkInterface;
+import core.Settings;
+
+/**
+ * <P>
+ * Connectivity optimizer for interfaces whose radio range covers the whole
+ * world (e.g., cellular base stations). Since every interface is always
+ * within the range of every other interface, there is no point in keeping
+ * track of the locations: all registered interfaces are "near".</P>
+ *
+ * <P>A {@link ConnectivityGrid} for such a range degenerates into a single
+ * cell, but still has to look up the cell and copy its contents on every
+ * query. This optimizer returns a read-only view of the registered interfaces
+ * instead and does nothing on location updates. The interfaces are returned
+ * in the order they were added, i.e., in the same order a single-cell grid
+ * would return them.</P>
+ *
+ * <P>The optimizer is correct for any range (the interfaces still check the
+ * actual distance before connecting), but only efficient when the range
+ * covers the world (see {@link #coversWorld(double)}).</P>
+ */
+public class AlwaysInRangeOptimizer extends ConnectivityOptimizer {
+
+	private static HashMap<Integer, AlwaysInRangeOptimizer> optimizers;
+	/** length of the world's diagonal */
+	private static double worldDiagonal;
+
+	/** registered interfaces in the order they were added */
+	private ArrayList<NetworkInterface> interfaces;
+	/** for checking if an interface has been added already */
+	private HashSet<NetworkInterface> added;
+	/** read-only view of the interfaces that is given out to the callers */
+	private Collection<NetworkInterface> interfacesView;
+
+	static {
+		DTNSim.registerForReset(
+				AlwaysInRangeOptimizer.class.getCanonicalName());
+		reset();
+	}
+
+	public static void reset() {
+		optimizers = new HashMap<Integer, AlwaysInRangeOptimizer>();
+
+		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
+		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
+		worldDiagonal = Math.sqrt(1.0 * worldSize[0] * worldSize[0] +
+				1.0 * worldSize[1] * worldSize[1]);
+	}
+
+	private AlwaysInRangeOptimizer() {
+		this.interfaces = new ArrayList<NetworkInterface>();
+		this.added = new HashSet<NetworkInterface>();
+		this.interfacesView = Collections.unmodifiableList(this.interfaces);
+	}
+
+	/**
+	 * Returns an always-in-range optimizer object based on a hash value
+	 * @param key A hash value that separates different interfaces from each
+	 * other
+	 * @return The optimizer object for a specific interface
+	 */
+	public static AlwaysInRangeOptimizer AlwaysInRangeOptimizerFactory(
+			int key) {
+		AlwaysInRangeOptimizer optimizer = optimizers.get(key);
+		if (optimizer == null) {
+			optimizer = new AlwaysInRangeOptimizer();
+			optimizers.put(key, optimizer);
+		}
+		return optimizer;
+	}
+
+	/**
+	 * Returns true if the given radio range reaches from any location of the
+	 * world to any other location (i.e., the range is at least as long as
+	 * the world's diagonal)
+	 * @param range The radio range
+	 * @return True if the range covers the whole world
+	 */
+	public static boolean coversWorld(double range) {
+		return range >= worldDiagonal;
+	}
+
+	/**
+	 * Adds a network interface to the optimizer (unless it is already
+	 * present)
+	 * @param ni The new network interface
+	 */
+	public void addInterface(NetworkInterface ni) {
+		if (this.added.add(ni)) {
+			this.interfaces.add(ni);
+			interfacesChanged();
+		}
+	}
+
+	/**
+	 * Adds interfaces to the optimizer
+	 * @param interfaces Collection of interfaces to add
+	 */
+	public void addInterfaces(Collection<NetworkInterface> interfaces) {
+		for (NetworkInterface n : interfaces) {
+			addInterface(n);
+		}
+	}
+
+	/**
+	 * Does nothing since the location of the interfaces doesn't matter
+	 * @param ni The interface whose location changed
+	 */
+	public void updateLocation(NetworkInterface ni) {
+		/* all interfaces are always near each other */
+	}
+
+	/**
+	 * Returns all interfaces of the optimizer (if the given interface is
+	 * registered to it)
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @return Read-only view of all the interfaces
+	 */
+	public Collection<NetworkInterface> getNearInterfaces(
+			NetworkInterface ni) {
+		if (!this.added.contains(ni)) {
+			return Collections.emptyList();
+		}
+		return this.interfacesView;
+	}
+
+	/**
+	 * Appends all interfaces of the optimizer to the given list (if the
+	 * given interface is registered to it)
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @param result The list where the interfaces are added
+	 */
+	@Override
+	public void getNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> result) {
+		if (!this.added.contains(ni)) {
+			return;
+		}
+		for (int i=0, n=this.interfaces.size(); i < n; i++) {
+			result.add(this.interfaces.get(i));
+		}
+	}
+
+	/**
+	 * Returns infinity since all the interfaces are near
+	 * @param ni The interface whose near interfaces are queried
+	 * @return Positive infinity
+	 */
+	@Override
+	public double getNearDistance(NetworkInterface ni) {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns all interfaces that use the same technology and channel
+	 */
+	public Collection<NetworkInterface> getAllInterfaces() {
+		return this.interfacesView;
+	}
+
+	/**
+	 * Returns a string representation of the optimizer
+	 * @return a string representation of the optimizer
+	 */
+	public String toString() {
+		return getClass().getSimpleName() + " with " +
+			this.interfaces.size() + " interfaces";
+	}
+}
@@ -7,6 +7,8 @@ package interfaces;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -15,6 +17,7 @@ import core.DTNSim;
 import core.NetworkInterface;
 import core.Settings;
 import core.SettingsError;
+import core.SimClock;
 import core.World;
 
 /**
@@ -56,6 +59,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 
 	private GridCell[][] cells;
 	private HashMap<NetworkInterface, GridCell> ginterfaces;
+	/** sim times when the locations of the interfaces were last updated,
+	 * the least recently updated interface first */
+	private LinkedHashMap<NetworkInterface, Double> locationTimes;
 	private int cellSize;
 	private int rows;
 	private int cols;
@@ -110,6 +116,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			}
 		}
 		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		locationTimes = new LinkedHashMap<NetworkInterface, Double>();
 	}
 
 	/**
@@ -121,12 +128,33 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public static ConnectivityGrid ConnectivityGridFactory(int key,
 			double maxRange) {
+		return ConnectivityGridFactory(key, maxRange, cellSizeMultiplier);
+	}
+
+	/**
+	 * Returns a connectivity grid object based on a hash value. Allows using
+	 * a different cell size multiplier than the one defined in the
+	 * optimization settings so that interface types with very different
+	 * ranges can use grids of different resolution.
+	 * @param key A hash value that separates different interfaces from each other
+	 * @param maxRange Maximum range used by the radio technology using this
+	 *  connectivity grid.
+	 * @param cellSizeMult Cell size multiplier for the grid (used only if
+	 * the grid is created by this call)
+	 * @return The connectivity grid object for a specific interface
+	 */
+	public static ConnectivityGrid ConnectivityGridFactory(int key,
+			double maxRange, int cellSizeMult) {
 		if (gridobjects.containsKey((Integer)key)) {
 			return (ConnectivityGrid)gridobjects.get((Integer)key);
 		} else {
+			if (cellSizeMult < 1) {
+				throw new SettingsError("Too small value (" + cellSizeMult +
+						") for " + CELL_SIZE_MULT_S);
+			}
 			ConnectivityGrid newgrid =
 				new ConnectivityGrid((int)Math.ceil(maxRange *
-						cellSizeMultiplier));
+						cellSizeMult));
 			gridobjects.put((Integer)key,newgrid);
 			return newgrid;
 		}
@@ -140,6 +168,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		GridCell c = cellFromCoord(ni.getLocation());
 		c.addInterface(ni);
 		ginterfaces.put(ni,c);
+		locationTimes.remove(ni);
+		locationTimes.put(ni, SimClock.getTime());
+		interfacesChanged();
 	}
 
 	/**
@@ -152,6 +183,8 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			c.removeInterface(ni);
 		}
 		ginterfaces.remove(ni);
+		locationTimes.remove(ni);
+		interfacesChanged();
 	}
 
 	/**
@@ -176,33 +209,8 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			oldCell.moveInterface(ni, newCell);
 			ginterfaces.put(ni,newCell);
 		}
-	}
-
-	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
-	 * @param c The coordinates
-	 * @return Array of neighboring cells
-	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
-		// +1 due empty cells on both sides of the matrix
-		int row = (int)(c.getY()/cellSize) + 1;
-		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
-	}
-
-	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
-	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+		locationTimes.remove(ni);
+		locationTimes.put(ni, SimClock.getTime());
 	}
 
 	/**
@@ -237,20 +245,78 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni) {
 		ArrayList<NetworkInterface> niList = new ArrayList<NetworkInterface>();
-		GridCell loc = (GridCell)ginterfaces.get(ni);
+		getNearInterfaces(ni, niList);
+		return niList;
+	}
 
-		if (loc != null) {
-			GridCell[] neighbors =
-				getNeighborCellsByCoord(ni.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				niList.addAll(neighbors[i].getInterfaces());
-			}
+	/**
+	 * Appends all interfaces that are "near" (i.e., in the cell of the given
+	 * interface or in the neighboring cells) to the given list. The cells
+	 * are visited row by row starting from the upper left neighbor cell.
+	 * @param ni The interface whose neighboring interfaces are returned
+	 * @param result The list where the interfaces are added
+	 */
+	@Override
+	public void getNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> result) {
+		if (!ginterfaces.containsKey(ni)) {
+			return;
 		}
 
-		return niList;
+		Coord c = ni.getLocation();
+		// +1 due empty cells on both sides of the matrix
+		int row = (int)(c.getY()/cellSize) + 1;
+		int col = (int)(c.getX()/cellSize) + 1;
+
+		for (int i = row-1; i <= row+1; i++) {
+			for (int j = col-1; j <= col+1; j++) {
+				ArrayList<NetworkInterface> cellInterfaces =
+					cells[i][j].getInterfaces();
+				for (int k=0, n=cellInterfaces.size(); k < n; k++) {
+					result.add(cellInterfaces.get(k));
+				}
+			}
+		}
 	}
 
 
+	/**
+	 * Returns the distance from the interface's location to the edge of its
+	 * near cells (see {@link #getNearInterfaces(NetworkInterface, List)}),
+	 * reduced by how far the interfaces may have moved after the least
+	 * recently updated location. None of the interfaces in the other cells
+	 * can be closer than that.
+	 * @param ni The interface whose near interfaces are queried
+	 * @return The distance (at least 0)
+	 */
+	@Override
+	public double getNearDistance(NetworkInterface ni) {
+		if (!ginterfaces.containsKey(ni)) {
+			return 0;
+		}
+
+		Coord c = ni.getLocation();
+		int row = (int)(c.getY()/cellSize);
+		int col = (int)(c.getX()/cellSize);
+		double distance = Math.min(
+				Math.min(c.getY() - (row-1)*cellSize,
+						(row+2)*cellSize - c.getY()),
+				Math.min(c.getX() - (col-1)*cellSize,
+						(col+2)*cellSize - c.getX()));
+
+		double sinceUpdate = SimClock.getTime() -
+			locationTimes.values().iterator().next();
+		if (sinceUpdate > 0) {
+			double speed = getSpeedLimit();
+			if (speed == Double.POSITIVE_INFINITY) {
+				return 0;
+			}
+			distance -= speed * sinceUpdate;
+		}
+
+		return Math.max(distance, 0);
+	}
+
 	/**
 	 * Returns a string representation of the ConnectivityCells object
 	 * @return a string representation of the ConnectivityCells object
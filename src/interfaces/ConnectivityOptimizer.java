@@ -5,6 +5,7 @@
 package interfaces;
 
 import java.util.Collection;
+import java.util.List;
 
 import core.NetworkInterface;
 
@@ -13,6 +14,9 @@ import core.NetworkInterface;
  * with network interfaces of a specific range
  */
 abstract public class ConnectivityOptimizer {
+	/** highest speed limit of the hosts of the interfaces or NaN if it
+	 * hasn't been computed after the interfaces last changed */
+	private double speedLimit = Double.NaN;
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -40,6 +44,60 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Finds all network interfaces that might be located so that they can be
+	 * connected with the network interface and appends them to the given
+	 * list. Unlike {@link #getNearInterfaces(NetworkInterface)}, this
+	 * doesn't need to create a new collection for every query, so callers
+	 * that query often should reuse the same list. Subclasses should
+	 * override the default implementation, which just copies the result of
+	 * {@link #getNearInterfaces(NetworkInterface)}.
+	 *
+	 * @param ni network interface that needs to be connected
+	 * @param result The list where the near interfaces are added
+	 */
+	public void getNearInterfaces(NetworkInterface ni,
+			List<NetworkInterface> result) {
+		result.addAll(getNearInterfaces(ni));
+	}
+
+	/**
+	 * Returns a distance within which there are no other interfaces than
+	 * the ones {@link #getNearInterfaces(NetworkInterface, List)} returns for
+	 * the given interface, i.e., all the other interfaces are farther away.
+	 * The default implementation makes no guarantees and returns 0.
+	 *
+	 * @param ni The interface whose near interfaces are queried
+	 * @return The distance
+	 */
+	public double getNearDistance(NetworkInterface ni) {
+		return 0;
+	}
+
+	/**
+	 * Returns the highest speed limit of the hosts of the interfaces (see
+	 * {@link core.DTNHost#getSpeedLimit()}). The limit is computed when it's
+	 * needed the first time after the interfaces have changed.
+	 * @return The highest speed limit
+	 */
+	public double getSpeedLimit() {
+		if (Double.isNaN(this.speedLimit)) {
+			double limit = 0;
+			for (NetworkInterface ni : getAllInterfaces()) {
+				limit = Math.max(limit, ni.getHost().getSpeedLimit());
+			}
+			this.speedLimit = limit;
+		}
+		return this.speedLimit;
+	}
+
+	/**
+	 * Must be called by the subclasses when interfaces are added or removed
+	 */
+	protected void interfacesChanged() {
+		this.speedLimit = Double.NaN;
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -4,7 +4,7 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import java.util.List;
 import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
@@ -95,10 +95,9 @@ public class DistanceCapacityInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		List<NetworkInterface> interfaces = getNearInterfaces();
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			connect(interfaces.get(i));
 		}
 
 		/* update all connections */
@@ -107,6 +106,15 @@ public class DistanceCapacityInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Returns false: the connection speeds are updated in the interface
+	 * update, which is not run when a contact trace is replayed
+	 */
+	@Override
+	public boolean isReplayable() {
+		return false;
+	}
+
 	/**
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active
@@ -4,7 +4,7 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import java.util.List;
 
 import core.Connection;
 import core.NetworkInterface;
@@ -98,10 +98,10 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces)
-			connect(i);
+		List<NetworkInterface> interfaces = getNearInterfaces();
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			connect(interfaces.get(i));
+		}
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
@@ -133,6 +133,15 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Returns false: the connection speeds are updated in the interface
+	 * update, which is not run when a contact trace is replayed
+	 */
+	@Override
+	public boolean isReplayable() {
+		return false;
+	}
+
 	/**
 	 * Creates a connection to another host. This method does not do any checks
 	 * on whether the other node is in range or active
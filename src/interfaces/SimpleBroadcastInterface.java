@@ -4,7 +4,7 @@
  */
 package interfaces;
 
-import java.util.Collection;
+import java.util.List;
 
 import core.CBRConnection;
 import core.Connection;
@@ -73,6 +73,9 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 
 		// First break the old ones
 		optimizer.updateLocation(this);
+		if (isQuiet()) {
+			return; /* none of the connections can change yet */
+		}
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
 			NetworkInterface anotherInterface = con.getOtherInterface(this);
@@ -89,11 +92,11 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		List<NetworkInterface> interfaces = getNearInterfaces();
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			connect(interfaces.get(i));
 		}
+		predictQuietTime();
 	}
 
 	/**
@@ -9,7 +9,7 @@ import core.Connection;
 import core.NetworkInterface;
 import core.Settings;
 
-import java.util.Collection;
+import java.util.List;
 
 /**
  * A simple Network Interface that provides a constant bit-rate service, where
@@ -53,7 +53,7 @@ public class SimpleBroadcastInterface_Modified extends NetworkInterface {
 			if (conSpeed > this.transmitSpeed) {
 				conSpeed = this.transmitSpeed;
 			}
-			if(!this.host.getName().equals("z0")){
+			if(!createsConnections()){
 				return;
 			}
 			Connection con = new CBRConnection(this.host, this,
@@ -62,6 +62,15 @@ public class SimpleBroadcastInterface_Modified extends NetworkInterface {
 		}
 	}
 
+	/**
+	 * Only the host "z0" creates connections; the others just accept them
+	 * @return True if this interface belongs to the host "z0"
+	 */
+	@Override
+	protected boolean createsConnections() {
+		return this.host.getName().equals("z0");
+	}
+
 	/**
 	 * Updates the state of current connections (i.e. tears down connections
 	 * that are out of range and creates new ones).
@@ -73,6 +82,9 @@ public class SimpleBroadcastInterface_Modified extends NetworkInterface {
 
 		// First break the old ones
 		optimizer.updateLocation(this);
+		if (isQuiet()) {
+			return; /* none of the connections can change yet */
+		}
 		for (int i=0; i<this.connections.size(); ) {
 			Connection con = this.connections.get(i);
 			NetworkInterface anotherInterface = con.getOtherInterface(this);
@@ -89,11 +101,11 @@ public class SimpleBroadcastInterface_Modified extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
+		List<NetworkInterface> interfaces = getNearInterfaces();
+		for (int i=0, n=interfaces.size(); i < n; i++) {
+			connect(interfaces.get(i));
 		}
+		predictQuietTime();
 	}
 
 	/**
@@ -4,8 +4,11 @@
  */
 package movement;
 
+import input.BinaryMapCache;
 import input.WKTMapReader;
 
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -17,7 +20,9 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.Vector;
 
+import movement.map.DijkstraPathFinder;
 import movement.map.MapNode;
+import movement.map.RouteCache;
 import movement.map.SimMap;
 import core.Coord;
 import core.Settings;
@@ -45,6 +50,25 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public static final String NROF_FILES_S = "nrofMapFiles";
 	/** map file -setting id ({@value})*/
 	public static final String FILE_S = "mapFile";
+	/**
+	 * Directory of the binary map cache -setting id ({@value}). If set, the
+	 * map read from the map files is stored to this directory and the later
+	 * simulation runs with the same map files read it from there instead of
+	 * parsing the map files. Default is to not cache the maps on disk.
+	 */
+	public static final String MAP_CACHE_DIR_S = "mapCacheDir";
+	/**
+	 * Maximum number of shortest paths in the route cache that all the map
+	 * based movement models of the scenario share -setting id ({@value}).
+	 * Integer. Default is 0, i.e., the paths are not cached.
+	 */
+	public static final String ROUTE_CACHE_SIZE_S = "routeCacheSize";
+	/**
+	 * Should the route cache be filled with the paths between all Points Of
+	 * Interest when the movement models are created -setting id
+	 * ({@value}). Boolean. Default is false.
+	 */
+	public static final String ROUTE_CACHE_PREWARM_S = "routeCachePrewarm";
 
 	/**
 	 * Per node group setting for selecting map node types that are OK for
@@ -73,6 +97,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		super(settings);
 		map = readMap();
 		readOkMapNodeTypes(settings);
+		initRouteCache();
 		maxPathLength = 100;
 		minPathLength = 10;
 		backAllowed = false;
@@ -90,6 +115,7 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		map = newMap;
 		this.nrofMapFilesRead = nrofMaps;
 		readOkMapNodeTypes(settings);
+		initRouteCache();
 		maxPathLength = 100;
 		minPathLength = 10;
 		backAllowed = false;
@@ -122,6 +148,38 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		}
 	}
 
+	/**
+	 * Creates the scenario-wide route cache of the path finders if it is
+	 * enabled and hasn't been created yet
+	 */
+	private static void initRouteCache() {
+		if (DijkstraPathFinder.getRouteCache() != null) {
+			return;
+		}
+		Settings s = new Settings(MAP_BASE_MOVEMENT_NS);
+		int size = s.getInt(ROUTE_CACHE_SIZE_S, 0);
+		if (size < 0) {
+			throw new SettingsError("Invalid route cache size " + size +
+					" for setting " +
+					s.getFullPropertyName(ROUTE_CACHE_SIZE_S));
+		}
+		if (size > 0) {
+			DijkstraPathFinder.setRouteCache(new RouteCache(size));
+		}
+	}
+
+	/**
+	 * Returns true if the route cache should be filled with the paths
+	 * between the Points Of Interest
+	 * @return true if the route cache should be pre-warmed
+	 * @see #ROUTE_CACHE_PREWARM_S
+	 */
+	protected static boolean isRouteCachePrewarmed() {
+		return DijkstraPathFinder.getRouteCache() != null &&
+			new Settings(MAP_BASE_MOVEMENT_NS).getBoolean(
+					ROUTE_CACHE_PREWARM_S, false);
+	}
+
 	/**
 	 * Copyconstructor.
 	 * @param mbm The MapBasedMovement object to base the new object to
@@ -285,30 +343,62 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 
 		try {
 			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+			List<File> mapFiles = new ArrayList<File>();
 
 			for (int i = 1; i <= nrofMapFiles; i++ ) {
 				String pathFile = settings.getSetting(FILE_S + i);
 				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+				mapFiles.add(new File(pathFile));
 			}
 
 			nrofMapFilesRead = nrofMapFiles;
+			File cacheFile = getMapCacheFile(settings, mapFiles);
+			simMap = null;
+			if (cacheFile != null) {
+				simMap = BinaryMapCache.read(cacheFile);
+			}
+			if (simMap == null) { // not cached on disk -> parse the files
+				for (int i = 1; i <= nrofMapFiles; i++ ) {
+					r.addPaths(mapFiles.get(i - 1), i);
+				}
+				simMap = r.getMap();
+				checkMapConnectedness(simMap.getNodes());
+				// mirrors the map (y' = -y) and moves its upper left corner
+				// to origo
+				simMap.mirror();
+				Coord offset = simMap.getMinBound().clone();
+				simMap.translate(-offset.getX(), -offset.getY());
+				if (cacheFile != null) {
+					BinaryMapCache.write(simMap, cacheFile);
+				}
+			}
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
 
-		simMap = r.getMap();
-		checkMapConnectedness(simMap.getNodes());
-		// mirrors the map (y' = -y) and moves its upper left corner to origo
-		simMap.mirror();
-		Coord offset = simMap.getMinBound().clone();
-		simMap.translate(-offset.getX(), -offset.getY());
 		checkCoordValidity(simMap.getNodes());
 
 		cachedMap = simMap;
 		return simMap;
 	}
 
+	/**
+	 * Returns the disk cache file of the map or null if the maps are not
+	 * cached on disk
+	 * @param settings The map based movement settings
+	 * @param mapFiles The map files
+	 * @return The cache file (that may not exist yet) or null
+	 * @throws IOException if the map files can't be read
+	 */
+	private File getMapCacheFile(Settings settings, List<File> mapFiles)
+			throws IOException {
+		if (!settings.contains(MAP_CACHE_DIR_S)) {
+			return null;
+		}
+		return BinaryMapCache.getCacheFile(
+				new File(settings.getSetting(MAP_CACHE_DIR_S)), mapFiles);
+	}
+
 	/**
 	 * Checks that all map nodes can be reached from all other map nodes
 	 * @param nodes The list of nodes to check
@@ -429,4 +519,36 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		return true;
 	}
 
+	/**
+	 * Returns true for this class; subclasses keep state of their own and
+	 * must override this to support checkpoints
+	 */
+	@Override
+	public boolean isCheckpointable() {
+		return getClass() == MapBasedMovement.class;
+	}
+
+	@Override
+	public void writeState(DataOutput out) throws IOException {
+		super.writeState(out);
+		out.writeBoolean(lastMapNode != null);
+		if (lastMapNode != null) {
+			out.writeDouble(lastMapNode.getLocation().getX());
+			out.writeDouble(lastMapNode.getLocation().getY());
+		}
+	}
+
+	@Override
+	public void readState(DataInput in) throws IOException {
+		super.readState(in);
+		lastMapNode = null;
+		if (in.readBoolean()) {
+			Coord c = new Coord(in.readDouble(), in.readDouble());
+			lastMapNode = map.getNodeByCoord(c);
+			if (lastMapNode == null) {
+				throw new SimError("No map node at " + c);
+			}
+		}
+	}
+
 }
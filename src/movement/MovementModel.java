@@ -4,9 +4,13 @@
  */
 package movement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.Random;
 
 import util.ActivenessHandler;
+import util.CheckpointRandom;
 
 import core.Coord;
 import core.DTNHost;
@@ -44,9 +48,24 @@ public abstract class MovementModel {
 	public static final String WORLD_SIZE = "worldSize";
 	/** movement models' rng seed -setting id ({@value})*/
 	public static final String RNG_SEED = "rngSeed";
+	/**
+	 * Should every host's movement model have a random number generator of
+	 * its own -setting id ({@value}). Boolean (true/false) variable.
+	 * Default is false, i.e., all movement models share a common rng. With
+	 * separate rngs the movement of a host doesn't depend on the movement
+	 * of the others, which is required for moving the hosts in parallel
+	 * (see {@link core.World#PARALLEL_MOVEMENT_S}).
+	 */
+	public static final String RNG_PER_HOST_S = "rngPerHost";
 
 	/** common rng for all movement models in the simulation */
-	protected static Random rng;
+	private static CheckpointRandom commonRng;
+	/** should replicated models get rngs of their own */
+	private static boolean rngPerHost;
+
+	/** rng of this movement model; the common rng unless the model was
+	 * replicated with {@link #RNG_PER_HOST_S} enabled */
+	protected Random rng;
 
 	/** DTNHost to which this movement model is attached */
 	protected DTNHost host;
@@ -93,6 +112,7 @@ public abstract class MovementModel {
 	 */
 	public MovementModel() {
 		super();
+		this.rng = commonRng;
 	}
 
 	/**
@@ -104,6 +124,7 @@ public abstract class MovementModel {
 		double[] times;
 
 		ah = new ActivenessHandler(settings);
+		this.rng = commonRng;
 
 		if (settings.contains(SPEED)) {
 			speeds = settings.getCsvDoubles(SPEED, 2);
@@ -149,6 +170,12 @@ public abstract class MovementModel {
 		this.maxY = mm.maxY;
 		this.ah = mm.ah;
 		this.comBus = null;
+		if (rngPerHost) {
+			this.rng = new CheckpointRandom(commonRng.nextLong());
+		}
+		else {
+			this.rng = mm.rng;
+		}
 	}
 
 	/**
@@ -232,6 +259,41 @@ public abstract class MovementModel {
 		return ah.isActive();
 	}
 
+	/**
+	 * Returns the maximum speed of the paths this model can create, or
+	 * infinity if the model doesn't guarantee any limit (e.g., if the
+	 * nodes can jump from one place to another). This implementation
+	 * returns infinity; models whose speeds come from
+	 * {@link #generateSpeed()} can return the maximum of the
+	 * {@link #SPEED} setting.
+	 * @return The speed limit of the model
+	 */
+	public double getSpeedLimit() {
+		return Double.POSITIVE_INFINITY;
+	}
+
+	/**
+	 * Returns true if the hosts using this model can be moved concurrently
+	 * with other hosts, i.e., if the model has an rng of its own and doesn't
+	 * share any modifiable state with other models. This implementation
+	 * returns false; models that only modify their own state can override
+	 * this and return {@link #hasIsolatedState()}.
+	 * @return True if the model can be used concurrently with other models
+	 */
+	public boolean canMoveConcurrently() {
+		return false;
+	}
+
+	/**
+	 * Returns true if the state this class keeps is not shared with other
+	 * models, i.e., the model has an rng of its own and its activeness
+	 * doesn't change (the activeness handler is shared by the replicates)
+	 * @return True if the state of this model is isolated from other models
+	 */
+	protected boolean hasIsolatedState() {
+		return this.rng != commonRng && ah.isAlwaysActive();
+	}
+
 	/**
 	 * Returns a sim time when the next path is available. This implementation
 	 * returns a random time in future that is {@link #WAIT_TIME} from now.
@@ -241,6 +303,68 @@ public abstract class MovementModel {
 		return SimClock.getTime() + generateWaitTime();
 	}
 
+	/**
+	 * Returns true if the state of this model can be written to a movement
+	 * checkpoint with {@link #writeState(DataOutput)}. This implementation
+	 * returns false; models that support checkpoints override this and
+	 * the state methods.
+	 * @return True if the model supports checkpoints
+	 * @see core.MovementCheckpoint
+	 */
+	public boolean isCheckpointable() {
+		return false;
+	}
+
+	/**
+	 * Writes the state of this model that changes when the host moves. This
+	 * implementation writes the state of the model's own rng (if it has
+	 * one; see {@link #writeCommonState(DataOutput)}).
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		if (this.rng != commonRng) {
+			getCheckpointRng().writeState(out);
+		}
+	}
+
+	/**
+	 * Reads a state written by {@link #writeState(DataOutput)}
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		if (this.rng != commonRng) {
+			getCheckpointRng().readState(in);
+		}
+	}
+
+	private CheckpointRandom getCheckpointRng() {
+		if (!(this.rng instanceof CheckpointRandom)) {
+			throw new SimError("Movement model " + this + " has an rng " +
+					"that can't be checkpointed");
+		}
+		return (CheckpointRandom)this.rng;
+	}
+
+	/**
+	 * Writes the state of the rng that the movement models share
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	public static void writeCommonState(DataOutput out) throws IOException {
+		commonRng.writeState(out);
+	}
+
+	/**
+	 * Reads a state written by {@link #writeCommonState(DataOutput)}
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 */
+	public static void readCommonState(DataInput in) throws IOException {
+		commonRng.readState(in);
+	}
+
 	/**
 	 * Sets the module communication bus for this movement model
 	 * @param comBus The communications bus to set
@@ -278,11 +402,12 @@ public abstract class MovementModel {
 		Settings s = new Settings(MOVEMENT_MODEL_NS);
 		if (s.contains(RNG_SEED)) {
 			int seed = s.getInt(RNG_SEED);
-			rng = new Random(seed);
+			commonRng = new CheckpointRandom(seed);
 		}
 		else {
-			rng = new Random(0);
+			commonRng = new CheckpointRandom(0);
 		}
+		rngPerHost = s.getBoolean(RNG_PER_HOST_S, false);
 	}
 
 }
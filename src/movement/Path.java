@@ -4,6 +4,9 @@
  */
 package movement;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -138,4 +141,40 @@ public class Path  {
 	public List<Double> getSpeeds() {
 		return this.speeds;
 	}
+
+	/**
+	 * Writes the waypoints, speeds and the position on this path
+	 * @param out Where to write the path
+	 * @throws IOException if writing fails
+	 */
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(coords.size());
+		for (Coord c : coords) {
+			out.writeDouble(c.getX());
+			out.writeDouble(c.getY());
+		}
+		out.writeInt(speeds.size());
+		for (double speed : speeds) {
+			out.writeDouble(speed);
+		}
+		out.writeInt(nextWpIndex);
+	}
+
+	/**
+	 * Reads a path written by {@link #write(DataOutput)}
+	 * @param in Where to read the path from
+	 * @return The path
+	 * @throws IOException if reading fails
+	 */
+	public static Path read(DataInput in) throws IOException {
+		Path p = new Path();
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			p.coords.add(new Coord(in.readDouble(), in.readDouble()));
+		}
+		for (int i = 0, n = in.readInt(); i < n; i++) {
+			p.speeds.add(in.readDouble());
+		}
+		p.nextWpIndex = in.readInt();
+		return p;
+	}
 }
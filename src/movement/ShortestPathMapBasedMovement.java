@@ -32,6 +32,9 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
 		this.pois = new PointsOfInterest(getMap(), getOkMapNodeTypes(),
 				settings, rng);
+		if (isRouteCachePrewarmed()) {
+			this.pathFinder.prewarm(pois.getAllPois());
+		}
 	}
 
 	/**
@@ -41,8 +44,14 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 	 */
 	protected ShortestPathMapBasedMovement(ShortestPathMapBasedMovement mbm) {
 		super(mbm);
-		this.pathFinder = mbm.pathFinder;
-		this.pois = mbm.pois;
+		if (this.rng == mbm.rng) {
+			this.pathFinder = mbm.pathFinder;
+			this.pois = mbm.pois;
+		}
+		else { /* rng of its own; don't share anything that is modified */
+			this.pathFinder = new DijkstraPathFinder(getOkMapNodeTypes());
+			this.pois = new PointsOfInterest(mbm.pois, this.rng);
+		}
 	}
 
 	@Override
@@ -65,6 +74,22 @@ public class ShortestPathMapBasedMovement extends MapBasedMovement implements
 		return p;
 	}
 
+	@Override
+	public double getSpeedLimit() {
+		return this.maxSpeed;
+	}
+
+	@Override
+	public boolean canMoveConcurrently() {
+		return hasIsolatedState();
+	}
+
+	@Override
+	public boolean isCheckpointable() {
+		/* the points of interest only use the rng */
+		return getClass() == ShortestPathMapBasedMovement.class;
+	}
+
 	@Override
 	public ShortestPathMapBasedMovement replicate() {
 		return new ShortestPathMapBasedMovement(this);
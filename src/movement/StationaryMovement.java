@@ -62,6 +62,21 @@ public class StationaryMovement extends MovementModel {
 		return Double.MAX_VALUE;	// no new paths available
 	}
 
+	@Override
+	public double getSpeedLimit() {
+		return 0; /* never moves */
+	}
+
+	@Override
+	public boolean canMoveConcurrently() {
+		return hasIsolatedState();
+	}
+
+	@Override
+	public boolean isCheckpointable() {
+		return true;
+	}
+
 	@Override
 	public StationaryMovement replicate() {
 		return new StationaryMovement(this);
@@ -4,35 +4,53 @@
  */
 package movement.map;
 
-import java.util.Comparator;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
-import java.util.PriorityQueue;
-import java.util.Queue;
-import java.util.Set;
+
+import core.DTNSim;
 
 /**
- * Implementation of the Dijkstra's shortest path algorithm.
+ * Implementation of the Dijkstra's shortest path algorithm. The search is
+ * run on the compiled graph ({@link MapGraph}) of the map nodes with
+ * primitive distance arrays and an indexed binary heap. Nodes with the same
+ * distance are visited in the order of their locations, so the paths are
+ * the same as with a plain priority queue of map nodes. If a scenario-wide
+ * {@link RouteCache} is set, the found paths are stored to it and shared by
+ * all the path finders with the same OK map node types.
  */
 public class DijkstraPathFinder {
 	/** Value for infinite distance  */
-	private static final Double INFINITY = Double.MAX_VALUE;
-	/** Initial size of the priority queue */
-	private static final int PQ_INIT_SIZE = 11;
-
-	/** Map of node distances from the source node */
-	private DistanceMap distances;
-	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<MapNode> visited;
-	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<MapNode> unvisited;
-	/** Map of previous nodes on the shortest path(s) */
-	private Map<MapNode, MapNode> prevNodes;
+	private static final double INFINITY = Double.MAX_VALUE;
+	/** heap position of the nodes that are not in the heap */
+	private static final int NOT_IN_HEAP = -1;
+	/** heap position of the visited nodes */
+	private static final int VISITED = -2;
+
+	/** search state of each thread (only one search per thread at a time) */
+	private static final ThreadLocal<SearchState> searchStates =
+		new ThreadLocal<SearchState>() {
+		@Override
+		protected SearchState initialValue() {
+			return new SearchState();
+		}
+	};
+
+	/** the route cache shared by all path finders (or null) */
+	private static volatile RouteCache routeCache;
+
+	static {
+		DTNSim.registerForReset(DijkstraPathFinder.class.getCanonicalName());
+		reset();
+	}
 
 	private int [] okMapNodes;
+	/** bit mask of the OK map node types */
+	private int okTypeMask;
+	/** key of the OK map node types in the route cache */
+	private int cacheKey;
 
 	/**
 	 * Constructor.
@@ -42,187 +60,325 @@ public class DijkstraPathFinder {
 	public DijkstraPathFinder(int [] okMapNodes) {
 		super();
 		this.okMapNodes = okMapNodes;
+		if (okMapNodes != null) {
+			for (int type : okMapNodes) {
+				this.okTypeMask |= 1 << type;
+			}
+		}
+		/* bit 0 is never a type bit, so this doesn't collide with masks */
+		this.cacheKey = okMapNodes != null ? okTypeMask : -1;
+	}
+
+	/**
+	 * Removes the route cache
+	 */
+	public static void reset() {
+		routeCache = null;
+	}
+
+	/**
+	 * Sets the route cache that all the path finders use
+	 * @param cache The cache or null to not cache the paths
+	 */
+	public static void setRouteCache(RouteCache cache) {
+		routeCache = cache;
 	}
 
 	/**
-	 * Initializes a new search with a source node
-	 * @param node The path's source node
+	 * Returns the route cache that all the path finders use
+	 * @return The cache or null if the paths are not cached
 	 */
-	private void initWith(MapNode node) {
-		assert (okMapNodes != null ? node.isType(okMapNodes) : true);
-
-		// create needed data structures
-		this.unvisited = new PriorityQueue<MapNode>(PQ_INIT_SIZE,
-				new DistanceComparator());
-		this.visited = new HashSet<MapNode>();
-		this.prevNodes = new HashMap<MapNode, MapNode>();
-		this.distances = new DistanceMap();
-
-		// set distance to source 0 and initialize unvisited queue
-		this.distances.put(node, 0);
-		this.unvisited.add(node);
+	public static RouteCache getRouteCache() {
+		return routeCache;
 	}
 
 	/**
-	 * Finds and returns a shortest path between two map nodes
+	 * Finds and returns a shortest path between two map nodes. If the paths
+	 * are cached, the returned list is shared and can't be modified.
 	 * @param from The source of the path
 	 * @param to The destination of the path
 	 * @return a shortest path between the source and destination nodes in
 	 * a list of MapNodes or an empty list if such path is not available
 	 */
 	public List<MapNode> getShortestPath(MapNode from, MapNode to) {
-		List<MapNode> path = new LinkedList<MapNode>();
-
 		if (from.compareTo(to) == 0) { // source and destination are the same
+			List<MapNode> path = new ArrayList<MapNode>();
 			path.add(from); // return a list containing only source node
 			return path;
 		}
 
-		initWith(from);
-		MapNode node = null;
-
-		// always take the node with shortest distance
-		while ((node = unvisited.poll()) != null) {
-			if (node == to) {
-				break; // we found the destination -> no need to search further
-			}
-
-			visited.add(node); // mark the node as visited
-			relax(node); // add/update neighbor nodes' distances
+		assert (okMapNodes != null ? from.isType(okMapNodes) : true);
+		RouteCache cache = routeCache;
+		if (cache == null) {
+			return findShortestPath(from, to);
 		}
 
-		// now we either have the path or such path wasn't available
-		if (node == to) { // found a path
-			path.add(0,to);
-			MapNode prev = prevNodes.get(to);
-			while (prev != from) {
-				path.add(0, prev);	// always put previous node to beginning
-				prev = prevNodes.get(prev);
-			}
+		List<MapNode> path = cache.get(from, to, cacheKey);
+		if (path == null) {
+			path = Collections.unmodifiableList(findShortestPath(from, to));
+			cache.put(from, to, cacheKey, path);
+		}
+		return path;
+	}
 
-			path.add(0, from); // finally put the source node to first node
+	/**
+	 * Runs the search for a shortest path between two different map nodes
+	 */
+	private List<MapNode> findShortestPath(MapNode from, MapNode to) {
+		MapGraph graph = getGraph(from);
+		if (to.getGraph() != graph) {
+			return new ArrayList<MapNode>(); // destination is not reachable
 		}
 
-		return path;
+		SearchState s = searchStates.get();
+		search(s, graph, from.getIndex(), to.getIndex());
+		return getPath(s, graph, from.getIndex(), to.getIndex());
 	}
 
 	/**
-	 * Relaxes the neighbors of a node (updates the shortest distances).
-	 * @param node The node whose neighbors are relaxed
+	 * Finds the shortest paths between all the given nodes and stores them
+	 * to the route cache, so the later requests for them are cache hits.
+	 * Only one search is run from each node. Does nothing if the paths are
+	 * not cached.
+	 * @param nodes The nodes (that must be OK for the path finder)
 	 */
-	private void relax(MapNode node) {
-		double nodeDist = distances.get(node);
-		for (MapNode n : node.getNeighbors()) {
-			if (visited.contains(n)) {
-				continue; // skip visited nodes
-			}
+	public void prewarm(Collection<MapNode> nodes) {
+		RouteCache cache = routeCache;
+		if (cache == null) {
+			return;
+		}
 
-			if (okMapNodes != null && !n.isType(okMapNodes)) {
-				continue; // skip nodes that are not OK
+		SearchState s = searchStates.get();
+		for (MapNode from : nodes) {
+			MapGraph graph = getGraph(from);
+			search(s, graph, from.getIndex(), -1); // search the whole graph
+			for (MapNode to : nodes) {
+				if (from.compareTo(to) == 0 || to.getGraph() != graph) {
+					continue; // trivial paths and other graphs aren't cached
+				}
+				cache.put(from, to, cacheKey, Collections.unmodifiableList(
+						getPath(s, graph, from.getIndex(), to.getIndex())));
 			}
+		}
+	}
 
-			// n node's distance from path's source node
-			double nDist = nodeDist + getDistance(node, n);
+	/**
+	 * Visits the nodes in the order of their distance from the source until
+	 * the destination is found or all the reachable nodes have been visited
+	 * @param s The search state
+	 * @param graph The graph
+	 * @param source Index of the source node
+	 * @param dest Index of the destination node or -1 to visit all nodes
+	 */
+	private void search(SearchState s, MapGraph graph, int source, int dest) {
+		s.init(graph);
+		s.setDistance(source, 0);
+		int node;
 
-			if (distances.get(n) > nDist) { // stored distance > found dist?
-				prevNodes.put(n, node);
-				setDistance(n, nDist);
+		// always take the node with shortest distance
+		while ((node = s.poll()) >= 0) {
+			s.heapPos[node] = VISITED; // mark the node as visited
+			if (node == dest) {
+				break; // we found the destination -> no need to search further
 			}
+			relax(s, graph, node); // add/update neighbor nodes' distances
 		}
 	}
 
 	/**
-	 * Sets the distance from source node to a node
-	 * @param n The node whose distance is set
-	 * @param distance The distance of the node from the source node
+	 * Returns the path from the source to a destination found by a search
+	 * or an empty list if the destination wasn't reached
 	 */
-	private void setDistance(MapNode n, double distance) {
-		unvisited.remove(n); // remove node from old place in the queue
-		distances.put(n, distance); // update distance
-		unvisited.add(n); // insert node to the new place in the queue
+	private List<MapNode> getPath(SearchState s, MapGraph graph, int source,
+			int dest) {
+		List<MapNode> path = new ArrayList<MapNode>();
+		if (!s.isTouched(dest) || s.heapPos[dest] != VISITED) {
+			return path; // such path wasn't available
+		}
+
+		for (int n = dest; n != source; n = s.prev[n]) {
+			path.add(graph.nodes[n]);
+		}
+		path.add(graph.nodes[source]); // finally put the source node
+		Collections.reverse(path);
+		return path;
 	}
 
 	/**
-	 * Returns the (euclidean) distance between the two map nodes
-	 * @param from The first node
-	 * @param to The second node
-	 * @return Euclidean distance between the two map nodes
+	 * Returns the compiled graph of a node, compiling a new one only if the
+	 * node doesn't have a valid graph. A graph has all the nodes reachable
+	 * from its nodes, so nodes that aren't in the same graph are not
+	 * reachable from each other.
 	 */
-	private double getDistance(MapNode from, MapNode to) {
-		return from.getLocation().distance(to.getLocation());
+	private static MapGraph getGraph(MapNode node) {
+		MapGraph graph = node.getGraph();
+		if (graph != null && graph.isValid()) {
+			return graph;
+		}
+		synchronized (MapGraph.class) {
+			graph = node.getGraph();
+			if (graph == null || !graph.isValid()) {
+				graph = MapGraph.compile(node);
+			}
+			return graph;
+		}
 	}
 
 	/**
-	 * Comparator that compares two map nodes by their distance from
-	 * the source node.
+	 * Relaxes the neighbors of a node (updates the shortest distances).
+	 * @param s The search state
+	 * @param graph The graph
+	 * @param node The node whose neighbors are relaxed
 	 */
-	private class DistanceComparator implements Comparator<MapNode> {
-
-		/**
-		 * Compares two map nodes by their distance from the source node
-		 * @return -1, 0 or 1 if node1's distance is smaller, equal to, or
-		 * bigger than node2's distance
-		 */
-		public int compare(MapNode node1, MapNode node2) {
-			double dist1 = distances.get(node1);
-			double dist2 = distances.get(node2);
-
-			if (dist1 > dist2) {
-				return 1;
+	private void relax(SearchState s, MapGraph graph, int node) {
+		double nodeDist = s.dist[node];
+		for (int e = graph.offsets[node], end = graph.offsets[node + 1];
+				e < end; e++) {
+			int n = graph.targets[e];
+			if (s.isTouched(n) && s.heapPos[n] == VISITED) {
+				continue; // skip visited nodes
 			}
-			else if (dist1 < dist2) {
-				return -1;
+
+			if (okMapNodes != null && (graph.types[n] & okTypeMask) == 0) {
+				continue; // skip nodes that are not OK
 			}
-			else {
-				return node1.compareTo(node2);
+
+			// n node's distance from path's source node
+			double nDist = nodeDist + graph.weights[e];
+
+			if (s.getDistance(n) > nDist) { // stored distance > found dist?
+				s.prev[n] = node;
+				s.setDistance(n, nDist);
 			}
 		}
 	}
 
 	/**
-	 * Simple Map implementation for storing distances.
+	 * State of a search: distances, previous nodes and the heap of the
+	 * unvisited nodes discovered so far. The arrays are reused between the
+	 * searches; a node's values are valid only if it has been touched in
+	 * the current search.
 	 */
-	private class DistanceMap {
-		private HashMap<MapNode, Double> map;
+	private static class SearchState {
+		private double[] dist = new double[0];
+		private int[] prev = new int[0];
+		private int[] heapPos = new int[0];
+		/** search number when each node was last touched */
+		private int[] touched = new int[0];
+		private int search = 0;
+		private int[] heap = new int[0];
+		private int heapSize;
+		private int[] ranks;
 
 		/**
-		 * Constructor. Creates an empty distance map
+		 * Initializes a new search in a graph
 		 */
-		public DistanceMap() {
-			this.map = new HashMap<MapNode, Double>();
+		private void init(MapGraph graph) {
+			int n = graph.size();
+			if (dist.length < n) {
+				dist = new double[n];
+				prev = new int[n];
+				heapPos = new int[n];
+				touched = new int[n];
+				heap = new int[n];
+				search = 0;
+			}
+			if (++search == Integer.MAX_VALUE) {
+				Arrays.fill(touched, 0);
+				search = 1;
+			}
+			this.ranks = graph.ranks;
+			this.heapSize = 0;
+		}
+
+		private boolean isTouched(int n) {
+			return touched[n] == search;
+		}
+
+		private double getDistance(int n) {
+			return isTouched(n) ? dist[n] : INFINITY;
 		}
 
 		/**
-		 * Returns the distance to a node. If no distance value
-		 * is found, returns {@link DijkstraPathFinder#INFINITY} as the value.
-		 * @param node The node whose distance is requested
-		 * @return The distance to that node
+		 * Sets the distance of an unvisited node and moves it to its new
+		 * place in the heap
 		 */
-		public double get(MapNode node) {
-			Double value = map.get(node);
-			if (value != null) {
-				return value;
+		private void setDistance(int n, double distance) {
+			if (!isTouched(n)) {
+				touched[n] = search;
+				heapPos[n] = NOT_IN_HEAP;
 			}
-			else {
-				return INFINITY;
+			dist[n] = distance;
+			if (heapPos[n] == NOT_IN_HEAP) {
+				heapPos[n] = heapSize;
+				heap[heapSize++] = n;
 			}
+			siftUp(heapPos[n]); // the distance can only decrease
 		}
 
 		/**
-		 * Puts a new distance value for a map node
-		 * @param node The node
-		 * @param distance Distance to that node
+		 * Removes and returns the unvisited node with the smallest distance
+		 * or -1 if there are no unvisited nodes
 		 */
-		public void  put(MapNode node, double distance) {
-			map.put(node, distance);
+		private int poll() {
+			if (heapSize == 0) {
+				return -1;
+			}
+			int first = heap[0];
+			heapPos[first] = NOT_IN_HEAP;
+			int last = heap[--heapSize];
+			if (heapSize > 0) {
+				heap[0] = last;
+				heapPos[last] = 0;
+				siftDown(0);
+			}
+			return first;
 		}
 
 		/**
-		 * Returns a string representation of the map's contents
-		 * @return a string representation of the map's contents
+		 * Returns true if node a comes before node b: it has a smaller
+		 * distance or the same distance and a smaller location
 		 */
-		public String toString() {
-			return map.toString();
+		private boolean before(int a, int b) {
+			return dist[a] < dist[b] ||
+				(dist[a] == dist[b] && ranks[a] < ranks[b]);
+		}
+
+		private void siftUp(int pos) {
+			int n = heap[pos];
+			while (pos > 0) {
+				int parent = (pos - 1) / 2;
+				if (!before(n, heap[parent])) {
+					break;
+				}
+				heap[pos] = heap[parent];
+				heapPos[heap[pos]] = pos;
+				pos = parent;
+			}
+			heap[pos] = n;
+			heapPos[n] = pos;
+		}
+
+		private void siftDown(int pos) {
+			int n = heap[pos];
+			while (true) {
+				int child = 2 * pos + 1;
+				if (child >= heapSize) {
+					break;
+				}
+				if (child + 1 < heapSize && before(heap[child + 1],
+						heap[child])) {
+					child++;
+				}
+				if (!before(heap[child], n)) {
+					break;
+				}
+				heap[pos] = heap[child];
+				heapPos[heap[pos]] = pos;
+				pos = child;
+			}
+			heap[pos] = n;
+			heapPos[n] = pos;
 		}
 	}
 }
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Map nodes compiled into an int indexed graph for path finding. The
+ * neighbors of the nodes are stored in compressed sparse row form: the
+ * neighbors of node <CODE>i</CODE> are
+ * <CODE>targets[offsets[i]]...targets[offsets[i+1]-1]</CODE> (in the same
+ * order as in the node's neighbor list) and the lengths of the edges are in
+ * the same positions of <CODE>weights</CODE>. Each node knows its graph and
+ * index in it. A graph is invalidated if the neighbors or types of any of
+ * its nodes change, or if some of its nodes are compiled into another
+ * graph; a new graph must be compiled after that. The graph itself is not
+ * modified after it has been created, so it can be used by several threads
+ * as long as the map isn't modified.
+ */
+public class MapGraph {
+	/** the nodes by their index */
+	final MapNode[] nodes;
+	/** start of each node's neighbors in targets (and the end of the last) */
+	final int[] offsets;
+	/** indexes of the neighbors */
+	final int[] targets;
+	/** lengths of the edges to the neighbors */
+	final double[] weights;
+	/** type bit masks of the nodes */
+	final int[] types;
+	/** order of the nodes' locations (for breaking distance ties) */
+	final int[] ranks;
+	private volatile boolean valid;
+
+	private MapGraph(Collection<MapNode> mapNodes) {
+		int n = mapNodes.size();
+		this.nodes = mapNodes.toArray(new MapNode[n]);
+		this.offsets = new int[n + 1];
+		this.types = new int[n];
+		for (int i = 0; i < n; i++) {
+			MapGraph old = nodes[i].getGraph();
+			if (old != null) {
+				old.invalidate(); // the node's index in it is lost
+			}
+			nodes[i].setGraph(this, i);
+			offsets[i + 1] = offsets[i] + nodes[i].getNeighbors().size();
+			types[i] = nodes[i].getTypeMask();
+		}
+
+		this.targets = new int[offsets[n]];
+		this.weights = new double[offsets[n]];
+		for (int i = 0; i < n; i++) {
+			int j = offsets[i];
+			for (MapNode neighbor : nodes[i].getNeighbors()) {
+				assert neighbor.getGraph() == this : "Neighbor " + neighbor +
+					" of " + nodes[i] + " is not in the graph";
+				targets[j] = neighbor.getIndex();
+				weights[j] = nodes[i].getLocation().distance(
+						neighbor.getLocation());
+				j++;
+			}
+		}
+
+		MapNode[] sorted = nodes.clone();
+		Arrays.sort(sorted, new Comparator<MapNode>() {
+			public int compare(MapNode n1, MapNode n2) {
+				return n1.compareTo(n2);
+			}
+		});
+		this.ranks = new int[n];
+		for (int i = 0; i < n; i++) {
+			ranks[sorted[i].getIndex()] = i;
+		}
+		this.valid = true;
+	}
+
+	/**
+	 * Compiles a graph of map nodes. All the neighbors of the nodes must be
+	 * in the collection.
+	 * @param mapNodes The nodes
+	 * @return The graph
+	 */
+	public static MapGraph compile(Collection<MapNode> mapNodes) {
+		return new MapGraph(mapNodes);
+	}
+
+	/**
+	 * Compiles a graph of a node and all the nodes reachable from it
+	 * @param root The node
+	 * @return The graph
+	 */
+	public static MapGraph compile(MapNode root) {
+		List<MapNode> reachable = new ArrayList<MapNode>();
+		Set<MapNode> seen = new HashSet<MapNode>();
+		reachable.add(root);
+		seen.add(root);
+		for (int i = 0; i < reachable.size(); i++) {
+			for (MapNode neighbor : reachable.get(i).getNeighbors()) {
+				if (seen.add(neighbor)) {
+					reachable.add(neighbor);
+				}
+			}
+		}
+		return new MapGraph(reachable);
+	}
+
+	/**
+	 * Returns the number of nodes in the graph
+	 * @return the number of nodes in the graph
+	 */
+	public int size() {
+		return nodes.length;
+	}
+
+	/**
+	 * Returns true if the graph is still valid, i.e., the neighbors and types
+	 * of its nodes haven't changed after it was compiled
+	 * @return true if the graph is valid
+	 */
+	public boolean isValid() {
+		return this.valid;
+	}
+
+	/**
+	 * Invalidates the graph
+	 */
+	void invalidate() {
+		this.valid = false;
+	}
+}
@@ -25,6 +25,9 @@ public class MapNode implements Comparable<MapNode> {
 	private Vector<MapNode> neighbors;
 	// bit mask of map node's types or 0 if no type's are defined
 	private int type;
+	/** the compiled graph this node is in (or null) and index in it */
+	private MapGraph graph;
+	private int index;
 
 	/**
 	 * Constructor. Creates a map node to a location.
@@ -42,6 +45,7 @@ public class MapNode implements Comparable<MapNode> {
 	 */
 	public void addType(int type) {
 		this.type |= typeToBitMask(type);
+		invalidateGraph();
 	}
 
 	/**
@@ -108,9 +112,50 @@ public class MapNode implements Comparable<MapNode> {
 	private void addToList(MapNode node) {
 		if (!this.neighbors.contains(node) && node != this) {
 			this.neighbors.add(node);
+			invalidateGraph();
 		}
 	}
 
+	private void invalidateGraph() {
+		if (this.graph != null) {
+			this.graph.invalidate();
+		}
+	}
+
+	/**
+	 * Sets the compiled graph of this node
+	 * @param graph The graph
+	 * @param index Index of the node in the graph
+	 */
+	void setGraph(MapGraph graph, int index) {
+		this.graph = graph;
+		this.index = index;
+	}
+
+	/**
+	 * Returns the compiled graph this node is in (or null if none)
+	 * @return the compiled graph of this node
+	 */
+	MapGraph getGraph() {
+		return this.graph;
+	}
+
+	/**
+	 * Returns the index of this node in its compiled graph
+	 * @return the index of this node in its compiled graph
+	 */
+	int getIndex() {
+		return this.index;
+	}
+
+	/**
+	 * Returns the bit mask of the node's types
+	 * @return the bit mask of the node's types
+	 */
+	int getTypeMask() {
+		return this.type;
+	}
+
 	/**
 	 * Returns the location of the node
 	 * @return the location of the node
@@ -9,9 +9,12 @@ import input.WKTReader;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.Set;
 
 import util.Tuple;
 
@@ -67,6 +70,20 @@ public class PointsOfInterest {
 		readPois(settings);
 	}
 
+	/**
+	 * Copy constructor. The points of interest are shared with the
+	 * prototype, but the copy uses the given random number generator.
+	 * @param proto The prototype whose POIs are used
+	 * @param rng The random number generator to use
+	 */
+	public PointsOfInterest(PointsOfInterest proto, Random rng) {
+		this.poiLists = proto.poiLists;
+		this.poiProbs = proto.poiProbs;
+		this.map = proto.map;
+		this.okMapNodeTypes = proto.okMapNodeTypes;
+		this.rng = rng;
+	}
+
 	/**
 	 * Selects a random destination from POIs or all MapNodes. Selecting among
 	 * POI groups is done by their probabilities. If sum of their probabilities
@@ -100,6 +117,21 @@ public class PointsOfInterest {
 		return node;
 	}
 
+	/**
+	 * Returns all the POIs of the selected POI groups. A POI that is in
+	 * several groups is returned only once.
+	 * @return All the POIs
+	 */
+	public Collection<MapNode> getAllPois() {
+		Set<MapNode> all = new LinkedHashSet<MapNode>();
+		for (List<MapNode> pois : poiLists) {
+			if (pois != null) {
+				all.addAll(pois);
+			}
+		}
+		return all;
+	}
+
 	/**
 	 * Reads POI selections and their probabilities from given Settings and
 	 * stores them to <CODE>poiLists</CODE> and <CODE>poiProbs</CODE>.
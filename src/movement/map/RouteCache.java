@@ -0,0 +1,147 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Least recently used cache of shortest paths between map nodes. The paths
+ * are keyed by their source and destination nodes and the OK map node types
+ * of the path finder. A path is only valid as long as the source node's
+ * compiled graph ({@link MapGraph}) is the same and valid, i.e., the map
+ * hasn't changed after the path was found. The cache holds at most a fixed
+ * number of paths; the least recently used path is dropped when a new path
+ * would exceed that. The cache can be shared by several threads.
+ */
+public class RouteCache {
+	/** the cached routes in least recently used order */
+	private final LinkedHashMap<RouteKey, Route> routes;
+	private final int maxRoutes;
+	private long hits;
+	private long misses;
+
+	/**
+	 * Creates a new route cache
+	 * @param maxRoutes Maximum number of routes in the cache
+	 */
+	public RouteCache(int maxRoutes) {
+		this.maxRoutes = maxRoutes;
+		this.routes = new LinkedHashMap<RouteKey, Route>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<RouteKey, Route> e) {
+				return size() > RouteCache.this.maxRoutes;
+			}
+		};
+	}
+
+	/**
+	 * Returns a cached path
+	 * @param from The source node of the path
+	 * @param to The destination node of the path
+	 * @param okTypes Bit mask of the OK map node types of the path
+	 * @return The path or null if it is not in the cache (or is not valid
+	 * anymore)
+	 */
+	public synchronized List<MapNode> get(MapNode from, MapNode to,
+			int okTypes) {
+		Route route = routes.get(new RouteKey(from, to, okTypes));
+		if (route == null || route.graph != from.getGraph() ||
+				!route.graph.isValid()) {
+			misses++;
+			return null;
+		}
+		hits++;
+		return route.path;
+	}
+
+	/**
+	 * Stores a path to the cache. The path must not be modified after this.
+	 * @param from The source node of the path
+	 * @param to The destination node of the path
+	 * @param okTypes Bit mask of the OK map node types of the path
+	 * @param path The path
+	 */
+	public synchronized void put(MapNode from, MapNode to, int okTypes,
+			List<MapNode> path) {
+		routes.put(new RouteKey(from, to, okTypes),
+				new Route(from.getGraph(), path));
+	}
+
+	/**
+	 * Returns the number of paths in the cache
+	 * @return the number of paths in the cache
+	 */
+	public synchronized int size() {
+		return routes.size();
+	}
+
+	/**
+	 * Returns the number of requested paths that were found in the cache
+	 * @return the number of cache hits
+	 */
+	public synchronized long getHits() {
+		return this.hits;
+	}
+
+	/**
+	 * Returns the number of requested paths that were not in the cache
+	 * @return the number of cache misses
+	 */
+	public synchronized long getMisses() {
+		return this.misses;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RouteCache with " + routes.size() + "/" + maxRoutes +
+			" routes, " + hits + " hits and " + misses + " misses";
+	}
+
+	/**
+	 * Source, destination and OK node types of a path
+	 */
+	private static class RouteKey {
+		private final MapNode from;
+		private final MapNode to;
+		private final int okTypes;
+
+		private RouteKey(MapNode from, MapNode to, int okTypes) {
+			this.from = from;
+			this.to = to;
+			this.okTypes = okTypes;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RouteKey)) {
+				return false;
+			}
+			RouteKey k = (RouteKey)o;
+			return from == k.from && to == k.to && okTypes == k.okTypes;
+		}
+
+		@Override
+		public int hashCode() {
+			return (System.identityHashCode(from) * 31 +
+					System.identityHashCode(to)) * 31 + okTypes;
+		}
+	}
+
+	/**
+	 * A cached path and the graph it was found in
+	 */
+	private static class Route {
+		private final MapGraph graph;
+		private final List<MapNode> path;
+
+		private Route(MapGraph graph, List<MapNode> path) {
+			this.graph = graph;
+			this.path = path;
+		}
+	}
+}
@@ -6,6 +6,7 @@ package movement.map;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
@@ -35,6 +36,26 @@ public class SimMap implements Serializable {
 		this.nodesMap = nodes;
 		this.isMirrored = false;
 		setBounds();
+		MapGraph.compile(this.nodes);
+	}
+
+	/**
+	 * Creates a map of nodes that have already been mirrored and translated,
+	 * e.g., the nodes of a cached map. The nodes are kept in the given order.
+	 * @param nodes The map nodes
+	 * @param offset The offset of the translations made to the nodes
+	 * @param isMirrored Have the nodes been mirrored
+	 */
+	public SimMap(List<MapNode> nodes, Coord offset, boolean isMirrored) {
+		this.offset = offset;
+		this.nodes = new ArrayList<MapNode>(nodes);
+		this.nodesMap = new Hashtable<Coord, MapNode>();
+		for (MapNode node : nodes) {
+			nodesMap.put(node.getLocation(), node);
+		}
+		this.isMirrored = isMirrored;
+		setBounds();
+		MapGraph.compile(this.nodes);
 	}
 
 	/**
@@ -111,6 +132,7 @@ public class SimMap implements Serializable {
 		offset.translate(dx, dy);
 
 		needsRehash = true;
+		MapGraph.compile(this.nodes); // edge lengths may change by rounding
 	}
 
 	/**
@@ -127,6 +149,7 @@ public class SimMap implements Serializable {
 		setBounds();
 		this.isMirrored = true;
 		needsRehash = true;
+		MapGraph.compile(this.nodes); // order of the locations changed
 	}
 
 	/**
@@ -18,6 +18,7 @@ public class ConnectivityONEReport extends Report
 	 * Constructor.
 	 */
 	public ConnectivityONEReport() {
+		setColumns("time", "event", "host1", "host2", "state");
 		init();
 	}
 
@@ -27,7 +28,7 @@ public class ConnectivityONEReport extends Report
 			return;
 		}
 		newEvent();
-		write(createTimeStamp() + " CONN " + connectionString(h1, h2) + " up");
+		writeConnection(h1, h2, "up");
 	}
 
 	public void hostsDisconnected(DTNHost h1, DTNHost h2) {
@@ -38,16 +39,21 @@ public class ConnectivityONEReport extends Report
 			return;
 		}
 
-		write(createTimeStamp() + " CONN " + conString + " down");
+		writeConnection(h1, h2, "down");
 	}
 
 	/**
-	 * Creates and returns a "@" prefixed time stamp of the current simulation
-	 * time
-	 * @return time stamp of the current simulation time
+	 * Writes a connection event record with a time stamp of the current
+	 * simulation time and the node with the lower network address first
+	 * @param h1 The other node of the connection
+	 * @param h2 The other node of the connection
+	 * @param state State of the connection ("up" or "down")
 	 */
-	private String createTimeStamp() {
-		return String.format("%.2f", getSimTime());
+	private void writeConnection(DTNHost h1, DTNHost h2, String state) {
+		int a1 = Math.min(h1.getAddress(), h2.getAddress());
+		int a2 = Math.max(h1.getAddress(), h2.getAddress());
+		write(record().addFixed(getSimTime(), 2).add("CONN").add(a1).add(a2)
+				.add(state));
 	}
 
 	/**
@@ -27,6 +27,13 @@ public class EventLogReport extends Report
 	/** Extra info for message relayed event ("delivered again"): {@value} */
 	public static final String MESSAGE_TRANS_DELIVERED_AGAIN = "A";
 
+	/**
+	 * Constructor.
+	 */
+	public EventLogReport() {
+		setColumns("time", "action", "host1", "host2", "message", "extra");
+	}
+
 	/**
 	 * Processes a log event by writing a line to the report file
 	 * @param action The action as a string
@@ -37,10 +44,11 @@ public class EventLogReport extends Report
 	 */
 	private void processEvent(final String action, final DTNHost host1,
 			final DTNHost host2, final Message message, final String extra) {
-		write(getSimTime() + " " + action + " " + (host1 != null ? host1 : "")
-				+ (host2 != null ? (" " + host2) : "")
-				+ (message != null ? " " + message : "")
-				+ (extra != null ? " " + extra : ""));
+		write(record().add(getSimTime()).add(action)
+				.add(host1 != null ? host1.toString() : "")
+				.add(host2 != null ? host2.toString() : null)
+				.add(message != null ? message.toString() : null)
+				.add(extra));
 	}
 
 	public void hostsConnected(DTNHost host1, DTNHost host2) {
@@ -43,8 +43,9 @@ implements MovementListener {
   public void initialLocation(
       final DTNHost host,
       final Coord location ) {
-    // XXX: This is bugged and doesn't actually get called.
-    this.previousPositions.put( host, location );
+    // The location is the host's own (mutable) location object, so store a
+    // copy of it.
+    this.previousPositions.put( host, location.clone() );
   }
 
   @Override
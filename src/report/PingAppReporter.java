@@ -7,13 +7,15 @@ package report;
 
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
-import java.util.TreeMap;
 
 import applications.PingApplication;
 import core.Application;
+import core.ApplicationEvent;
 import core.ApplicationListener;
 import core.DTNHost;
+import routing.PingEvents;
 
 /**
  * Reporter for the <code>PingApplication</code>. Counts the number of pings
@@ -23,36 +25,23 @@ import core.DTNHost;
  */
 public class PingAppReporter extends Report implements ApplicationListener {
 
-	private ArrayList<Double> roundTripTimes;
-    private ArrayList<Double> responseTimes;
-    private TreeMap<Integer,Long> individualNumOfRequestsWiFi;
-    private TreeMap<Integer,Double> individualShareRequestsWiFi;
-    private TreeMap<Integer,Long> individualNumOfRequestsCellular;
-    private TreeMap<Integer,Double> individualShareRequestsCellular;
-    private TreeMap<Integer,Long> individualNumOfRequestsPedestrian;
-    private TreeMap<Integer,Double> individualShareRequestsPedestrian;
-    private TreeMap<Integer,Long> individualNumOfRequestsAggregate;
-    private TreeMap<Integer,Long> individualNumOfResponsesWiFi;
-    private TreeMap<Integer,Double> individualShareResponsesWiFi;
-    private TreeMap<Integer,Long> individualNumOfResponsesPedestrian;
-    private TreeMap<Integer,Double> individualShareResponsesPedestrian;
-    private TreeMap<Integer,Long> individualNumOfResponsesCellular;
-    private TreeMap<Integer,Double> individualShareResponsesCellular;
-    private TreeMap<Integer,Long> individualNumOfResponsesAggregate;
-    private TreeMap<Integer,Long> individualNumOfRequestBytesWiFi;
-    private TreeMap<Integer,Double> individualShareRequestBytesWiFi;
-    private TreeMap<Integer,Long> individualNumOfRequestBytesPedestrian;
-    private TreeMap<Integer,Double> individualShareRequestBytesPedestrian;
-    private TreeMap<Integer,Long> individualNumOfRequestBytesCellular;
-    private TreeMap<Integer,Double> individualShareRequestBytesCellular;
-    private TreeMap<Integer,Long> individualNumOfRequestBytesAggregate;
-    private TreeMap<Integer,Long> individualNumOfResponseBytesWiFi;
-    private TreeMap<Integer,Double> individualShareResponseBytesWiFi;
-    private TreeMap<Integer,Long> individualNumOfResponseBytesPedestrian;
-    private TreeMap<Integer,Double> individualShareResponseBytesPedestrian;
-    private TreeMap<Integer,Long> individualNumOfResponseBytesCellular;
-    private TreeMap<Integer,Double> individualShareResponseBytesCellular;
-    private TreeMap<Integer,Long> individualNumOfResponseBytesAggregate;
+	/** Maximum number of round trip and response times that are kept for
+	 * exact quantiles -setting id ({@value}). After that, the quantiles are
+	 * approximated with a fixed-memory histogram (see
+	 * {@link StreamingStatistics}). Default: {@value #DEF_EXACT_LIMIT} */
+	public static final String EXACT_LIMIT_S = "exactQuantileLimit";
+	/** default value for the exact quantile limit */
+	public static final int DEF_EXACT_LIMIT = 100000;
+
+	private StreamingStatistics roundTripTimes;
+    private StreamingStatistics responseTimes;
+    /** per-host requests and responses, by the type of the other host */
+    private HostCounters requestsWiFi;
+    private HostCounters requestsCellular;
+    private HostCounters requestsPedestrian;
+    private HostCounters responsesWiFi;
+    private HostCounters responsesCellular;
+    private HostCounters responsesPedestrian;
 
 	private int pingsSent=0, pingsReceived=0;
 	private int pongsSent=0, pongsReceived=0;
@@ -78,38 +67,18 @@ public class PingAppReporter extends Report implements ApplicationListener {
 	public PingAppReporter() {
 		super();
 
-		roundTripTimes = new ArrayList<Double>();
-        responseTimes = new ArrayList<Double>();
-        individualNumOfRequestsWiFi = new TreeMap<Integer,Long>();
-        individualShareRequestsWiFi = new TreeMap<Integer,Double>();
-        individualNumOfRequestsPedestrian = new TreeMap<Integer,Long>();
-        individualShareRequestsPedestrian = new TreeMap<Integer,Double>();
-        individualNumOfRequestsCellular = new TreeMap<Integer,Long>();
-        individualShareRequestsCellular = new TreeMap<Integer,Double>();
-
-        individualNumOfResponsesWiFi = new TreeMap<Integer,Long>();
-        individualShareResponsesWiFi = new TreeMap<Integer,Double>();
-        individualNumOfResponsesPedestrian = new TreeMap<Integer,Long>();
-        individualShareResponsesPedestrian = new TreeMap<Integer,Double>();
-        individualNumOfResponsesCellular = new TreeMap<Integer,Long>();
-        individualShareResponsesCellular = new TreeMap<Integer,Double>();
-
-        individualNumOfRequestBytesWiFi = new TreeMap<Integer,Long>();
-        individualShareRequestBytesWiFi = new TreeMap<Integer,Double>();
-        individualNumOfRequestBytesPedestrian = new TreeMap<Integer,Long>();
-        individualShareRequestBytesPedestrian = new TreeMap<Integer,Double>();
-        individualNumOfRequestBytesCellular = new TreeMap<Integer,Long>();
-        individualShareRequestBytesCellular = new TreeMap<Integer,Double>();
-
-        individualNumOfResponseBytesWiFi = new TreeMap<Integer,Long>();
-        individualShareResponseBytesWiFi = new TreeMap<Integer,Double>();
-        individualNumOfResponseBytesPedestrian = new TreeMap<Integer,Long>();
-        individualShareResponseBytesPedestrian = new TreeMap<Integer,Double>();
-        individualNumOfResponseBytesCellular = new TreeMap<Integer,Long>();
-        individualShareResponseBytesCellular = new TreeMap<Integer,Double>();
+		int exactLimit = getSettings().getInt(EXACT_LIMIT_S, DEF_EXACT_LIMIT);
+		roundTripTimes = new StreamingStatistics(exactLimit);
+        responseTimes = new StreamingStatistics(exactLimit);
+        requestsWiFi = new HostCounters();
+        requestsCellular = new HostCounters();
+        requestsPedestrian = new HostCounters();
+        responsesWiFi = new HostCounters();
+        responsesCellular = new HostCounters();
+        responsesPedestrian = new HostCounters();
 	}
 
-	public void gotEvent(String event, Object params, Application app,
+	public void gotEvent(ApplicationEvent event, Object params, Application app,
 			DTNHost host, double roundTripTime, DTNHost.TypeOfHost typeOfOtherHost, int messageSize, double responseTime) {
 		// Check that the event is sent by correct application type
 		if (!(app instanceof PingApplication)) return;
@@ -118,16 +87,16 @@ public class PingAppReporter extends Report implements ApplicationListener {
             return;
 
         // Increment the counters based on the event type
-        if (event.equalsIgnoreCase("InLocalCache")) {
+        if (event == PingEvents.IN_LOCAL_CACHE) {
             foundInLocalCache++;
         }
-		if (event.equalsIgnoreCase("GotPing")) {
+		else if (event == PingEvents.GOT_PING) {
 			pingsReceived++;
 		}
-		if (event.equalsIgnoreCase("SentPong")) {
+		else if (event == PingEvents.SENT_PONG) {
 			pongsSent++;
 		}
-		if (event.equalsIgnoreCase("GotPong")) {
+		else if (event == PingEvents.GOT_PONG) {
 			pongsReceived++;
             totalBytesReceived += messageSize;
             roundTripTimes.add(roundTripTime);
@@ -138,52 +107,28 @@ public class PingAppReporter extends Report implements ApplicationListener {
                     pongsReceivedCellular++;
                     bytesReceivedCellular += messageSize;
 
-                    if(individualNumOfResponsesCellular.containsKey(host.getAddress()))
-                        individualNumOfResponsesCellular.put(host.getAddress(), individualNumOfResponsesCellular.get(host.getAddress()) + 1);
-                    else
-                        individualNumOfResponsesCellular.put(host.getAddress(), 1L);
-
-                    if(individualNumOfResponseBytesCellular.containsKey(host.getAddress()))
-                        individualNumOfResponseBytesCellular.put(host.getAddress(), individualNumOfResponseBytesCellular.get(host.getAddress()) + messageSize);
-                    else
-                        individualNumOfResponseBytesCellular.put(host.getAddress(), (long) messageSize);
+                    responsesCellular.add(host.getAddress(), messageSize);
 
                     break;
                 case WIFI_HOTSPOT:
                     pongsReceivedWiFi++;
                     bytesReceivedWiFi += messageSize;
 
-                    if(individualNumOfResponsesWiFi.containsKey(host.getAddress()))
-                        individualNumOfResponsesWiFi.put(host.getAddress(), individualNumOfResponsesWiFi.get(host.getAddress()) + 1);
-                    else
-                        individualNumOfResponsesWiFi.put(host.getAddress(), 1L);
-
-                    if(individualNumOfResponseBytesWiFi.containsKey(host.getAddress()))
-                        individualNumOfResponseBytesWiFi.put(host.getAddress(), individualNumOfResponseBytesWiFi.get(host.getAddress()) + messageSize);
-                    else
-                        individualNumOfResponseBytesWiFi.put(host.getAddress(), (long) messageSize);
+                    responsesWiFi.add(host.getAddress(), messageSize);
 
                     break;
                 case REGULAR_HOST:
                     pongsReceivedPedestrian++;
                     bytesReceivedPedestrian += messageSize;
 
-                    if(individualNumOfResponsesPedestrian.containsKey(host.getAddress()))
-                        individualNumOfResponsesPedestrian.put(host.getAddress(), individualNumOfResponsesPedestrian.get(host.getAddress()) + 1);
-                    else
-                        individualNumOfResponsesPedestrian.put(host.getAddress(), 1L);
-
-                    if(individualNumOfResponseBytesPedestrian.containsKey(host.getAddress()))
-                        individualNumOfResponseBytesPedestrian.put(host.getAddress(), individualNumOfResponseBytesPedestrian.get(host.getAddress()) + messageSize);
-                    else
-                        individualNumOfResponseBytesPedestrian.put(host.getAddress(), (long) messageSize);
+                    responsesPedestrian.add(host.getAddress(), messageSize);
 
                     break;
                 default:
                     break;
             }
 		}
-		if (event.equalsIgnoreCase("SentPing")) {
+		else if (event == PingEvents.SENT_PING) {
 			pingsSent++;
             totalBytesSent += messageSize;
 
@@ -193,45 +138,21 @@ public class PingAppReporter extends Report implements ApplicationListener {
                         pingsSentCellular++;
                         bytesSentCellular += messageSize;
 
-                        if(individualNumOfRequestsCellular.containsKey(host.getAddress()))
-                            individualNumOfRequestsCellular.put(host.getAddress(), individualNumOfRequestsCellular.get(host.getAddress()) + 1);
-                        else
-                            individualNumOfRequestsCellular.put(host.getAddress(), 1L);
-
-                        if(individualNumOfRequestBytesCellular.containsKey(host.getAddress()))
-                            individualNumOfRequestBytesCellular.put(host.getAddress(), individualNumOfRequestBytesCellular.get(host.getAddress()) + messageSize);
-                        else
-                            individualNumOfRequestBytesCellular.put(host.getAddress(), (long) messageSize);
+                        requestsCellular.add(host.getAddress(), messageSize);
 
                         break;
                     case WIFI_HOTSPOT:
                         pingsSentWiFi++;
                         bytesSentWiFi += messageSize;
 
-                        if(individualNumOfRequestsWiFi.containsKey(host.getAddress()))
-                            individualNumOfRequestsWiFi.put(host.getAddress(), individualNumOfRequestsWiFi.get(host.getAddress()) + 1);
-                        else
-                            individualNumOfRequestsWiFi.put(host.getAddress(), 1L);
-
-                        if(individualNumOfRequestBytesWiFi.containsKey(host.getAddress()))
-                            individualNumOfRequestBytesWiFi.put(host.getAddress(), individualNumOfRequestBytesWiFi.get(host.getAddress()) + messageSize);
-                        else
-                            individualNumOfRequestBytesWiFi.put(host.getAddress(), (long) messageSize);
+                        requestsWiFi.add(host.getAddress(), messageSize);
 
                         break;
                     case REGULAR_HOST:
                         pingsSentPedestrian++;
                         bytesSentPedestrian += messageSize;
 
-                        if(individualNumOfRequestsPedestrian.containsKey(host.getAddress()))
-                            individualNumOfRequestsPedestrian.put(host.getAddress(), individualNumOfRequestsPedestrian.get(host.getAddress()) + 1);
-                        else
-                            individualNumOfRequestsPedestrian.put(host.getAddress(), 1L);
-
-                        if(individualNumOfRequestBytesPedestrian.containsKey(host.getAddress()))
-                            individualNumOfRequestBytesPedestrian.put(host.getAddress(), individualNumOfRequestBytesPedestrian.get(host.getAddress()) + messageSize);
-                        else
-                            individualNumOfRequestBytesPedestrian.put(host.getAddress(), (long) messageSize);
+                        requestsPedestrian.add(host.getAddress(), messageSize);
 
                         break;
                     default:
@@ -428,17 +349,46 @@ public class PingAppReporter extends Report implements ApplicationListener {
     private String getPedestrianToWiFiOffloadingResponseBytesRatio() {return bytesReceivedPedestrian + " / " + bytesReceivedWiFi;}
 
 
-    private TreeMap<Integer,Double> calculateShares(TreeMap<Integer,Long> offloadValues, TreeMap<Integer,Long> aggregateValues) {
-        TreeMap<Integer,Double> results = new TreeMap<Integer,Double>();
-
-        if(offloadValues.keySet().size() != aggregateValues.keySet().size())
-            System.out.println("ERROR: Not equal sizes.");
-        else {
-            for(Integer i : offloadValues.keySet()) {
-                results.put(i, ((double) offloadValues.get(i))/((double) aggregateValues.get(i)) * 100.0d);
-            }
+    /**
+     * Collects the per-node values of one offloading statistic. Only the
+     * nodes that have at least one event of the kind are included.
+     * @param cellular Counters for the cellular network
+     * @param wifi Counters for the WiFi hotspots
+     * @param pedestrian Counters for the pedestrians
+     * @param bytes If true, the byte counts are used instead of the numbers
+     * of events
+     * @return The sorted per-node values and shares (in %)
+     */
+    private PerNodeValues getPerNodeValues(HostCounters cellular, HostCounters wifi, HostCounters pedestrian, boolean bytes) {
+        PerNodeValues results = new PerNodeValues();
+        int nrofHosts = Math.max(cellular.size(), Math.max(wifi.size(), pedestrian.size()));
+
+        for(int i = 0; i < nrofHosts; i++) {
+            if(cellular.getEvents(i) + wifi.getEvents(i) + pedestrian.getEvents(i) == 0)
+                continue;
+
+            long cell = bytes ? cellular.getBytes(i) : cellular.getEvents(i);
+            long wf = bytes ? wifi.getBytes(i) : wifi.getEvents(i);
+            long ped = bytes ? pedestrian.getBytes(i) : pedestrian.getEvents(i);
+            long aggregate = cell + wf + ped;
+
+            results.cellular.add(cell);
+            results.wifi.add(wf);
+            results.pedestrian.add(ped);
+            results.aggregate.add(aggregate);
+            results.cellularShares.add(((double) cell)/((double) aggregate) * 100.0d);
+            results.wifiShares.add(((double) wf)/((double) aggregate) * 100.0d);
+            results.pedestrianShares.add(((double) ped)/((double) aggregate) * 100.0d);
         }
 
+        Collections.sort(results.cellular);
+        Collections.sort(results.wifi);
+        Collections.sort(results.pedestrian);
+        Collections.sort(results.aggregate);
+        Collections.sort(results.cellularShares);
+        Collections.sort(results.wifiShares);
+        Collections.sort(results.pedestrianShares);
+
         return results;
     }
 
@@ -480,18 +430,16 @@ public class PingAppReporter extends Report implements ApplicationListener {
 
 		write(statsText);
 
-        if(roundTripTimes.size() > 0) {
+        if(roundTripTimes.getCount() > 0) {
 
             /* Round Trip Times stats */
             write("\nRound Trip Times Statistics\n" + "--------------------------------\n");
 
-            Collections.sort(roundTripTimes);
-
-            statsText = "mean round trip time: " + this.getMeanDouble(roundTripTimes) + " secs" +
-                      "\nmedian round trip time: " + this.getMedianDouble(roundTripTimes) + " secs" +
-                      "\n95%-tile round trip time: " + this.get95TileDouble(roundTripTimes) + " secs" +
-                      "\nmin round trip time: " + this.getMinDouble(roundTripTimes) + " secs" +
-                      "\nmax round trip time: " + this.getMaxDouble(roundTripTimes) + " secs\n"
+            statsText = "mean round trip time: " + roundTripTimes.getMean() + " secs" +
+                      "\nmedian round trip time: " + roundTripTimes.getQuantile(0.5) + " secs" +
+                      "\n95%-tile round trip time: " + roundTripTimes.getQuantile(0.95) + " secs" +
+                      "\nmin round trip time: " + roundTripTimes.getMin() + " secs" +
+                      "\nmax round trip time: " + roundTripTimes.getMax() + " secs\n"
                     ;
 
             write(statsText);
@@ -499,18 +447,16 @@ public class PingAppReporter extends Report implements ApplicationListener {
         }
 
 
-        if(responseTimes.size() > 0) {
+        if(responseTimes.getCount() > 0) {
 
             /* Response Times stats */
             write("\nResponse Times Statistics\n" + "--------------------------------\n");
 
-            Collections.sort(responseTimes);
-
-            statsText = "mean response time: " + this.getMeanDouble(responseTimes) + " secs" +
-                    "\nmedian response time: " + this.getMedianDouble(responseTimes) + " secs" +
-                    "\n95%-tile response time: " + this.get95TileDouble(responseTimes) + " secs" +
-                    "\nmin response time: " + this.getMinDouble(responseTimes) + " secs" +
-                    "\nmax response time: " + this.getMaxDouble(responseTimes) + " secs\n"
+            statsText = "mean response time: " + responseTimes.getMean() + " secs" +
+                    "\nmedian response time: " + responseTimes.getQuantile(0.5) + " secs" +
+                    "\n95%-tile response time: " + responseTimes.getQuantile(0.95) + " secs" +
+                    "\nmin response time: " + responseTimes.getMin() + " secs" +
+                    "\nmax response time: " + responseTimes.getMax() + " secs\n"
             ;
 
             write(statsText);
@@ -597,63 +543,19 @@ public class PingAppReporter extends Report implements ApplicationListener {
         //requests WiFi,Ped,Cell,Aggregate
         write("\nOffloading Statistics (Per Node) - Requests\n" + "--------------------------------\n");
 
-        //Calculate Aggregate Numbers
-        individualNumOfRequestsAggregate = new TreeMap<Integer,Long>(individualNumOfRequestsCellular);
-
-        for(Integer i : individualNumOfRequestsWiFi.keySet()) {
-            if(individualNumOfRequestsAggregate.containsKey(i))
-                individualNumOfRequestsAggregate.put(i, individualNumOfRequestsAggregate.get(i) + individualNumOfRequestsWiFi.get(i));
-            else
-                individualNumOfRequestsAggregate.put(i, individualNumOfRequestsWiFi.get(i));
-        }
-
-        for(Integer i : individualNumOfRequestsPedestrian.keySet()) {
-            if(individualNumOfRequestsAggregate.containsKey(i))
-                individualNumOfRequestsAggregate.put(i, individualNumOfRequestsAggregate.get(i) + individualNumOfRequestsPedestrian.get(i));
-            else
-                individualNumOfRequestsAggregate.put(i, individualNumOfRequestsPedestrian.get(i));
-        }
-
-        //Fill any missing info for nodes with 0.
-        for(Integer i : individualNumOfRequestsAggregate.keySet()) {
-            if(!individualNumOfRequestsPedestrian.containsKey(i)){
-                individualNumOfRequestsPedestrian.put(i, 0L);
-            }
-            if(!individualNumOfRequestsWiFi.containsKey(i)){
-                individualNumOfRequestsWiFi.put(i, 0L);
-            }
-            if(!individualNumOfRequestsCellular.containsKey(i)){
-                individualNumOfRequestsCellular.put(i, 0L);
-            }
-        }
-
-        //Calculate Shares
-        individualShareRequestsWiFi = calculateShares(individualNumOfRequestsWiFi, individualNumOfRequestsAggregate);
-        individualShareRequestsCellular = calculateShares(individualNumOfRequestsCellular, individualNumOfRequestsAggregate);
-        individualShareRequestsPedestrian = calculateShares(individualNumOfRequestsPedestrian, individualNumOfRequestsAggregate);
-
-
         //Sort Lists of Values
-        ArrayList<Long> valuesRequestsWiFi = new ArrayList<Long>(individualNumOfRequestsWiFi.values());
-        Collections.sort(valuesRequestsWiFi);
-        ArrayList<Double> valuesSharesRequestsWiFi = new ArrayList<Double>(individualShareRequestsWiFi.values());
-        Collections.sort(valuesSharesRequestsWiFi);
-        ArrayList<Long> valuesRequestsCellular = new ArrayList<Long>(individualNumOfRequestsCellular.values());
-        Collections.sort(valuesRequestsCellular);
-        ArrayList<Double> valuesSharesRequestsCellular = new ArrayList<Double>(individualShareRequestsCellular.values());
-        Collections.sort(valuesSharesRequestsCellular);
-        ArrayList<Long> valuesRequestsPedestrian = new ArrayList<Long>(individualNumOfRequestsPedestrian.values());
-        Collections.sort(valuesRequestsPedestrian);
-        ArrayList<Double> valuesSharesRequestsPedestrian = new ArrayList<Double>(individualShareRequestsPedestrian.values());
-        Collections.sort(valuesSharesRequestsPedestrian);
-        ArrayList<Long> valuesRequestsAggregate = new ArrayList<Long>(individualNumOfRequestsAggregate.values());
-        Collections.sort(valuesRequestsAggregate);
+        PerNodeValues requests = getPerNodeValues(requestsCellular, requestsWiFi, requestsPedestrian, false);
+        ArrayList<Long> valuesRequestsWiFi = requests.wifi;
+        ArrayList<Double> valuesSharesRequestsWiFi = requests.wifiShares;
+        ArrayList<Long> valuesRequestsCellular = requests.cellular;
+        ArrayList<Double> valuesSharesRequestsCellular = requests.cellularShares;
+        ArrayList<Long> valuesRequestsPedestrian = requests.pedestrian;
+        ArrayList<Double> valuesSharesRequestsPedestrian = requests.pedestrianShares;
+        ArrayList<Long> valuesRequestsAggregate = requests.aggregate;
 
         DecimalFormat df = new DecimalFormat();
         df.setMaximumFractionDigits(2);
 
-        //System.out.println(individualNumOfRequestsWiFi);
-        //System.out.println(individualNumOfRequestsAggregate);
         statsText = "\nmean requests Cellular: " + this.getMean(valuesRequestsCellular) + "  requests per node" +
                     "\nmean request share Cellular: " + df.format(this.getMeanDouble(valuesSharesRequestsCellular)) + " %  (mean of individual shares)" +
                     "\nmedian requests Cellular: " + this.getMedian(valuesRequestsCellular) + "  requests per node" +
@@ -718,56 +620,15 @@ public class PingAppReporter extends Report implements ApplicationListener {
         /* Offloading stats - Per Node - Request Bytes*/
         write("\nOffloading Statistics (Per Node) - Request Bytes\n" + "--------------------------------\n");
 
-        //Calculate Aggregate Numbers
-        individualNumOfRequestBytesAggregate = new TreeMap<Integer,Long>(individualNumOfRequestBytesCellular);
-
-        for(Integer i : individualNumOfRequestBytesWiFi.keySet()) {
-            if(individualNumOfRequestBytesAggregate.containsKey(i))
-                individualNumOfRequestBytesAggregate.put(i, individualNumOfRequestBytesAggregate.get(i) + individualNumOfRequestBytesWiFi.get(i));
-            else
-                individualNumOfRequestBytesAggregate.put(i, individualNumOfRequestBytesWiFi.get(i));
-        }
-
-        for(Integer i : individualNumOfRequestBytesPedestrian.keySet()) {
-            if(individualNumOfRequestBytesAggregate.containsKey(i))
-                individualNumOfRequestBytesAggregate.put(i, individualNumOfRequestBytesAggregate.get(i) + individualNumOfRequestBytesPedestrian.get(i));
-            else
-                individualNumOfRequestBytesAggregate.put(i, individualNumOfRequestBytesPedestrian.get(i));
-        }
-
-        //Fill any missing info for nodes with 0.
-        for(Integer i : individualNumOfRequestBytesAggregate.keySet()) {
-            if(!individualNumOfRequestBytesPedestrian.containsKey(i)){
-                individualNumOfRequestBytesPedestrian.put(i, 0L);
-            }
-            if(!individualNumOfRequestBytesWiFi.containsKey(i)){
-                individualNumOfRequestBytesWiFi.put(i, 0L);
-            }
-            if(!individualNumOfRequestBytesCellular.containsKey(i)){
-                individualNumOfRequestBytesCellular.put(i, 0L);
-            }
-        }
-
-        //Calculate Shares
-        individualShareRequestBytesWiFi = calculateShares(individualNumOfRequestBytesWiFi, individualNumOfRequestBytesAggregate);
-        individualShareRequestBytesCellular = calculateShares(individualNumOfRequestBytesCellular, individualNumOfRequestBytesAggregate);
-        individualShareRequestBytesPedestrian = calculateShares(individualNumOfRequestBytesPedestrian, individualNumOfRequestBytesAggregate);
-
         //Sort Lists of Values
-        ArrayList<Long> valuesRequestBytesWiFi = new ArrayList<Long>(individualNumOfRequestBytesWiFi.values());
-        Collections.sort(valuesRequestBytesWiFi);
-        ArrayList<Double> valuesSharesRequestBytesWiFi = new ArrayList<Double>(individualShareRequestBytesWiFi.values());
-        Collections.sort(valuesSharesRequestBytesWiFi);
-        ArrayList<Long> valuesRequestBytesCellular = new ArrayList<Long>(individualNumOfRequestBytesCellular.values());
-        Collections.sort(valuesRequestBytesCellular);
-        ArrayList<Double> valuesSharesRequestBytesCellular = new ArrayList<Double>(individualShareRequestBytesCellular.values());
-        Collections.sort(valuesSharesRequestBytesCellular);
-        ArrayList<Long> valuesRequestBytesPedestrian = new ArrayList<Long>(individualNumOfRequestBytesPedestrian.values());
-        Collections.sort(valuesRequestBytesPedestrian);
-        ArrayList<Double> valuesSharesRequestBytesPedestrian = new ArrayList<Double>(individualShareRequestBytesPedestrian.values());
-        Collections.sort(valuesSharesRequestBytesPedestrian);
-        ArrayList<Long> valuesRequestBytesAggregate = new ArrayList<Long>(individualNumOfRequestBytesAggregate.values());
-        Collections.sort(valuesRequestBytesAggregate);
+        PerNodeValues requestBytes = getPerNodeValues(requestsCellular, requestsWiFi, requestsPedestrian, true);
+        ArrayList<Long> valuesRequestBytesWiFi = requestBytes.wifi;
+        ArrayList<Double> valuesSharesRequestBytesWiFi = requestBytes.wifiShares;
+        ArrayList<Long> valuesRequestBytesCellular = requestBytes.cellular;
+        ArrayList<Double> valuesSharesRequestBytesCellular = requestBytes.cellularShares;
+        ArrayList<Long> valuesRequestBytesPedestrian = requestBytes.pedestrian;
+        ArrayList<Double> valuesSharesRequestBytesPedestrian = requestBytes.pedestrianShares;
+        ArrayList<Long> valuesRequestBytesAggregate = requestBytes.aggregate;
 
 
         statsText = "\nmean request bytes Cellular: " + this.getMean(valuesRequestBytesCellular) +
@@ -836,57 +697,15 @@ public class PingAppReporter extends Report implements ApplicationListener {
         /* Offloading stats - Per Node - Responses*/
         write("\nOffloading Statistics (Per Node) - Responses\n" + "--------------------------------\n");
 
-        //Calculate Aggregate Numbers
-        individualNumOfResponsesAggregate = new TreeMap<Integer,Long>(individualNumOfResponsesCellular);
-
-        for(Integer i : individualNumOfResponsesWiFi.keySet()) {
-            if(individualNumOfResponsesAggregate.containsKey(i))
-                individualNumOfResponsesAggregate.put(i, individualNumOfResponsesAggregate.get(i) + individualNumOfResponsesWiFi.get(i));
-            else
-                individualNumOfResponsesAggregate.put(i, individualNumOfResponsesWiFi.get(i));
-        }
-
-        for(Integer i : individualNumOfResponsesPedestrian.keySet()) {
-            if(individualNumOfResponsesAggregate.containsKey(i))
-                individualNumOfResponsesAggregate.put(i, individualNumOfResponsesAggregate.get(i) + individualNumOfResponsesPedestrian.get(i));
-            else
-                individualNumOfResponsesAggregate.put(i, individualNumOfResponsesPedestrian.get(i));
-        }
-
-        //Fill any missing info for nodes with 0.
-        for(Integer i : individualNumOfResponsesAggregate.keySet()) {
-            if(!individualNumOfResponsesPedestrian.containsKey(i)){
-                individualNumOfResponsesPedestrian.put(i, 0L);
-            }
-            if(!individualNumOfResponsesWiFi.containsKey(i)){
-                individualNumOfResponsesWiFi.put(i, 0L);
-            }
-            if(!individualNumOfResponsesCellular.containsKey(i)){
-                individualNumOfResponsesCellular.put(i, 0L);
-            }
-        }
-
-        //Calculate Shares
-        individualShareResponsesWiFi = calculateShares(individualNumOfResponsesWiFi, individualNumOfResponsesAggregate);
-        individualShareResponsesCellular = calculateShares(individualNumOfResponsesCellular, individualNumOfResponsesAggregate);
-        individualShareResponsesPedestrian = calculateShares(individualNumOfResponsesPedestrian, individualNumOfResponsesAggregate);
-
-
         //Sort Lists of Values
-        ArrayList<Long> valuesResponsesWiFi = new ArrayList<Long>(individualNumOfResponsesWiFi.values());
-        Collections.sort(valuesResponsesWiFi);
-        ArrayList<Double> valuesSharesResponsesWiFi = new ArrayList<Double>(individualShareResponsesWiFi.values());
-        Collections.sort(valuesSharesResponsesWiFi);
-        ArrayList<Long> valuesResponsesCellular = new ArrayList<Long>(individualNumOfResponsesCellular.values());
-        Collections.sort(valuesResponsesCellular);
-        ArrayList<Double> valuesSharesResponsesCellular = new ArrayList<Double>(individualShareResponsesCellular.values());
-        Collections.sort(valuesSharesResponsesCellular);
-        ArrayList<Long> valuesResponsesPedestrian = new ArrayList<Long>(individualNumOfResponsesPedestrian.values());
-        Collections.sort(valuesResponsesPedestrian);
-        ArrayList<Double> valuesSharesResponsesPedestrian = new ArrayList<Double>(individualShareResponsesPedestrian.values());
-        Collections.sort(valuesSharesResponsesPedestrian);
-        ArrayList<Long> valuesResponsesAggregate = new ArrayList<Long>(individualNumOfResponsesAggregate.values());
-        Collections.sort(valuesResponsesAggregate);
+        PerNodeValues responses = getPerNodeValues(responsesCellular, responsesWiFi, responsesPedestrian, false);
+        ArrayList<Long> valuesResponsesWiFi = responses.wifi;
+        ArrayList<Double> valuesSharesResponsesWiFi = responses.wifiShares;
+        ArrayList<Long> valuesResponsesCellular = responses.cellular;
+        ArrayList<Double> valuesSharesResponsesCellular = responses.cellularShares;
+        ArrayList<Long> valuesResponsesPedestrian = responses.pedestrian;
+        ArrayList<Double> valuesSharesResponsesPedestrian = responses.pedestrianShares;
+        ArrayList<Long> valuesResponsesAggregate = responses.aggregate;
 
 
         statsText = "\nmean responses Cellular: " + this.getMean(valuesResponsesCellular) +
@@ -951,56 +770,15 @@ public class PingAppReporter extends Report implements ApplicationListener {
         /* Offloading stats - Per Node - Response Bytes*/
         write("\nOffloading Statistics (Per Node) - Response Bytes\n" + "--------------------------------\n");
 
-        //Calculate Aggregate Numbers
-        individualNumOfResponseBytesAggregate = new TreeMap<Integer,Long>(individualNumOfResponseBytesCellular);
-
-        for(Integer i : individualNumOfResponseBytesWiFi.keySet()) {
-            if(individualNumOfResponseBytesAggregate.containsKey(i))
-                individualNumOfResponseBytesAggregate.put(i, individualNumOfResponseBytesAggregate.get(i) + individualNumOfResponseBytesWiFi.get(i));
-            else
-                individualNumOfResponseBytesAggregate.put(i, individualNumOfResponseBytesWiFi.get(i));
-        }
-
-        for(Integer i : individualNumOfResponseBytesPedestrian.keySet()) {
-            if(individualNumOfResponseBytesAggregate.containsKey(i))
-                individualNumOfResponseBytesAggregate.put(i, individualNumOfResponseBytesAggregate.get(i) + individualNumOfResponseBytesPedestrian.get(i));
-            else
-                individualNumOfResponseBytesAggregate.put(i, individualNumOfResponseBytesPedestrian.get(i));
-        }
-
-        //Fill any missing info for nodes with 0.
-        for(Integer i : individualNumOfResponseBytesAggregate.keySet()) {
-            if(!individualNumOfResponseBytesPedestrian.containsKey(i)){
-                individualNumOfResponseBytesPedestrian.put(i, 0L);
-            }
-            if(!individualNumOfResponseBytesWiFi.containsKey(i)){
-                individualNumOfResponseBytesWiFi.put(i, 0L);
-            }
-            if(!individualNumOfResponseBytesCellular.containsKey(i)){
-                individualNumOfResponseBytesCellular.put(i, 0L);
-            }
-        }
-
-        //Calculate Shares
-        individualShareResponseBytesWiFi = calculateShares(individualNumOfResponseBytesWiFi, individualNumOfResponseBytesAggregate);
-        individualShareResponseBytesCellular = calculateShares(individualNumOfResponseBytesCellular, individualNumOfResponseBytesAggregate);
-        individualShareResponseBytesPedestrian = calculateShares(individualNumOfResponseBytesPedestrian, individualNumOfResponseBytesAggregate);
-
         //Sort Lists of Values
-        ArrayList<Long> valuesResponseBytesWiFi = new ArrayList<Long>(individualNumOfResponseBytesWiFi.values());
-        Collections.sort(valuesResponseBytesWiFi);
-        ArrayList<Double> valuesSharesResponseBytesWiFi = new ArrayList<Double>(individualShareResponseBytesWiFi.values());
-        Collections.sort(valuesSharesResponseBytesWiFi);
-        ArrayList<Long> valuesResponseBytesCellular = new ArrayList<Long>(individualNumOfResponseBytesCellular.values());
-        Collections.sort(valuesResponseBytesCellular);
-        ArrayList<Double> valuesSharesResponseBytesCellular = new ArrayList<Double>(individualShareResponseBytesCellular.values());
-        Collections.sort(valuesSharesResponseBytesCellular);
-        ArrayList<Long> valuesResponseBytesPedestrian = new ArrayList<Long>(individualNumOfResponseBytesPedestrian.values());
-        Collections.sort(valuesResponseBytesPedestrian);
-        ArrayList<Double> valuesSharesResponseBytesPedestrian = new ArrayList<Double>(individualShareResponseBytesPedestrian.values());
-        Collections.sort(valuesSharesResponseBytesPedestrian);
-        ArrayList<Long> valuesResponseBytesAggregate = new ArrayList<Long>(individualNumOfResponseBytesAggregate.values());
-        Collections.sort(valuesResponseBytesAggregate);
+        PerNodeValues responseBytes = getPerNodeValues(responsesCellular, responsesWiFi, responsesPedestrian, true);
+        ArrayList<Long> valuesResponseBytesWiFi = responseBytes.wifi;
+        ArrayList<Double> valuesSharesResponseBytesWiFi = responseBytes.wifiShares;
+        ArrayList<Long> valuesResponseBytesCellular = responseBytes.cellular;
+        ArrayList<Double> valuesSharesResponseBytesCellular = responseBytes.cellularShares;
+        ArrayList<Long> valuesResponseBytesPedestrian = responseBytes.pedestrian;
+        ArrayList<Double> valuesSharesResponseBytesPedestrian = responseBytes.pedestrianShares;
+        ArrayList<Long> valuesResponseBytesAggregate = responseBytes.aggregate;
 
 
         statsText = "\nmean response bytes Cellular: " + this.getMean(valuesResponseBytesCellular) +
@@ -1061,4 +839,48 @@ public class PingAppReporter extends Report implements ApplicationListener {
 
 		super.done();
 	}
+
+    /**
+     * Per-host event and byte counts of one kind of traffic, indexed by the
+     * host address
+     */
+    private static class HostCounters {
+        private long[] events = new long[0];
+        private long[] bytes = new long[0];
+
+        public void add(int address, int size) {
+            if(address >= events.length) {
+                int length = Math.max(address + 1, 2 * events.length);
+                events = Arrays.copyOf(events, length);
+                bytes = Arrays.copyOf(bytes, length);
+            }
+            events[address]++;
+            bytes[address] += size;
+        }
+
+        public int size() {
+            return events.length;
+        }
+
+        public long getEvents(int address) {
+            return address < events.length ? events[address] : 0;
+        }
+
+        public long getBytes(int address) {
+            return address < bytes.length ? bytes[address] : 0;
+        }
+    }
+
+    /**
+     * Sorted per-node values and shares of one offloading statistic
+     */
+    private static class PerNodeValues {
+        private ArrayList<Long> cellular = new ArrayList<Long>();
+        private ArrayList<Long> wifi = new ArrayList<Long>();
+        private ArrayList<Long> pedestrian = new ArrayList<Long>();
+        private ArrayList<Long> aggregate = new ArrayList<Long>();
+        private ArrayList<Double> cellularShares = new ArrayList<Double>();
+        private ArrayList<Double> wifiShares = new ArrayList<Double>();
+        private ArrayList<Double> pedestrianShares = new ArrayList<Double>();
+    }
 }
@@ -4,17 +4,22 @@
  */
 package report;
 
+import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.zip.GZIPOutputStream;
 
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 import core.SimError;
 import core.SimScenario;
@@ -49,6 +54,29 @@ public abstract class Report {
 	 *  respective report classes for details. Default is 0. Must be a positive
 	 *  integer or 0. */
 	public static final String WARMUP_S = "warmup";
+	/** Output format of the report -setting id ({@value}). Either
+	 * {@value #FORMAT_TEXT} (default) or {@value #FORMAT_CSV}. Only the
+	 * records written with {@link #write(ReportRecord)} are affected; in CSV
+	 * format they are written as comma separated values after a header line
+	 * with the names set by {@link #setColumns(String...)}. */
+	public static final String OUTPUT_FORMAT_S = "outputFormat";
+	/** Value of {@link #OUTPUT_FORMAT_S} for plain text output ({@value}) */
+	public static final String FORMAT_TEXT = "text";
+	/** Value of {@link #OUTPUT_FORMAT_S} for CSV output ({@value}) */
+	public static final String FORMAT_CSV = "csv";
+	/** Compress the output with gzip -setting id ({@value}). Boolean, default
+	 * is false. If true, {@value #COMPRESSED_SUFFIX} is appended to the names
+	 * of the output files. */
+	public static final String COMPRESS_S = "compress";
+	/** Suffix of compressed report files */
+	public static final String COMPRESSED_SUFFIX = ".gz";
+	/** Write only the numbers of the text lines -setting id ({@value}).
+	 * Boolean, default is true. If true, each number of a line written with
+	 * {@link #write(String)} is written on its own line and the rest of the
+	 * line is left out. */
+	public static final String ONLY_NUMBERS_S = "onlyNumbers";
+	/** Size of the output buffer (characters) */
+	private static final int OUT_BUFFER_SIZE = 64 * 1024;
 	/** Suffix of report files without explicit output */
 	public static final String OUT_SUFFIX = ".txt";
 	/** Suffix for reports that are created on n second intervals */
@@ -67,6 +95,12 @@ public abstract class Report {
 	private double lastReportTime;
 	private String outFileName;
 	private String scenarioName;
+	private boolean csv;
+	private boolean compress;
+	private boolean onlyNumbers;
+	private String[] columns;
+	private ReportRecord record;
+	private StringBuilder numbers;
 
 	/**
 	 * Constructor.
@@ -107,6 +141,20 @@ public abstract class Report {
 			precision = DEF_PRECISION;
 		}
 
+		if (settings.contains(OUTPUT_FORMAT_S)) {
+			String format = settings.getSetting(OUTPUT_FORMAT_S);
+			if (format.equals(FORMAT_CSV)) {
+				this.csv = true;
+			} else if (!format.equals(FORMAT_TEXT)) {
+				throw new SettingsError("Unknown report output format '" +
+						format + "' for " + OUTPUT_FORMAT_S);
+			}
+		}
+		this.compress = settings.getBoolean(COMPRESS_S, false);
+		this.onlyNumbers = settings.getBoolean(ONLY_NUMBERS_S, true);
+		this.record = new ReportRecord(this.csv);
+		this.numbers = new StringBuilder();
+
 		if (settings.contains(OUTPUT_SETTING)) {
 			outFileName = settings.getSetting(OUTPUT_SETTING);
 			// fill value place holders in the name
@@ -184,6 +232,16 @@ public abstract class Report {
 		else {
 			createOutput(outFileName);
 		}
+
+		if (this.csv && this.columns != null) {
+			for (int i = 0; i < this.columns.length; i++) {
+				if (i > 0) {
+					out.print(',');
+				}
+				out.print(this.columns[i]);
+			}
+			out.println();
+		}
 	}
 
 	/**
@@ -191,8 +249,16 @@ public abstract class Report {
 	 * @param outFileName Name (&path) of the file to create
 	 */
 	private void createOutput(String outFileName) {
+		if (this.compress) {
+			outFileName += COMPRESSED_SUFFIX;
+		}
 		try {
-			this.out = new PrintWriter(new FileWriter(outFileName));
+			OutputStream os = new FileOutputStream(outFileName);
+			if (this.compress) {
+				os = new GZIPOutputStream(os, OUT_BUFFER_SIZE);
+			}
+			this.out = new PrintWriter(new BufferedWriter(
+					new OutputStreamWriter(os), OUT_BUFFER_SIZE));
 		} catch (IOException e) {
 			throw new SimError("Couldn't open file '" + outFileName +
 					"' for report output\n" + e.getMessage(), e);
@@ -228,55 +294,76 @@ public abstract class Report {
 
 	/**
 	 * Writes a line to report using defined prefix and {@link #out} writer.
+	 * If only numbers are written (see {@link #ONLY_NUMBERS_S}), each number
+	 * of the line is written on its own line instead.
 	 * @param txt Line to write
 	 * @see #setPrefix(String)
 	 */
-	boolean onlyNumbers = true;
 	protected void write(String txt) {
 		if (out == null) {
 			init();
 		}
-		if(onlyNumbers){		//reduce string
-			//txt = "a 123 b 323";
-			txt = extractNumber(txt);
-			//System.out.println(txt);
-		}
-		out.println(prefix + txt);
+		writeText(txt);
 	}
 
-	private String extractNumber(String txt){
-		//System.out.println(txt);
-		for (int i = 0; i < txt.length(); i++) {
-			if (Character.isDigit(txt.charAt(i)) && !Character.isWhitespace(txt.charAt(i)) && !Character.isLetter(txt.charAt(i))) {
-				//find end of number
-
-				for (int j = i; j < txt.length(); j++) {
-					if (Character.isWhitespace(txt.charAt(j)) || String.valueOf(txt.charAt(j)).equals("%") || (j == txt.length() -1)){
-						//end of number
-						//  run on substring
-						String newTxt = "";
-						if(j < txt.length()-1) {
-							newTxt = extractNumber(txt.substring(j));
-						}
-						newTxt = txt.substring(i,j) + "\n" + newTxt;
-						return newTxt;
-					}
+	/**
+	 * Writes a record to the report. In text format the record is written
+	 * like a line given to {@link #write(String)}.
+	 * @param r The record to write (usually the one from {@link #record()})
+	 */
+	protected void write(ReportRecord r) {
+		if (out == null) {
+			init();
+		}
+		if (this.csv) {
+			out.append(r.getLine());
+			out.println();
+		} else {
+			writeText(r.getLine());
+		}
+	}
 
-				}
-				break;
-			}
+	private void writeText(CharSequence txt) {
+		out.print(prefix);
+		if (onlyNumbers) {
+			this.numbers.setLength(0);
+			ReportRecord.appendNumbers(txt, this.numbers);
+			out.append(this.numbers);
+		} else {
+			out.append(txt);
 		}
-		return "";
+		out.println();
+	}
+
+	/**
+	 * Returns an empty record for the next line of the report. The same
+	 * record object is reused for every line.
+	 * @return an empty record
+	 */
+	protected ReportRecord record() {
+		return this.record.clear();
+	}
+
+	/**
+	 * Sets the names of the fields of the records this report writes. The
+	 * names are written as the header line of CSV output.
+	 * @param names The names of the fields
+	 */
+	protected void setColumns(String... names) {
+		this.columns = names;
 	}
 
 	/**
 	 * Formats a double value according to current precision setting (see
-	 * {@link #PRECISION_SETTING}) and returns it in a string.
+	 * {@link #PRECISION_SETTING}) and returns it in a string. The decimal
+	 * separator is always a dot, regardless of the default locale.
 	 * @param value The value to format
 	 * @return Formatted value in a string
 	 */
 	protected String format(double value) {
-		return String.format("%." + precision + "f", value);
+		StringBuilder sb = new StringBuilder();
+		ReportRecord.appendFixed(sb, value, precision);
+		return sb.toString();
 	}
 
 	/**
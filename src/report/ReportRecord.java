@@ -0,0 +1,234 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Locale;
+
+/**
+ * A reusable line of typed fields for report output. The fields are
+ * formatted straight into one buffer, so writing a record doesn't create
+ * format strings or temporary strings for the numbers. In text mode the
+ * fields are separated by spaces and null fields are left out (like in the
+ * plain text lines the reports used to concatenate). In CSV mode the fields
+ * are separated by commas, null fields are empty and strings are quoted
+ * when needed.
+ * @see Report#record()
+ */
+public class ReportRecord {
+	/** doubles outside this range are formatted with String.format */
+	private static final double MAX_FAST_FIXED = 1e7;
+	/** smallest non-zero double formatted without String.format */
+	private static final double MIN_FAST_FIXED = 1e-3;
+
+	private final StringBuilder line;
+	private final boolean csv;
+	private boolean empty;
+
+	/**
+	 * Creates a new, empty record
+	 * @param csv Should the record be formatted as comma separated values
+	 */
+	public ReportRecord(boolean csv) {
+		this.line = new StringBuilder();
+		this.csv = csv;
+		this.empty = true;
+	}
+
+	/**
+	 * Removes all the fields from the record
+	 * @return this record
+	 */
+	public ReportRecord clear() {
+		this.line.setLength(0);
+		this.empty = true;
+		return this;
+	}
+
+	/**
+	 * Adds a string field
+	 * @param value The value (in text mode, null values are left out)
+	 * @return this record
+	 */
+	public ReportRecord add(String value) {
+		if (value == null) {
+			if (this.csv) {
+				separate();
+			}
+			return this;
+		}
+		separate();
+		if (this.csv && needsQuotes(value)) {
+			this.line.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '"') {
+					this.line.append('"');
+				}
+				this.line.append(c);
+			}
+			this.line.append('"');
+		} else {
+			this.line.append(value);
+		}
+		return this;
+	}
+
+	/**
+	 * Adds an integer field
+	 * @param value The value
+	 * @return this record
+	 */
+	public ReportRecord add(long value) {
+		separate();
+		this.line.append(value);
+		return this;
+	}
+
+	/**
+	 * Adds a double field formatted like {@link Double#toString(double)}
+	 * @param value The value
+	 * @return this record
+	 */
+	public ReportRecord add(double value) {
+		separate();
+		this.line.append(value);
+		return this;
+	}
+
+	/**
+	 * Adds a double field with a fixed number of decimals, formatted like
+	 * with <code>String.format(Locale.ROOT, "%.nf", value)</code>
+	 * @param value The value
+	 * @param decimals Number of decimals
+	 * @return this record
+	 */
+	public ReportRecord addFixed(double value, int decimals) {
+		separate();
+		appendFixed(this.line, value, decimals);
+		return this;
+	}
+
+	/**
+	 * Returns the formatted fields of the record
+	 * @return the formatted fields
+	 */
+	public CharSequence getLine() {
+		return this.line;
+	}
+
+	@Override
+	public String toString() {
+		return this.line.toString();
+	}
+
+	private void separate() {
+		if (!this.empty) {
+			this.line.append(this.csv ? ',' : ' ');
+		}
+		this.empty = false;
+	}
+
+	private static boolean needsQuotes(String value) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Appends a double with a fixed number of decimals to a buffer. The
+	 * result is the same as with
+	 * <code>String.format(Locale.ROOT, "%.nf", value)</code>, i.e., the
+	 * shortest decimal digits of the value are rounded half up and the
+	 * decimal separator is always a dot regardless of the default locale,
+	 * but the common values are formatted without a Formatter.
+	 * @param sb The buffer to append to
+	 * @param value The value
+	 * @param decimals Number of decimals (n)
+	 */
+	public static void appendFixed(StringBuilder sb, double value,
+			int decimals) {
+		double abs = Math.abs(value);
+		if (!(abs == 0 || (abs >= MIN_FAST_FIXED && abs < MAX_FAST_FIXED))) {
+			sb.append(String.format(Locale.ROOT, "%." + decimals + "f",
+					value));
+			return;
+		}
+		if (Double.doubleToRawLongBits(value) < 0) {
+			sb.append('-'); /* also -0.0 */
+		}
+
+		/* abs is in the range where toString gives plain "int.frac" digits */
+		String s = Double.toString(abs);
+		int dot = s.indexOf('.');
+		int last = dot + decimals; /* index of the last decimal to show */
+		if (last + 1 < s.length() && s.charAt(last + 1) >= '5') {
+			/* round up: digits without the dot, carry from the last one */
+			char[] digits = new char[dot + decimals];
+			s.getChars(0, dot, digits, 0);
+			s.getChars(dot + 1, last + 1, digits, dot);
+			int i = digits.length - 1;
+			while (i >= 0 && digits[i] == '9') {
+				digits[i--] = '0';
+			}
+			if (i >= 0) {
+				digits[i]++;
+			} else {
+				sb.append('1');
+			}
+			sb.append(digits, 0, dot);
+			if (decimals > 0) {
+				sb.append('.');
+				sb.append(digits, dot, decimals);
+			}
+			return;
+		}
+
+		if (decimals == 0) {
+			sb.append(s, 0, dot);
+			return;
+		}
+		int end = Math.min(s.length(), last + 1);
+		sb.append(s, 0, end);
+		for (int i = end; i <= last; i++) {
+			sb.append('0');
+		}
+	}
+
+	/**
+	 * Appends all the numbers of a text to a buffer, each followed by a new
+	 * line. A number starts with a digit and ends before a whitespace or
+	 * '%' character, or at the last character of the text (which is then
+	 * left out).
+	 * @param txt The text
+	 * @param sb The buffer to append to
+	 */
+	public static void appendNumbers(CharSequence txt, StringBuilder sb) {
+		int len = txt.length();
+		int pos = 0;
+		while (pos < len) {
+			int start = pos;
+			while (start < len && !Character.isDigit(txt.charAt(start))) {
+				start++;
+			}
+			if (start == len) {
+				return;
+			}
+			int end = start;
+			while (end < len - 1 && !Character.isWhitespace(txt.charAt(end))
+					&& txt.charAt(end) != '%') {
+				end++;
+			}
+			sb.append(txt, start, end).append('\n');
+			if (end >= len - 1) {
+				return;
+			}
+			pos = end;
+		}
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.util.Arrays;
+
+/**
+ * Statistics of a stream of non-negative values (e.g., delays) in bounded
+ * memory. The count, sum, minimum and maximum are always exact. The values
+ * themselves are stored until there are more of them than the exact value
+ * limit, and until then the mean and the quantiles are exact as well.
+ * After that, the quantiles come from a log-linear histogram (like in HDR
+ * histograms) whose buckets are 1/{@value #SUB_BUCKETS} of their lower bound
+ * wide, so a quantile is the middle of the bucket containing it and within
+ * half a bucket of the exact value. Negative values are counted as zeros in
+ * the histogram. Statistics can be merged, e.g., from separate runs.
+ */
+public class StreamingStatistics {
+	/** number of histogram buckets per power of two ({@value}) */
+	public static final int SUB_BUCKETS = 128;
+	/** bits of the mantissa that select the sub bucket */
+	private static final int SUB_BUCKET_BITS = 7;
+	/** bits in the mantissa of a double */
+	private static final int MANTISSA_BITS = 52;
+
+	/** how many values are kept for exact quantiles */
+	private final int exactLimit;
+	/** the stored values or null if only the histogram is used */
+	private double[] values;
+	/** are the stored values sorted */
+	private boolean sorted;
+
+	private long count;
+	private double sum;
+	private double min;
+	private double max;
+
+	/** number of zero (and negative or subnormal) values in the histogram */
+	private long zeros;
+	/** histogram bucket counts; the first bucket starts at 2^minExponent */
+	private long[] buckets;
+	private int minExponent;
+
+	/**
+	 * Creates new statistics
+	 * @param exactLimit Maximum number of values that are kept for exact
+	 * quantiles (0 = use the histogram from the start)
+	 */
+	public StreamingStatistics(int exactLimit) {
+		this.exactLimit = exactLimit;
+		this.values = exactLimit > 0 ? new double[Math.min(exactLimit, 16)] :
+			null;
+		this.sorted = true;
+		this.min = Double.POSITIVE_INFINITY;
+		this.max = Double.NEGATIVE_INFINITY;
+		this.buckets = new long[0];
+	}
+
+	/**
+	 * Adds a value to the statistics
+	 * @param value The value to add
+	 */
+	public void add(double value) {
+		if (this.values != null) {
+			if (this.count == this.exactLimit) {
+				toHistogram();
+			} else {
+				if (this.count == this.values.length) {
+					this.values = Arrays.copyOf(this.values, (int)Math.min(
+							2L * this.values.length, this.exactLimit));
+				}
+				this.values[(int)this.count] = value;
+				this.sorted = false;
+			}
+		}
+		if (this.values == null) {
+			addToHistogram(value, 1);
+		}
+
+		this.count++;
+		this.sum += value;
+		this.min = Math.min(this.min, value);
+		this.max = Math.max(this.max, value);
+	}
+
+	/**
+	 * Adds all the values of other statistics to these statistics
+	 * @param other The other statistics
+	 */
+	public void merge(StreamingStatistics other) {
+		if (this.values != null && other.values != null &&
+				this.count + other.count <= this.exactLimit) {
+			for (int i = 0; i < other.count; i++) {
+				add(other.values[i]);
+			}
+			return;
+		}
+
+		if (this.values != null) {
+			toHistogram();
+		}
+		if (other.values != null) {
+			for (int i = 0; i < other.count; i++) {
+				addToHistogram(other.values[i], 1);
+			}
+		} else {
+			this.zeros += other.zeros;
+			for (int i = 0; i < other.buckets.length; i++) {
+				if (other.buckets[i] > 0) {
+					addToBucket(other.minExponent + i / SUB_BUCKETS,
+							i % SUB_BUCKETS, other.buckets[i]);
+				}
+			}
+		}
+		this.count += other.count;
+		this.sum += other.sum;
+		this.min = Math.min(this.min, other.min);
+		this.max = Math.max(this.max, other.max);
+	}
+
+	/**
+	 * Returns the number of values
+	 * @return the number of values
+	 */
+	public long getCount() {
+		return this.count;
+	}
+
+	/**
+	 * Returns true if the mean and the quantiles are exact
+	 * @return true if all the values are still stored
+	 */
+	public boolean isExact() {
+		return this.values != null;
+	}
+
+	/**
+	 * Returns the mean of the values. While exact, the values are summed in
+	 * ascending order.
+	 * @return the mean of the values (NaN if there are no values)
+	 */
+	public double getMean() {
+		if (this.values == null) {
+			return this.sum / this.count;
+		}
+		sortValues();
+		double s = 0.0;
+		for (int i = 0; i < this.count; i++) {
+			s += this.values[i];
+		}
+		return s / this.count;
+	}
+
+	/**
+	 * Returns the smallest value
+	 * @return the smallest value (infinity if there are no values)
+	 */
+	public double getMin() {
+		return this.min;
+	}
+
+	/**
+	 * Returns the largest value
+	 * @return the largest value (negative infinity if there are no values)
+	 */
+	public double getMax() {
+		return this.max;
+	}
+
+	/**
+	 * Returns the value with the index <code>(int)(count * q)</code> in the
+	 * ascending order of the values (but at most the last index), e.g., the
+	 * median for q = 0.5.
+	 * @param q The quantile (0...1)
+	 * @return The value (NaN if there are no values)
+	 */
+	public double getQuantile(double q) {
+		if (this.count == 0) {
+			return Double.NaN;
+		}
+		long index = Math.min((long)(this.count * q), this.count - 1);
+		if (this.values != null) {
+			sortValues();
+			return this.values[(int)index];
+		}
+
+		if (index < this.zeros) {
+			return Math.min(0, this.max);
+		}
+		long seen = this.zeros;
+		for (int i = 0; i < this.buckets.length; i++) {
+			seen += this.buckets[i];
+			if (seen > index) {
+				int exponent = this.minExponent + i / SUB_BUCKETS;
+				double lower = Math.scalb(1.0 + (1.0 * (i % SUB_BUCKETS)) /
+						SUB_BUCKETS, exponent);
+				double middle = lower + Math.scalb(0.5 / SUB_BUCKETS, exponent);
+				return Math.max(this.min, Math.min(this.max, middle));
+			}
+		}
+		return this.max;
+	}
+
+	private void sortValues() {
+		if (!this.sorted) {
+			Arrays.sort(this.values, 0, (int)this.count);
+			this.sorted = true;
+		}
+	}
+
+	/**
+	 * Moves the stored values to the histogram
+	 */
+	private void toHistogram() {
+		for (int i = 0; i < this.count; i++) {
+			addToHistogram(this.values[i], 1);
+		}
+		this.values = null;
+	}
+
+	private void addToHistogram(double value, long n) {
+		if (!(value >= Double.MIN_NORMAL)) {
+			this.zeros += n;
+			return;
+		}
+		long bits = Double.doubleToRawLongBits(value);
+		int sub = (int)((bits >>> (MANTISSA_BITS - SUB_BUCKET_BITS)) &
+				(SUB_BUCKETS - 1));
+		addToBucket(Math.getExponent(value), sub, n);
+	}
+
+	private void addToBucket(int exponent, int sub, long n) {
+		if (this.buckets.length == 0) {
+			this.minExponent = exponent;
+			this.buckets = new long[SUB_BUCKETS];
+		} else if (exponent < this.minExponent) {
+			int shift = (this.minExponent - exponent) * SUB_BUCKETS;
+			long[] grown = new long[this.buckets.length + shift];
+			System.arraycopy(this.buckets, 0, grown, shift,
+					this.buckets.length);
+			this.buckets = grown;
+			this.minExponent = exponent;
+		}
+		int index = (exponent - this.minExponent) * SUB_BUCKETS + sub;
+		if (index >= this.buckets.length) {
+			this.buckets = Arrays.copyOf(this.buckets,
+					(index / SUB_BUCKETS + 1) * SUB_BUCKETS);
+		}
+		this.buckets[index] += n;
+	}
+}
@@ -5,12 +5,12 @@
 package routing;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
 
 import routing.util.EnergyModel;
+import routing.util.MessageBufferIndex;
 import routing.util.MessageTransferAcceptPolicy;
 import routing.util.RoutingInfo;
 import sun.reflect.generics.reflectiveObjects.NotImplementedException;
@@ -22,6 +22,7 @@ import core.Message;
 import core.MessageListener;
 import core.NetworkInterface;
 import core.Settings;
+import core.SettingsError;
 import core.SimClock;
 
 /**
@@ -38,6 +39,25 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * from message buffer */
 	protected boolean deleteDelivered;
 
+	/**
+	 * Message drop policy -setting id ({@value}). Defines which messages
+	 * are dropped first when the buffer is full. Valid values are<BR>
+	 * <UL>
+	 * <LI/> 1 : oldest (by receive time) first (default option)
+	 * <LI/> 2 : largest first
+	 * <LI/> 3 : least forwarded first
+	 * <LI/> 4 : shortest remaining TTL first
+	 * </UL>
+	 * Messages that are equal by the policy are dropped in the order they
+	 * were added to the buffer. Routers that override
+	 * {@link #getNextMessageToRemove(boolean)} may ignore this setting.
+	 */
+	public static final String DROP_POLICY_S = "dropPolicy";
+	/** the drop policy */
+	private int dropPolicy;
+	/** drop and expiry order of the messages in the buffer */
+	private MessageBufferIndex bufferIndex;
+
 	/** prefix of all response message IDs */
 	public static final String RESPONSE_PREFIX = "R_";
 	/** how often TTL check (discarding old messages) is performed */
@@ -61,6 +81,13 @@ public abstract class ActiveRouter extends MessageRouter {
 		this.policy = new MessageTransferAcceptPolicy(s);
 
 		this.deleteDelivered = s.getBoolean(DELETE_DELIVERED_S, false);
+		this.dropPolicy = s.getInt(DROP_POLICY_S,
+				MessageBufferIndex.DROP_OLDEST);
+		if (dropPolicy < MessageBufferIndex.DROP_OLDEST ||
+				dropPolicy > MessageBufferIndex.DROP_SHORTEST_TTL) {
+			throw new SettingsError("Invalid value for " +
+					s.getFullPropertyName(DROP_POLICY_S));
+		}
 
 		if (s.contains(EnergyModel.INIT_ENERGY_S)) {
 			this.energy = new EnergyModel(s);
@@ -76,6 +103,7 @@ public abstract class ActiveRouter extends MessageRouter {
 	protected ActiveRouter(ActiveRouter r) {
 		super(r);
 		this.deleteDelivered = r.deleteDelivered;
+		this.dropPolicy = r.dropPolicy;
 		this.policy = r.policy;
 		this.energy = (r.energy != null ? r.energy.replicate() : null);
 	}
@@ -85,6 +113,22 @@ public abstract class ActiveRouter extends MessageRouter {
 		super.init(host, mListeners);
 		this.sendingConnections = new ArrayList<Connection>(1);
 		this.lastTtlCheck = 0;
+		this.bufferIndex = new MessageBufferIndex(this.dropPolicy);
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		this.bufferIndex.add(m);
+		super.addToMessages(m, newMessage);
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			this.bufferIndex.remove(m);
+		}
+		return m;
 	}
 
 	/**
@@ -233,8 +277,8 @@ public abstract class ActiveRouter extends MessageRouter {
 			return TRY_LATER_BUSY; // only one connection at a time
 		}
 
-		if ( hasMessage(m.getId()) || isDeliveredMessage(m) ||
-				super.isBlacklistedMessage(m.getId())) {
+		if ( hasMessage(m.getIntId()) || isDeliveredMessage(m) ||
+				super.isBlacklistedMessage(m.getIntId())) {
 			return DENIED_OLD; // already seen this message -> reject it
 		}
 
@@ -260,8 +304,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	}
 
 	/**
-	 * Removes messages from the buffer (oldest first) until
-	 * there's enough space for the new message.
+	 * Removes messages from the buffer (in the order of the drop policy)
+	 * until there's enough space for the new message.
 	 * @param size Size of the new message
 	 * transferred, the transfer is aborted before message is removed
 	 * @return True if enough space could be freed, false if not
@@ -292,12 +336,8 @@ public abstract class ActiveRouter extends MessageRouter {
 	 * Drops messages whose TTL is less than zero.
 	 */
 	protected void dropExpiredMessages() {
-		Message[] messages = getMessageCollection().toArray(new Message[0]);
-		for (int i=0; i<messages.length; i++) {
-			int ttl = messages[i].getTtl();
-			if (ttl <= 0) {
-				deleteMessage(messages[i].getId(), true);
-			}
+		for (Message m : bufferIndex.getExpired(SimClock.getTime())) {
+			deleteMessage(m.getId(), true);
 		}
 	}
 
@@ -314,33 +354,26 @@ public abstract class ActiveRouter extends MessageRouter {
 
 
 	/**
-	 * Returns the oldest (by receive time) message in the message buffer
-	 * (that is not being sent if excludeMsgBeingSent is true).
+	 * Returns the next message to drop from the message buffer by the drop
+	 * policy (by default the oldest message by receive time) that is not
+	 * being sent if excludeMsgBeingSent is true.
 	 * @param excludeMsgBeingSent If true, excludes message(s) that are
-	 * being sent from the oldest message check (i.e. if oldest message is
-	 * being sent, the second oldest message is returned)
-	 * @return The oldest message or null if no message could be returned
+	 * being sent from the check (i.e. if the first message to drop is
+	 * being sent, the second one is returned)
+	 * @return The message to drop or null if no message could be returned
 	 * (no messages in buffer or all messages in buffer are being sent and
 	 * exludeMsgBeingSent is true)
+	 * @see #DROP_POLICY_S
 	 */
 	protected Message getNextMessageToRemove(boolean excludeMsgBeingSent) {
-		Collection<Message> messages = this.getMessageCollection();
-		Message oldest = null;
-		for (Message m : messages) {
-
+		for (Message m : bufferIndex.getDropOrder()) {
 			if (excludeMsgBeingSent && isSending(m.getId())) {
 				continue; // skip the message(s) that router is sending
 			}
-
-			if (oldest == null ) {
-				oldest = m;
-			}
-			else if (oldest.getReceiveTime() > m.getReceiveTime()) {
-				oldest = m;
-			}
+			return m;
 		}
 
-		return oldest;
+		return null;
 	}
 
 	/**
@@ -357,11 +390,8 @@ public abstract class ActiveRouter extends MessageRouter {
 		List<Tuple<Message, Connection>> forTuples =
 			new ArrayList<Tuple<Message, Connection>>();
 		for (Message m : getMessageCollection()) {
-			for (Connection con : getConnections()) {
-				DTNHost to = con.getOtherNode(getHost());
-				if (m.getTo() == to) {
-					forTuples.add(new Tuple<Message, Connection>(m,con));
-				}
+			for (Connection con : getHost().getConnectionsTo(m.getTo())) {
+				forTuples.add(new Tuple<Message, Connection>(m,con));
 			}
 		}
 
@@ -572,6 +602,17 @@ public abstract class ActiveRouter extends MessageRouter {
 		return this.energy == null || this.energy.getEnergy() > 0;
 	}
 
+	/**
+	 * Returns false if energy modeling is enabled: the energy model turns
+	 * the radio off when the energy runs out and uses energy for the scans
+	 * of the interface updates, neither of which happens in a replay
+	 * @return true if energy modeling is disabled
+	 */
+	@Override
+	public boolean isReplayable() {
+		return this.energy == null;
+	}
+
 	/**
 	 * Checks out all sending connections to finalize the ready ones
 	 * and abort those whose connection went down. Also drops messages
@@ -591,6 +632,7 @@ public abstract class ActiveRouter extends MessageRouter {
 			/* finalize ready transfers */
 			if (con.isMessageTransferred()) {
 				if (con.getMessage() != null) {
+					bufferIndex.forwarded(con.getMessage());
 					transferDone(con);
 					con.finalizeTransfer();
 				} /* else: some other entity aborted transfer */
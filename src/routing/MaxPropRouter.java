@@ -362,8 +362,8 @@ public class MaxPropRouter extends ActiveRouter {
 			for (Message m : msgCollection) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+				if (othRouter.hasMessage(m.getIntId()) ||
+						m.hasPassed(other)) {
 					continue;
 				}
 				/* skip message if this host has already sent it to the other
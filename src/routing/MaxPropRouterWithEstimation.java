@@ -489,8 +489,8 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 			for (Message m : msgCollection) {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
-				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+				if (othRouter.hasMessage(m.getIntId()) ||
+						m.hasPassed(other)) {
 					continue;
 				}
 				messages.add(new Tuple<Message, Connection>(m,con));
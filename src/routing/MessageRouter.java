@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -14,6 +15,7 @@ import java.util.Random;
 
 import routing.util.RoutingInfo;
 
+import util.LongHashMap;
 import util.Tuple;
 
 import core.Application;
@@ -81,14 +83,21 @@ public abstract class MessageRouter {
 	public static final int DENIED_UNSPECIFIED = -99;
 
 	private List<MessageListener> mListeners;
-	/** The messages being transferred with msgID_hostName keys */
-	private HashMap<String, Message> incomingMessages;
-	/** The messages this router is carrying */
-	private HashMap<String, Message> messages;
+	/** The messages being transferred with (message, previous hop) keys
+	 * (see {@link #incomingKey(int, DTNHost)}) */
+	private LongHashMap<Message> incomingMessages;
+	/** Number of the incoming messages by their integer IDs */
+	private LongHashMap<Integer> nrofIncoming;
+	/** The messages this router is carrying by their integer IDs */
+	private LongHashMap<Message> messages;
+	/** Sum of the sizes of the carried messages */
+	private int bufferOccupancy;
 	/** The messages this router has received as the final recipient */
-	private HashMap<String, Message> deliveredMessages;
-	/** The messages that Applications on this router have blacklisted */
-	private HashMap<String, Object> blacklistedMessages;
+	private LongHashMap<Message> deliveredMessages;
+	/** IDs of the messages that Applications on this router have
+	 * blacklisted by their integer IDs (the ID keeps the integer ID in use,
+	 * see {@link Message#getIntId(String)}) */
+	private LongHashMap<String> blacklistedMessages;
 	/** Host where this router belongs to */
 	private DTNHost host;
 	/** size of the buffer */
@@ -100,6 +109,13 @@ public abstract class MessageRouter {
 
 	/** applications attached to the host */
 	private HashMap<String, Collection<Application>> applications = null;
+	/** applications that receive the messages of each application ID that
+	 * has applications (rebuilt when an application is added) */
+	private HashMap<String, List<Application>> appDispatch;
+	/** applications that receive the messages of other application IDs */
+	private List<Application> defaultAppDispatch;
+	/** all the applications in the order they are updated */
+	private Application[] allApps;
 
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -111,6 +127,7 @@ public abstract class MessageRouter {
 		this.bufferSize = Integer.MAX_VALUE; // defaults to rather large buffer
 		this.msgTtl = Message.INFINITE_TTL;
 		this.applications = new HashMap<String, Collection<Application>>();
+		buildAppDispatch();
 
 		if (s.contains(B_SIZE_S)) {
 			this.bufferSize = s.getInt(B_SIZE_S);
@@ -139,10 +156,12 @@ public abstract class MessageRouter {
 	 * @param mListeners The message listeners
 	 */
 	public void init(DTNHost host, List<MessageListener> mListeners) {
-		this.incomingMessages = new HashMap<String, Message>();
-		this.messages = new HashMap<String, Message>();
-		this.deliveredMessages = new HashMap<String, Message>();
-		this.blacklistedMessages = new HashMap<String, Object>();
+		this.incomingMessages = new LongHashMap<Message>();
+		this.nrofIncoming = new LongHashMap<Integer>();
+		this.messages = new LongHashMap<Message>();
+		this.bufferOccupancy = 0;
+		this.deliveredMessages = new LongHashMap<Message>();
+		this.blacklistedMessages = new LongHashMap<String>();
 		this.mListeners = mListeners;
 		this.host = host;
 	}
@@ -157,6 +176,7 @@ public abstract class MessageRouter {
 		this.sendQueueMode = r.sendQueueMode;
 
 		this.applications = new HashMap<String, Collection<Application>>();
+		buildAppDispatch();
 		for (Collection<Application> apps : r.applications.values()) {
 			for (Application app : apps) {
 				addApplication(app.replicate());
@@ -170,10 +190,8 @@ public abstract class MessageRouter {
 	 * interval to update the status of transfer(s).
 	 */
 	public void update(){
-		for (Collection<Application> apps : this.applications.values()) {
-			for (Application app : apps) {
-				app.update(this.host);
-			}
+		for (int i=0, n=allApps.length; i<n; i++) {
+			allApps[i].update(this.host);
 		}
 	}
 
@@ -189,7 +207,7 @@ public abstract class MessageRouter {
 	 * @return The message
 	 */
 	protected Message getMessage(String id) {
-		return this.messages.get(id);
+		return this.messages.get(Message.getIntId(id));
 	}
 
 	/**
@@ -198,7 +216,17 @@ public abstract class MessageRouter {
 	 * @return True if the router has message with this id, false if not
 	 */
 	public boolean hasMessage(String id) {
-		return this.messages.containsKey(id);
+		return this.messages.containsKey(Message.getIntId(id));
+	}
+
+	/**
+	 * Checks if this router has a message with certain integer id buffered.
+	 * @param intId Integer identifier of the message
+	 * @return True if the router has message with this id, false if not
+	 * @see Message#getIntId()
+	 */
+	public boolean hasMessage(int intId) {
+		return this.messages.containsKey(intId);
 	}
 
 	/**
@@ -210,7 +238,7 @@ public abstract class MessageRouter {
 	 * this host as the final recipient.
 	 */
 	protected boolean isDeliveredMessage(Message m) {
-		return (this.deliveredMessages.containsKey(m.getId()));
+		return (this.deliveredMessages.containsKey(m.getIntId()));
 	}
 
 	/**
@@ -223,7 +251,18 @@ public abstract class MessageRouter {
 	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
 	 */
 	protected boolean isBlacklistedMessage(String id) {
-		return this.blacklistedMessages.containsKey(id);
+		return this.blacklistedMessages.containsKey(Message.getIntId(id));
+	}
+
+	/**
+	 * Returns <code>true</code> if the message with the given integer id has
+	 * been blacklisted.
+	 * @param intId	integer id of the message
+	 * @return <code>true</code> if blacklisted, <code>false</code> otherwise.
+	 * @see #isBlacklistedMessage(String)
+	 */
+	protected boolean isBlacklistedMessage(int intId) {
+		return this.blacklistedMessages.containsKey(intId);
 	}
 
 	/**
@@ -262,17 +301,11 @@ public abstract class MessageRouter {
 	 * size isn't defined)
 	 */
 	public int getFreeBufferSize() {
-		int occupancy = 0;
-
 		if (this.getBufferSize() == Integer.MAX_VALUE) {
 			return Integer.MAX_VALUE;
 		}
 
-		for (Message m : getMessageCollection()) {
-			occupancy += m.getSize();
-		}
-
-		return this.getBufferSize() - occupancy;
+		return this.getBufferSize() - this.bufferOccupancy;
 	}
 
 	/**
@@ -371,11 +404,11 @@ public abstract class MessageRouter {
 			// -> put to buffer
 			addToMessages(aMessage, false);
 		} else if (isFirstDelivery) {
-			this.deliveredMessages.put(id, aMessage);
+			this.deliveredMessages.put(incoming.getIntId(), aMessage);
 		} else if (outgoing == null) {
 			// Blacklist messages that an app wants to drop.
 			// Otherwise the peer will just try to send it back again.
-			this.blacklistedMessages.put(id, null);
+			this.blacklistedMessages.put(incoming.getIntId(), incoming.getId());
 		}
 
 		for (MessageListener ml : this.mListeners) {
@@ -393,7 +426,21 @@ public abstract class MessageRouter {
 	 * @param from Who the message was from (previous hop).
 	 */
 	protected void putToIncomingBuffer(Message m, DTNHost from) {
-		this.incomingMessages.put(m.getId() + "_" + from.toString(), m);
+		if (this.incomingMessages.put(incomingKey(m.getIntId(), from), m) ==
+				null) {
+			Integer n = this.nrofIncoming.get(m.getIntId());
+			this.nrofIncoming.put(m.getIntId(), n != null ? n + 1 : 1);
+		}
+	}
+
+	/**
+	 * Returns the key of a message in the incoming messages buffer
+	 * @param intId Integer id of the message
+	 * @param from The host that sent the message (previous hop)
+	 * @return The key
+	 */
+	private static long incomingKey(int intId, DTNHost from) {
+		return ((long)intId << 32) | (from.getAddress() & 0xFFFFFFFFL);
 	}
 
 	/**
@@ -404,7 +451,20 @@ public abstract class MessageRouter {
 	 * @return The found message or null if such message wasn't found
 	 */
 	protected Message removeFromIncomingBuffer(String id, DTNHost from) {
-		return this.incomingMessages.remove(id + "_" + from.toString());
+		int intId = Message.getIntId(id);
+		if (intId < 0) {
+			return null;
+		}
+		Message m = this.incomingMessages.remove(incomingKey(intId, from));
+		if (m != null) {
+			int n = this.nrofIncoming.get(intId);
+			if (n > 1) {
+				this.nrofIncoming.put(intId, n - 1);
+			} else {
+				this.nrofIncoming.remove(intId);
+			}
+		}
+		return m;
 	}
 
 	/**
@@ -414,7 +474,7 @@ public abstract class MessageRouter {
 	 * @return True if such message is incoming right now
 	 */
 	protected boolean isIncomingMessage(String id) {
-		return this.incomingMessages.containsKey(id);
+		return this.nrofIncoming.containsKey(Message.getIntId(id));
 	}
 
 	/**
@@ -425,7 +485,9 @@ public abstract class MessageRouter {
 	 * message, if false, nothing is informed.
 	 */
 	protected void addToMessages(Message m, boolean newMessage) {
-		this.messages.put(m.getId(), m);
+		Message old = this.messages.put(m.getIntId(), m);
+		this.bufferOccupancy += m.getSize() -
+			(old != null ? old.getSize() : 0);
 
 		if (newMessage) {
 			for (MessageListener ml : this.mListeners) {
@@ -440,7 +502,10 @@ public abstract class MessageRouter {
 	 * @return The removed message or null if message for the ID wasn't found
 	 */
 	protected Message removeFromMessages(String id) {
-		Message m = this.messages.remove(id);
+		Message m = this.messages.remove(Message.getIntId(id));
+		if (m != null) {
+			this.bufferOccupancy -= m.getSize();
+		}
 		return m;
 	}
 
@@ -613,30 +678,58 @@ public abstract class MessageRouter {
 					new LinkedList<Application>());
 		}
 		this.applications.get(app.getAppID()).add(app);
+		buildAppDispatch();
+	}
+
+	/**
+	 * Builds the lists of applications that receive the messages of each
+	 * application ID, so they don't have to be merged for every message
+	 */
+	private void buildAppDispatch() {
+		Collection<Application> wildcard = this.applications.get(null);
+		List<Application> all = new ArrayList<Application>();
+		this.appDispatch = new HashMap<String, List<Application>>();
+
+		for (String id : this.applications.keySet()) {
+			Collection<Application> apps = this.applications.get(id);
+			all.addAll(apps);
+			List<Application> dispatch = new ArrayList<Application>(apps);
+			if (id != null && wildcard != null) {
+				dispatch.addAll(wildcard);
+			}
+			this.appDispatch.put(id, Collections.unmodifiableList(dispatch));
+		}
+
+		if (wildcard != null) {
+			this.defaultAppDispatch = this.appDispatch.get(null);
+		} else {
+			this.defaultAppDispatch = Collections.emptyList();
+		}
+		this.allApps = all.toArray(new Application[all.size()]);
 	}
 
 	/**
 	 * Returns all the applications that want to receive messages for the given
-	 * application ID.
+	 * application ID. The returned collection is shared and can't be
+	 * modified.
 	 *
 	 * @param ID	The application ID or <code>null</code> for all apps.
 	 * @return		A list of all applications that want to receive the message.
 	 */
 	public Collection<Application> getApplications(String ID) {
-		LinkedList<Application>	apps = new LinkedList<Application>();
-		// Applications that match
-		Collection<Application> tmp = this.applications.get(ID);
-		if (tmp != null) {
-			apps.addAll(tmp);
-		}
-		// Applications that want to look at all messages
-		if (ID != null) {
-			tmp = this.applications.get(null);
-			if (tmp != null) {
-				apps.addAll(tmp);
-			}
-		}
-		return apps;
+		List<Application> apps = this.appDispatch.get(ID);
+		return apps != null ? apps : this.defaultAppDispatch;
+	}
+
+	/**
+	 * Returns true if this router works with replayed contact traces (see
+	 * {@link core.ContactTrace}). The interfaces aren't updated in a
+	 * replay, so routers whose state affects the connections (e.g.,
+	 * through the radio ranges) can't be replayed.
+	 * @return true if the router works with replayed contact traces
+	 */
+	public boolean isReplayable() {
+		return true;
 	}
 
 	/**
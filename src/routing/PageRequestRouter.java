@@ -39,7 +39,7 @@ public class PageRequestRouter extends ActiveRouter {
 
 		if (recvCheck == RCV_OK) {
 			/* don't accept a message that has already traversed this node */
-			if (m.getHops().contains(getHost())) {
+			if (m.hasPassed(getHost())) {
 				recvCheck = DENIED_OLD;
 			}
 		}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import core.ApplicationEvent;
+
+/**
+ * Events of the ping applications (see {@link applications.PingApplication}
+ * and {@link applications.LiberouterApplication}). The hosts send the
+ * {@link #SENT_PING} events of the page requests their transmit strategies
+ * create to the applications' listeners too.
+ */
+public final class PingEvents {
+	/** Event of a sent ping */
+	public static final ApplicationEvent SENT_PING =
+		ApplicationEvent.forName("SentPing");
+	/** Event of a received ping */
+	public static final ApplicationEvent GOT_PING =
+		ApplicationEvent.forName("GotPing");
+	/** Event of a sent pong */
+	public static final ApplicationEvent SENT_PONG =
+		ApplicationEvent.forName("SentPong");
+	/** Event of a received pong */
+	public static final ApplicationEvent GOT_PONG =
+		ApplicationEvent.forName("GotPong");
+	/** Event of a requested page that was found in the local cache */
+	public static final ApplicationEvent IN_LOCAL_CACHE =
+		ApplicationEvent.forName("InLocalCache");
+
+	private PingEvents() {
+		/* only the static fields are used */
+	}
+}
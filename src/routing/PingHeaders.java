@@ -0,0 +1,29 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import core.MessageHeader;
+
+/**
+ * Message header fields of the page request (ping) and response (pong)
+ * messages. The requests are created by the hosts' transmit strategies
+ * (see {@link Transmit}) and by the ping applications, which also create
+ * the responses.
+ */
+public final class PingHeaders {
+	/** Types of the ping and pong messages */
+	public enum MessageType { PING, PONG }
+
+	/** Message header of the message type */
+	public static final MessageHeader.EnumHeader<MessageType> TYPE =
+		MessageHeader.enumHeader("ping.type", MessageType.class);
+	/** Message header of the number of the requested web page */
+	public static final MessageHeader.IntHeader WEBPAGE_NUMBER =
+		MessageHeader.intHeader("ping.webpageNumber");
+
+	private PingHeaders() {
+		/* only the static fields are used */
+	}
+}
@@ -29,8 +29,8 @@ public abstract class Transmit {
         Message m = new Message(host, transmitTo, "ping" +
                 SimClock.getIntTime() + "-" + host.getAddress(),
                 pingSize);
-        m.addProperty("type", "ping");
-        m.addProperty("webpageNumber", webPageNumber);
+        PingHeaders.TYPE.set(m, PingHeaders.MessageType.PING);
+        PingHeaders.WEBPAGE_NUMBER.set(m, webPageNumber);
         //m.addProperty("pageRequestCreationTime", pageRequestCreationTime);
         m.setPageRequestCreationTime(pageRequestCreationTime);
         m.setAppID(APP_ID);
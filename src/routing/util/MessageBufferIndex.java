@@ -0,0 +1,250 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+
+import util.LongHashMap;
+
+import core.Message;
+import core.SettingsError;
+
+/**
+ * Ordered indexes of the messages in a router's buffer. The messages are
+ * kept in the order they should be dropped in (by a drop policy) and in the
+ * order their TTLs expire, so finding the next message to drop takes
+ * O(log n) time and finding the expired messages O(log n) time per expired
+ * message. Messages that the drop policy considers equal are dropped in
+ * the order they were added to the buffer.
+ * <P>The index must be told about all the messages that are added to and
+ * removed from the buffer and about forwarded messages. The receive time
+ * and TTL of a message must not change while it is in the buffer.</P>
+ */
+public class MessageBufferIndex {
+	/** Drop policy: drop the oldest (by receive time) message first */
+	public static final int DROP_OLDEST = 1;
+	/** Drop policy: drop the largest message first */
+	public static final int DROP_LARGEST = 2;
+	/** Drop policy: drop the least forwarded message first */
+	public static final int DROP_LEAST_FORWARDED = 3;
+	/** Drop policy: drop the message with the shortest remaining TTL first */
+	public static final int DROP_SHORTEST_TTL = 4;
+
+	/** how much before their (rounded) expiry time the messages' TTLs are
+	 * checked */
+	private static final double EXPIRY_MARGIN = 1.0;
+
+	/** orders entries by the expiry times of their messages */
+	private static final Comparator<Entry> EXPIRY_ORDER =
+		new Comparator<Entry>() {
+		public int compare(Entry e1, Entry e2) {
+			int c = Double.compare(e1.expiryTime, e2.expiryTime);
+			return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+		}
+	};
+
+	/** index entries by the messages' integer IDs */
+	private LongHashMap<Entry> entries;
+	/** entries in the drop order */
+	private TreeSet<Entry> dropOrder;
+	/** entries with finite TTL in the expiry order */
+	private TreeSet<Entry> expiryOrder;
+	/** sequence number of the next added message */
+	private long nextSeq;
+
+	/**
+	 * Creates a new empty index
+	 * @param dropPolicy The drop policy (one of the DROP_ constants)
+	 * @throws SettingsError if the drop policy is not valid
+	 */
+	public MessageBufferIndex(int dropPolicy) {
+		this.entries = new LongHashMap<Entry>();
+		this.dropOrder = new TreeSet<Entry>(getDropOrder(dropPolicy));
+		this.expiryOrder = new TreeSet<Entry>(EXPIRY_ORDER);
+	}
+
+	/**
+	 * Returns the comparator of a drop policy
+	 */
+	private static Comparator<Entry> getDropOrder(int dropPolicy) {
+		switch (dropPolicy) {
+		case DROP_OLDEST:
+			return new Comparator<Entry>() {
+				public int compare(Entry e1, Entry e2) {
+					int c = Double.compare(e1.msg.getReceiveTime(),
+							e2.msg.getReceiveTime());
+					return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+				}
+			};
+		case DROP_LARGEST:
+			return new Comparator<Entry>() {
+				public int compare(Entry e1, Entry e2) {
+					int c = Integer.compare(e2.msg.getSize(),
+							e1.msg.getSize());
+					return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+				}
+			};
+		case DROP_LEAST_FORWARDED:
+			return new Comparator<Entry>() {
+				public int compare(Entry e1, Entry e2) {
+					int c = Integer.compare(e1.forwards, e2.forwards);
+					return c != 0 ? c : Long.compare(e1.seq, e2.seq);
+				}
+			};
+		case DROP_SHORTEST_TTL:
+			return EXPIRY_ORDER;
+		default:
+			throw new SettingsError("Invalid drop policy " + dropPolicy);
+		}
+	}
+
+	/**
+	 * Adds a message to the index. If a message with the same ID is already
+	 * in the index, it is replaced but keeps its place among equal messages.
+	 * @param m The message
+	 */
+	public void add(Message m) {
+		Entry e = entries.get(m.getIntId());
+		if (e != null) {
+			unlink(e);
+			e.msg = m;
+		}
+		else {
+			e = new Entry(m, nextSeq++);
+			entries.put(m.getIntId(), e);
+		}
+		e.expiryTime = getExpiryTime(m);
+		link(e);
+	}
+
+	/**
+	 * Removes a message from the index
+	 * @param m The message
+	 */
+	public void remove(Message m) {
+		Entry e = entries.remove(m.getIntId());
+		if (e != null) {
+			unlink(e);
+		}
+	}
+
+	/**
+	 * Tells the index that a message was forwarded to another host
+	 * @param m The message (or a replicate of it)
+	 */
+	public void forwarded(Message m) {
+		Entry e = entries.get(m.getIntId());
+		if (e != null) {
+			dropOrder.remove(e);
+			e.forwards++;
+			dropOrder.add(e);
+		}
+	}
+
+	/**
+	 * Returns the messages in the order they should be dropped in. The
+	 * iterator is not valid after the index has been modified.
+	 * @return The messages in the drop order
+	 */
+	public Iterable<Message> getDropOrder() {
+		return new Iterable<Message>() {
+			public Iterator<Message> iterator() {
+				final Iterator<Entry> i = dropOrder.iterator();
+				return new Iterator<Message>() {
+					public boolean hasNext() {
+						return i.hasNext();
+					}
+					public Message next() {
+						return i.next().msg;
+					}
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Returns the messages whose TTL has expired (is zero or less), in the
+	 * order they were added to the index
+	 * @param now The current simulation time
+	 * @return The expired messages
+	 */
+	public List<Message> getExpired(double now) {
+		List<Entry> expired = null;
+		for (Entry e : expiryOrder) {
+			if (e.expiryTime > now + EXPIRY_MARGIN) {
+				break;
+			}
+			if (e.msg.getTtl() <= 0) {
+				if (expired == null) {
+					expired = new ArrayList<Entry>();
+				}
+				expired.add(e);
+			}
+		}
+
+		if (expired == null) {
+			return Collections.emptyList();
+		}
+		Collections.sort(expired, new Comparator<Entry>() {
+			public int compare(Entry e1, Entry e2) {
+				return Long.compare(e1.seq, e2.seq);
+			}
+		});
+		List<Message> messages = new ArrayList<Message>(expired.size());
+		for (Entry e : expired) {
+			messages.add(e.msg);
+		}
+		return messages;
+	}
+
+	/**
+	 * Returns the (approximate) time when the TTL of a message expires
+	 */
+	private static double getExpiryTime(Message m) {
+		if (m.getInitTtl() == Message.INFINITE_TTL) {
+			return Double.POSITIVE_INFINITY;
+		}
+		/* the TTL is rounded towards zero; it's zero after the last minute
+		 * has started */
+		return m.getCreationTime() + (m.getInitTtl() - 1) * 60.0;
+	}
+
+	private void link(Entry e) {
+		dropOrder.add(e);
+		if (e.expiryTime != Double.POSITIVE_INFINITY) {
+			expiryOrder.add(e);
+		}
+	}
+
+	private void unlink(Entry e) {
+		dropOrder.remove(e);
+		expiryOrder.remove(e);
+	}
+
+	/**
+	 * Index entry of a message
+	 */
+	private static class Entry {
+		private Message msg;
+		/** order of the message in the buffer */
+		private final long seq;
+		private double expiryTime;
+		/** how many times the message has been forwarded */
+		private int forwards;
+
+		private Entry(Message msg, long seq) {
+			this.msg = msg;
+			this.seq = seq;
+		}
+	}
+}
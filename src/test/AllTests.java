@@ -31,6 +31,7 @@ public class AllTests {
 		suite.addTestSuite(WKTPointReaderTest.class);
 		suite.addTestSuite(MapNodeTest.class);
 		suite.addTestSuite(MapBasedMovementTest.class);
+		suite.addTestSuite(BinaryMapCacheTest.class);
 		suite.addTestSuite(CoordTest.class);
 		suite.addTestSuite(DistanceDelayReportTest.class);
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
@@ -42,14 +43,27 @@ public class AllTests {
 		suite.addTestSuite(ProphetRouterTest.class);
 		suite.addTestSuite(SettingsTest.class);
 		suite.addTestSuite(DijkstraPathFinderTest.class);
+		suite.addTestSuite(RouteCacheTest.class);
 		suite.addTestSuite(PointsOfInterestTest.class);
 		suite.addTestSuite(ActivenessHandlerTest.class);
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(EventSchedulerTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
 		suite.addTestSuite(DTNHostTest.class);
+		suite.addTestSuite(WebPagesTest.class);
+		suite.addTestSuite(WebCacheTest.class);
+		suite.addTestSuite(RequestTableTest.class);
+		suite.addTestSuite(StreamingStatisticsTest.class);
+		suite.addTestSuite(ReportRecordTest.class);
+		suite.addTestSuite(SimContextTest.class);
+		suite.addTestSuite(CheckpointRandomTest.class);
+		suite.addTestSuite(LongHashMapTest.class);
+		suite.addTestSuite(MessageBufferIndexTest.class);
+		suite.addTestSuite(ContactTraceTest.class);
+		suite.addTestSuite(MovementCheckpointTest.class);
 		//$JUnit-END$
 		return suite;
 	}
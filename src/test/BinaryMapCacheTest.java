@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryMapCache;
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import core.Coord;
+
+/**
+ * Tests for the binary cache of simulation maps
+ */
+public class BinaryMapCacheTest extends TestCase {
+	private static final String ROADS =
+		"LINESTRING (1.0 1.0, 2.0 1.0, 3.0 1.0, 4.0 1.0)\n" +
+		"LINESTRING (1.0 1.0, 1.0 2.5)\n" +
+		"LINESTRING (2.0 1.0, 2.0 0.0, 3.0 0.0, 3.0 1.0)\n";
+	private static final String SHOPS =
+		"LINESTRING (4.0 1.0, 5.0 1.25, 6.0 2.0)\n";
+
+	private File dir;
+	private List<File> mapFiles;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("mapcache", "");
+		dir.delete();
+		dir.mkdir();
+		mapFiles = new ArrayList<File>();
+		mapFiles.add(writeFile("roads.wkt", ROADS));
+		mapFiles.add(writeFile("shops.wkt", SHOPS));
+	}
+
+	protected void tearDown() throws Exception {
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+		super.tearDown();
+	}
+
+	private File writeFile(String name, String contents) throws IOException {
+		File f = new File(dir, name);
+		PrintWriter pw = new PrintWriter(f);
+		pw.print(contents);
+		pw.close();
+		return f;
+	}
+
+	private SimMap readMap() throws IOException {
+		WKTMapReader r = new WKTMapReader(true);
+		for (int i = 0; i < mapFiles.size(); i++) {
+			r.addPaths(mapFiles.get(i), i + 1);
+		}
+		SimMap map = r.getMap();
+		map.mirror();
+		Coord offset = map.getMinBound().clone();
+		map.translate(-offset.getX(), -offset.getY());
+		return map;
+	}
+
+	public void testWriteAndRead() throws IOException {
+		SimMap map = readMap();
+		File cacheFile = BinaryMapCache.getCacheFile(dir, mapFiles);
+		assertNull(BinaryMapCache.read(cacheFile));
+		BinaryMapCache.write(map, cacheFile);
+
+		SimMap cached = BinaryMapCache.read(cacheFile);
+		assertNotNull(cached);
+		assertTrue(cached.isMirrored());
+		assertEquals(map.getOffset(), cached.getOffset());
+		assertEquals(map.getMinBound(), cached.getMinBound());
+		assertEquals(map.getMaxBound(), cached.getMaxBound());
+
+		List<MapNode> nodes = map.getNodes();
+		List<MapNode> cachedNodes = cached.getNodes();
+		assertEquals(nodes.size(), cachedNodes.size());
+		for (int i = 0; i < nodes.size(); i++) {
+			MapNode n = nodes.get(i);
+			MapNode c = cachedNodes.get(i);
+			assertEquals(n.getLocation(), c.getLocation());
+			for (int t = MapNode.MIN_TYPE; t <= MapNode.MAX_TYPE; t++) {
+				assertEquals(n.isType(t), c.isType(t));
+			}
+			assertEquals(n.getNeighbors().size(), c.getNeighbors().size());
+			for (int j = 0; j < n.getNeighbors().size(); j++) {
+				assertEquals(n.getNeighbors().get(j).getLocation(),
+						c.getNeighbors().get(j).getLocation());
+			}
+			assertSame(c, cached.getNodeByCoord(c.getLocation()));
+		}
+	}
+
+	public void testCacheFileName() throws IOException {
+		File cacheFile = BinaryMapCache.getCacheFile(dir, mapFiles);
+		assertEquals(cacheFile, BinaryMapCache.getCacheFile(dir, mapFiles));
+
+		/* same contents in a file of another name -> same cache file */
+		mapFiles.set(1, writeFile("shops2.wkt", SHOPS));
+		assertEquals(cacheFile, BinaryMapCache.getCacheFile(dir, mapFiles));
+
+		/* changed contents or order -> different cache file */
+		mapFiles.set(1, writeFile("shops.wkt", SHOPS + SHOPS));
+		assertFalse(cacheFile.equals(
+				BinaryMapCache.getCacheFile(dir, mapFiles)));
+		mapFiles.set(1, writeFile("shops.wkt", SHOPS));
+		mapFiles.add(0, mapFiles.remove(1));
+		assertFalse(cacheFile.equals(
+				BinaryMapCache.getCacheFile(dir, mapFiles)));
+	}
+
+	public void testInvalidFile() throws IOException {
+		File cacheFile = BinaryMapCache.getCacheFile(dir, mapFiles);
+		BinaryMapCache.write(readMap(), cacheFile);
+		File copy = writeFile("truncated" + BinaryMapCache.CACHE_EXT, "");
+		byte[] data = Files.readAllBytes(cacheFile.toPath());
+		Files.write(copy.toPath(),
+				Arrays.copyOf(data, data.length - 4));
+		assertNull(BinaryMapCache.read(copy));
+		assertNull(BinaryMapCache.read(mapFiles.get(0)));
+	}
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.CheckpointRandom;
+
+/**
+ * Tests for the random number generator with a checkpointable state.
+ */
+public class CheckpointRandomTest extends TestCase {
+
+	private void assertSameSequence(Random expected, Random actual) {
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(expected.nextInt(), actual.nextInt());
+			assertEquals(expected.nextInt(17), actual.nextInt(17));
+			assertEquals(expected.nextLong(), actual.nextLong());
+			assertEquals(expected.nextDouble(), actual.nextDouble());
+			assertEquals(expected.nextBoolean(), actual.nextBoolean());
+			assertEquals(expected.nextGaussian(), actual.nextGaussian());
+		}
+	}
+
+	public void testSameAsRandom() {
+		assertSameSequence(new Random(42), new CheckpointRandom(42));
+		assertSameSequence(new Random(-1), new CheckpointRandom(-1));
+
+		Random r = new Random(1);
+		CheckpointRandom cr = new CheckpointRandom(1);
+		r.setSeed(5);
+		cr.setSeed(5);
+		assertSameSequence(r, cr);
+	}
+
+	public void testState() throws Exception {
+		CheckpointRandom cr = new CheckpointRandom(3);
+		Random r = new Random(3);
+		cr.nextInt();
+		r.nextInt();
+		cr.nextGaussian(); /* leaves the next gaussian pending */
+		r.nextGaussian();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		cr.writeState(new DataOutputStream(bytes));
+
+		CheckpointRandom restored = new CheckpointRandom(0);
+		restored.readState(new DataInputStream(
+				new ByteArrayInputStream(bytes.toByteArray())));
+		assertSameSequence(r, restored);
+	}
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.util.EnergyModel;
+import core.ConnectionListener;
+import core.ContactTrace;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SettingsError;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Tests for recording and replaying contact traces.
+ */
+public class ContactTraceTest extends TestCase {
+	private static final double UPDATE_INTERVAL = 0.1;
+
+	private File file;
+	private SimClock clock;
+	private DTNHost h1;
+	private DTNHost h2;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("contacts", ".trace");
+		file.delete();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		SimClock.reset();
+		super.tearDown();
+	}
+
+	/**
+	 * Creates two connected hosts within range of each other
+	 */
+	private void createHosts() {
+		createHosts(null);
+	}
+
+	/**
+	 * Creates two connected hosts within range of each other
+	 * @param router Prototype of the hosts' router (or null for default)
+	 */
+	private void createHosts(MessageRouter router) {
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		if (router != null) {
+			utils.setMessageRouterProto(router);
+		}
+		h1 = utils.createHost(new Coord(0, 0));
+		h2 = utils.createHost(new Coord(0.5, 0));
+		hosts = utils.getAllHosts();
+		iface(h1).connect(iface(h2));
+		assertTrue(isConnected(h1));
+	}
+
+	private NetworkInterface iface(DTNHost h) {
+		return h.getInterfaces().get(0);
+	}
+
+	private boolean isConnected(DTNHost h) {
+		return !iface(h).getConnections().isEmpty();
+	}
+
+	public void testRecordAndReplay() {
+		createHosts();
+		ContactTrace trace = new ContactTrace(file.getPath(), hosts,
+				UPDATE_INTERVAL);
+		assertFalse(trace.isReplaying());
+		h1.setContactTrace(trace);
+		h2.setContactTrace(trace);
+
+		clock.setTime(5);
+		trace.update(iface(h1));
+		assertTrue(isConnected(h1));
+		h2.setLocation(new Coord(2, 0)); /* out of range */
+		clock.setTime(10);
+		trace.update(iface(h1));
+		assertFalse(isConnected(h1));
+		trace.close();
+
+		/* the same hosts, but the second one doesn't move */
+		createHosts();
+		trace = new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL);
+		assertTrue(trace.isReplaying());
+		clock.setTime(5);
+		trace.update(iface(h1));
+		trace.update(iface(h2));
+		assertTrue(isConnected(h1));
+		clock.setTime(10);
+		trace.update(iface(h2));
+		assertTrue(isConnected(h1));
+		trace.update(iface(h1));
+		assertFalse(isConnected(h1));
+		assertFalse(isConnected(h2));
+		trace.close();
+	}
+
+	public void testReplayWithDriftedTimes() {
+		createHosts();
+		ContactTrace trace = new ContactTrace(file.getPath(), hosts,
+				UPDATE_INTERVAL);
+		h1.setContactTrace(trace);
+		h2.setContactTrace(trace);
+		clock.setTime(5);
+		trace.update(iface(h1));
+		h2.setLocation(new Coord(2, 0));
+		clock.setTime(10);
+		trace.update(iface(h1));
+		trace.close();
+
+		createHosts();
+		trace = new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL);
+		clock.setTime(5 + 1e-9);
+		trace.update(iface(h1));
+		assertTrue(isConnected(h1));
+		clock.setTime(10 + 1e-9);
+		trace.update(iface(h1));
+		assertFalse(isConnected(h1));
+		trace.close();
+	}
+
+	public void testDifferentMovementSettings() {
+		String speed = SimScenario.GROUP_NS + "." + MovementModel.SPEED;
+		createHosts();
+		new TestSettings().putSetting(speed, "0.5,1.5");
+		new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL).close();
+
+		createHosts();
+		new TestSettings().putSetting(speed, "0.5,1.5");
+		new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL).close();
+
+		createHosts();
+		new TestSettings().putSetting(speed, "1,2");
+		try {
+			new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL);
+			fail("Trace of different movement settings was accepted");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+
+	public void testDifferentInterfaceSettings() {
+		String speed = TestUtils.IFACE_NS + "." +
+			NetworkInterface.TRANSMIT_SPEED_S;
+		createHosts();
+		new TestSettings().putSetting(speed, "1");
+		new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL).close();
+
+		createHosts();
+		new TestSettings().putSetting(speed, "2");
+		try {
+			new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL);
+			fail("Trace of different interface settings was accepted");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+
+	public void testEnergyModel() {
+		createHosts();
+		new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL).close();
+
+		TestSettings ts = new TestSettings();
+		ts.putSetting(EnergyModel.INIT_ENERGY_S, "100");
+		ts.putSetting(EnergyModel.SCAN_ENERGY_S, "0.1");
+		ts.putSetting(EnergyModel.TRANSMIT_ENERGY_S, "0.2");
+		ts.putSetting(EnergyModel.SCAN_RSP_ENERGY_S, "0.1");
+		createHosts(new EpidemicRouter(ts));
+		try {
+			new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL);
+			fail("Trace was replayed with an energy model");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+
+	public void testDifferentHosts() {
+		createHosts();
+		new ContactTrace(file.getPath(), hosts, UPDATE_INTERVAL).close();
+
+		createHosts();
+		try {
+			new ContactTrace(file.getPath(), hosts, 2 * UPDATE_INTERVAL);
+			fail("Trace of a different scenario was accepted");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+}
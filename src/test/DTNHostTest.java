@@ -1,6 +1,7 @@
 package test;
 
 
+import core.Connection;
 import core.Coord;
 import core.DTNHost;
 import core.MessageListener;
@@ -18,6 +19,7 @@ import routing.MessageRouter;
 import routing.PassiveRouter;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import junit.framework.TestCase;
 
@@ -67,6 +69,56 @@ public class DTNHostTest extends TestCase {
     assertFalse("Radio reported as active.", host.isRadioActive());
   }
 
+  /**
+   * Tests that the connection lists are rebuilt when connections go up and
+   * down and that they can't be modified.
+   *
+   * @throws Exception
+   */
+  @Test
+  public void testConnections()
+  throws Exception {
+    final TestUtils utils = new TestUtils(null, null, new TestSettings());
+    final DTNHost h1 = utils.createHost(new Coord(0, 0));
+    final DTNHost h2 = utils.createHost(new Coord(0, 0));
+    final DTNHost h3 = utils.createHost(new Coord(0, 0));
+
+    assertEquals(0, h1.getConnections().size());
+    assertEquals(0, h1.getConnectionsTo(h2).size());
+
+    h1.forceConnection(h2, null, true);
+    h3.forceConnection(h1, null, true);
+    final List<Connection> cons = h1.getConnections();
+    assertEquals(2, cons.size());
+    assertSame(cons, h1.getConnections());
+    assertEquals(h2, cons.get(0).getOtherNode(h1));
+    assertEquals(h3, cons.get(1).getOtherNode(h1));
+    assertEquals(cons.subList(0, 1), h1.getConnectionsTo(h2));
+    assertEquals(cons.subList(1, 2), h1.getConnectionsTo(h3));
+    assertEquals(1, h3.getConnections().size());
+    assertEquals(0, h3.getConnectionsTo(h2).size());
+
+    try {
+      cons.clear();
+      fail("Connection list could be modified.");
+    } catch (UnsupportedOperationException e) {
+      // expected
+    }
+
+    // Torn down by an interface update
+    h2.setLocation(new Coord(100, 0));
+    h1.getInterfaces().get(0).update();
+    assertEquals(1, h1.getConnections().size());
+    assertEquals(0, h1.getConnectionsTo(h2).size());
+    assertEquals(0, h2.getConnections().size());
+    assertEquals(1, h1.getConnectionsTo(h3).size());
+
+    // Torn down by force
+    h3.forceConnection(h1, null, false);
+    assertEquals(0, h1.getConnections().size());
+    assertEquals(0, h3.getConnectionsTo(h1).size());
+  }
+
   private static MovementModel makeMovementModel() {
     return new MovementModel() {
       @Override
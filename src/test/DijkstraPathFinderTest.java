@@ -73,6 +73,37 @@ public class DijkstraPathFinderTest extends TestCase {
 		checkPath(getPath(n8,n4), n8, n7, n6, n5, n4);
 	}
 
+	public void testOkMapNodes() {
+		for (MapNode n : new MapNode[] {n1, n2, n3, n4, n5, n7, n8}) {
+			n.addType(1);
+		}
+		n6.addType(2);
+		r = new DijkstraPathFinder(new int[] {1});
+
+		checkPath(getPath(n5,n8), n5, n2, n3, n7, n8);
+		checkPath(getPath(n5,n3), n5, n2, n3);
+		assertEquals(0, getPath(n5,n6).size()); // n6 is not OK
+	}
+
+	public void testChangedNeighbors() {
+		checkPath(getPath(n1,n6), n1, n2, n5, n6);
+		MapNode n9 = newNode(5,5);
+		n1.addNeighbor(n9);
+		n9.addNeighbor(n1);
+		n9.addNeighbor(n6);
+		n6.addNeighbor(n9);
+		checkPath(getPath(n1,n6), n1, n9, n6);
+
+		MapNode n10 = newNode(100,100);
+		assertEquals(0, getPath(n1,n10).size()); // not connected
+		n10.addNeighbor(n8);
+		assertEquals(0, getPath(n1,n10).size()); // not reachable from n1
+		checkPath(getPath(n10,n1), n10, n8, n7, n6, n9, n1);
+		/* n10's graph took the other nodes; their old graph is stale */
+		assertEquals(0, getPath(n1,n10).size());
+		checkPath(getPath(n1,n6), n1, n9, n6);
+	}
+
 	private void checkPath(List<MapNode> path, MapNode ... nodes) {
 		assertEquals(nodes.length,path.size());
 
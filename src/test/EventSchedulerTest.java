@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.EventScheduler;
+
+/**
+ * Tests for the EventScheduler
+ */
+public class EventSchedulerTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private ScheduledUpdatesQueue[] queues;
+	private EventScheduler scheduler;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		List<EventQueue> list = new ArrayList<EventQueue>();
+		queues = new ScheduledUpdatesQueue[5];
+		for (int i = 0; i < queues.length; i++) {
+			queues[i] = new ScheduledUpdatesQueue();
+			list.add(queues[i]);
+		}
+		queues[3].addUpdate(2);
+		queues[1].addUpdate(4);
+		queues[1].addUpdate(1);
+		queues[4].addUpdate(1);
+		queues[2].addUpdate(3);
+		scheduler = new EventScheduler(list);
+	}
+
+	public void testOrder() {
+		assertEquals(1.0, scheduler.nextEventsTime());
+		assertSame(queues[1], scheduler.nextQueue()); // first of the ties
+		assertEquals(1.0, scheduler.nextEvent().getTime());
+		assertSame(queues[4], scheduler.nextQueue());
+		assertEquals(1.0, scheduler.nextEvent().getTime());
+		assertSame(queues[3], scheduler.nextQueue());
+		assertEquals(2.0, scheduler.nextEvent().getTime());
+		assertEquals(3.0, scheduler.nextEvent().getTime());
+		assertSame(queues[1], scheduler.nextQueue());
+		assertEquals(4.0, scheduler.nextEvent().getTime());
+		assertEquals(MAX, scheduler.nextEventsTime());
+	}
+
+	public void testRefresh() {
+		queues[0].addUpdate(0.5);
+		assertEquals(1.0, scheduler.nextEventsTime()); // not refreshed yet
+		scheduler.refresh(0);
+		assertSame(queues[0], scheduler.nextQueue());
+		assertEquals(0.5, scheduler.nextEvent().getTime());
+
+		queues[2].addUpdate(1);
+		queues[4].addUpdate(0.1);
+		scheduler.refreshAll();
+		assertSame(queues[4], scheduler.nextQueue());
+		assertEquals(0.1, scheduler.nextEvent().getTime());
+		assertSame(queues[1], scheduler.nextQueue());
+		scheduler.nextEvent();
+		assertSame(queues[2], scheduler.nextQueue());
+		scheduler.nextEvent();
+		assertSame(queues[4], scheduler.nextQueue());
+	}
+}
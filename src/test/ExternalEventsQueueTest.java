@@ -12,10 +12,14 @@ import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 import junit.framework.TestCase;
+import core.SimError;
 
 public class ExternalEventsQueueTest extends TestCase {
 	private final String[] stdinput = {
@@ -82,6 +86,87 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 
+	public void testGzipEEQ() throws Exception {
+		int preload = 4;
+		File gzFile = File.createTempFile("eeqTest", ".gz");
+		PrintWriter out = new PrintWriter(new GZIPOutputStream(
+				new FileOutputStream(gzFile)));
+		for (String s : stdinput) {
+			out.println(s);
+		}
+		out.close();
+
+		eeq = new ExternalEventsQueue(gzFile.getAbsolutePath(), preload);
+		checkEeq(eeq, preload);
+		assertTrue(gzFile.delete());
+	}
+
+	public void testInvalidEvent() throws Exception {
+		PrintWriter out = new PrintWriter(tempFile);
+		out.println("1.0	C	M1	p1	p2	100");
+		out.println("2.0	X	M1	p1	p2");
+		out.close();
+
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), 1);
+		try {
+			eeq.nextEvent(); // reads the next batch with the invalid event
+			eeq.nextEvent();
+			fail("Invalid event was accepted");
+		} catch (SimError e) {
+			/* expected */
+		}
+	}
+
+	public void testOldBinaryFormat() throws Exception {
+		File tmpBinFile = File.createTempFile("TempBinTest",
+				BinaryEventsReader.BINARY_EXT);
+		ObjectOutputStream out = new ObjectOutputStream(
+				new FileOutputStream(tmpBinFile));
+		out.writeObject(new java.util.ArrayList<ExternalEvent>());
+		out.close();
+
+		try {
+			BinaryEventsReader.isBinaryEeFile(tmpBinFile);
+			fail("Old serialized events file was accepted");
+		} catch (SimError e) {
+			/* expected */
+		}
+		assertTrue(tmpBinFile.delete());
+	}
+
+	public void testConvert() throws Exception {
+		PrintWriter out = new PrintWriter(tempFile);
+		for (String s : stdinput) {
+			out.println(s);
+		}
+		out.println("106300.0	CONN	p1	p2	up	wlan");
+		out.println("106400.0	CONN	p2	p1	down");
+		out.close();
+
+		File tmpBinFile = File.createTempFile("TempBinTest",
+				BinaryEventsReader.BINARY_EXT);
+		assertEquals(msgTimes.length + 2, BinaryEventsReader.convert(
+				tempFile, tmpBinFile.getAbsolutePath()));
+		assertTrue(BinaryEventsReader.isBinaryEeFile(tmpBinFile));
+
+		List<ExternalEvent> expected =
+			new StandardEventsReader(tempFile).readEvents(100);
+		BinaryEventsReader r = new BinaryEventsReader(tmpBinFile);
+		List<ExternalEvent> events = r.readEvents(5);
+		events.addAll(r.readEvents(100));
+		assertEquals(0, r.readEvents(100).size());
+		r.close();
+
+		assertEquals(expected.size(), events.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getClass(),
+					events.get(i).getClass());
+			assertEquals(expected.get(i).toString(),
+					events.get(i).toString());
+		}
+		assertTrue(tmpBinFile.delete());
+	}
+
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import util.LongHashMap;
+
+/**
+ * Tests for the primitive long keyed hash map
+ */
+public class LongHashMapTest extends TestCase {
+	private LongHashMap<String> map;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		map = new LongHashMap<String>();
+	}
+
+	public void testPutGetRemove() {
+		assertTrue(map.isEmpty());
+		assertNull(map.put(1, "a"));
+		assertNull(map.put(-1L << 40, "b"));
+		assertNull(map.put(42, null));
+		assertEquals(3, map.size());
+		assertEquals("a", map.get(1));
+		assertEquals("b", map.get(-1L << 40));
+		assertNull(map.get(42));
+		assertTrue(map.containsKey(42));
+		assertFalse(map.containsKey(2));
+
+		assertEquals("a", map.put(1, "c"));
+		assertEquals("c", map.get(1));
+		assertEquals(3, map.size());
+
+		assertEquals("c", map.remove(1));
+		assertNull(map.remove(1));
+		assertFalse(map.containsKey(1));
+		assertEquals(2, map.size());
+	}
+
+	public void testInsertionOrder() {
+		for (int i = 0; i < 20; i++) {
+			map.put(100 - i, "v" + i);
+		}
+		map.remove(95);
+		map.put(100, "x"); // existing keys keep their place
+		map.put(95, "y"); // re-added keys go last
+
+		List<String> values = new ArrayList<String>(map.values());
+		assertEquals(20, values.size());
+		assertEquals("x", values.get(0));
+		assertEquals("v4", values.get(4));
+		assertEquals("v6", values.get(5));
+		assertEquals("y", values.get(19));
+	}
+
+	public void testIteratorRemove() {
+		for (int i = 0; i < 10; i++) {
+			map.put(i, "v" + i);
+		}
+		for (Iterator<String> i = map.values().iterator(); i.hasNext(); ) {
+			String v = i.next();
+			if (v.equals("v3") || v.equals("v9")) {
+				i.remove();
+			}
+		}
+		assertEquals(8, map.size());
+		assertFalse(map.containsKey(3));
+		assertFalse(map.containsKey(9));
+		assertTrue(map.values().contains("v8"));
+
+		try {
+			for (String v : map.values()) {
+				map.put(100, v);
+			}
+			fail("Modification during iteration wasn't detected");
+		} catch (ConcurrentModificationException e) {
+			// expected
+		}
+	}
+
+	public void testRandomOperations() {
+		Map<Long, String> expected = new LinkedHashMap<Long, String>();
+		Random rng = new Random(1);
+		for (int i = 0; i < 100000; i++) {
+			long key = rng.nextInt(500);
+			if (rng.nextInt(3) == 0) {
+				assertEquals(expected.remove(key), map.remove(key));
+			}
+			else {
+				String value = "v" + i;
+				assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+		assertEquals(new ArrayList<String>(expected.values()),
+				new ArrayList<String>(map.values()));
+		for (long key = 0; key < 500; key++) {
+			assertEquals(expected.get(key), map.get(key));
+		}
+	}
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import routing.util.MessageBufferIndex;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the drop and expiry order index of router buffers
+ */
+public class MessageBufferIndexTest extends TestCase {
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		clock = SimClock.getInstance();
+	}
+
+	private Message newMessage(String id, int size, double receiveTime,
+			int ttl) {
+		Message m = new Message(null, null, id, size);
+		m.setReceiveTime(receiveTime);
+		if (ttl > 0) {
+			m.setTtl(ttl);
+		}
+		return m;
+	}
+
+	private List<String> dropOrder(MessageBufferIndex index) {
+		List<String> ids = new ArrayList<String>();
+		for (Message m : index.getDropOrder()) {
+			ids.add(m.getId());
+		}
+		return ids;
+	}
+
+	private List<String> ids(List<Message> messages) {
+		List<String> ids = new ArrayList<String>();
+		for (Message m : messages) {
+			ids.add(m.getId());
+		}
+		return ids;
+	}
+
+	public void testOldest() {
+		MessageBufferIndex index = new MessageBufferIndex(
+				MessageBufferIndex.DROP_OLDEST);
+		index.add(newMessage("a", 10, 5, 0));
+		index.add(newMessage("b", 10, 3, 0));
+		index.add(newMessage("c", 10, 5, 0));
+		index.add(newMessage("d", 10, 1, 0));
+		assertEquals("[d, b, a, c]", dropOrder(index).toString());
+
+		index.remove(newMessage("b", 10, 3, 0));
+		index.add(newMessage("a", 20, 5, 0)); // replaced, keeps its place
+		assertEquals("[d, a, c]", dropOrder(index).toString());
+		index.add(newMessage("b", 10, 5, 0)); // re-added goes last
+		assertEquals("[d, a, c, b]", dropOrder(index).toString());
+	}
+
+	public void testLargestAndLeastForwarded() {
+		MessageBufferIndex largest = new MessageBufferIndex(
+				MessageBufferIndex.DROP_LARGEST);
+		MessageBufferIndex leastFwd = new MessageBufferIndex(
+				MessageBufferIndex.DROP_LEAST_FORWARDED);
+		Message a = newMessage("a", 10, 0, 0);
+		Message b = newMessage("b", 30, 0, 0);
+		Message c = newMessage("c", 20, 0, 0);
+		for (Message m : new Message[] {a, b, c}) {
+			largest.add(m);
+			leastFwd.add(m);
+		}
+		assertEquals("[b, c, a]", dropOrder(largest).toString());
+
+		assertEquals("[a, b, c]", dropOrder(leastFwd).toString());
+		leastFwd.forwarded(a.replicate());
+		leastFwd.forwarded(c);
+		leastFwd.forwarded(a);
+		assertEquals("[b, c, a]", dropOrder(leastFwd).toString());
+	}
+
+	public void testExpiry() {
+		MessageBufferIndex index = new MessageBufferIndex(
+				MessageBufferIndex.DROP_SHORTEST_TTL);
+		clock.setTime(0);
+		index.add(newMessage("a", 10, 0, 5));
+		index.add(newMessage("b", 10, 0, 0)); // infinite TTL
+		index.add(newMessage("c", 10, 0, 2));
+		clock.setTime(30);
+		index.add(newMessage("d", 10, 30, 2));
+		assertEquals("[c, d, a, b]", dropOrder(index).toString());
+
+		assertEquals(0, index.getExpired(SimClock.getTime()).size());
+		clock.setTime(60); // c has 1 minute left
+		assertEquals(0, index.getExpired(SimClock.getTime()).size());
+		clock.setTime(60.01);
+		assertEquals("[c]",
+				ids(index.getExpired(SimClock.getTime())).toString());
+		clock.setTime(300);
+		assertEquals("[a, c, d]",
+				ids(index.getExpired(SimClock.getTime())).toString());
+	}
+}
@@ -4,6 +4,9 @@
  */
 package test;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import junit.framework.TestCase;
 
 import org.junit.Before;
@@ -11,7 +14,9 @@ import org.junit.Test;
 
 import core.DTNHost;
 import core.Message;
+import core.MessageHeader;
 import core.SimClock;
+import core.SimError;
 
 public class MessageTest extends TestCase {
 
@@ -60,5 +65,111 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testHops() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i=0; i<20; i++) {
+			hosts.add(utils.createHost());
+		}
+
+		Message m = new Message(hosts.get(0), hosts.get(19), "M2", 100);
+		for (int i=1; i<12; i++) {
+			m.addNodeOnPath(hosts.get(i));
+		}
+		Message rep = m.replicate();
+		m.addNodeOnPath(hosts.get(12));
+		rep.addNodeOnPath(hosts.get(13));
+
+		assertEquals(12, m.getHopCount());
+		assertEquals(12, rep.getHopCount());
+		assertEquals(hosts.subList(0, 13), m.getHops());
+		assertEquals(hosts.get(13), rep.getHops().get(12));
+		assertEquals(hosts.subList(0, 12), rep.getHops().subList(0, 12));
+
+		for (int i=0; i<12; i++) {
+			assertTrue(m.hasPassed(hosts.get(i)));
+			assertTrue(rep.hasPassed(hosts.get(i)));
+		}
+		assertTrue(m.hasPassed(hosts.get(12)));
+		assertFalse(rep.hasPassed(hosts.get(12)));
+		assertFalse(m.hasPassed(hosts.get(13)));
+		assertTrue(rep.hasPassed(hosts.get(13)));
+		assertFalse(m.hasPassed(hosts.get(19)));
+
+		/* short paths and replicates of the replicate */
+		Message rep2 = rep.replicate();
+		rep2.addNodeOnPath(hosts.get(19));
+		assertTrue(rep2.hasPassed(hosts.get(19)));
+		assertFalse(rep.hasPassed(hosts.get(19)));
+		assertTrue(msg.hasPassed(null));
+		assertFalse(msg.hasPassed(hosts.get(0)));
+
+		try {
+			m.getHops().add(hosts.get(19));
+			fail("Path could be modified");
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testIntIds() {
+		Message m = new Message(from, to, new String("M3"), 100);
+		assertEquals(m.getIntId(), Message.getIntId("M3"));
+		assertEquals(m.getIntId(), m.replicate().getIntId());
+		assertFalse(m.getIntId() == msg.getIntId());
+
+		/* messages with equal IDs share the integer ID and the ID instance */
+		Message m2 = new Message(from, to, new String("M3"), 100);
+		assertEquals(m.getIntId(), m2.getIntId());
+		assertSame(m.getId(), m2.getId());
+		assertEquals(-1, Message.getIntId("none"));
+	}
+
+	private enum Color { RED, GREEN }
+
+	@Test
+	public void testHeaders() {
+		MessageHeader.IntHeader intH = MessageHeader.intHeader("test.int");
+		MessageHeader.DoubleHeader doubleH =
+			MessageHeader.doubleHeader("test.double");
+		MessageHeader.EnumHeader<Color> enumH =
+			MessageHeader.enumHeader("test.enum", Color.class);
+
+		assertFalse(intH.isSet(msg));
+		assertEquals(0, intH.get(msg));
+		assertNull(enumH.get(msg));
+
+		intH.set(msg, -5);
+		doubleH.set(msg, 1.5);
+		enumH.set(msg, Color.GREEN);
+		assertTrue(intH.isSet(msg));
+		assertEquals(-5, intH.get(msg));
+		assertEquals(1.5, doubleH.get(msg));
+		assertEquals(Color.GREEN, enumH.get(msg));
+
+		/* replicates have the same values but changing them doesn't change
+		 * the other message */
+		Message rep = msg.replicate();
+		assertEquals(-5, intH.get(rep));
+		assertEquals(Color.GREEN, enumH.get(rep));
+		intH.set(rep, 7);
+		enumH.set(msg, Color.RED);
+		assertEquals(7, intH.get(rep));
+		assertEquals(-5, intH.get(msg));
+		assertEquals(Color.GREEN, enumH.get(rep));
+		assertEquals(Color.RED, enumH.get(msg));
+
+		/* the same field is returned for the same name and type */
+		assertSame(intH, MessageHeader.intHeader("test.int"));
+		try {
+			MessageHeader.longHeader("test.int");
+			fail("Header was registered with two types");
+		} catch (SimError e) {
+			// expected
+		}
+	}
+
 
 }
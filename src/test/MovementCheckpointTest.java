@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.MovementCheckpoint;
+import core.SettingsError;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Tests for saving and restoring movement checkpoints.
+ */
+public class MovementCheckpointTest extends TestCase {
+	private File file;
+	private List<DTNHost> hosts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		file = File.createTempFile("movement", ".checkpoint");
+		file.delete();
+		SimClock.reset();
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		SimClock.reset();
+		super.tearDown();
+	}
+
+	private void createHosts() {
+		DTNHost.reset();
+		TestUtils utils = new TestUtils(new ArrayList<ConnectionListener>(),
+				new ArrayList<MessageListener>(), new TestSettings());
+		utils.createHost(new Coord(0, 0));
+		utils.createHost(new Coord(10, 0));
+		hosts = utils.getAllHosts();
+	}
+
+	public void testDifferentMovementSettings() {
+		String speed = SimScenario.GROUP_NS + "." + MovementModel.SPEED;
+		createHosts();
+		new TestSettings().putSetting(speed, "0.5,1.5");
+		new MovementCheckpoint(hosts, 0).save(file.getPath());
+
+		createHosts();
+		new TestSettings().putSetting(speed, "0.5,1.5");
+		new MovementCheckpoint(hosts, 0).restore(file.getPath());
+
+		createHosts();
+		new TestSettings().putSetting(speed, "1,2");
+		try {
+			new MovementCheckpoint(hosts, 0).restore(file.getPath());
+			fail("Checkpoint of different movement settings was accepted");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Locale;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.ReportRecord;
+
+/**
+ * Tests for the typed report records.
+ */
+public class ReportRecordTest extends TestCase {
+
+	private String fixed(double value, int decimals) {
+		StringBuilder sb = new StringBuilder();
+		ReportRecord.appendFixed(sb, value, decimals);
+		return sb.toString();
+	}
+
+	private String numbers(String txt) {
+		StringBuilder sb = new StringBuilder();
+		ReportRecord.appendNumbers(txt, sb);
+		return sb.toString();
+	}
+
+	public void testFixed() {
+		assertEquals("0.13", fixed(0.125, 2));
+		assertEquals("10.00", fixed(9.999, 2));
+		assertEquals("-0.00", fixed(-0.0, 2));
+		assertEquals("3", fixed(2.5, 0));
+		assertEquals("1.5000", fixed(1.5, 4));
+
+		Random rng = new Random(1);
+		double time = 0;
+		for (int i = 0; i < 10000; i++) {
+			time += 0.1;
+			double[] values = {time, rng.nextDouble() * 100 - 50,
+					rng.nextDouble() * Math.pow(10, rng.nextInt(14) - 5),
+					rng.nextInt(10000) / 8.0};
+			for (double v : values) {
+				for (int d = 0; d < 6; d++) {
+					assertEquals(String.format(Locale.ROOT, "%." + d + "f", v),
+							fixed(v, d));
+				}
+			}
+		}
+	}
+
+	public void testLocale() {
+		Locale defaultLocale = Locale.getDefault();
+		Locale.setDefault(Locale.GERMANY);
+		try {
+			/* the fast path and the Formatter use the same separator */
+			assertEquals("1.50", fixed(1.5, 2));
+			assertEquals("12345678.50", fixed(12345678.5, 2));
+			assertEquals("0.0001", fixed(0.0001, 4));
+		} finally {
+			Locale.setDefault(defaultLocale);
+		}
+	}
+
+	public void testNumbers() {
+		assertEquals("0.10\n22\n154\n", numbers("0.10 CONN 22 154 up"));
+		assertEquals("12\n5\n", numbers("a12% b 5 c"));
+		assertEquals("", numbers("no numbers"));
+		/* the last character of the text ends the number (and is left out) */
+		assertEquals("1\n", numbers("x 12"));
+		assertEquals("\n", numbers("x 1"));
+	}
+
+	public void testText() {
+		ReportRecord r = new ReportRecord(false);
+		r.add(1.5).add("A").add("").add((String)null).add(7).addFixed(2, 1);
+		assertEquals("1.5 A  7 2.0", r.toString());
+		assertEquals("x", r.clear().add("x").toString());
+	}
+
+	public void testCsv() {
+		ReportRecord r = new ReportRecord(true);
+		r.add("a,b").add((String)null).add("say \"hi\"").add(3);
+		assertEquals("\"a,b\",,\"say \"\"hi\"\"\",3", r.toString());
+	}
+}
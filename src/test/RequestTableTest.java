@@ -0,0 +1,112 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.DTNHost.RequestBufferEntry;
+import core.RequestTable;
+
+/**
+ * Tests for the pending web page request table.
+ */
+public class RequestTableTest extends TestCase {
+
+	private RequestTable table;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		table = new RequestTable();
+	}
+
+	private RequestBufferEntry newEntry(int page, int state,
+			double creationTime) {
+		return new RequestBufferEntry(page, state, creationTime, 1000, "app",
+				creationTime);
+	}
+
+	public void testRemove() {
+		RequestBufferEntry e1 = newEntry(1, 0, 10);
+		RequestBufferEntry e2 = newEntry(1, 0, 20);
+		table.add(e1, Double.POSITIVE_INFINITY);
+		table.add(e2, Double.POSITIVE_INFINITY);
+		assertEquals(2, table.size());
+
+		assertNull(table.remove(2, 10));
+		assertNull(table.remove(1, 15));
+		assertSame(e2, table.remove(1, 20));
+		assertNull(table.remove(1, 20));
+		assertSame(e1, table.remove(1, 10));
+		assertEquals(0, table.size());
+		assertEquals(0, table.getNotInState(1).size());
+	}
+
+	public void testDuplicates() {
+		RequestBufferEntry e1 = newEntry(1, 0, 10);
+		RequestBufferEntry e2 = newEntry(1, 1, 10);
+		RequestBufferEntry e3 = newEntry(1, 2, 10);
+		table.add(e1, 5);
+		table.add(e2, 6);
+		table.add(e3, 7);
+
+		/* the oldest one is removed first */
+		assertSame(e1, table.remove(1, 10));
+		assertSame(e2, table.remove(1, 10));
+		assertEquals(1, table.size());
+		assertEquals(1, table.getDue(10).size());
+		assertSame(e3, table.remove(1, 10));
+		assertEquals(0, table.getDue(10).size());
+	}
+
+	public void testGetDue() {
+		RequestBufferEntry e1 = newEntry(1, 1, 0);
+		RequestBufferEntry e2 = newEntry(2, 0, 0);
+		RequestBufferEntry e3 = newEntry(3, 2, 0);
+		RequestBufferEntry e4 = newEntry(4, 2, 0);
+		table.add(e1, 30);
+		table.add(e2, Double.NEGATIVE_INFINITY);
+		table.add(e3, 20);
+		table.add(e4, Double.POSITIVE_INFINITY);
+
+		List<RequestBufferEntry> due = table.getDue(25);
+		assertEquals(2, due.size());
+		assertSame(e2, due.get(0));
+		assertSame(e3, due.get(1));
+
+		/* due requests are returned in the order they were added */
+		due = table.getDue(30);
+		assertEquals(3, due.size());
+		assertSame(e1, due.get(0));
+		assertSame(e2, due.get(1));
+		assertSame(e3, due.get(2));
+
+		table.changed(e2, 40);
+		due = table.getDue(30);
+		assertEquals(2, due.size());
+		assertSame(e1, due.get(0));
+		assertSame(e3, due.get(1));
+	}
+
+	public void testGetNotInState() {
+		RequestBufferEntry e1 = newEntry(1, 2, 0);
+		RequestBufferEntry e2 = newEntry(2, 1, 0);
+		RequestBufferEntry e3 = newEntry(3, 0, 0);
+		table.add(e1, Double.POSITIVE_INFINITY);
+		table.add(e2, Double.POSITIVE_INFINITY);
+		table.add(e3, Double.POSITIVE_INFINITY);
+
+		List<RequestBufferEntry> waiting = table.getNotInState(1);
+		assertEquals(2, waiting.size());
+		assertSame(e1, waiting.get(0));
+		assertSame(e3, waiting.get(1));
+
+		assertSame(e1, table.remove(1, 0));
+		waiting = table.getNotInState(1);
+		assertEquals(1, waiting.size());
+		assertSame(e3, waiting.get(0));
+		assertEquals(1, table.getNotInState(0).size());
+	}
+}
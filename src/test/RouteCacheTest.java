@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.map.DijkstraPathFinder;
+import movement.map.MapNode;
+import movement.map.RouteCache;
+import core.Coord;
+
+/**
+ * Tests for the shared route cache of the shortest path finders
+ */
+public class RouteCacheTest extends TestCase {
+	private MapNode[] nodes;
+	private RouteCache cache;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		/* a 4x4 grid with 10 m long edges */
+		nodes = new MapNode[16];
+		for (int i = 0; i < nodes.length; i++) {
+			nodes[i] = new MapNode(new Coord(10 * (i % 4), 10 * (i / 4)));
+		}
+		for (int i = 0; i < nodes.length; i++) {
+			if (i % 4 < 3) {
+				connect(nodes[i], nodes[i + 1]);
+			}
+			if (i < 12) {
+				connect(nodes[i], nodes[i + 4]);
+			}
+		}
+		cache = new RouteCache(3);
+		DijkstraPathFinder.setRouteCache(cache);
+	}
+
+	protected void tearDown() throws Exception {
+		DijkstraPathFinder.reset();
+		super.tearDown();
+	}
+
+	private void connect(MapNode n1, MapNode n2) {
+		n1.addNeighbor(n2);
+		n2.addNeighbor(n1);
+	}
+
+	public void testHitsAndMisses() {
+		DijkstraPathFinder pf = new DijkstraPathFinder(null);
+		List<MapNode> path = pf.getShortestPath(nodes[0], nodes[15]);
+		assertEquals(7, path.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		assertSame(path, pf.getShortestPath(nodes[0], nodes[15]));
+		assertSame(path, new DijkstraPathFinder(null).getShortestPath(
+				nodes[0], nodes[15]));
+		assertEquals(2, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		/* different direction and OK node types are different routes */
+		pf.getShortestPath(nodes[15], nodes[0]);
+		for (MapNode n : nodes) {
+			n.addType(1);
+		}
+		new DijkstraPathFinder(new int[] {1}).getShortestPath(nodes[0],
+				nodes[15]);
+		assertEquals(2, cache.getHits());
+		assertEquals(3, cache.getMisses());
+	}
+
+	public void testEviction() {
+		DijkstraPathFinder pf = new DijkstraPathFinder(null);
+		pf.getShortestPath(nodes[0], nodes[1]);
+		pf.getShortestPath(nodes[0], nodes[2]);
+		pf.getShortestPath(nodes[0], nodes[3]);
+		pf.getShortestPath(nodes[0], nodes[1]); // 0->2 is now the eldest
+		pf.getShortestPath(nodes[0], nodes[4]);
+		assertEquals(3, cache.size());
+		assertEquals(1, cache.getHits());
+
+		pf.getShortestPath(nodes[0], nodes[1]);
+		pf.getShortestPath(nodes[0], nodes[4]);
+		assertEquals(3, cache.getHits());
+		pf.getShortestPath(nodes[0], nodes[2]); // was evicted
+		assertEquals(3, cache.getHits());
+		assertEquals(5, cache.getMisses());
+	}
+
+	public void testChangedMap() {
+		DijkstraPathFinder pf = new DijkstraPathFinder(null);
+		assertEquals(7, pf.getShortestPath(nodes[0], nodes[15]).size());
+		connect(nodes[0], nodes[15]);
+		List<MapNode> path = pf.getShortestPath(nodes[0], nodes[15]);
+		assertEquals(Arrays.asList(nodes[0], nodes[15]), path);
+		assertEquals(0, cache.getHits());
+		assertSame(path, pf.getShortestPath(nodes[0], nodes[15]));
+	}
+
+	public void testPrewarm() {
+		List<MapNode> pois = Arrays.asList(nodes[0], nodes[5], nodes[10],
+				nodes[15], nodes[12]);
+		DijkstraPathFinder.setRouteCache(null);
+		DijkstraPathFinder pf = new DijkstraPathFinder(null);
+		List<List<MapNode>> expected = new ArrayList<List<MapNode>>();
+		for (MapNode from : pois) {
+			for (MapNode to : pois) {
+				expected.add(pf.getShortestPath(from, to));
+			}
+		}
+
+		cache = new RouteCache(100);
+		DijkstraPathFinder.setRouteCache(cache);
+		pf.prewarm(pois);
+		assertEquals(20, cache.size());
+		int i = 0;
+		for (MapNode from : pois) {
+			for (MapNode to : pois) {
+				assertEquals(expected.get(i++), pf.getShortestPath(from, to));
+			}
+		}
+		assertEquals(20, cache.getHits());
+		assertEquals(0, cache.getMisses());
+	}
+}
@@ -101,10 +101,14 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		suq.addUpdate(1.0);
 		suq.addUpdate(1.0);
 		suq.addUpdate(8.0);
+		assertEquals("updates @ 1.0, 4.0, 5.0, 8.0", suq.toString());
 
 		assertEquals(1.0, suq.nextEvent().getTime());
 		assertEquals(4.0, suq.nextEvent().getTime());
+		suq.addUpdate(4.0); // not a duplicate anymore
+		assertEquals(4.0, suq.nextEvent().getTime());
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEvent().getTime());
 	}
 }
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import core.SimClock;
+import core.SimContext;
+
+/**
+ * Tests for the isolated simulation contexts.
+ */
+public class SimContextTest extends TestCase {
+
+	private SimContext context;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		context = new SimContext();
+	}
+
+	protected void tearDown() throws Exception {
+		context.close();
+		SimClock.reset();
+		super.tearDown();
+	}
+
+	private double getTime(Class<?> clock) throws Exception {
+		return (Double)clock.getMethod("getTime").invoke(null);
+	}
+
+	private void setTime(Class<?> clock, double time) throws Exception {
+		Object instance = clock.getMethod("getInstance").invoke(null);
+		clock.getMethod("setTime", double.class).invoke(instance, time);
+	}
+
+	public void testIsolation() throws Exception {
+		Class<?> clock = context.loadClass("core.SimClock");
+		assertNotSame(SimClock.class, clock);
+		assertSame(clock, context.loadClass("core.SimClock"));
+
+		SimClock.getInstance().setTime(10);
+		assertEquals(0.0, getTime(clock));
+		setTime(clock, 20);
+		assertEquals(10.0, SimClock.getTime());
+		assertEquals(20.0, getTime(clock));
+
+		/* another context has its own clock too */
+		SimContext other = new SimContext();
+		try {
+			assertEquals(0.0, getTime(other.loadClass("core.SimClock")));
+		} finally {
+			other.close();
+		}
+	}
+}
@@ -54,6 +54,11 @@ public class StationaryMovement extends MovementModel {
 		return Double.MAX_VALUE;	// no new paths available
 	}
 
+	@Override
+	public boolean isCheckpointable() {
+		return true;
+	}
+
 	@Override
 	public StationaryMovement replicate() {
 		return new StationaryMovement(loc);
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import report.StreamingStatistics;
+
+/**
+ * Tests for the bounded-memory statistics used by reports.
+ */
+public class StreamingStatisticsTest extends TestCase {
+
+	private static final int NROF_VALUES = 10000;
+	/** maximum relative error of the histogram quantiles */
+	private static final double HIST_ERROR =
+		1.0 / StreamingStatistics.SUB_BUCKETS;
+
+	private ArrayList<Double> values;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		Random rng = new Random(1);
+		values = new ArrayList<Double>();
+		for (int i = 0; i < NROF_VALUES; i++) {
+			values.add(rng.nextDouble() * Math.pow(10, rng.nextInt(6) - 2));
+		}
+	}
+
+	private StreamingStatistics fill(int exactLimit) {
+		StreamingStatistics s = new StreamingStatistics(exactLimit);
+		for (double d : values) {
+			s.add(d);
+		}
+		return s;
+	}
+
+	public void testExact() {
+		StreamingStatistics s = fill(NROF_VALUES);
+		assertTrue(s.isExact());
+
+		Collections.sort(values);
+		double sum = 0;
+		for (double d : values) {
+			sum += d;
+		}
+		assertEquals(NROF_VALUES, s.getCount());
+		assertEquals(sum / NROF_VALUES, s.getMean());
+		assertEquals(values.get(NROF_VALUES / 2), s.getQuantile(0.5));
+		assertEquals(values.get((int)(NROF_VALUES * 0.95)),
+				s.getQuantile(0.95));
+		assertEquals(values.get(0), s.getMin());
+		assertEquals(values.get(NROF_VALUES - 1), s.getMax());
+		assertEquals(values.get(NROF_VALUES - 1), s.getQuantile(1.0));
+	}
+
+	public void testHistogram() {
+		StreamingStatistics s = fill(NROF_VALUES / 10);
+		assertFalse(s.isExact());
+
+		Collections.sort(values);
+		assertEquals(NROF_VALUES, s.getCount());
+		assertEquals(values.get(0), s.getMin());
+		assertEquals(values.get(NROF_VALUES - 1), s.getMax());
+		for (double q : new double[] {0.01, 0.25, 0.5, 0.95, 0.99}) {
+			double exact = values.get((int)(NROF_VALUES * q));
+			assertEquals("quantile " + q, exact, s.getQuantile(q),
+					exact * HIST_ERROR);
+		}
+	}
+
+	public void testZeros() {
+		StreamingStatistics s = new StreamingStatistics(0);
+		s.add(0);
+		s.add(0);
+		s.add(2);
+		assertEquals(0.0, s.getQuantile(0.5));
+		assertEquals(2.0, s.getQuantile(0.9), 2 * HIST_ERROR);
+		assertEquals(2.0 / 3, s.getMean(), 1e-12);
+	}
+
+	public void testMerge() {
+		StreamingStatistics exact = fill(NROF_VALUES);
+
+		StreamingStatistics merged = new StreamingStatistics(NROF_VALUES);
+		StreamingStatistics hist = new StreamingStatistics(0);
+		for (int i = 0; i < NROF_VALUES; i++) {
+			if (i % 2 == 0) {
+				merged.add(values.get(i));
+			} else {
+				hist.add(values.get(i));
+			}
+		}
+		merged.merge(hist);
+		assertFalse(merged.isExact());
+		assertEquals(NROF_VALUES, merged.getCount());
+		assertEquals(exact.getMin(), merged.getMin());
+		assertEquals(exact.getMax(), merged.getMax());
+		assertEquals(exact.getMean(), merged.getMean(), 1e-9);
+		double median = exact.getQuantile(0.5);
+		assertEquals(median, merged.getQuantile(0.5), median * HIST_ERROR);
+
+		/* merging exact statistics that fit within the limit stays exact */
+		StreamingStatistics a = new StreamingStatistics(NROF_VALUES);
+		StreamingStatistics b = new StreamingStatistics(NROF_VALUES);
+		for (int i = 0; i < NROF_VALUES; i++) {
+			(i < 100 ? a : b).add(values.get(i));
+		}
+		a.merge(b);
+		assertTrue(a.isExact());
+		assertEquals(exact.getQuantile(0.95), a.getQuantile(0.95));
+	}
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import cache.ARCCache;
+import cache.FIFOCache;
+import cache.LFUCache;
+import cache.LRUCache;
+import cache.TTLCache;
+import cache.WebCache;
+import core.SimClock;
+import core.SimScenario;
+
+/**
+ * Tests for the web cache policies.
+ */
+public class WebCacheTest extends TestCase {
+
+	private TestSettings ts;
+	private SimClock clock;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings.init(null);
+		ts = new TestSettings();
+		ts.putSetting(SimScenario.CACHE_ENTRIES, "3");
+		SimClock.reset();
+		clock = SimClock.getInstance();
+	}
+
+	protected void tearDown() throws Exception {
+		SimClock.reset();
+		TestSettings.init(null);
+		super.tearDown();
+	}
+
+	/**
+	 * Checks that exactly the given pages are in the cache
+	 */
+	private void assertPages(WebCache c, int ... pages) {
+		int found = 0;
+		for (int page = 1; page <= 10; page++) {
+			if (c.get(page) != -1) {
+				found++;
+			}
+		}
+		assertEquals(pages.length, found);
+		for (int page : pages) {
+			assertEquals("page " + page, page * 100, c.get(page));
+		}
+	}
+
+	private void putPages(WebCache c, int ... pages) {
+		for (int page : pages) {
+			c.put(page, page * 100);
+		}
+	}
+
+	public void testFIFO() {
+		WebCache c = new FIFOCache(ts).replicate();
+		putPages(c, 1, 2, 3);
+		assertEquals(3, c.size());
+		assertEquals(600, c.getBytes());
+
+		c.get(1); /* lookups don't change the order */
+		putPages(c, 4);
+		assertEquals(-1, c.get(1));
+
+		putPages(c, 2, 5); /* re-adding moves to the end */
+		assertEquals(-1, c.get(3));
+		assertEquals(200, c.get(2));
+		assertEquals(3, c.size());
+		assertEquals(1100, c.getBytes());
+	}
+
+	public void testNoEntries() {
+		ts.putSetting(SimScenario.CACHE_ENTRIES, "0");
+		WebCache c = new FIFOCache(ts);
+		putPages(c, 1);
+		assertEquals(0, c.size());
+		assertEquals(-1, c.get(1));
+	}
+
+	public void testLRU() {
+		WebCache c = new LRUCache(ts);
+		putPages(c, 1, 2, 3);
+		c.get(1);
+		putPages(c, 4);
+		assertPages(c, 1, 3, 4);
+	}
+
+	public void testByteLimit() {
+		ts.putSetting(WebCache.CACHE_BYTES_S, "800");
+		WebCache c = new LRUCache(ts);
+		putPages(c, 2, 3, 4);
+		assertEquals(2, c.size());
+		assertEquals(700, c.getBytes());
+		assertEquals(-1, c.get(2));
+
+		c.put(1, 2000); /* never fits */
+		assertEquals(-1, c.get(1));
+		assertEquals(700, c.getBytes());
+	}
+
+	public void testLFU() {
+		WebCache c = new LFUCache(ts);
+		putPages(c, 1, 2, 3);
+		c.get(1);
+		c.get(1);
+		c.get(3);
+		putPages(c, 4); /* 2 is the least used */
+		assertEquals(-1, c.get(2));
+		putPages(c, 5); /* 4 was used less than 3 */
+		assertEquals(-1, c.get(4));
+		assertEquals(3, c.size());
+		assertEquals(900, c.getBytes());
+	}
+
+	public void testLFUAdmitsNewPages() {
+		WebCache c = new LFUCache(ts);
+		putPages(c, 1, 2, 3);
+		c.get(1);
+		c.get(2);
+		c.get(3);
+		c.get(3);
+		putPages(c, 4); /* all the others have been used more than once */
+		assertPages(c, 2, 3, 4);
+		putPages(c, 5); /* 4 is the least used now */
+		assertEquals(-1, c.get(4));
+		assertEquals(500, c.get(5));
+	}
+
+	public void testARC() {
+		WebCache c = new ARCCache(ts);
+		putPages(c, 1, 2, 3);
+		c.get(1); /* 1 moves to the frequently used part */
+		putPages(c, 4, 5);
+		assertEquals(3, c.size());
+		assertEquals(100, c.get(1));
+
+		/* scanning through many pages doesn't flush page 1 */
+		for (int page = 6; page <= 10; page++) {
+			c.put(page, page * 100);
+		}
+		assertEquals(100, c.get(1));
+		assertEquals(3, c.size());
+
+		long bytes = 0;
+		for (int page = 1; page <= 10; page++) {
+			if (c.get(page) != -1) {
+				bytes += page * 100;
+			}
+		}
+		assertEquals(bytes, c.getBytes());
+	}
+
+	public void testTTL() {
+		ts.putSetting(TTLCache.CACHE_TTL_S, "10");
+		WebCache c = new TTLCache(ts);
+		putPages(c, 1);
+		clock.setTime(5);
+		putPages(c, 2);
+		assertPages(c, 1, 2);
+
+		clock.setTime(10);
+		assertEquals(-1, c.get(1));
+		assertEquals(200, c.get(2));
+
+		clock.setTime(20);
+		putPages(c, 3);
+		assertEquals(1, c.size());
+		assertEquals(300, c.getBytes());
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WebPage;
+import input.WebPages;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import core.SettingsError;
+
+/**
+ * Tests for the web page catalog and its Zipf sampler.
+ */
+public class WebPagesTest extends TestCase {
+
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		TestSettings.init(null);
+		ts = new TestSettings(WebPages.WEB_PAGES_NS);
+	}
+
+	protected void tearDown() throws Exception {
+		TestSettings.init(null);
+		super.tearDown();
+	}
+
+	/**
+	 * The binary search must draw the same pages as a linear scan of the
+	 * distribution function
+	 */
+	public void testSameDrawsAsLinearSearch() {
+		int n = 10000;
+		double sum = 0;
+		for (int i = 1; i <= n; i++) {
+			sum += 1/Math.pow(i, 1.0);
+		}
+		double [] cdf = new double[n + 1];
+		double cumulative = 0;
+		for (int i = 1; i <= n; i++) {
+			cumulative += 1/Math.pow(i, 1.0)/sum;
+			cdf[i] = cumulative;
+		}
+
+		WebPages pages = new WebPages();
+		Random rand = new Random(42);
+		for (int k = 0; k < 10000; k++) {
+			double r = rand.nextDouble();
+			int j;
+			for (j = 1; j < n; j++) {
+				if (r < cdf[j]) {
+					break;
+				}
+			}
+			assertEquals(j, pages.getRandomWebPageNumber());
+		}
+	}
+
+	public void testSettings() {
+		ts.putSetting(WebPages.NROF_PAGES_S, "5");
+		ts.putSetting(WebPages.ZIPF_EXPONENT_S, "0");
+		ts.putSetting(WebPages.SIZE_RANGE_S, "100,500");
+
+		WebPages pages = new WebPages();
+		assertEquals(5, pages.getNumberOfWebPages());
+
+		int [] sizes = new int[5];
+		for (int i = 1; i <= 5; i++) {
+			sizes[i-1] = pages.getWebPage(i);
+		}
+		Arrays.sort(sizes);
+		assertTrue(Arrays.equals(new int[] {100, 200, 300, 400, 500}, sizes));
+
+		/* exponent 0 makes all pages equally popular */
+		int [] counts = new int[6];
+		for (int k = 0; k < 5000; k++) {
+			WebPage page = pages.getRandomWebPage();
+			assertEquals(pages.getWebPage(page.getWebPageNumber()),
+					page.getWebPageSize());
+			counts[page.getWebPageNumber()]++;
+		}
+		assertEquals(0, counts[0]);
+		for (int i = 1; i <= 5; i++) {
+			assertTrue("page " + i + " drawn " + counts[i] + " times",
+					counts[i] > 800 && counts[i] < 1200);
+		}
+	}
+
+	public void testInvalidSettings() {
+		ts.putSetting(WebPages.SIZE_RANGE_S, "500,100");
+		try {
+			new WebPages();
+			fail("Invalid size range should not be accepted");
+		} catch (SettingsError e) {
+			/* expected */
+		}
+	}
+}
@@ -6,10 +6,20 @@ package test;
 
 import input.EventQueue;
 
+import interfaces.AlwaysInRangeOptimizer;
+import interfaces.SimpleBroadcastInterface;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.Connection;
+import core.Coord;
 import core.DTNHost;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
@@ -74,6 +84,88 @@ public class WorldTest extends TestCase {
 		assertNrofUpdates(nrofRounds);
 	}
 
+	public void testParallelUpdate() {
+		TestSettings ts = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ts.putSetting(World.PARALLEL_UPDATES_S, "true");
+		ts.putSetting(World.UPDATE_THREADS_S, "2");
+		TestScenario scen = new TestScenario();
+		this.world = new World(scen.getHosts(),scen.getWorldSizeX(),
+				scen.getWorldSizeY(),scen.getUpdateInterval(),
+				scen.getUpdateListeners(), scen.simulateConnections(),
+				scen.getExternalEvents() );
+
+		int nrofRounds = 100;
+		for (int i=0; i<nrofRounds; i++) {
+			world.update();
+		}
+
+		assertEquals(nrofRounds * upInterval, SimClock.getTime(), TIME_DELTA);
+		assertNrofUpdates(nrofRounds);
+	}
+
+	public void testParallelUpdateMatchesSerial() {
+		List<String> serial = runMovingHosts(false);
+		List<String> parallel = runMovingHosts(true);
+		assertEquals(serial.size(), parallel.size());
+		for (int i = 0; i < serial.size(); i++) {
+			assertEquals("round " + i, serial.get(i), parallel.get(i));
+		}
+	}
+
+	/**
+	 * Runs a world of moving hosts with the same movement every time and
+	 * returns the locations and connections of the hosts after each update
+	 * @param parallel Should the connection updates be prepared in parallel
+	 * @return The states of the hosts after each update
+	 */
+	private List<String> runMovingHosts(boolean parallel) {
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		AlwaysInRangeOptimizer.reset();
+		TestSettings ws = new TestSettings(World.OPTIMIZATION_SETTINGS_NS);
+		ws.putSetting(World.PARALLEL_UPDATES_S, "" + parallel);
+		ws.putSetting(World.UPDATE_THREADS_S, "4");
+		TestSettings is = new TestSettings(TestUtils.IFACE_NS);
+		is.putSetting(NetworkInterface.TRANSMIT_RANGE_S, "10");
+		is.putSetting(NetworkInterface.TRANSMIT_SPEED_S, "1");
+		is.putSetting(NetworkInterface.OPTIMIZER_S,
+				NetworkInterface.OPTIMIZER_ALWAYS_IN_RANGE);
+
+		List<DTNHost> hosts = new ArrayList<DTNHost>();
+		for (int i = 0; i < 30; i++) {
+			List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+			li.add(new SimpleBroadcastInterface(is));
+			hosts.add(new DTNHost(null, null, "h", li,
+					new ModuleCommunicationBus(), new WanderingMovement(i),
+					new PassiveRouter(is)));
+		}
+		World w = new World(hosts, worldSizeX, worldSizeY, upInterval,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+
+		List<String> states = new ArrayList<String>();
+		int nrofConnections = 0;
+		for (int round = 0; round < 500; round++) {
+			w.update();
+			StringBuilder sb = new StringBuilder();
+			for (DTNHost h : hosts) {
+				List<String> peers = new ArrayList<String>();
+				for (Connection c : h.getConnections()) {
+					peers.add(c.getOtherNode(h).toString());
+				}
+				Collections.sort(peers);
+				nrofConnections += peers.size();
+				sb.append(h).append(' ').append(h.getLocation());
+				sb.append(' ').append(peers).append('\n');
+			}
+			states.add(sb.toString());
+		}
+		w.done();
+		assertTrue("no connections were created", nrofConnections > 0);
+		return states;
+	}
+
 	private void assertNrofUpdates(int nrof) {
 		for (TestDTNHost h : testHosts) {
 			assertEquals(nrof, h.nrofUpdate);
@@ -102,6 +194,52 @@ public class WorldTest extends TestCase {
 	}
 
 
+	/**
+	 * Movement between random points of the world. The points depend only
+	 * on the seed of the model.
+	 */
+	private class WanderingMovement extends MovementModel {
+		private final long seed;
+		private final Random random;
+
+		public WanderingMovement(long seed) {
+			this.seed = seed;
+			this.random = new Random(seed);
+		}
+
+		private Coord randomCoord() {
+			return new Coord(random.nextDouble() * worldSizeX,
+					random.nextDouble() * worldSizeY);
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return randomCoord();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			Path p = new Path(1 + random.nextDouble() * 4);
+			p.addWaypoint(randomCoord());
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return SimClock.getTime();
+		}
+
+		@Override
+		public WanderingMovement replicate() {
+			return new WanderingMovement(seed);
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */
 	@SuppressWarnings("serial")
 	private class TestScenario extends core.SimScenario {
@@ -4,12 +4,14 @@
  */
 package ui;
 
+import java.io.File;
 import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
 import core.ConnectionListener;
 import core.MessageListener;
+import core.MovementCheckpoint;
 import core.MovementListener;
 import core.Settings;
 import core.SettingsError;
@@ -42,6 +44,12 @@ public abstract class DTNSimUI {
 	 */
 	public static final String MM_WARMUP_S =
 		movement.MovementModel.MOVEMENT_MODEL_NS + ".warmup";
+	/** movement warm up checkpoint file -setting id ({@value}). If the file
+	 * exists, the state after the movement warm up is restored from it.
+	 * Otherwise the warm up is run and its result is saved to the file.
+	 * See {@link MovementCheckpoint}. */
+	public static final String MM_CHECKPOINT_S =
+		movement.MovementModel.MOVEMENT_MODEL_NS + ".checkpoint";
 
 	/** report class' package name */
 	private static final String REPORT_PAC = "report.";
@@ -109,7 +117,25 @@ public abstract class DTNSimUI {
 			}
 
 			this.world = this.scen.getWorld();
-			world.warmupMovementModel(warmupTime);
+			if (settings.contains(MM_CHECKPOINT_S)) {
+				String file = settings.valueFillString(
+						settings.getSetting(MM_CHECKPOINT_S));
+				MovementCheckpoint checkpoint = new MovementCheckpoint(
+						world.getHosts(), warmupTime);
+				if (new File(file).exists()) {
+					checkpoint.restore(file);
+				}
+				else {
+					world.warmupMovementModel(warmupTime);
+					if (!world.isReplayingContacts()) {
+						/* nothing moved in the warmup of a replay */
+						checkpoint.save(file);
+					}
+				}
+			}
+			else {
+				world.warmupMovementModel(warmupTime);
+			}
 		}
 		catch (SettingsError se) {
 			System.err.println("Can't start: error in configuration file(s)");
@@ -127,6 +153,7 @@ public abstract class DTNSimUI {
 	 * Runs maintenance jobs that are needed before exiting.
 	 */
 	public void done() {
+		this.world.done();
 		for (Report r : this.reports) {
 			r.done();
 		}
@@ -101,6 +101,15 @@ public class ActivenessHandler {
 		return timesList;
 	}
 
+	/**
+	 * Returns true if no active times nor active periods are defined, i.e.,
+	 * the handler considers the node to be active at all times
+	 * @return True if the node is always active
+	 */
+	public boolean isAlwaysActive() {
+		return this.activeTimes == null && this.activePeriods == null;
+	}
+
 	/**
 	 * Returns true if node should be active at the moment
 	 * @return true if node should be active at the moment
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Random number generator whose state can be written to and read from a
+ * checkpoint. Generates exactly the same numbers as {@link Random} with the
+ * same seed (using the linear congruential generator and the polar method
+ * that Random specifies), but keeps the state in plain fields. Unlike
+ * Random, this class is not thread safe.
+ */
+public class CheckpointRandom extends Random {
+	private static final long serialVersionUID = 1L;
+	private static final long MULTIPLIER = 0x5DEECE66DL;
+	private static final long ADDEND = 0xBL;
+	private static final long MASK = (1L << 48) - 1;
+
+	/* not initialized here because Random's constructor calls setSeed */
+	private long state;
+	private double nextNextGaussian;
+	private boolean haveNextNextGaussian;
+
+	/**
+	 * Creates a new generator with the given seed
+	 * @param seed The seed
+	 */
+	public CheckpointRandom(long seed) {
+		super(seed);
+	}
+
+	@Override
+	public void setSeed(long seed) {
+		this.state = (seed ^ MULTIPLIER) & MASK;
+		this.haveNextNextGaussian = false;
+	}
+
+	@Override
+	protected int next(int bits) {
+		this.state = (this.state * MULTIPLIER + ADDEND) & MASK;
+		return (int)(this.state >>> (48 - bits));
+	}
+
+	@Override
+	public double nextGaussian() {
+		if (this.haveNextNextGaussian) {
+			this.haveNextNextGaussian = false;
+			return this.nextNextGaussian;
+		}
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		this.nextNextGaussian = v2 * multiplier;
+		this.haveNextNextGaussian = true;
+		return v1 * multiplier;
+	}
+
+	/**
+	 * Writes the state of the generator
+	 * @param out Where to write the state
+	 * @throws IOException if writing fails
+	 */
+	public void writeState(DataOutput out) throws IOException {
+		out.writeLong(this.state);
+		out.writeBoolean(this.haveNextNextGaussian);
+		out.writeDouble(this.nextNextGaussian);
+	}
+
+	/**
+	 * Reads a state written by {@link #writeState(DataOutput)}. The generator
+	 * continues from that state.
+	 * @param in Where to read the state from
+	 * @throws IOException if reading fails
+	 */
+	public void readState(DataInput in) throws IOException {
+		this.state = in.readLong();
+		this.haveNextNextGaussian = in.readBoolean();
+		this.nextNextGaussian = in.readDouble();
+	}
+}
@@ -0,0 +1,260 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package util;
+
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Hash map with primitive long keys. The entries are stored in arrays in
+ * the order they were added and an open addressing (linear probing) hash
+ * table of entry indexes is used to find them, so there are no entry or
+ * key objects. The values are iterated in the order their keys were
+ * added to the map. Null values are allowed.
+ * @param <V> Type of the values
+ */
+public class LongHashMap<V> {
+	/** value of removed entries */
+	private static final Object REMOVED = new Object();
+	/** hash table value of empty slots */
+	private static final int EMPTY = 0;
+	/** hash table value of slots whose entry was removed */
+	private static final int DELETED = -1;
+	private static final int INITIAL_CAPACITY = 8;
+
+	/** keys of the entries in the order they were added */
+	private long[] keys;
+	/** values of the entries (REMOVED for removed entries) */
+	private Object[] values;
+	/** number of used entry slots (including the removed entries) */
+	private int nrofEntries;
+	/** number of entries that have not been removed */
+	private int size;
+	/** hash table of entry indexes + 1 (or EMPTY or DELETED) */
+	private int[] table;
+	private int modCount;
+
+	/**
+	 * Creates a new empty map
+	 */
+	public LongHashMap() {
+		this.keys = new long[INITIAL_CAPACITY];
+		this.values = new Object[INITIAL_CAPACITY];
+		this.table = new int[2 * INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Returns the number of values in the map
+	 * @return the number of values in the map
+	 */
+	public int size() {
+		return this.size;
+	}
+
+	/**
+	 * Returns true if the map has no values
+	 * @return true if the map has no values
+	 */
+	public boolean isEmpty() {
+		return this.size == 0;
+	}
+
+	/**
+	 * Returns true if the map has a value for the key
+	 * @param key The key
+	 * @return true if the map has a value for the key
+	 */
+	public boolean containsKey(long key) {
+		return find(key) >= 0;
+	}
+
+	/**
+	 * Returns the value of a key
+	 * @param key The key
+	 * @return The value or null if the key is not in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int slot = find(key);
+		return slot >= 0 ? (V)values[table[slot] - 1] : null;
+	}
+
+	/**
+	 * Sets the value of a key. A new key is added after all the other keys
+	 * in the iteration order; the order of an existing key doesn't change.
+	 * @param key The key
+	 * @param value The value
+	 * @return The previous value of the key or null if it wasn't in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		int slot = find(key);
+		if (slot >= 0) {
+			int i = table[slot] - 1;
+			V old = (V)values[i];
+			values[i] = value;
+			return old;
+		}
+
+		if (nrofEntries == keys.length) {
+			/* compact if at least half of the entries are removed */
+			rebuild(size < keys.length / 2 ? keys.length : 2 * keys.length);
+		}
+		keys[nrofEntries] = key;
+		values[nrofEntries] = value;
+		nrofEntries++;
+		size++;
+		modCount++;
+
+		int mask = table.length - 1;
+		for (slot = hash(key) & mask; table[slot] > EMPTY;
+				slot = (slot + 1) & mask);
+		table[slot] = nrofEntries; // index + 1
+		return null;
+	}
+
+	/**
+	 * Removes a key and its value from the map
+	 * @param key The key
+	 * @return The removed value or null if the key wasn't in the map
+	 */
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int slot = find(key);
+		if (slot < 0) {
+			return null;
+		}
+		int i = table[slot] - 1;
+		V old = (V)values[i];
+		values[i] = REMOVED;
+		table[slot] = DELETED;
+		size--;
+		modCount++;
+		return old;
+	}
+
+	/**
+	 * Returns a view of the values of the map in the order their keys were
+	 * added. The view's iterator supports removing values.
+	 * @return The values
+	 */
+	public Collection<V> values() {
+		return new AbstractCollection<V>() {
+			@Override
+			public Iterator<V> iterator() {
+				return new ValueIterator();
+			}
+
+			@Override
+			public int size() {
+				return LongHashMap.this.size;
+			}
+		};
+	}
+
+	/**
+	 * Returns the hash table slot of a key or -1 if the key is not in the map
+	 */
+	private int find(long key) {
+		int mask = table.length - 1;
+		for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+			int t = table[slot];
+			if (t == EMPTY) {
+				return -1;
+			}
+			if (t > EMPTY && keys[t - 1] == key) {
+				return slot;
+			}
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int)(h ^ (h >>> 32));
+	}
+
+	/**
+	 * Removes the removed entries from the entry arrays, resizes them and
+	 * rebuilds the hash table
+	 * @param capacity New capacity of the entry arrays
+	 */
+	private void rebuild(int capacity) {
+		long[] newKeys = new long[capacity];
+		Object[] newValues = new Object[capacity];
+		int n = 0;
+		for (int i = 0; i < nrofEntries; i++) {
+			if (values[i] != REMOVED) {
+				newKeys[n] = keys[i];
+				newValues[n] = values[i];
+				n++;
+			}
+		}
+		this.keys = newKeys;
+		this.values = newValues;
+		this.nrofEntries = n;
+
+		/* at most half of the slots are ever used */
+		this.table = new int[2 * capacity];
+		int mask = table.length - 1;
+		for (int i = 0; i < n; i++) {
+			int slot = hash(keys[i]) & mask;
+			while (table[slot] != EMPTY) {
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Iterator of the values in the order of the entries
+	 */
+	private class ValueIterator implements Iterator<V> {
+		private int next = 0;
+		private int last = -1;
+		private int expectedModCount = modCount;
+
+		private ValueIterator() {
+			skipRemoved();
+		}
+
+		private void skipRemoved() {
+			while (next < nrofEntries && values[next] == REMOVED) {
+				next++;
+			}
+		}
+
+		public boolean hasNext() {
+			return next < nrofEntries;
+		}
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			if (next >= nrofEntries) {
+				throw new NoSuchElementException();
+			}
+			last = next++;
+			skipRemoved();
+			return (V)values[last];
+		}
+
+		public void remove() {
+			if (last < 0) {
+				throw new IllegalStateException();
+			}
+			if (modCount != expectedModCount) {
+				throw new ConcurrentModificationException();
+			}
+			LongHashMap.this.remove(keys[last]);
+			expectedModCount = modCount;
+			last = -1;
+		}
+	}
+}